@@ -22,6 +22,15 @@ import java.util.regex.Pattern;
 import java.lang.reflect.*;
 import org.apache.jena.rdf.model.*;	// Jena 3.x
 //import com.hp.hpl.jena.rdf.model.*;		// Jena 2.x
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 
 /**
@@ -36,13 +45,50 @@ import org.apache.jena.rdf.model.*;	// Jena 3.x
  **/
 public class CoNLL2RDF extends Format2RDF{
 	
+	private static Logger LOG = LogManager.getLogger(CoNLL2RDF.class.getName());
+	
+	private static final Pattern SENTENCE_MARKUP = Pattern.compile("<[\\/]?[psPS]( [^>]*>|>)");
+	private static final Pattern OTHER_MARKUP = Pattern.compile("^<[^>]*>$");
+	
+	private static final Node NIF_WORD = NodeFactory.createURI(NIF+"Word");
+	private static final Node NIF_SENTENCE = NodeFactory.createURI(NIF+"Sentence");
+	private static final Node NIF_NEXT_WORD = NodeFactory.createURI(NIF+"nextWord");
+	private static final Node NIF_NEXT_SENTENCE = NodeFactory.createURI(NIF+"nextSentence");
+	private static final Node CONLL_HEAD = NodeFactory.createURI(CONLL+"HEAD");
+	
+	// column properties and types, precomputed for conll2stream
+	private Node[] colProperty;
+	private boolean[] colIsHead;
+	private boolean[] colIsPredicate;
+	private int wordCol = -1;
+	private boolean hasArgs;
+	private Node argsSuperProperty;
 	
 	public CoNLL2RDF(String baseURI, String[] fields, Writer out) throws IOException {
 		super(baseURI, fields, out);
+		initColumns();
 	}
 	
 	public CoNLL2RDF(String baseURI, String[] fields) throws IOException {
 		super(baseURI, fields);
+		initColumns();
+	}
+	
+	private void initColumns() {
+		String lastCol = col2field.get(col2field.size()-1);
+		String predicateCol = lastCol.replaceFirst("[\\-_]*[Aa][rR][gG][sS]$","");
+		hasArgs = lastCol.toLowerCase().matches(".*args$");
+		argsSuperProperty = NodeFactory.createURI(CONLL+lastCol.replaceFirst("([\\-_]*[Aa][rR][gG])[sS]$","$1"));
+		colProperty = new Node[col2field.size()];
+		colIsHead = new boolean[col2field.size()];
+		colIsPredicate = new boolean[col2field.size()];
+		for(int i = 0; i<col2field.size(); i++) {
+			colProperty[i] = NodeFactory.createURI(CONLL+col2field.get(i));
+			colIsHead[i] = col2field.get(i).toLowerCase().matches("^head[0-9]*$");
+			colIsPredicate[i] = col2field.get(i).equals(predicateCol);
+			if(wordCol<0 && col2field.get(i).toLowerCase().equals("word"))
+				wordCol = i;
+		}
 	}
 
 	/** @param argv baseURI field1 field2 ... (see variable <code>help</code> and method <code>conll2ttl</code>) */
@@ -180,4 +226,130 @@ public class CoNLL2RDF extends Format2RDF{
 				tok=0;
 			}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Same as conll2model(Reader) with conll2ttl, but the triples are generated directly,
+	 * without writing and re-parsing Turtle. Produces the same triples and prefixes
+	 * and advances the sentence counter in the same way.<br>
+	 * conll2ttl(Reader) remains in use for the TTL output of the CLI.
+	 */
+	@Override
+	public Model conll2model(Reader in) throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		conll2stream(in, StreamRDFLib.graph(model.getGraph()));
+		return model;
+	}
+	
+	/**
+	 * Native implementation of the conll2ttl conversion: emits nif:Word, conll:*, nif:nextWord,
+	 * HEAD and ARGS triples straight into the StreamRDF sink.<br>
+	 * NOTE: unlike conll2ttl, ARGS of a sentence without final newline are resolved as well
+	 */
+	@Override
+	public void conll2stream(Reader in, StreamRDF out) throws IOException {
+		out.start();
+		writePrefixes(out);
+
+		BufferedReader bin = new BufferedReader(in);
+		boolean inSentence = false;
+		Node root = sentenceNode(sent);
+		Node lastWord = null;
+		List<Node> predicates = new ArrayList<Node>();
+		List<Object[]> argTriples = new ArrayList<Object[]>(); // {predicate index, property, word}
+		Set<Node> argsProperties = new LinkedHashSet<Node>();
+		
+		for(String line = ""; line!=null; line=bin.readLine()) {
+			line=SENTENCE_MARKUP.matcher(line).replaceAll("").trim();
+			if(OTHER_MARKUP.matcher(line).matches())
+				continue;
+			root = sentenceNode(sent);
+			if(line.equals("")) {
+				if(inSentence) {
+					emitArgs(argTriples, predicates, out);
+					predicates.clear();
+					inSentence = false;
+					tok=0;
+					sent++;
+				}
+				continue;
+			}
+			int comment = line.indexOf('#');
+			if(comment>=0)
+				line=line.substring(0, comment).trim();
+			if(line.equals(""))
+				continue;
+			if(!inSentence) {
+				if(sent>1)
+					out.triple(Triple.create(sentenceNode(sent-1), NIF_NEXT_SENTENCE, root));
+				out.triple(Triple.create(root, RDF.Nodes.type, NIF_SENTENCE));
+				inSentence = true;
+			}
+			tok++;
+			String id_string = ""+tok;
+			String[] field = line.split("\t");
+			try {
+				if(field2col.get("ID")!=null) id_string = field[field2col.get("ID")];
+			} catch (ArrayIndexOutOfBoundsException e) {
+				throw new ArrayIndexOutOfBoundsException("if defined as label, the ID column is obligatory");
+			}
+			Node word = wordNode(sent, id_string);
+			
+			if(tok>1)
+				out.triple(Triple.create(lastWord, NIF_NEXT_WORD, word));
+			out.triple(Triple.create(word, RDF.Nodes.type, NIF_WORD));
+			for(int i = 0; i<field.length; i++) {
+				String value = field[i].trim();
+				if(empty.matcher(value).matches())
+					continue;
+				if(i==wordCol)
+					pos=pos+value.length();
+				if(i<colIsHead.length && colIsHead[i]) {
+					out.triple(Triple.create(word, colProperty[i], wordNode(sent, value)));
+				} else if (i<colProperty.length-1 || (i==colProperty.length-1 && !hasArgs)) {
+					out.triple(Triple.create(word, colProperty[i], NodeFactory.createLiteral(value.replace("&","&amp;").replace("\"","&quot;"))));
+				} else if (hasArgs) {
+					Node property = NodeFactory.createURI(CONLL+value);
+					argTriples.add(new Object[] {i+1-colProperty.length, property, word});
+					argsProperties.add(property);
+				}
+				if(i<colIsPredicate.length && colIsPredicate[i])
+					predicates.add(word);
+				pos++;
+			}
+			if(field2col.get("HEAD")==null) // if no HEAD annotation available, mark everything as depending on root
+				out.triple(Triple.create(word, CONLL_HEAD, root));
+			lastWord = word;
+		}
+		if(inSentence) {
+			emitArgs(argTriples, predicates, out);
+			for(Node p : argsProperties)
+				out.triple(Triple.create(p, RDFS.Nodes.subPropertyOf, argsSuperProperty));
+		}
+		out.finish();
+		
+		if(tok>0) {
+			sent++;
+			tok=0;
+		}
+	}
+	
+	/** ARGS triples link the n-th predicate of a sentence with its arguments, so they are emitted after the sentence */
+	private void emitArgs(List<Object[]> argTriples, List<Node> predicates, StreamRDF out) {
+		for(Object[] arg : argTriples) {
+			int p = (Integer) arg[0];
+			if(p<predicates.size())
+				out.triple(Triple.create(predicates.get(p), (Node) arg[1], (Node) arg[2]));
+			else
+				LOG.warn("skipping argument "+arg[1]+" of "+arg[2]+": predicate "+p+" not found in sentence "+sent);
+		}
+		argTriples.clear();
+	}
+	
+	private Node sentenceNode(int sent) {
+		return wordNode(sent, "0");
+	}
+	
+	private Node wordNode(int sent, String id) {
+		return NodeFactory.createURI(baseURI+"s"+sent+"_"+id); // URI naming scheme follows the German TIGER Corpus
+	}
+}
\ No newline at end of file
@@ -3,20 +3,68 @@ package org.acoli.conll.rdf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Arrays;
-import java.util.List;
+import java.io.UncheckedIOException;
 
+import org.acoli.fintan.core.FintanInputStream;
+import org.acoli.fintan.core.FintanModelIO;
+import org.acoli.fintan.core.FintanOutputStream;
 import org.acoli.fintan.core.StreamTransformerGenericIO;
+import org.apache.jena.rdf.model.Model;
 
-public abstract class CoNLLRDFComponent extends StreamTransformerGenericIO {
-	static final List<Integer> CHECKINTERVAL = Arrays.asList(3, 10, 25, 50, 100, 200, 500);
+public abstract class CoNLLRDFComponent extends StreamTransformerGenericIO implements FintanModelIO {
 	static final String DEFAULTUPDATENAME = "DIRECTUPDATE";
 	// maximal update iterations allowed until the update loop is canceled and an error msg is thrown
 	// (to prevent faulty update scripts running in an endless loop)
 	static final int MAXITERATE = 999;
 
+	// segmented RDF streams replacing the default streams, see FintanModelIO
+	private FintanInputStream<Model> modelInputStream = null;
+	private FintanOutputStream<Model> modelOutputStream = null;
+
 	protected abstract void processSentenceStream() throws IOException;
 
+	/**
+	 * Model input is not supported by default. Subclasses supporting it 
+	 * need to read from getModelInputStream() if it is set.
+	 */
+	@Override
+	public boolean supportsModelInput() {
+		return false;
+	}
+
+	/**
+	 * Model output is not supported by default. Subclasses supporting it 
+	 * need to write to getModelOutputStream() if it is set and terminate it.
+	 */
+	@Override
+	public boolean supportsModelOutput() {
+		return false;
+	}
+
+	@Override
+	public FintanInputStream<Model> getModelInputStream() {
+		return modelInputStream;
+	}
+
+	@Override
+	public void setModelInputStream(FintanInputStream<Model> inputStream) throws IOException {
+		if (!supportsModelInput())
+			throw new IOException("Segmented RDF input is not supported by "+getClass().getName());
+		modelInputStream = inputStream;
+	}
+
+	@Override
+	public FintanOutputStream<Model> getModelOutputStream() {
+		return modelOutputStream;
+	}
+
+	@Override
+	public void setModelOutputStream(FintanOutputStream<Model> outputStream) throws IOException {
+		if (!supportsModelOutput())
+			throw new IOException("Segmented RDF output is not supported by "+getClass().getName());
+		modelOutputStream = outputStream;
+	}
+
 	@Override
 	public void setInputStream(InputStream inputStream, String name) throws IOException {
 		if (name == null || FINTAN_DEFAULT_STREAM_NAME.equals(name)) {
@@ -40,8 +88,7 @@ public abstract class CoNLLRDFComponent extends StreamTransformerGenericIO {
 		try {
 			processSentenceStream();
 		} catch (IOException e) {
-			e.printStackTrace();
-			System.exit(1);
+			throw new UncheckedIOException(e);
 		}
 	}
 	// TODO is this method used anywhere? Yes: in Fintan
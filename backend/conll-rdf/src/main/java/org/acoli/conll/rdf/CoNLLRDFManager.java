@@ -8,8 +8,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,6 +20,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import org.acoli.fintan.core.FintanBytePipe;
 import org.apache.commons.cli.ParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -170,7 +169,7 @@ public class CoNLLRDFManager {
 	}
 
 	/**
-	 * Link all components using Piped Streams, and set Pipeline I/O.
+	 * Link all components using FintanBytePipes, and set Pipeline I/O.
 	 * @param componentArray The List of components to be linked.
 	 * @param input Link this to the first component
 	 * @param output Link last component to this.
@@ -182,12 +181,11 @@ public class CoNLLRDFManager {
 				// link input to first component
 				component.setInputStream(input);
 			} else {
-				// prepare piped Streams
-				PipedOutputStream pipedOutput = new PipedOutputStream();
-				PipedInputStream pipedInput = new PipedInputStream(pipedOutput);
+				// prepare pipe
+				FintanBytePipe pipe = new FintanBytePipe();
 				// link previous component to this one
-				prevComponent.setOutputStream(new PrintStream(pipedOutput));
-				component.setInputStream(pipedInput);
+				prevComponent.setOutputStream(new PrintStream(pipe.getOutputStream()));
+				component.setInputStream(pipe.getInputStream());
 			}
 			prevComponent = component;
 		}
@@ -198,6 +196,11 @@ public class CoNLLRDFManager {
 	public void start() {
 		for (CoNLLRDFComponent component:componentStack) {
 			Thread t = new Thread(component);
+			// components pass their failures on, the command line terminates on the first one
+			t.setUncaughtExceptionHandler((thread, e) -> {
+				LOG.error(e, e);
+				System.exit(1);
+			});
 	        t.start();
 		}
 	}
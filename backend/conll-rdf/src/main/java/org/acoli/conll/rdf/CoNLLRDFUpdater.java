@@ -36,26 +36,32 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.zip.GZIPInputStream;
 
+import org.acoli.fintan.core.FintanStreamHandler;
+import org.acoli.fintan.core.metrics.LatencyHistogram;
+import org.acoli.fintan.core.util.FintanCache;
+import org.acoli.fintan.core.util.GraphChangeTracker;
+import org.acoli.fintan.core.util.OverlayUnionGraph;
+import org.acoli.fintan.core.util.ReorderBuffer;
+import org.acoli.fintan.core.util.SemiNaiveUpdate;
+import org.acoli.fintan.core.util.UpdateDatasetMode;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.MutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.query.Dataset;
-import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.QueryParseException;
-import org.apache.jena.rdf.listeners.ChangedListener;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.system.Txn;
 import org.apache.jena.update.Update;
 import org.apache.jena.update.UpdateAction;
-import org.apache.jena.update.UpdateFactory;
 import org.apache.jena.update.UpdateRequest;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -68,18 +74,32 @@ import org.apache.logging.log4j.Logger;
 public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 	static final Logger LOG = LogManager.getLogger(CoNLLRDFUpdater.class);
 
+	private final UpdateDatasetMode mode;
 	private final Dataset dataset;
+	// true, if threads need write transactions on the dataset
+	private boolean writesExternalGraphs = false;
 
 	// Configuration Variables with defaults set
 	private boolean prefixDeduplication = false;
 	private int threads = 0;
 	private int lookahead_snts = 0;
 	private int lookback_snts = 0;
+	private boolean ordered = true;
+	private int reorderBuffer = ReorderBuffer.DEFAULT_CAPACITY;
+	private boolean semiNaive = true;
 	private File graphOutputDir = null;
 	private File triplesOutputDir = null;
 
 	//for updates
 	private final List<Triple<String, String, String>> updates = Collections.synchronizedList(new ArrayList<Triple<String, String, String>>());
+	// updates compiled once by parseUpdates, shared read-only by all threads (same order as updates)
+	private final List<UpdateRequest> updateRequests = Collections.synchronizedList(new ArrayList<UpdateRequest>());
+	// semi-naive versions of the updates, null if not supported (same order as updates)
+	private final List<SemiNaiveUpdate> semiNaiveUpdates = Collections.synchronizedList(new ArrayList<SemiNaiveUpdate>());
+	// time in ns it took to parse each update, for statistics
+	private final List<Long> updateParseTimes = Collections.synchronizedList(new ArrayList<Long>());
+	// latency of each update per sentence, only if metrics are enabled (same order as updates)
+	private LatencyHistogram[] updateLatencies = null;
 	//For graphsout and triplesout
 	private final List<String> graphOutputSentences = Collections.synchronizedList(new ArrayList<String>());
 	private final List<String> triplesOutputSentences = Collections.synchronizedList(new ArrayList<String>());
@@ -88,19 +108,74 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 	private boolean running = false;
 	private final List<UpdateThread> updateThreads = Collections.synchronizedList(new ArrayList<UpdateThread>());
 	// Buffer providing each thread with its respective sentence(s) to process
-	// <List:lookbackBuffer>, <String:currentSentence>, <List:lookaheadBuffer>
-	private final List<Triple<List<String>, String, List<String>>> sentBufferThreads = Collections.synchronizedList(new ArrayList<Triple<List<String>, String, List<String>>>());
+	// <List:lookbackBuffer>, <BufferedSentence:currentSentence>, <List:lookaheadBuffer>
+	private final List<Triple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>>> sentBufferThreads = Collections.synchronizedList(new ArrayList<Triple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>>>());
 
-	private final List<String> sentBufferLookahead = Collections.synchronizedList(new ArrayList<String>());
-	private final List<String> sentBufferLookback = Collections.synchronizedList(new ArrayList<String>());
-	// Buffer for outputting sentences in original order
-	private final List<String> sentBufferOut = Collections.synchronizedList(new ArrayList<String>()); 
+	private final List<BufferedSentence> sentBufferLookahead = Collections.synchronizedList(new ArrayList<BufferedSentence>());
+	private final List<BufferedSentence> sentBufferLookback = Collections.synchronizedList(new ArrayList<BufferedSentence>());
+	// Buffer for outputting sentences in original order, or as soon as they are processed
+	// holds the serialized sentences (or the Models for segmented RDF output)
+	private ReorderBuffer<Object> sentBufferOut;
+	// sequence number of the sentence processed by each thread
+	private long[] sentSequences;
 
 	//for statistics
 	private final List<List<Pair<Integer,Long>>> dRTs = Collections.synchronizedList(new ArrayList<List<Pair<Integer,Long>>>());
 	// iterations and execution time of each update in seconds
 
 
+	/**
+	 * A sentence as read from the input stream. Its Turtle is parsed only once,
+	 * on first access, and the resulting Model is shared read-only by all threads
+	 * holding this sentence in their lookback or lookahead window.
+	 */
+	private static class BufferedSentence {
+		private final String ttl;
+		private Model model = null;
+
+		public BufferedSentence(String ttl) {
+			this.ttl = ttl;
+		}
+
+		/**
+		 * @param model a sentence read from a segmented RDF stream.
+		 */
+		public BufferedSentence(Model model) {
+			this.ttl = null;
+			this.model = model;
+		}
+
+		/**
+		 * @return the Turtle of this sentence. null, if it has been read as Model.
+		 */
+		public String getTtl() {
+			return ttl;
+		}
+
+		/**
+		 * @return the parsed sentence. Must not be modified.
+		 */
+		public synchronized Model getModel() {
+			if (model == null) {
+				Model m = ModelFactory.createDefaultModel();
+				m.read(new StringReader(ttl),null, "TTL");
+				model = m;
+			}
+			return model;
+		}
+	}
+
+	/**
+	 * @return a copy-on-write union view on the parsed sentences.
+	 */
+	private static Model createWindowModel(List<BufferedSentence> sentences) {
+		List<Graph> graphs = new ArrayList<Graph>(sentences.size());
+		for (BufferedSentence sent:sentences) {
+			graphs.add(sent.getModel().getGraph());
+		}
+		return ModelFactory.createModelForGraph(new OverlayUnionGraph(graphs));
+	}
+
 	private class UpdateThread extends Thread {
 		
 		private CoNLLRDFUpdater updater;
@@ -110,9 +185,13 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		/**
 		 * Each UpdateThread receives its own ID and a back-reference to the calling Updater.
 		 * 
-		 * In the current implementation, each thread manages its own in-memory Dataset.
-		 * This is the fastest approach since no concurring access on a single Datasets occurs.
-		 * However: lots of RAM may be needed.
+		 * Each thread manages its own working Dataset with a private default graph.
+		 * In MEM mode, external graphs are immutable FrozenGraphs shared by all threads, 
+		 * or private overlays on them if the updates may change them. In TXN and TDB2 
+		 * mode, they are views on the shared dataset.
+		 * 
+		 * The Dataset links its graphs by reference. Lookback and lookahead graphs 
+		 * are union views on the buffered sentences, so no triples are copied.
 		 * 
 		 * @param updater
 		 * 				The calling Updater (= ThreadHandler)
@@ -122,12 +201,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		public UpdateThread(CoNLLRDFUpdater updater, int id) {
 			this.updater = updater;
 			threadID = id;
-			memDataset = DatasetFactory.create();
-			Iterator<String> iter = updater.dataset.listNames();
-			while(iter.hasNext()) {
-				String graph = iter.next();
-				memDataset.addNamedModel(graph, updater.dataset.getNamedModel(graph));
-			}
+			memDataset = updater.mode.createWorkerDataset(updater.dataset, updater.writesExternalGraphs);
 			memDataset.addNamedModel("https://github.com/acoli-repo/conll-rdf/lookback", ModelFactory.createDefaultModel());
 			memDataset.addNamedModel("https://github.com/acoli-repo/conll-rdf/lookahead", ModelFactory.createDefaultModel());
 		}
@@ -141,12 +215,15 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 				//Execute Thread
 
 				LOG.trace("NOW Processing on thread "+threadID+": outputbuffersize "+sentBufferOut.size());
-				Triple<List<String>, String, List<String>> sentBufferThread = sentBufferThreads.get(threadID);
+				Triple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>> sentBufferThread = sentBufferThreads.get(threadID);
+				final long sequence = sentSequences[threadID];
 				StringWriter out = new StringWriter();
+				Model result = null;
+				mode.begin(dataset, writesExternalGraphs);
 				try {
 					loadBuffer(sentBufferThread);
 					
-					List<Pair<Integer,Long> > ret = executeUpdates(updates);
+					List<Pair<Integer,Long> > ret = executeUpdates(updates, updateRequests);
 					if (dRTs.get(threadID).isEmpty())
 						dRTs.get(threadID).addAll(ret);
 					else
@@ -155,27 +232,22 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 									dRTs.get(threadID).get(x).getKey() + ret.get(x).getKey(),
 									dRTs.get(threadID).get(x).getValue() + ret.get(x).getValue()));
 					
-					unloadBuffer(sentBufferThread, out);
+					if (getModelOutputStream() != null)
+						// the default graph is replaced on the next loadBuffer, so it can be passed on as it is.
+						result = memDataset.getDefaultModel();
+					else
+						unloadBuffer(sentBufferThread, out);
 				} catch (Exception e) {
-//					memDataset.begin(ReadWrite.WRITE);
-					memDataset.getDefaultModel().removeAll();
-					memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookback").removeAll();
-					memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookahead").removeAll();
-//					memDataset.commit();
-//					memDataset.end();
 					e.printStackTrace();
 //					continue;
+				} finally {
+					mode.end(dataset);
 				}
 
-				// synchronized write access to sentBuffer in order to avoid corruption
+				// sentences which failed to process are left as empty Strings
+				sentBufferOut.complete(sequence, (result != null) ? result : out.toString());
 				synchronized(updater) {
 				LOG.trace("NOW PRINTING on thread "+threadID+": outputbuffersize "+sentBufferOut.size());
-				for (int i = 0; i < sentBufferOut.size(); i++) {
-					if (sentBufferOut.get(i).equals(String.valueOf(threadID))) {
-						sentBufferOut.set(i, out.toString());
-						break;
-					}
-				}				
 				
 				//go to sleep and let Updater take control
 					LOG.trace("Updater notified by "+threadID);
@@ -200,70 +272,53 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		 * 			the model to be read.
 		 * @throws Exception
 		 */
-		private void loadBuffer(Triple<List<String>, String, List<String>> sentBufferThread) throws Exception { //TODO: adjust for TXN-Models
+		private void loadBuffer(Triple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>> sentBufferThread) throws Exception {
 			//check validity of current sentence
-			isValidUTF8(sentBufferThread.getMiddle(), "Input data encoding issue for \"" + sentBufferThread.getMiddle() + "\"");
+			if (sentBufferThread.getMiddle().getTtl() != null)
+				isValidUTF8(sentBufferThread.getMiddle().getTtl(), "Input data encoding issue for \"" + sentBufferThread.getMiddle().getTtl() + "\"");
 			//load ALL
 			try {
-//				memDataset.begin(ReadWrite.WRITE);
-				
 				// for lookback
-				for (String sent:sentBufferThread.getLeft()) {
-					memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookback").read(new StringReader(sent),null, "TTL");
-				}
+				memDataset.replaceNamedModel("https://github.com/acoli-repo/conll-rdf/lookback", createWindowModel(sentBufferThread.getLeft()));
 				
-				// for current sentence
-				memDataset.getDefaultModel().read(new StringReader(sentBufferThread.getMiddle()),null, "TTL");
+				// for current sentence: private copy, since the parsed sentence may be part of other windows
+				Model sentence = sentBufferThread.getMiddle().getModel();
+				memDataset.setDefaultModel(ModelFactory.createDefaultModel().add(sentence).setNsPrefixes(sentence));
 
 				// for lookahead
-				for (String sent:sentBufferThread.getRight()) {
-					memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookahead").read(new StringReader(sent),null, "TTL");
-				}
-				
-//				memDataset.commit();
-//				Model m = ModelFactory.createDefaultModel().read(new StringReader(buffer),null, "TTL");
-//				memAccessor.add(m);
-//				memDataset.getDefaultModel().setNsPrefixes(m.getNsPrefixMap());
+				memDataset.replaceNamedModel("https://github.com/acoli-repo/conll-rdf/lookahead", createWindowModel(sentBufferThread.getRight()));
 			} catch (Exception ex) {
-				LOG.error("Exception while reading: " + sentBufferThread.getMiddle());
+				LOG.error("Exception while reading: " + sentBufferThread.getMiddle().getTtl());
 				throw ex;
-			} finally {
-//				memDataset.end();
 			}
 			
 		}
 
 		/**
 		 * Unloads Data from this thread's working model.
-		 * Includes comments from original data.
+		 * Includes comments from original data, if it has been read as text.
 		 * @param buffer
 		 * 			Original data for extracting comments.
 		 * @param out
 		 * 			Output Writer.
 		 * @throws Exception
 		 */
-		private void unloadBuffer(Triple<List<String>, String, List<String>> sentBufferThread, Writer out) throws Exception { //TODO: adjust for TXN-Models
-			String buffer = sentBufferThread.getMiddle();
+		private void unloadBuffer(Triple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>> sentBufferThread, Writer out) throws Exception {
+			String buffer = sentBufferThread.getMiddle().getTtl();
 			try {
-				BufferedReader in = new BufferedReader(new StringReader(buffer));
-				String line;
-				while((line=in.readLine())!=null) {
-					line=line.trim();
-					if(line.startsWith("#")) out.write(line+"\n");
+				if (buffer != null) {
+					BufferedReader in = new BufferedReader(new StringReader(buffer));
+					String line;
+					while((line=in.readLine())!=null) {
+						line=line.trim();
+						if(line.startsWith("#")) out.write(line+"\n");
+					}
 				}
 				memDataset.getDefaultModel().write(out, "TTL");
 				out.write("\n");
 				out.flush();
 			} catch (Exception ex) {
-//				memDataset.abort();
 				LOG.error("Exception while unloading: " + buffer);
-			} finally {
-//				memDataset.begin(ReadWrite.WRITE);
-				memDataset.getDefaultModel().removeAll();
-				memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookback").removeAll();
-				memDataset.getNamedModel("https://github.com/acoli-repo/conll-rdf/lookahead").removeAll();
-//				memDataset.commit();
-//				memDataset.end();
 			}
 			
 		}
@@ -276,12 +331,14 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		 * 			- update filename
 		 * 			- update script
 		 * 			- number of iterations
+		 * @param updateRequests
+		 * 			The precompiled UpdateRequests in the same order as updates
 		 * @return
 		 * 			List of pairs containing Execution info on each update:
 		 * 			- total no. of iterations
 		 * 			- total time
 		 */
-		private List<Pair<Integer, Long>> executeUpdates(List<Triple<String, String, String>> updates) { 
+		private List<Pair<Integer, Long>> executeUpdates(List<Triple<String, String, String>> updates, List<UpdateRequest> updateRequests) { 
 
 			String sent = new String();
 			boolean graphsout = false;
@@ -319,12 +376,12 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 			int upd_id = 1;
 			int iter_id = 1;
 			for(Triple<String, String, String> update : updates) {
+				final UpdateRequest updateRequest = updateRequests.get(upd_id - 1);
 				iter_id = 1;
 				Long startTime = System.currentTimeMillis();
+				long startNanos = System.nanoTime();
 				Model defaultModel = memDataset.getDefaultModel();
-				ChangedListener cL = new ChangedListener();
-				defaultModel.register(cL);
-				String oldModel = "";
+				GraphChangeTracker changeTracker = new GraphChangeTracker(defaultModel.getGraph());
 				int frq = MAXITERATE, v = 0;
 				boolean change = true;
 				try {
@@ -333,22 +390,23 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 					if (!"*".equals(update.getRight()))
 						throw e;
 				}
+				// iterated updates: after the first iteration, only evaluate bindings of the added triples
+				SemiNaiveUpdate.Evaluation semiNaiveEvaluation = null;
+				if (semiNaive && frq > 1 && !graphsout && !triplesout && semiNaiveUpdates.get(upd_id - 1) != null)
+					semiNaiveEvaluation = semiNaiveUpdates.get(upd_id - 1).start(memDataset);
 				while(v < frq && change) {
+					changeTracker.mark();
 					try {
-						UpdateRequest updateRequest;
-						updateRequest = UpdateFactory.create(update.getMiddle());
 						if (graphsout || triplesout) { //execute Update-block step by step and output intermediate results
 							int step = 1;
-							Model dM = memDataset.getDefaultModel();
-							String dMS = dM.toString();
-							ChangedListener cLdM = new ChangedListener();
-							dM.register(cLdM);
+							GraphChangeTracker stepTracker = new GraphChangeTracker(defaultModel.getGraph());
 							for(Update operation : updateRequest.getOperations()) {
+								stepTracker.mark();
 								//							memDataset.begin(ReadWrite.WRITE);
 								UpdateAction.execute(operation, memDataset);
 								//							memDataset.commit();
 								//							memDataset.end();
-								if (cLdM.hasChanged() && (!dMS.equals(memDataset.getDefaultModel().toString()))) {
+								if (stepTracker.hasChanged()) {
 									if (graphsout) try {
 										produceDot(defaultModel, update.getLeft(), operation.toString(), sent, upd_id, iter_id, step);
 									} catch (IOException e) {
@@ -364,6 +422,9 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 								}
 								step++;
 							}
+							stepTracker.close();
+						} else if (semiNaiveEvaluation != null) {
+							semiNaiveEvaluation.iterate();
 						} else { //execute updates en bloc
 							//						memDataset.begin(ReadWrite.WRITE);
 							UpdateAction.execute(updateRequest, memDataset); //REMOVE THE PARAMETERS sent_id, upd_id, iter_id to use deshoe's original file names
@@ -376,22 +437,19 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 					}
 					
 					
-					if (oldModel.isEmpty()) {
-						change = cL.hasChanged();
-						LOG.trace("cl.hasChanged(): "+change);
-					} else {
-						change = !defaultModel.toString().equals(oldModel);
-						oldModel = "";
-					}
-					if (CHECKINTERVAL.contains(v))
-						oldModel = defaultModel.toString();
+					change = changeTracker.hasChanged();
+					LOG.trace("changeTracker.hasChanged(): "+change);
 					v++;
 					iter_id++;
 				}
 				if (v == MAXITERATE)
 					LOG.warn("Warning: MAXITERATE reached for " + update.getLeft() + ".");
 				result.add(new ImmutablePair<Integer, Long>(v, System.currentTimeMillis() - startTime));
-				defaultModel.unregister(cL);
+				if (updateLatencies != null) 
+					updateLatencies[upd_id - 1].record(System.nanoTime() - startNanos);
+				changeTracker.close();
+				if (semiNaiveEvaluation != null)
+					semiNaiveEvaluation.close();
 				upd_id++;
 			}			
 			return result;
@@ -487,36 +545,35 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 	/**
 	 * Standard Constructor for Updater. Creates Threads and Buffers for Thread handling.
 	 * Also creates the database modules for the respective execution modes.
-	 * @param type: The type of database to be used:
+	 * @param type: The type of database to be used for external graphs, see UpdateDatasetMode:
 	 * 				MEM: fully independent in-memory datasets per thread 
 	 * 						(fastest, no transactions, high RAM usage, no HDD)
 	 * 				TXN: single transactional in-memory dataset for all threads
-	 * 						(in development, medium speed and RAM, no HDD)
+	 * 						(medium speed and RAM, no HDD)
 	 * 				TDB2: single transactional TDB2-database for all threads
-	 * 						(in development, slow-medium speed, low RAM usage, high HDD usage)
+	 * 						(slow-medium speed, low RAM usage, high HDD usage)
 	 * 				default: MEM
 	 * @param path: 
-	 * 				path to database (only for TDB2 or other DB-backed modes)
+	 * 				directory for the temporary database (only for TDB2)
+	 * 				default: FintanManager.DEFAULT_TDB_PATH
 	 * @param threads
 	 * 				Maximum amount of threads for execution.
 	 * 				default: threads = number of logical cores available to runtime
+	 * @throws IllegalArgumentException if the type is unknown.
 	 */
 	public CoNLLRDFUpdater(String type, String path, int threads) {
-		if (type.equals("TDB2")) {
-			//TODO
-			dataset = DatasetFactory.create();//TDB
-		} else if (type.equals("TXN")) {
-			dataset = DatasetFactory.createTxnMem();
-		} else {
-			dataset = DatasetFactory.createTxnMem();
-		}
-//		memAccessor = DatasetAccessorFactory.create(memDataset);
+		mode = UpdateDatasetMode.parse(type);
+		dataset = mode.createDataset(path, this);
 
 		setThreads(threads);
 
 		running = false;
 	}
 
+	public UpdateDatasetMode getDatasetMode() {
+		return mode;
+	}
+
 	public void setThreads(int threads) {
 		this.threads = threads;
 	}
@@ -534,6 +591,26 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		return updates.stream().map(t -> t.getRight()).toArray(String[]::new);
 	}
 
+	/**
+	 * @return iterations and execution time in ms of each update (in given order), 
+	 * 		summed up over all sentences processed by all threads.
+	 */
+	public List<Pair<Integer,Long>> getUpdateStatistics() {
+		List<Pair<Integer,Long>> dRTs_sum = new ArrayList<Pair<Integer,Long> >();
+		synchronized (dRTs) {
+			for (List<Pair<Integer,Long>> dRT_thread:dRTs) {
+				if (dRTs_sum.isEmpty())
+					dRTs_sum.addAll(dRT_thread);
+				else
+					for (int x = 0; x < dRT_thread.size(); ++x)
+						dRTs_sum.set(x, new ImmutablePair<Integer, Long>(
+								dRTs_sum.get(x).getKey() + dRT_thread.get(x).getKey(),
+								dRTs_sum.get(x).getValue() + dRT_thread.get(x).getValue()));
+			}
+		}
+		return dRTs_sum;
+	}
+
 	/**
 	 * Activates the lookahead mode for caching a fixed number of additional sentences per thread.
 	 * @param lookahead_snts
@@ -560,6 +637,50 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		return lookback_snts;
 	}
 
+	/**
+	 * Defines whether processed sentences are written in input order.
+	 * @param ordered
+	 * 			true (default): sentences are written in input order.
+	 * 			false: sentences are written as soon as they are processed, 
+	 * 			so a slow sentence does not hold back the following ones.
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Defines the maximum number of sentences in process or waiting for a preceding 
+	 * sentence to be written. Reading further sentences is blocked while it is reached.
+	 * @param reorderBuffer
+	 * 			maximum number of sentences. 0 or less: unbounded.
+	 * 			default: ReorderBuffer.DEFAULT_CAPACITY
+	 */
+	public void setReorderBuffer(int reorderBuffer) {
+		this.reorderBuffer = reorderBuffer;
+	}
+	public int getReorderBuffer() {
+		return reorderBuffer;
+	}
+
+	/**
+	 * Defines whether iterated updates which only insert into the default graph
+	 * are evaluated semi-naively, see SemiNaiveUpdate. The results are the same,
+	 * but each iteration after the first one only evaluates the bindings of the 
+	 * triples added by the previous one.
+	 * @param semiNaive
+	 * 			true (default): semi-naive evaluation for all supported updates
+	 * 			false: each iteration executes the full update on the whole sentence.
+	 */
+	public void setSemiNaive(boolean semiNaive) {
+		this.semiNaive = semiNaive;
+	}
+	public boolean isSemiNaive() {
+		return semiNaive;
+	}
+
 	/**
 	 * Activates the graphsout mode for single graphviz .dot files per execution step.
 	 * @param dir
@@ -630,7 +751,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 
 	/**
 	 * Load external RDF file into a named graph of the local dataset. 
-	 * This graph is permanent for the runtime and is accessed read-only by all threads.
+	 * This graph is permanent for the runtime and is accessed by all threads.
 	 * The default graph of the local dataset is reserved for updating nif:Sentences and 
 	 * can not be defined here.
 	 * @param url
@@ -649,10 +770,18 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		if (graph == null) {
 			graph = url;
 		}
-		Model m = ModelFactory.createDefaultModel();
+		final URI source = url;
 		try {
-			m.read(readInURI(url));
-			dataset.addNamedModel(graph.toString(), m);
+			if (mode.isDiskBased()) {
+				mode.readGraph(dataset, url, graph.toString());
+			} else {
+				Model m = FintanCache.loadModel(url, () -> {
+					Model model = ModelFactory.createDefaultModel();
+					model.read(readInURI(source));
+					return UpdateDatasetMode.freeze(model);
+				});
+				mode.addGraph(dataset, graph.toString(), m);
+			}
 		} catch (IOException ex) {
 			LOG.error("Exception while reading " + url + " into " + graph);
 			throw ex;
@@ -660,7 +789,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		LOG.info("done...");
 	}
 	public boolean hasGraph(String name) {
-		return dataset.containsNamedModel(name);
+		return Txn.calculateRead(dataset, () -> dataset.containsNamedModel(name));
 	}
 	public Model getGraph(String name) {
 		//TODO return a copy instead of a reference
@@ -677,7 +806,13 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 	 */
 	public void parseUpdates(List<Triple<String, String, String>> updatesRaw) throws IOException, ParseException {
 		updates.clear();
+		updateRequests.clear();
+		semiNaiveUpdates.clear();
+		updateParseTimes.clear();
 		final List<Triple<String, String, String>> updatesOut = new ArrayList<Triple<String, String, String>>(updatesRaw.size());
+		final List<UpdateRequest> updateRequestsOut = new ArrayList<UpdateRequest>(updatesRaw.size());
+		final List<SemiNaiveUpdate> semiNaiveUpdatesOut = new ArrayList<SemiNaiveUpdate>(updatesRaw.size());
+		final List<Long> updateParseTimesOut = new ArrayList<Long>(updatesRaw.size());
 
 		int updateNo = 0;
 		for(Triple<String, String, String> update: updatesRaw) {
@@ -728,9 +863,11 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 				LOG.debug("StringReader ok");
 			}
 
+			UpdateRequest updateRequest;
 			try {
-				@SuppressWarnings("unused")
-				UpdateRequest qexec = UpdateFactory.create(updateScript);
+				long startTime = System.nanoTime();
+				updateRequest = FintanCache.parseUpdate(updateScript);
+				updateParseTimesOut.add(System.nanoTime() - startTime);
 			} catch (QueryParseException e) {
 				LOG.error("Failed to parse argument as sparql");
 				// if update looks like a file, but can't be found
@@ -742,9 +879,14 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 				}
 			}
 			updatesOut.add(new ImmutableTriple<String, String, String> (updateName, updateScript, updateIterations));
+			updateRequestsOut.add(updateRequest);
+			semiNaiveUpdatesOut.add(SemiNaiveUpdate.compile(updateRequest));
 			LOG.debug("Update parsed ok");
 		}
 		updates.addAll(Collections.synchronizedList(updatesOut));
+		updateRequests.addAll(updateRequestsOut);
+		semiNaiveUpdates.addAll(semiNaiveUpdatesOut);
+		updateParseTimes.addAll(updateParseTimesOut);
 	}
 
 	/**
@@ -776,44 +918,79 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		return result;
 	}
 	
-	private static void isValidUTF8(String s, String message) {
+	private static void isValidUTF8(String s, String message) throws IOException {
 		try 
 		{
 			s.getBytes("UTF-8");
 		} 
 		catch (UnsupportedEncodingException e)
 		{
-		    LOG.error(message + " - Encoding error: " + e.getMessage());
-		    System.exit(-1);
+			throw new IOException(message + " - Encoding error: " + e.getMessage(), e);
 		}		
 	}
 
+	/**
+	 * Sentences can be read from a segmented RDF stream, one sentence per segment.
+	 */
+	@Override
+	public boolean supportsModelInput() {
+		return true;
+	}
+
+	/**
+	 * Sentences can be written to a segmented RDF stream, one segment per sentence.
+	 */
+	@Override
+	public boolean supportsModelOutput() {
+		return true;
+	}
+
 	/**
 	 * Processes CoNLL-RDF on the local dataset using the predfined updates and threads.
 	 * Streams data from a buffered reader to a buffered writer. Distributes the processing 
 	 * across available threads. Each thread handles one sentence at a time.
-	 * Caches and outputs the resulting sentences in-order.
+	 * Caches and outputs the resulting sentences in-order, unless ordered is false.
+	 * Segmented RDF streams are used instead of the default streams, if they are set.
+	 * The dataset is closed afterwards, see UpdateDatasetMode.closeDataset().
 	 * @throws IOException
 	 */
 	@Override
 	protected void processSentenceStream() throws IOException {
+		try {
+			updateSentenceStream();
+		} finally {
+			mode.closeDataset(dataset);
+		}
+	}
+
+	private void updateSentenceStream() throws IOException {
 		initThreads();
 		running = true;
+		PrintStream out = null;
+		if (getModelOutputStream() == null)
+			out = new PrintStream(getOutputStream());
+		if (getModelInputStream() != null) {
+			processModelStream(out);
+			return;
+		}
 		BufferedReader in = new BufferedReader(new InputStreamReader(getInputStream()));
-		PrintStream out = new PrintStream(getOutputStream());
 		
 		String prefixCache = new String();
 		String line;
 		String lastLine ="";
-		String buffer="";
+		String buffer;
+		// lines of the current sentence, linear accumulation
+		StringBuilder bufferLines = new StringBuilder();
+		boolean bufferIsBlank = true;
 //		List<Pair<Integer,Long> > dRTs = new ArrayList<Pair<Integer,Long> >(); // iterations and execution time of each update in seconds
 		while((line = in.readLine())!=null) {
 			line=line.replaceAll("[\t ]+"," ").trim();
 
-			if(!buffer.trim().equals("") && (line.startsWith("@") || line.startsWith("#")) && !lastLine.startsWith("@") && !lastLine.startsWith("#")) { //!buffer.matches("@[^\n]*\n?$")) {
+			if(!bufferIsBlank && (line.startsWith("@") || line.startsWith("#")) && !lastLine.startsWith("@") && !lastLine.startsWith("#")) { //!buffer.matches("@[^\n]*\n?$")) {
 				// If the buffer is not empty and the current line starts with @ or #
 				// and the previous line did not start with @ or #
 				// check if the buffer contains a ttl prefix
+				buffer = bufferLines.toString();
 				if (buffer.contains("@prefix"))  {
 					prefixCache = new String();
 					for (String buffLine:buffer.split("\n")) {
@@ -825,64 +1002,121 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 					buffer = prefixCache+buffer;
 				}
 
-				// GRAPH OUTPUT determine first sentence's id, if none were specified
-				if ((graphOutputDir != null) && (graphOutputSentences.isEmpty())) {
-					String sentID = readFirstSentenceID(buffer);
-					graphOutputSentences.add(sentID);
-					LOG.debug("Graph Output defaults to first sentence: " + sentID);
-				}
-				// TRIPLES OUTPUT determine first sentence's id, if none were specified
-				if ((triplesOutputDir != null) && (triplesOutputSentences.isEmpty())) {
-					String sentID = readFirstSentenceID(buffer);
-					triplesOutputSentences.add(sentID);
-					LOG.debug("Triples Output defaults to first sentence: " + sentID);
-				}
-
-				//lookahead
-				//add ALL sentences to sentBufferLookahead
-				sentBufferLookahead.add(buffer);
-				if (sentBufferLookahead.size() > lookahead_snts) {
-					//READY TO PROCESS 
-					// remove first sentence from buffer and process it.
-					// !!if lookahead = 0 then only current buffer is in sentBufferLookahead!!
-					executeThread(sentBufferLookahead.remove(0));
-				}		
-				
-				//lookback
-				//needs to consider lookahead buffer. The full buffer size needs to be lookahead + lookback.
-				if (lookback_snts > 0) {
-					while (sentBufferLookback.size() >= lookback_snts + sentBufferLookahead.size()) sentBufferLookback.remove(0);
-					sentBufferLookback.add(buffer);
-				}
-
-				flushOutputBuffer(out);
-				buffer="";
+				bufferSentence(new BufferedSentence(buffer), out);
+				bufferLines.setLength(0);
+				bufferIsBlank = true;
 			}
-			buffer=buffer+line+"\n";
+			bufferLines.append(line).append('\n');
+			if (!line.isEmpty())
+				bufferIsBlank = false;
 			lastLine=line;
 		}
 
 		// FINAL SENTENCE (with prefixes if necessary)
+		buffer = bufferLines.toString();
 		if (!buffer.contains("@prefix"))  {
 			buffer = prefixCache+buffer;
 		}
+		finishSentenceStream(new BufferedSentence(buffer), out);
+	}
+
+	/**
+	 * Reads the sentences from the segmented RDF input stream. 
+	 * The last sentence is kept back for finishSentenceStream(), 
+	 * like the final sentence of a text stream.
+	 * @param out 
+	 * 			Output stream. null, in case of segmented RDF output.
+	 * @throws IOException
+	 */
+	private void processModelStream(PrintStream out) throws IOException {
+		BufferedSentence lastSentence = null;
+		List<Model> batch = new ArrayList<Model>();
+		while (getModelInputStream().canRead()) {
+			batch.clear();
+			try {
+				getModelInputStream().drainTo(batch, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+			} catch (InterruptedException e) {
+				LOG.error("Error when reading from Stream: " +e);
+			}
+			for (Model m:batch) {
+				if (lastSentence != null)
+					bufferSentence(lastSentence, out);
+				lastSentence = new BufferedSentence(m);
+			}
+		}
+		finishSentenceStream(lastSentence, out);
+	}
 
-		// To address the edge case of no comments or prefixes occuring after the first sentence of a stream
+	/**
+	 * Adds a sentence to the lookahead and lookback buffers. Processes the first 
+	 * sentence of the lookahead buffer as soon as the lookahead is complete.
+	 * @param sentence 
+	 * 			the sentence read last.
+	 * @param out 
+	 * 			Output stream. null, in case of segmented RDF output.
+	 */
+	private void bufferSentence(BufferedSentence sentence, PrintStream out) {
 		// GRAPH OUTPUT determine first sentence's id, if none were specified
 		if ((graphOutputDir != null) && (graphOutputSentences.isEmpty())) {
-			String sentID = readFirstSentenceID(buffer);
+			String sentID = readFirstSentenceID(sentence);
 			graphOutputSentences.add(sentID);
 			LOG.debug("Graph Output defaults to first sentence: " + sentID);
 		}
 		// TRIPLES OUTPUT determine first sentence's id, if none were specified
 		if ((triplesOutputDir != null) && (triplesOutputSentences.isEmpty())) {
-			String sentID = readFirstSentenceID(buffer);
+			String sentID = readFirstSentenceID(sentence);
 			triplesOutputSentences.add(sentID);
 			LOG.debug("Triples Output defaults to first sentence: " + sentID);
 		}
 
+		//lookahead
+		//add ALL sentences to sentBufferLookahead
+		sentBufferLookahead.add(sentence);
+		if (sentBufferLookahead.size() > lookahead_snts) {
+			//READY TO PROCESS 
+			// remove first sentence from buffer and process it.
+			// !!if lookahead = 0 then only current buffer is in sentBufferLookahead!!
+			executeThread(sentBufferLookahead.remove(0));
+		}		
+		
+		//lookback
+		//needs to consider lookahead buffer. The full buffer size needs to be lookahead + lookback.
+		if (lookback_snts > 0) {
+			while (sentBufferLookback.size() >= lookback_snts + sentBufferLookahead.size()) sentBufferLookback.remove(0);
+			sentBufferLookback.add(sentence);
+		}
+
+		flushOutputBuffer(out);
+	}
+
+	/**
+	 * Processes the final sentence and all sentences remaining in the lookahead buffer.
+	 * Waits for all threads to finish, writes the remaining output and closes the output stream.
+	 * @param sentence 
+	 * 			the final sentence. null, if a segmented RDF stream has been empty.
+	 * @param out 
+	 * 			Output stream. null, in case of segmented RDF output.
+	 * @throws IOException
+	 */
+	private void finishSentenceStream(BufferedSentence sentence, PrintStream out) throws IOException {
+		if (sentence != null) {
+			// To address the edge case of no comments or prefixes occuring after the first sentence of a stream
+			// GRAPH OUTPUT determine first sentence's id, if none were specified
+			if ((graphOutputDir != null) && (graphOutputSentences.isEmpty())) {
+				String sentID = readFirstSentenceID(sentence);
+				graphOutputSentences.add(sentID);
+				LOG.debug("Graph Output defaults to first sentence: " + sentID);
+			}
+			// TRIPLES OUTPUT determine first sentence's id, if none were specified
+			if ((triplesOutputDir != null) && (triplesOutputSentences.isEmpty())) {
+				String sentID = readFirstSentenceID(sentence);
+				triplesOutputSentences.add(sentID);
+				LOG.debug("Triples Output defaults to first sentence: " + sentID);
+			}
+			sentBufferLookahead.add(sentence);
+		}
+
 		// LOOKAHEAD work down remaining buffer
-		sentBufferLookahead.add(buffer);
 		while (sentBufferLookahead.size()>0) {
 			executeThread(sentBufferLookahead.remove(0));
 			if (lookback_snts > 0) {
@@ -892,6 +1126,12 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 			
 		
 		//wait for threads to finish work
+		//a thread which has just been notified may still be WAITING, so its sentence is awaited first
+		try {
+			sentBufferOut.awaitCompletion();
+		} catch (InterruptedException e) {
+			LOG.error("Interrupted while waiting for the remaining sentences: " +e);
+		}
 		boolean threadsRunning = true;
 		while(threadsRunning) {
 			threadsRunning = false;
@@ -916,32 +1156,32 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		}
 		
 		//sum up statistics
-		List<Pair<Integer,Long>> dRTs_sum = new ArrayList<Pair<Integer,Long> >();
-		for (List<Pair<Integer,Long>> dRT_thread:dRTs) {
-			if (dRTs_sum.isEmpty())
-				dRTs_sum.addAll(dRT_thread);
-			else
-				for (int x = 0; x < dRT_thread.size(); ++x)
-					dRTs_sum.set(x, new ImmutablePair<Integer, Long>(
-							dRTs_sum.get(x).getKey() + dRT_thread.get(x).getKey(),
-							dRTs_sum.get(x).getValue() + dRT_thread.get(x).getValue()));
-			
-		}
-		if (!dRTs_sum.isEmpty())
+		List<Pair<Integer,Long>> dRTs_sum = getUpdateStatistics();
+		if (!dRTs_sum.isEmpty()) {
 			LOG.debug("Done - List of iterations and execution times for the updates done (in given order):\n\t\t" + dRTs_sum.toString());
+			// each update has been parsed only once instead of once per sentence and iteration
+			List<Long> parseTimeSaved = new ArrayList<Long>();
+			for (int x = 0; x < dRTs_sum.size() && x < updateParseTimes.size(); ++x) {
+				parseTimeSaved.add(Math.max(0, dRTs_sum.get(x).getKey() - 1) * updateParseTimes.get(x) / 1000000);
+			}
+			LOG.debug("Parse time saved in ms by precompiled updates (in given order):\n\t\t" + parseTimeSaved.toString());
+		}
 
 		//final flush
 		flushOutputBuffer(out);
-		getOutputStream().close();
+		if (getModelOutputStream() != null)
+			getModelOutputStream().terminate();
+		else
+			getOutputStream().close();
 		
 	}
 
 	/**
-	 * Retrieve the first "Sentence ID" (nif-core#Sentence -property) from the buffer and return it
+	 * Retrieve the first "Sentence ID" (nif-core#Sentence -property) from the sentence and return it
 	 */
-	private String readFirstSentenceID(String buffer) {
-		Model m = ModelFactory.createDefaultModel();
-		String sentID = m.read(new StringReader(buffer),null, "TTL").listSubjectsWithProperty(
+	private String readFirstSentenceID(BufferedSentence sentence) {
+		Model m = sentence.getModel();
+		String sentID = m.listSubjectsWithProperty(
 				m.getProperty("http://www.w3.org/1999/02/22-rdf-syntax-ns#type"), 
 				m.getProperty("http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#Sentence")
 			).next().getLocalName();
@@ -949,33 +1189,64 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 	}
 
 	private void initThreads() {
-		// Use the processor cores available to runtime (but at least 1) as thread count, if an invalid thread count is provided.
-		if (threads <= 0) {
-			threads = (Runtime.getRuntime().availableProcessors()>0)?(Runtime.getRuntime().availableProcessors()):(1);
-			LOG.info("Falling back to default thread maximum.");
+		// Use the CPU budget of the pipeline as thread count, if an invalid thread count is provided. 
+		// More threads than the budget could never run at the same time.
+		// (update threads are dispatched by their Thread.State, so they cannot wait for CPU permits.)
+		if (threads != getScheduler().workers(threads)) {
+			threads = getScheduler().workers(threads);
+			LOG.info("Falling back to thread maximum of the CPU budget.");
 		}
 		LOG.info("Executing on "+threads+" processor cores, max.");
+		writesExternalGraphs = UpdateDatasetMode.writesNamedGraphs(updateRequests);
+		if (writesExternalGraphs && mode != UpdateDatasetMode.MEM)
+			LOG.info("Updates may change external graphs. Executing them in "+mode+" write transactions, one at a time.");
+		if (getMetrics() != null) {
+			updateLatencies = new LatencyHistogram[updates.size()];
+			for (int i = 0; i < updates.size(); i++) 
+				updateLatencies[i] = getMetrics().registerLatency(getInstanceName(), updates.get(i).getLeft());
+		}
 		for (int i = 0; i < threads; i++) {
 			updateThreads.add(null);
-			dataset.addNamedModel("http://thread"+i, ModelFactory.createDefaultModel());
-			sentBufferThreads.add(new ImmutableTriple<List<String>, String, List<String>>(
-					new ArrayList<String>(), new String(), new ArrayList<String>()));
+			if (mode == UpdateDatasetMode.MEM)
+				dataset.addNamedModel("http://thread"+i, ModelFactory.createDefaultModel());
+			sentBufferThreads.add(new ImmutableTriple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>>(
+					new ArrayList<BufferedSentence>(), null, new ArrayList<BufferedSentence>()));
 			dRTs.add(Collections.synchronizedList(new ArrayList<Pair<Integer,Long> >()));
 		}
+		sentSequences = new long[threads];
+		sentBufferOut = new ReorderBuffer<Object>(ordered, reorderBuffer);
+		if (!ordered)
+			LOG.info("Sentences are written as soon as they are processed, not in input order.");
 	}
 
+	/**
+	 * Writes all sentences ready in the output buffer: all leading sentences which 
+	 * have been completely processed, or all processed sentences if ordered is false.
+	 * @param out 
+	 * 			Output stream. null, in case of segmented RDF output.
+	 */
 	private synchronized void flushOutputBuffer(PrintStream out) {
 		LOG.trace("OutBufferSize: "+sentBufferOut.size());
 
 		String prefixCacheOut = new String();
 
-		while (!sentBufferOut.isEmpty()) {
-			if (sentBufferOut.get(0).matches("\\d+")) break;
+		for (Object sentence:sentBufferOut.drain()) {
+			if (out == null) {
+				// sentences which failed to process are left as empty Strings
+				if (sentence instanceof Model) {
+					try {
+						getModelOutputStream().write((Model) sentence);
+					} catch (InterruptedException e) {
+						LOG.error("Error when writing to Stream: " +e);
+					}
+				}
+				continue;
+			}
 			
 			String outString = new String();
 			if (prefixDeduplication) {
 				String prefixCacheTMP = new String();
-				for (String buffLine:sentBufferOut.remove(0).split("\n")) {
+				for (String buffLine:((String) sentence).split("\n")) {
 					if (buffLine.trim().startsWith("@prefix")) {
 						prefixCacheTMP += buffLine+"\n";
 					} else if (!buffLine.trim().isEmpty()) {
@@ -987,17 +1258,17 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 					outString = prefixCacheTMP + outString + "\n";
 				}
 			} else {
-				outString = sentBufferOut.remove(0);
+				outString = (String) sentence;
 			}
 			if (!outString.endsWith("\n\n")) outString += "\n";
 			out.print(outString);
 		}
 	}
 
-	private void executeThread(String buffer) {
-		MutableTriple<List<String>, String, List<String>>sentBufferThread =
-				new MutableTriple<List<String>, String, List<String>>(
-				new ArrayList<String>(), new String(), new ArrayList<String>());
+	private void executeThread(BufferedSentence buffer) {
+		MutableTriple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>>sentBufferThread =
+				new MutableTriple<List<BufferedSentence>, BufferedSentence, List<BufferedSentence>>(
+				new ArrayList<BufferedSentence>(), null, new ArrayList<BufferedSentence>());
 		//sentBufferLookback only needs to be filled up to the current sentence.
 		//All other sentences are for further lookahead iterations
 //		sentBufferThread.getLeft().addAll(sentBufferLookback);
@@ -1006,13 +1277,21 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 		}
 		sentBufferThread.setMiddle(buffer);
 		sentBufferThread.getRight().addAll(sentBufferLookahead);
+		// blocks while the output buffer is full
+		final long sequence;
+		try {
+			sequence = sentBufferOut.reserve();
+		} catch (InterruptedException e) {
+			LOG.error("Interrupted while waiting for the output buffer: " +e);
+			return;
+		}
 		int i = 0;
 
 		while(i < updateThreads.size()) {
 			LOG.trace("ThreadState " + i + ": "+((updateThreads.get(i)!=null)?updateThreads.get(i).getState():"null"));
 			if (updateThreads.get(i) == null) {
 				sentBufferThreads.set(i, sentBufferThread);
-				sentBufferOut.add(String.valueOf(i)); //add last sentences to the end of the output queue.
+				sentSequences[i] = sequence;
 				updateThreads.set(i, new UpdateThread(this, i));
 				updateThreads.get(i).start();
 				LOG.trace("restart "+i);
@@ -1022,7 +1301,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 				if (updateThreads.get(i).getState() == Thread.State.WAITING) {
 				synchronized(updateThreads.get(i)) {
 				sentBufferThreads.set(i, sentBufferThread);
-				sentBufferOut.add(String.valueOf(i)); //add last sentences to the end of the output queue.
+				sentSequences[i] = sequence;
 				updateThreads.get(i).notify();
 				}
 				LOG.trace("wake up "+i);
@@ -1030,7 +1309,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 			} else 
 				if (updateThreads.get(i).getState() == Thread.State.NEW) {
 				sentBufferThreads.set(i, sentBufferThread);
-				sentBufferOut.add(String.valueOf(i)); //add last sentences to the end of the output queue.
+				sentSequences[i] = sequence;
 				updateThreads.get(i).start();
 				LOG.trace("start "+i);
 				LOG.trace("OutBufferSize: "+sentBufferOut.size());
@@ -1038,7 +1317,7 @@ public class CoNLLRDFUpdater extends CoNLLRDFComponent {
 			} else 
 				if (updateThreads.get(i).getState() == Thread.State.TERMINATED) {
 				sentBufferThreads.set(i, sentBufferThread);
-				sentBufferOut.add(String.valueOf(i)); //add last sentences to the end of the output queue.
+				sentSequences[i] = sequence;
 				updateThreads.set(i, new UpdateThread(this, i));
 				updateThreads.get(i).start();
 				LOG.trace("restart "+i);
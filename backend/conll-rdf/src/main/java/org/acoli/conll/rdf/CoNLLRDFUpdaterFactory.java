@@ -11,6 +11,7 @@ import java.util.List;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import org.acoli.fintan.core.util.ReorderBuffer;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
@@ -22,19 +23,28 @@ public class CoNLLRDFUpdaterFactory extends CoNLLRDFComponentFactory {
 	static Logger LOG = LogManager.getLogger(CoNLLRDFUpdaterFactory.class);
 	@Override
 	public CoNLLRDFUpdater buildFromCLI(String[] args) throws IOException, ParseException {
-		CoNLLRDFUpdater updater = new CoNLLRDFUpdater();
 		final CommandLine cmd = new CoNLLRDFCommandLine(
-				"CoNLLRDFUpdater [-loglevel LEVEL] [-threads T] [-lookahead N] [-lookback N] [-custom [-model URI [GRAPH]]* [-graphsout DIR [SENT_ID ...]] [-triplesout DIR [SENT_ID ...]] -updates [UPDATE ...]]",
+				"CoNLLRDFUpdater [-loglevel LEVEL] [-threads T] [-dataset TYPE [DIR]] [-lookahead N] [-lookback N] [-unordered] [-reorderBuffer N] [-naive] [-custom [-model URI [GRAPH]]* [-graphsout DIR [SENT_ID ...]] [-triplesout DIR [SENT_ID ...]] -updates [UPDATE ...]]",
 				"read TTL from stdin => update CoNLL-RDF", new Option[] {
 						// Define cli options in the correct order for the help-message
 						Option.builder("loglevel").hasArg().desc("set log level to LEVEL").argName("level").build(),
 						Option.builder("threads").hasArg()
 								.desc("use T threads max\ndefault: half of available logical processor cores")
 								.type(Number.class).build(),
+						Option.builder("dataset").hasArgs()
+								.desc("store external graphs as MEM (private copy per thread), TXN (shared in-memory) or TDB2 (on disk)\nfollowed by the directory of the temporary TDB2 database\ndefault: MEM")
+								.build(),
 						Option.builder("lookahead").hasArg().desc("cache N further sentences in lookahead graph")
 								.type(Number.class).build(),
 						Option.builder("lookback").hasArg().desc("cache N preceeding sentences in lookback graph")
 								.type(Number.class).build(),
+						Option.builder("unordered").hasArg(false)
+								.desc("write sentences as soon as they are updated, not in input order").build(),
+						Option.builder("reorderBuffer").hasArg()
+								.desc("max. N sentences in process or waiting for the output of a preceeding one\ndefault: 1000")
+								.type(Number.class).build(),
+						Option.builder("naive").hasArg(false)
+								.desc("execute the full update in each iteration, instead of semi-naive evaluation").build(),
 						new Option("prefixDeduplication", false, "Remove duplicates of TTL-Prefixes"),
 						Option.builder("custom").hasArg(false).desc("use custom update scripts")
 								./* required(). */build(),
@@ -48,6 +58,17 @@ public class CoNLLRDFUpdaterFactory extends CoNLLRDFComponentFactory {
 								.desc("followed by SPARQL scripts paired with {iterations/u}").build() },
 				CoNLLRDFUpdater.LOG).parseArgs(args);
 
+		final CoNLLRDFUpdater updater;
+		if (cmd.hasOption("dataset")) {
+			String[] datasetArgs = cmd.getOptionValues("dataset");
+			try {
+				updater = new CoNLLRDFUpdater(datasetArgs[0], (datasetArgs.length > 1) ? datasetArgs[1] : null, 0);
+			} catch (IllegalArgumentException e) {
+				throw new ParseException(e.getMessage());
+			}
+		} else {
+			updater = new CoNLLRDFUpdater();
+		}
 		if (cmd.hasOption("threads")) {
 			updater.setThreads(((Number) cmd.getParsedOptionValue("threads")).intValue());
 		}
@@ -57,6 +78,15 @@ public class CoNLLRDFUpdaterFactory extends CoNLLRDFComponentFactory {
 		if (cmd.hasOption("lookback")) {
 			updater.activateLookback(((Number) cmd.getParsedOptionValue("lookback")).intValue());
 		}
+		if (cmd.hasOption("unordered")) {
+			updater.setOrdered(false);
+		}
+		if (cmd.hasOption("reorderBuffer")) {
+			updater.setReorderBuffer(((Number) cmd.getParsedOptionValue("reorderBuffer")).intValue());
+		}
+		if (cmd.hasOption("naive")) {
+			updater.setSemiNaive(false);
+		}
 		if (cmd.hasOption("prefixDeduplication")) {
 			updater.activatePrefixDeduplication();
 		}
@@ -113,7 +143,19 @@ public class CoNLLRDFUpdaterFactory extends CoNLLRDFComponentFactory {
 		int threads = 0;
 		if (conf.get("threads") != null)
 			threads = conf.get("threads").asInt(0);
-		CoNLLRDFUpdater updater = new CoNLLRDFUpdater("","",threads);
+		// READ DATASET PARAMETERS
+		String type = "";
+		if (conf.hasNonNull("dataset"))
+			type = conf.get("dataset").asText();
+		String tdbPath = null;
+		if (conf.hasNonNull("tdbPath"))
+			tdbPath = conf.get("tdbPath").asText();
+		CoNLLRDFUpdater updater;
+		try {
+			updater = new CoNLLRDFUpdater(type,tdbPath,threads);
+		} catch (IllegalArgumentException e) {
+			throw new ParseException(e.getMessage());
+		}
 
 		// READ GRAPHSOUT PARAMETERS
 		if (conf.get("graphsoutDIR") != null) {
@@ -153,6 +195,16 @@ public class CoNLLRDFUpdaterFactory extends CoNLLRDFComponentFactory {
 				updater.activateLookback(lookback_snts);
 		}
 
+		// READ OUTPUT ORDER
+		if (conf.hasNonNull("ordered"))
+			updater.setOrdered(conf.get("ordered").asBoolean(true));
+		if (conf.hasNonNull("reorderBuffer"))
+			updater.setReorderBuffer(conf.get("reorderBuffer").asInt(ReorderBuffer.DEFAULT_CAPACITY));
+
+		// READ ITERATION MODE
+		if (conf.hasNonNull("semiNaive"))
+			updater.setSemiNaive(conf.get("semiNaive").asBoolean(true));
+
 		// READ PREFIX DEDUPLICATION
 		if (conf.get("prefixDeduplication") != null) {
 			Boolean prefixDeduplication = conf.get("prefixDeduplication").asBoolean();
@@ -18,10 +18,18 @@ package org.acoli.conll.rdf;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.jena.rdf.listeners.ChangedListener;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.update.*;
+import org.acoli.fintan.core.FintanScheduler;
+import org.acoli.fintan.core.util.GraphChangeTracker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.commons.cli.ParseException;
@@ -43,10 +51,26 @@ public class CoNLLStreamExtractor extends CoNLLRDFComponent {
 	private boolean readColumnComment = false;
 	private String select = null;
 	List<Pair<String, String>> updates = new ArrayList<Pair<String, String>>();
+	// each update is compiled once and reused for all sentences and iterations
+	private final Map<String, UpdateRequest> updateRequests = new ConcurrentHashMap<String, UpdateRequest>();
 	
 	//@Leo: added for improved Fintan support
 	private String segmentDelimiter;
 
+	// for thread handling
+	// sentences are converted and updated by a worker pool on the pipeline's scheduler. Submitting blocks while the pool is full.
+	// 1 = sequential processing in the reading thread.
+	private int threads = 1;
+	private FintanScheduler.WorkerPool executor;
+	// idle converters, each one keeping its own sentence and token counters
+	private final BlockingQueue<CoNLL2RDF> idleConverters = new LinkedBlockingQueue<CoNLL2RDF>();
+	// Buffer for writing sentences in original order. Guarded by this.
+	private final Queue<SentenceTask> sentBufferOut = new ArrayDeque<SentenceTask>();
+	private Writer out;
+	// first failure of a sentence or when writing, rethrown by the reading thread. Guarded by this.
+	private Throwable failure;
+	private List<Pair<Integer,Long> > dRTs = new ArrayList<Pair<Integer,Long> >(); // iterations and execution time of each update in seconds
+
 	public String getSegmentDelimiter() {
 		return segmentDelimiter;
 	}
@@ -91,6 +115,69 @@ public class CoNLLStreamExtractor extends CoNLLRDFComponent {
 		this.updates = updates;
 	}
 
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads number of sentences converted and updated in parallel.
+	 * 			1 (default) processes sentences sequentially,
+	 * 			values &lt;= 0 use all available processor cores.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sentence models can be written directly as segmented RDF stream,
+	 * unless they are to be formatted by a select query.
+	 */
+	@Override
+	public boolean supportsModelOutput() {
+		return select == null;
+	}
+
+	/**
+	 * A single sentence converted, updated and serialized by one of the pooled workers.
+	 * Completion triggers an in-order flush of the output buffer.
+	 * The result is the serialization of the sentence, or its Model in case
+	 * of segmented RDF output.
+	 */
+	private class SentenceTask extends FutureTask<Object> {
+
+		// comment lines read since the previous sentence, written in front of it
+		private final String commentLines;
+
+		/**
+		 * @param buffer the CoNLL lines of this sentence
+		 * @param sent sentence number, used for the sentence and word URIs
+		 * @param commentLines see above
+		 * @param comments comments to be injected as rdfs:comment
+		 * @param delimit write segmentDelimiter after the sentence
+		 */
+		public SentenceTask(final String buffer, final int sent, String commentLines, final List<String> comments, final boolean delimit) {
+			super(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					CoNLL2RDF conll2rdf = idleConverters.take();
+					getScheduler().acquireCpu();
+					try {
+						return processSentence(conll2rdf, buffer, sent, comments, delimit);
+					} finally {
+						getScheduler().releaseCpu();
+						idleConverters.put(conll2rdf);
+					}
+				}
+			});
+			this.commentLines = commentLines;
+		}
+
+		@Override
+		protected void done() {
+			flushOutputBuffer();
+		}
+	}
+
 	@Override
 	protected void processSentenceStream() throws IOException {
 		if (readColumnComment) {
@@ -101,71 +188,206 @@ public class CoNLLStreamExtractor extends CoNLLRDFComponent {
 				throw new IOException("Missing required Argument Fields/Columns not found as global.columns either");
 			}
 		}
-		CoNLL2RDF conll2rdf = new CoNLL2RDF(baseURI, columns.toArray(new String[columns.size()]));
-		List<Pair<Integer,Long> > dRTs = new ArrayList<Pair<Integer,Long> >(); // iterations and execution time of each update in seconds
+		initThreads();
 		LOG.info("process input ..");
 		BufferedReader in = new BufferedReader(new InputStreamReader(getInputStream()));
-		OutputStreamWriter out = new OutputStreamWriter(new PrintStream(getOutputStream()));
-		String buffer = "";
+		if (getModelOutputStream() == null)
+			out = new OutputStreamWriter(new PrintStream(getOutputStream()));
+		StringBuilder buffer = new StringBuilder();
+		boolean bufferIsBlank = true;
+		boolean bufferHasTokens = false;
+		int sent = 1;
+		StringBuilder commentLines = new StringBuilder();
 		ArrayList<String> comments = new ArrayList<>();
 		for(String line = ""; line !=null; line=in.readLine()) {
 			if(line.contains("#")) {
-				out.write(line.replaceAll("^[^#]*#", "#") + "\n");
+				commentLines.append(line.replaceAll("^[^#]*#", "#")).append('\n');
 				comments.add(line.replaceAll("^[^#]*#", ""));
 			}
 			line=line.replaceAll("<[\\/]?[psPS]( [^>]*>|>)","").trim(); // in this way, we can also read sketch engine data and split at s and p elements
 			if(!(line.matches("^<[^>]*>$")))							// but we skip all other XML elements, as used by Sketch Engine or TreeTagger chunker
-				if(line.equals("") && !buffer.trim().equals("")) {
-					Model m = conll2rdf.conll2model(new StringReader(buffer+"\n"));
-					if(m!=null) { // null if an error occurred
-						List<Pair<Integer,Long> > ret = update(m, updates);
-						if (dRTs.isEmpty())
-							dRTs = ret;
-						else
-							for (int x = 0; x < ret.size(); ++x)
-								dRTs.set(x, new ImmutablePair<Integer, Long>(dRTs.get(x).getKey() + ret.get(x).getKey(), dRTs.get(x).getValue() + ret.get(x).getValue()));
-						if (comments.size() > 0) {
-							m = injectSentenceComments(m, comments);
-							comments.clear();
-						}
-						print(m,select, out);
-						if(segmentDelimiter != null) {
-							out.write("\n"+segmentDelimiter+"\n");
-							out.flush();
-						}
-					}
-					buffer="";
-				} else
-					buffer=buffer+line+"\n";
+				if(line.equals("") && !bufferIsBlank) {
+					executeSentence(new SentenceTask(buffer.toString(), sent, commentLines.toString(), new ArrayList<String>(comments), true));
+					// CoNLL2RDF only counts sentences which contain at least one word
+					if (bufferHasTokens)
+						sent++;
+					commentLines.setLength(0);
+					comments.clear();
+					buffer.setLength(0);
+					bufferIsBlank = true;
+					bufferHasTokens = false;
+				} else {
+					buffer.append(line).append('\n');
+					if (!line.equals(""))
+						bufferIsBlank = false;
+					if (!line.replaceFirst("#.*", "").trim().equals(""))
+						bufferHasTokens = true;
+				}
+		}
+		if(!bufferIsBlank) {
+			executeSentence(new SentenceTask(buffer.toString(), sent, commentLines.toString(), new ArrayList<String>(comments), false));
+			commentLines.setLength(0);
 		}
-		if(!buffer.trim().equals("")) {
-			Model m = conll2rdf.conll2model(new StringReader(buffer+"\n"));
-			List<Pair<Integer,Long> > ret = update(m, updates);
-			if (dRTs.isEmpty())
-				dRTs = ret;
-			else
-				for (int x = 0; x < ret.size(); ++x)
-					dRTs.set(x, new ImmutablePair<Integer, Long>(dRTs.get(x).getKey() + ret.get(x).getKey(), dRTs.get(x).getValue() + ret.get(x).getValue()));
-			if (comments.size() > 0) {
-				m = injectSentenceComments(m, comments);
-				comments.clear();
+
+		//wait for workers to finish work
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+					LOG.debug("Waiting for remaining sentences to be processed.");
+				}
+			} catch (InterruptedException e) {
+				LOG.error("Interrupted while waiting for workers to finish: " +e);
+			}
+		}
+		flushOutputBuffer();
+		rethrowFailure();
+		synchronized (this) {
+			// comments after the last sentence
+			if (out != null) {
+				out.write(commentLines.toString());
+				out.flush();
 			}
-			print(m,select,out);
 		}
+
 		if (!dRTs.isEmpty())
 			LOG.debug("Done - List of interations and execution times for the updates done (in given order):\n\t\t" + dRTs.toString());
 
-		getOutputStream().close();
+		if (getModelOutputStream() != null)
+			getModelOutputStream().terminate();
+		else
+			getOutputStream().close();
 	
 	}
 
+	/**
+	 * Converts a single sentence, applies the updates and returns the serialization
+	 * to be written to the output stream, or null if an error occurred.
+	 * In case of segmented RDF output, the Model itself is returned.
+	 */
+	private Object processSentence(CoNLL2RDF conll2rdf, String buffer, int sent, List<String> comments, boolean delimit) throws IOException {
+		conll2rdf.sent = sent;
+		Model m = conll2rdf.conll2model(new StringReader(buffer+"\n"));
+		if(m==null) // null if an error occurred
+			return null;
+		addStatistics(update(m, updates));
+		if (comments.size() > 0) {
+			m = injectSentenceComments(m, comments);
+		}
+		if (getModelOutputStream() != null)
+			return m;
+		StringWriter sentenceOut = new StringWriter();
+		print(m,select, sentenceOut);
+		if(delimit && segmentDelimiter != null) {
+			sentenceOut.write("\n"+segmentDelimiter+"\n");
+		}
+		return sentenceOut.toString();
+	}
+
+	private synchronized void addStatistics(List<Pair<Integer,Long> > ret) {
+		if (dRTs.isEmpty())
+			dRTs.addAll(ret);
+		else
+			for (int x = 0; x < ret.size(); ++x)
+				dRTs.set(x, new ImmutablePair<Integer, Long>(dRTs.get(x).getKey() + ret.get(x).getKey(), dRTs.get(x).getValue() + ret.get(x).getValue()));
+	}
+
+	private void initThreads() throws IOException {
+		// Use the CPU budget of the pipeline as thread count, if an invalid thread count is provided. 
+		// More threads than the budget could never run at the same time.
+		if (threads != getScheduler().workers(threads)) {
+			threads = getScheduler().workers(threads);
+			LOG.info("Falling back to thread maximum of the CPU budget.");
+		}
+		for (int i = 0; i < threads; i++) {
+			idleConverters.add(new CoNLL2RDF(baseURI, columns.toArray(new String[columns.size()])));
+		}
+		if (threads == 1)
+			return;
+		LOG.info("Executing on "+threads+" processor cores, max.");
+		final String threadPrefix = CoNLLStreamExtractor.class.getSimpleName();
+		executor = getScheduler().createWorkerPool(threadPrefix, threads);
+	}
+
+	/**
+	 * Processes a sentence in the reading thread, or submits it to the workers.
+	 * @throws IOException or the RuntimeException of a sentence which failed to process, 
+	 * 		immediately when processed in the reading thread, otherwise with one of the 
+	 * 		following sentences.
+	 */
+	private void executeSentence(SentenceTask task) throws IOException {
+		synchronized (this) {
+			sentBufferOut.add(task); //add sentence to the end of the output queue.
+		}
+		if (executor == null)
+			task.run();
+		else
+			// blocks while all workers are busy and the work queue is full
+			executor.execute(task);
+		rethrowFailure();
+	}
+
+	/**
+	 * Writes all leading sentences which have been completely processed to the output stream.
+	 * Stops at the first sentence which failed to process, its failure is rethrown by the 
+	 * reading thread. For segmented RDF output, comment lines are dropped, since they have 
+	 * already been injected into the sentence models.
+	 */
+	private synchronized void flushOutputBuffer() {
+		while (failure == null && !sentBufferOut.isEmpty()) {
+			if (!sentBufferOut.peek().isDone()) break;
+
+			SentenceTask task = sentBufferOut.poll();
+			try {
+				Object sentence = task.get();
+				if (getModelOutputStream() != null) {
+					if (sentence != null)
+						getModelOutputStream().write((Model) sentence);
+					continue;
+				}
+				out.write(task.commentLines);
+				if (sentence != null)
+					out.write((String) sentence);
+				out.flush();
+			} catch (ExecutionException e) {
+				failure = e.getCause();
+			} catch (InterruptedException e) {
+				LOG.error("Resuming from interrupted thread when writing to default Stream: " +e);
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Aborts the stream with the first failure, as in sequential processing. 
+	 * Workers do not accept further sentences.
+	 */
+	private void rethrowFailure() throws IOException {
+		Throwable e;
+		synchronized (this) {
+			e = failure;
+		}
+		if (e == null)
+			return;
+		if (executor != null)
+			executor.shutdown();
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		if (e instanceof Error)
+			throw (Error) e;
+		throw new IOException(e);
+	}
+
 	/**
 	 * Adds a list of conll comments to a sentence model as a rdfs:comment property separated by escaped newlines.
 	 * @param model a RDF Model representing a sentence
 	 * @param comments a list of single line comments
 	 * @return the updated model
 	 */
-	private Model injectSentenceComments(Model model, ArrayList<String> comments) {
+	private Model injectSentenceComments(Model model, List<String> comments) {
 		LOG.debug("Injecting comments.");
 		// alternative to ParameterizedSparqlString: UpdateQuery
 		ParameterizedSparqlString s = new ParameterizedSparqlString();
@@ -241,9 +463,8 @@ public class CoNLLStreamExtractor extends CoNLLRDFComponent {
 		List<Pair<Integer, Long>> result = new ArrayList<Pair<Integer, Long>>();
 		for (Pair<String, String> update : updates) {
 			Long startTime = System.currentTimeMillis();
-			ChangedListener cL = new ChangedListener();
-			m.register(cL);
-			String oldModel = "";
+			UpdateRequest updateRequest = updateRequests.computeIfAbsent(update.getKey(), UpdateFactory::create);
+			GraphChangeTracker changeTracker = new GraphChangeTracker(m.getGraph());
 			int frq = MAXITERATE, v = 0;
 			boolean change = true;
 			try {
@@ -253,21 +474,15 @@ public class CoNLLStreamExtractor extends CoNLLRDFComponent {
 					throw e;
 			}
 			while(v < frq && change) {
-				UpdateAction.execute(UpdateFactory.create(update.getKey()), m);
-				if (oldModel.isEmpty())
-					change = cL.hasChanged();
-				else {
-					change = !m.toString().equals(oldModel);
-					oldModel = "";
-				}
-				if (CHECKINTERVAL.contains(v))
-					oldModel = m.toString();
+				changeTracker.mark();
+				UpdateAction.execute(updateRequest, m);
+				change = changeTracker.hasChanged();
 				v++;
 			}
 			if (v == MAXITERATE)
 				LOG.warn("Warning: MAXITERATE reached.");
 			result.add(new ImmutablePair<Integer, Long>(v, System.currentTimeMillis() - startTime));
-			m.unregister(cL);
+			changeTracker.close();
 		}
 		return result;
 	}
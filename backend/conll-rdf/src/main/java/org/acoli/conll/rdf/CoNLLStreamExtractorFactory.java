@@ -24,11 +24,14 @@ public class CoNLLStreamExtractorFactory extends CoNLLRDFComponentFactory {
 		//FIXME
 		List<Pair<String, String>> updates = new ArrayList<Pair<String, String>>();
 
-		final CommandLine cmd = new CoNLLRDFCommandLine("synopsis: CoNLLStreamExtractor baseURI FIELD1[.. FIELDn] [-u SPARQL_UPDATE1..m] [-s SPARQL_SELECT]\n"
+		final CommandLine cmd = new CoNLLRDFCommandLine("synopsis: CoNLLStreamExtractor baseURI FIELD1[.. FIELDn] [-threads T] [-u SPARQL_UPDATE1..m] [-s SPARQL_SELECT]\n"
 		+ "\tbaseURI       CoNLL base URI, cf. CoNLL2RDF\n"
 		+ "\tFIELDi        CoNLL field label, cf. CoNLL2RDF",
 		"reads CoNLL from stdin, splits sentences, creates CoNLL RDF, applies SPARQL queries",
 		new Option[] {
+			Option.builder("threads").hasArg()
+				.desc("convert and update T sentences in parallel, output keeps the input order\ndefault: 1, T <= 0: all available processor cores")
+				.type(Number.class).build(),
 			Option.builder("s").hasArg().hasArgs().desc("SPARQL SELECT statement to produce TSV output").build(),
 			Option.builder("u").hasArgs().argName("sparql_update").desc("DEPRECATED - please use CoNLLRDFUpdater instead!").build()
 			/* "SPARQL_UPDATE SPARQL UPDATE (DELETE/INSERT) query, either literally or its location (file/uri).
@@ -51,6 +54,10 @@ public class CoNLLStreamExtractorFactory extends CoNLLRDFComponentFactory {
 			extractor.setColumns(argList);
 		}
 
+		if (cmd.hasOption("threads")) {
+			extractor.setThreads(((Number) cmd.getParsedOptionValue("threads")).intValue());
+		}
+
 		if (cmd.hasOption("s")) {
 			String sparqlStringOrFile = String.join(" ", Arrays.asList(cmd.getOptionValues("s")));
 			LOG.debug("-s option was set with " + sparqlStringOrFile);
@@ -86,6 +93,9 @@ public class CoNLLStreamExtractorFactory extends CoNLLRDFComponentFactory {
 		if (conf.hasNonNull("delimiter")) {
 			ex.setSegmentDelimiter(conf.get("delimiter").asText());
 		}
+		if (conf.hasNonNull("threads")) {
+			ex.setThreads(conf.get("threads").asInt(1));
+		}
 
 		return ex;
 	}
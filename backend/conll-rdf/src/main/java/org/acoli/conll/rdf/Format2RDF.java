@@ -22,6 +22,9 @@ import java.util.regex.Pattern;
 import java.lang.reflect.*;
 import org.apache.jena.rdf.model.*;	// Jena 3.x
 //import com.hp.hpl.jena.rdf.model.*;		// Jena 2.x
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDF;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -60,6 +63,9 @@ abstract class Format2RDF {
 	
 	protected final static Pattern empty = Pattern.compile("^(O|-|--|_|__)?$");	
 	
+	protected final static String NIF = "http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#";
+	protected final static String CONLL = "http://ufal.mff.cuni.cz/conll2009-st/task-description.html#";
+	
 	/**
 	 * @param baseURI namespace for word and sentence IDs,<br>
 	 * @param fields names for conll columns
@@ -145,6 +151,18 @@ abstract class Format2RDF {
 		out.flush();
 	}
 	
+	/** same prefixes as writePrefixes(Writer), for native output into a StreamRDF */
+	protected void writePrefixes(StreamRDF out) {
+		out.prefix("nif", NIF);
+		out.prefix("conll", CONLL);
+		out.prefix("x", "http://purl.org/acoli/conll-rdf/xml#");
+		out.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#");
+		out.prefix("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#");
+		out.prefix("terms", "http://purl.org/acoli/open-ie/");
+		out.prefix("powla", "http://purl.org/powla/powla.owl#");
+		out.prefix("", baseURI);
+	}
+	
 	/** same as CoNLL2RDF, but instantiated with a null Writer */
 	public Format2RDF(String baseURI, String[] fields) throws IOException {
 		this(baseURI, fields, new OutputStreamWriter(System.out));
@@ -241,6 +259,16 @@ abstract class Format2RDF {
 		}
 	}
 	
+	/**
+	 * like conll2model, but the triples are emitted into a StreamRDF sink<br>
+	 * this default implementation parses the output of conll2ttl, subclasses may
+	 * emit triples directly, instead */
+	public void conll2stream(Reader in, StreamRDF out) throws IOException {
+		StringWriter stringWriter = new StringWriter();
+		this.conll2ttl(in,stringWriter);
+		RDFParser.fromString(stringWriter.toString()).base(baseURI).lang(Lang.TTL).parse(out);
+	}
+	
 	/**
 	 * Process CoNLL data from <code>in</code>, given the baseURI, column labels and writer out specified at the constructor<br>
 	 * Note that multiple sources can be processed with the same CoNLL2RDF instance. URIs are generated from sequentially updated
@@ -258,4 +286,4 @@ abstract class Format2RDF {
 	 * NOTE: make sure to finish the input with a newline character
 	 */
 	abstract void conll2ttl(Reader in, Writer out) throws IOException;
-}
\ No newline at end of file
+}
\ No newline at end of file
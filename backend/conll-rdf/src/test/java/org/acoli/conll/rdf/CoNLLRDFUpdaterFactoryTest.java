@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
 
+import org.acoli.fintan.core.util.UpdateDatasetMode;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.Level;
@@ -43,6 +44,26 @@ public class CoNLLRDFUpdaterFactoryTest {
 		assertEquals(9, updater.getThreads());
 	}
 
+	// dataset
+	@Test
+	void setDataset() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] { "-dataset", "TXN" });
+		assertEquals(UpdateDatasetMode.TXN, updater.getDatasetMode());
+	}
+
+	@Test
+	void unsetDataset() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] {});
+		assertEquals(UpdateDatasetMode.MEM, updater.getDatasetMode());
+	}
+
+	@Test
+	void invalidDataset() throws IOException, ParseException {
+		assertThrows(ParseException.class, () -> {
+			new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] { "-dataset", "FOO" });
+		});
+	}
+
 	// lookahead
 	@Test
 	void setLookahead() throws IOException, ParseException {
@@ -57,6 +78,39 @@ public class CoNLLRDFUpdaterFactoryTest {
 		assertEquals(7, updater.getLookback());
 	}
 
+	// unordered
+	@Test
+	void setUnordered() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] { "-unordered" });
+		assertEquals(false, updater.isOrdered());
+	}
+
+	@Test
+	void unsetUnordered() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] {});
+		assertEquals(true, updater.isOrdered());
+	}
+
+	// reorderBuffer
+	@Test
+	void setReorderBuffer() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] { "-reorderBuffer", "50" });
+		assertEquals(50, updater.getReorderBuffer());
+	}
+
+	// naive
+	@Test
+	void setNaive() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] { "-naive" });
+		assertEquals(false, updater.isSemiNaive());
+	}
+
+	@Test
+	void unsetNaive() throws IOException, ParseException {
+		final CoNLLRDFUpdater updater = new CoNLLRDFUpdaterFactory().buildFromCLI(new String[] {});
+		assertEquals(true, updater.isSemiNaive());
+	}
+
 	// prefixDeduplication
 	@Test
 	void setPrefixDeduplication() throws IOException, ParseException {
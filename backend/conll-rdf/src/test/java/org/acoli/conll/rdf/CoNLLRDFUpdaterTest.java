@@ -0,0 +1,127 @@
+package org.acoli.conll.rdf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.acoli.fintan.core.util.SemiNaiveUpdate;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.update.UpdateFactory;
+import org.junit.jupiter.api.Test;
+
+// semi-naive evaluation of iterated updates gives the same results as naive evaluation
+public class CoNLLRDFUpdaterTest {
+
+	static final String PREFIXES = "PREFIX nif: <http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#>\n"
+			+ "PREFIX conll: <http://ufal.mff.cuni.cz/conll2009-st/task-description.html#>\n"
+			+ "PREFIX x: <http://example.org/>\n";
+
+	static final String SEED_AFTER = PREFIXES + "INSERT { ?a x:after ?b } WHERE { ?a nif:nextWord ?b }";
+	static final String CLOSURE = PREFIXES + "INSERT { ?a x:after ?c } WHERE { ?a x:after ?b . ?b x:after ?c }";
+
+	static final String SEED_DOMINATES = PREFIXES + "INSERT { ?h x:dominates ?w } WHERE { ?w conll:HEAD ?h }";
+	static final String RULE = PREFIXES + "INSERT { ?x x:dominates ?z } WHERE { "
+			+ "?x x:dominates ?y . ?z conll:HEAD ?y . ?z conll:UPOS ?pos . FILTER(?pos != \"PUNCT\") }";
+
+	static final String CONLL = "https://github.com/acoli-repo/conll-rdf#";
+	static final Property AFTER = ResourceFactory.createProperty("http://example.org/after");
+
+	// sentences with nextWord chains of the given lengths. HEAD of word i is word i/2.
+	static String sentences(int... lengths) {
+		StringBuilder ttl = new StringBuilder();
+		ttl.append("@prefix : <https://github.com/acoli-repo/conll-rdf#> .\n")
+				.append("@prefix nif: <http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#> .\n")
+				.append("@prefix conll: <http://ufal.mff.cuni.cz/conll2009-st/task-description.html#> .\n");
+		for (int s = 1; s <= lengths.length; s++) {
+			ttl.append("# sent_id = " + s + "\n");
+			ttl.append(":s" + s + "_0 a nif:Sentence .\n");
+			for (int i = 1; i <= lengths[s - 1]; i++) {
+				ttl.append(":s" + s + "_" + i + " a nif:Word ; conll:HEAD :s" + s + "_" + (i / 2)
+						+ " ; conll:UPOS \"" + (i % 5 == 0 ? "PUNCT" : "NOUN") + "\"");
+				if (i < lengths[s - 1])
+					ttl.append(" ; nif:nextWord :s" + s + "_" + (i + 1));
+				ttl.append(" .\n");
+			}
+		}
+		return ttl.toString();
+	}
+
+	static List<Triple<String, String, String>> updates(String... updates) {
+		List<Triple<String, String, String>> result = new ArrayList<Triple<String, String, String>>();
+		for (int i = 0; i < updates.length; i += 2)
+			result.add(new ImmutableTriple<String, String, String>("update" + i, updates[i], updates[i + 1]));
+		return result;
+	}
+
+	private CoNLLRDFUpdater run(boolean semiNaive, String input, List<Triple<String, String, String>> updates, Model output)
+			throws IOException, ParseException {
+		CoNLLRDFUpdater updater = new CoNLLRDFUpdater();
+		updater.setSemiNaive(semiNaive);
+		updater.parseUpdates(updates);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		updater.setInputStream(IOUtils.toInputStream(input, "UTF-8"));
+		updater.setOutputStream(out);
+		updater.processSentenceStream();
+		output.read(new StringReader(out.toString("UTF-8")), null, "TTL");
+		return updater;
+	}
+
+	/**
+	 * Runs the updates with naive and semi-naive evaluation, and compares the output graphs 
+	 * and the iterations of each update.
+	 * @return the output graph
+	 */
+	private Model assertSameAsNaive(String input, List<Triple<String, String, String>> updates, int... iterations)
+			throws IOException, ParseException {
+		Model naive = ModelFactory.createDefaultModel();
+		Model semiNaive = ModelFactory.createDefaultModel();
+		List<Pair<Integer, Long>> naiveStatistics = run(false, input, updates, naive).getUpdateStatistics();
+		List<Pair<Integer, Long>> semiNaiveStatistics = run(true, input, updates, semiNaive).getUpdateStatistics();
+
+		assertTrue(semiNaive.isIsomorphicWith(naive));
+		assertEquals(iterations.length, naiveStatistics.size());
+		assertEquals(iterations.length, semiNaiveStatistics.size());
+		for (int i = 0; i < iterations.length; i++) {
+			assertEquals(iterations[i], naiveStatistics.get(i).getKey().intValue(), "naive iterations of update " + i);
+			assertEquals(iterations[i], semiNaiveStatistics.get(i).getKey().intValue(), "semi-naive iterations of update " + i);
+		}
+		return naive;
+	}
+
+	@Test
+	void transitiveClosure() throws IOException, ParseException {
+		assertNotNull(SemiNaiveUpdate.compile(UpdateFactory.create(CLOSURE)));
+		int[] lengths = { 20, 33 };
+		String input = sentences(lengths);
+		Model expected = ModelFactory.createDefaultModel().read(new StringReader(input), null, "TTL");
+		for (int s = 1; s <= lengths.length; s++)
+			for (int i = 1; i <= lengths[s - 1]; i++)
+				for (int j = i + 1; j <= lengths[s - 1]; j++)
+					expected.add(expected.createResource(CONLL + "s" + s + "_" + i), AFTER,
+							expected.createResource(CONLL + "s" + s + "_" + j));
+
+		// the path length doubles in each iteration: 5 iterations for up to 32 words, plus one without change
+		Model closure = assertSameAsNaive(input, updates(SEED_AFTER, "1", CLOSURE, "*"), 2, 6 + 6);
+		assertTrue(closure.isIsomorphicWith(expected));
+	}
+
+	@Test
+	void multiPatternRule() throws IOException, ParseException {
+		assertNotNull(SemiNaiveUpdate.compile(UpdateFactory.create(RULE)));
+		String input = sentences(40);
+		Model fixpoint = assertSameAsNaive(input, updates(SEED_DOMINATES, "1", RULE, "*"), 1, 6);
+		// stopped before the fixpoint
+		Model bounded = assertSameAsNaive(input, updates(SEED_DOMINATES, "1", RULE, "2"), 1, 2);
+		assertTrue(bounded.size() < fixpoint.size());
+	}
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Arrays;
@@ -13,10 +14,14 @@ import java.util.List;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.jena.query.QueryParseException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 public class CoNLLStreamExtractorFactoryTest {
 	static Logger LOG = LogManager.getLogger(CoNLLStreamExtractorFactoryTest.class);
 
@@ -80,6 +85,62 @@ public class CoNLLStreamExtractorFactoryTest {
 		assertEquals("2", actualUpdates.get(0).getRight());
 	}
 
+	// threads
+	@Test
+	void optionThreads() throws ParseException, IOException {
+		CoNLLStreamExtractor extractor = new CoNLLStreamExtractorFactory().buildFromCLI(new String [] {
+			"url", "WORD", "POS", "-threads", "4"});
+		assertEquals(4, extractor.getThreads());
+		assertEquals(1, new CoNLLStreamExtractorFactory().buildFromCLI(new String [] {"url", "WORD"}).getThreads());
+	}
+
+	@Test
+	void jsonConfThreads() throws IOException {
+		ObjectNode conf = (ObjectNode) new ObjectMapper().readTree(
+				"{\"baseURI\" : \"url\", \"columns\" : [\"WORD\", \"POS\"], \"threads\" : 4}");
+		assertEquals(4, new CoNLLStreamExtractorFactory().buildFromJsonConf(conf).getThreads());
+		conf.remove("threads");
+		assertEquals(1, new CoNLLStreamExtractorFactory().buildFromJsonConf(conf).getThreads());
+	}
+
+	// parallel processing keeps the order of sentences and comments
+	@Test
+	void threadsKeepOrder() throws ParseException, IOException {
+		StringBuilder conll = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			conll.append("# sent_id = " + i + "\n" + "The\tDT\n" + "word" + i + "\tNN\n\n");
+		}
+		String sequential = extract(conll.toString(), "1");
+		assertEquals(sequential, extract(conll.toString(), "4"));
+	}
+
+	// a failing update aborts the stream, as without threads
+	@Test
+	void failingUpdateAborts() throws ParseException, IOException {
+		StringBuilder conll = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			conll.append("The\tDT\n" + "word" + i + "\tNN\n\n");
+		}
+		for (String threads : new String[] { "1", "4" }) {
+			CoNLLStreamExtractor extractor = new CoNLLStreamExtractorFactory().buildFromCLI(new String [] {
+				"url", "WORD", "POS", "-threads", threads});
+			extractor.setUpdates(Arrays.asList(Pair.of("INSERT { ?s ?p } WHERE { ?s ?p ?o }", "1")));
+			extractor.setInputStream(IOUtils.toInputStream(conll.toString(), "UTF-8"));
+			extractor.setOutputStream(new ByteArrayOutputStream());
+			assertThrows(QueryParseException.class, extractor::processSentenceStream);
+		}
+	}
+
+	private String extract(String conll, String threads) throws ParseException, IOException {
+		CoNLLStreamExtractor extractor = new CoNLLStreamExtractorFactory().buildFromCLI(new String [] {
+			"url", "WORD", "POS", "-threads", threads});
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		extractor.setInputStream(IOUtils.toInputStream(conll, "UTF-8"));
+		extractor.setOutputStream(out);
+		extractor.processSentenceStream();
+		return out.toString("UTF-8");
+	}
+
 	// select
 	// TODO Add test cases for URL and literal (after refactor)
 	@Test
@@ -0,0 +1,53 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.OutputStream;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Output stream for components producing serialized streams.
+ * All bytes are consumed by a Blackhole.
+ */
+public class BlackholeOutputStream extends OutputStream {
+
+	private final Blackhole blackhole;
+	private long bytes = 0;
+
+	public BlackholeOutputStream(Blackhole blackhole) {
+		this.blackhole = blackhole;
+	}
+
+	/**
+	 * @return number of bytes written so far.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public void write(int b) {
+		blackhole.consume(b);
+		bytes++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		blackhole.consume(b);
+		bytes += len;
+	}
+}
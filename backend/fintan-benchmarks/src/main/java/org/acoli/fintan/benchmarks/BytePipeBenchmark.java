@@ -0,0 +1,109 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanBytePipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of serialized streams between two threads, in MiB per second.
+ *
+ * Compares the FintanBytePipe with java's piped streams, which were used
+ * by the FintanManager before, for small and large writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BytePipeBenchmark {
+
+	static final int MIB = 32;
+
+	@Param({"fintan", "piped"})
+	public String pipe;
+
+	@Param({"80", "8192"})
+	public int chunkSize;
+
+	private byte[] chunk;
+
+	@Setup
+	public void setup() {
+		//a typical line of Turtle
+		byte[] line = ":s1_1 a nif:Word ; conll:WORD \"fox\" ; conll:UPOS \"NOUN\" ; conll:HEAD :s1_4 .\n".getBytes();
+		chunk = new byte[chunkSize];
+		for (int i = 0; i < chunkSize; i++) 
+			chunk[i] = line[i % line.length];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MIB)
+	public long transfer(Blackhole blackhole) throws IOException, InterruptedException {
+		final OutputStream out;
+		final InputStream in;
+		if (pipe.equals("fintan")) {
+			FintanBytePipe bytePipe = new FintanBytePipe();
+			out = bytePipe.getOutputStream();
+			in = bytePipe.getInputStream();
+		} else {
+			out = new PipedOutputStream();
+			in = new PipedInputStream((PipedOutputStream) out);
+		}
+
+		final long total = (long) MIB << 20;
+		Thread producer = new Thread(() -> {
+			try {
+				for (long written = 0; written < total; written += chunkSize) 
+					out.write(chunk, 0, (int) Math.min(chunkSize, total - written));
+				out.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		producer.start();
+
+		byte[] buffer = new byte[8192];
+		long read = 0;
+		for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+			read += n;
+			blackhole.consume(buffer);
+		}
+		in.close();
+		producer.join();
+		return read;
+	}
+}
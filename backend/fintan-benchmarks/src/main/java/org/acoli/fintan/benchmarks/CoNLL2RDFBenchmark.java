@@ -0,0 +1,98 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.conll.rdf.CoNLL2RDF;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * CoNLL2RDF.conll2model, in tokens per second.
+ *
+ * `native` emits the triples directly into the model. `ttl` builds Turtle 
+ * with conll2ttl and parses it again, which was the implementation of 
+ * conll2model before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoNLL2RDFBenchmark {
+
+	static final int SENTENCES = 1000;
+	static final int TOKENS_PER_SENTENCE = 20;
+
+	@Param({"native", "ttl"})
+	public String mode;
+
+	private List<String> sentences;
+
+	@Setup
+	public void setup() {
+		sentences = SyntheticData.conllSentences(SENTENCES, TOKENS_PER_SENTENCE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SENTENCES * TOKENS_PER_SENTENCE)
+	public void conll2model(Blackhole blackhole) throws IOException {
+		CoNLL2RDF conll2rdf = mode.equals("ttl") ? 
+				new TurtleCoNLL2RDF(SyntheticData.BASE_URI, SyntheticData.CONLL_FIELDS) : 
+				new CoNLL2RDF(SyntheticData.BASE_URI, SyntheticData.CONLL_FIELDS);
+		//one model per sentence, like the CoNLLStreamExtractor
+		for (String sentence:sentences) {
+			blackhole.consume(conll2rdf.conll2model(new StringReader(sentence)));
+		}
+	}
+
+	/**
+	 * Converts via Turtle serialization.
+	 */
+	static class TurtleCoNLL2RDF extends CoNLL2RDF {
+
+		TurtleCoNLL2RDF(String baseURI, String[] fields) throws IOException {
+			super(baseURI, fields);
+		}
+
+		@Override
+		public Model conll2model(Reader in) throws IOException {
+			StringWriter stringWriter = new StringWriter();
+			conll2ttl(in, stringWriter);
+			return ModelFactory.createDefaultModel().read(new StringReader(stringWriter.toString()), baseURI, "TTL");
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.util.FrozenGraph;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookups in an external lexicon graph, as joined by updates in every segment,
+ * in lookups per second. Compares Jena's GraphMem with the FrozenGraph which
+ * the updaters use for external graphs in MEM mode.
+ *
+ * Each lookup finds the label of a random entry by its URI and the entry of
+ * a random label. Run with JMH's -t option to read the graph from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrozenGraphBenchmark {
+
+	static final String LEX = "https://github.com/acoli-repo/fintan/benchmarks/lexicon#";
+
+	@Param({"mem", "frozen"})
+	public String graph;
+
+	@Param({"100000"})
+	public int entries;
+
+	private Graph lexicon;
+	private Node[] uris;
+	private Node[] labels;
+	private final Node label = NodeFactory.createURI(LEX+"label");
+
+	@State(Scope.Thread)
+	public static class Lookups {
+		private final Random random = new Random(SyntheticData.SEED);
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Node type = NodeFactory.createURI("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+		Node entry = NodeFactory.createURI(LEX+"Entry");
+		Node pos = NodeFactory.createURI(LEX+"pos");
+		Graph g = GraphFactory.createDefaultGraph();
+		uris = new Node[entries];
+		labels = new Node[entries];
+		for (int i = 0; i < entries; i++) {
+			uris[i] = NodeFactory.createURI(LEX+"entry"+i);
+			labels[i] = NodeFactory.createLiteral("word"+i, "en");
+			g.add(Triple.create(uris[i], type, entry));
+			g.add(Triple.create(uris[i], label, labels[i]));
+			g.add(Triple.create(uris[i], pos, NodeFactory.createURI(LEX+"POS"+(i % 17))));
+		}
+		lexicon = graph.equals("frozen") ? new FrozenGraph(g) : g;
+	}
+
+	@Benchmark
+	public void lookup(Lookups lookups, Blackhole blackhole) {
+		int i = lookups.random.nextInt(entries);
+		blackhole.consume(lexicon.find(uris[i], label, Node.ANY).next());
+		blackhole.consume(lexicon.find(Node.ANY, label, labels[i]).next());
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import org.acoli.fintan.core.FintanOutputStream;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Output stream for components producing segmented RDF streams.
+ * All segments are consumed by a Blackhole, the stream never blocks.
+ */
+public class ModelSink implements FintanOutputStream<Model> {
+
+	private final Blackhole blackhole;
+	private volatile boolean active = true;
+	private long segments = 0;
+
+	public ModelSink(Blackhole blackhole) {
+		this.blackhole = blackhole;
+	}
+
+	/**
+	 * @return number of segments written so far.
+	 */
+	public long getSegments() {
+		return segments;
+	}
+
+	@Override
+	public synchronized void write(Model m) throws InterruptedException {
+		blackhole.consume(m);
+		segments++;
+	}
+
+	@Override
+	public boolean canWrite() {
+		return active;
+	}
+
+	@Override
+	public boolean active() {
+		return active;
+	}
+
+	@Override
+	public void terminate() {
+		active = false;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanStreamComponent;
+import org.acoli.fintan.load.RDFStreamLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Segment parsing of the RDFStreamLoader, in tokens per second.
+ *
+ * The total number of tokens is constant, so small and large segments can be
+ * compared directly. Covers the default parser and the streamParser mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RDFStreamLoaderBenchmark {
+
+	static final int TOKENS = 20000;
+
+	@Param({"10", "100", "5000"})
+	public int tokensPerSegment;
+
+	@Param({"false", "true"})
+	public boolean streamParser;
+
+	@Param({"false", "true"})
+	public boolean globalPrefixes;
+
+	private byte[] input;
+
+	@Setup
+	public void setup() throws IOException {
+		input = SyntheticData.turtle(TOKENS / tokensPerSegment, tokensPerSegment,
+				FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TOKENS)
+	public long load(Blackhole blackhole) throws IOException {
+		RDFStreamLoader loader = new RDFStreamLoader();
+		loader.setLang("TTL");
+		loader.setSegmentDelimiter(FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL);
+		loader.setSplit(true);
+		loader.setStreamParser(streamParser);
+		loader.setGlobalPrefixes(globalPrefixes);
+		ModelSink sink = new ModelSink(blackhole);
+		loader.setInputStream(new ByteArrayInputStream(input));
+		loader.setOutputStream(sink);
+		loader.run();
+		return sink.getSegments();
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanStreamComponent;
+import org.acoli.fintan.core.FintanStreamHandler;
+import org.acoli.fintan.write.RDFStreamWriter;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Serialization of the RDFStreamWriter, in segments per second, 
+ * with and without prefix deduplication.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RDFStreamWriterBenchmark {
+
+	static final int SEGMENTS = 1000;
+	static final int TOKENS_PER_SEGMENT = 20;
+
+	@Param({"false", "true"})
+	public boolean prefixDeduplication;
+
+	@Param({"TTL", "N-TRIPLES"})
+	public String lang;
+
+	private List<Model> segments;
+
+	@Setup
+	public void setup() throws IOException {
+		segments = SyntheticData.conllRdfSegments(SEGMENTS, TOKENS_PER_SEGMENT);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEGMENTS)
+	public long write(Blackhole blackhole) throws IOException, InterruptedException {
+		//the writer does not modify the segments
+		FintanStreamHandler<Model> input = new FintanStreamHandler<Model>(SEGMENTS);
+		input.writeAll(segments);
+		input.terminate();
+
+		RDFStreamWriter writer = new RDFStreamWriter();
+		writer.setLang(lang);
+		writer.setSegmentDelimiter(FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL);
+		writer.setPrefixDeduplication(prefixDeduplication);
+		BlackholeOutputStream out = new BlackholeOutputStream(blackhole);
+		writer.setInputStream(input);
+		writer.setOutputStream(out);
+		writer.run();
+		return out.getBytes();
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanStreamHandler;
+import org.acoli.fintan.rdf.RDFUpdater;
+import org.acoli.fintan.rdf.RDFUpdaterFactory;
+import org.apache.commons.cli.ParseException;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Per-segment update execution of the RDFUpdater, in segments per second.
+ *
+ * The updater is configured like in a pipeline, with 1, 10 or 50 update 
+ * scripts of one iteration each. Since the updates modify the segments, 
+ * updater and input are prepared anew for each invocation. batchSize 16
+ * processes batches of segments, which is not used with lookahead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RDFUpdaterBenchmark {
+
+	static final int SEGMENTS = 200;
+	static final int TOKENS_PER_SEGMENT = 20;
+
+	@Param({"1", "10", "50"})
+	public int updates;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	@Param({"0", "1"})
+	public int lookahead;
+
+	@Param({"1", "16"})
+	public int batchSize;
+
+	private List<Model> segments;
+	private ObjectNode conf;
+
+	private RDFUpdater updater;
+	private FintanStreamHandler<Model> input;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException {
+		segments = SyntheticData.conllRdfSegments(SEGMENTS, TOKENS_PER_SEGMENT);
+		conf = new ObjectMapper().createObjectNode();
+		conf.put("threads", threads);
+		conf.put("lookahead", lookahead);
+		conf.put("batchSize", batchSize);
+		ArrayNode updateConf = conf.putArray("updates");
+		for (String update:SyntheticData.updates(updates)) {
+			updateConf.addObject()
+			.put("path", update)
+			.put("iter", "1");
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() throws IOException, ParseException, InterruptedException {
+		updater = new RDFUpdaterFactory().buildFromJsonConf(conf);
+		input = new FintanStreamHandler<Model>(SEGMENTS);
+		input.writeAll(SyntheticData.copy(segments));
+		input.terminate();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEGMENTS)
+	public long update(Blackhole blackhole) throws IOException {
+		ModelSink sink = new ModelSink(blackhole);
+		updater.setInputStream(input);
+		updater.setOutputStream(sink);
+		updater.run();
+		return sink.getSegments();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time of a short pipeline (RDFStreamLoader, RDFUpdater, RDFStreamWriter)
+ * with a single segment in a fresh JVM, in milliseconds. This covers reading
+ * the config, the lookup of the components, class loading and the compilation
+ * of the update, i.e. the startup to the first segment. Each fork is one sample.
+ *
+ * The setup does not touch Fintan or Jena, so their classes are loaded within
+ * the measurement. JVM options of the forks can be changed by JMH's -jvmArgsAppend,
+ * e.g. -XX:SharedArchiveFile=... to assess a class data sharing archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+
+	private static final String SEGMENT = SyntheticData.PREFIXES
+			+ "<#s1_1> a nif:Word ; conll:WORD \"the\" ; conll:UPOS \"DET\" ; conll:HEAD <#s1_2> .\n"
+			+ "<#s1_2> a nif:Word ; conll:WORD \"fox\" ; conll:UPOS \"NOUN\" .\n";
+
+	private static final String UPDATE = SyntheticData.PREFIXES
+			+ "INSERT { ?w conll:HEAD_UPOS ?pos } WHERE { ?w conll:HEAD ?h . ?h conll:UPOS ?pos }";
+
+	private byte[] input;
+	private File update;
+	private File config;
+
+	@Setup
+	public void setup() throws IOException {
+		input = SEGMENT.getBytes(StandardCharsets.UTF_8);
+		update = File.createTempFile("fintan-benchmark", ".sparql");
+		Files.write(update.toPath(), UPDATE.getBytes(StandardCharsets.UTF_8));
+		config = File.createTempFile("fintan-benchmark", ".json");
+		String json = "{ \"input\" : \"System.in\", \"output\" : \"System.out\", \"pipeline\" : [ "
+				+ "{ \"class\" : \"RDFStreamLoader\", \"lang\" : \"TTL\", \"delimiter\" : \"\" }, "
+				+ "{ \"class\" : \"RDFUpdater\", \"updates\" : [ { \"path\" : \""
+				+ update.getAbsolutePath().replace("\\", "\\\\") + "\", \"iter\" : \"1\" } ] }, "
+				+ "{ \"class\" : \"RDFStreamWriter\", \"lang\" : \"TTL\", \"delimiter\" : \"\" } ] }";
+		Files.write(config.toPath(), json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown
+	public void tearDown() {
+		update.delete();
+		config.delete();
+	}
+
+	@Benchmark
+	public long firstSegment(Blackhole blackhole) throws IOException, InterruptedException, ExecutionException {
+		BlackholeOutputStream out = new BlackholeOutputStream(blackhole);
+		FintanManager man = new FintanManager();
+		man.readConfig(config.getPath(), new String[] {});
+		man.setStandardStreams(new ByteArrayInputStream(input), out);
+		man.buildComponentStack();
+		man.start();
+		return out.getBytes();
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanInputStream;
+import org.acoli.fintan.core.FintanOutputStream;
+import org.acoli.fintan.core.FintanRingBuffer;
+import org.acoli.fintan.core.FintanStreamHandler;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Handoffs per second between a writing and a reading thread.
+ *
+ * Compares the FintanStreamHandler with the FintanRingBuffer and its wait
+ * strategies, reading and writing either single segments or batches.
+ * The spin strategy requires at least two free CPU cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamHandoffBenchmark {
+
+	static final int HANDOFFS = 100000;
+
+	@Param({"handler", "ringbuffer-park", "ringbuffer-yield", "ringbuffer-spin"})
+	public String stream;
+
+	@Param({"false", "true"})
+	public boolean batch;
+
+	private List<List<Model>> batches;
+	private FintanRingBuffer.WaitStrategy waitStrategy;
+
+	@Setup
+	public void setup() {
+		waitStrategy = stream.startsWith("ringbuffer-") ? 
+				FintanRingBuffer.WaitStrategy.valueOf(stream.substring("ringbuffer-".length()).toUpperCase()) : null;
+
+		//the segments are only passed on, so a single empty model suffices
+		Model m = ModelFactory.createDefaultModel();
+		batches = new ArrayList<List<Model>>();
+		List<Model> current = null;
+		for (int i = 0; i < HANDOFFS; i++) {
+			if (current == null || current.size() == FintanStreamHandler.DEFAULT_BATCH_SIZE) {
+				current = new ArrayList<Model>(FintanStreamHandler.DEFAULT_BATCH_SIZE);
+				batches.add(current);
+			}
+			current.add(m);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(HANDOFFS)
+	public int handoff(Blackhole blackhole) throws InterruptedException {
+		final FintanOutputStream<Model> out;
+		final FintanInputStream<Model> in;
+		if (waitStrategy == null) {
+			FintanStreamHandler<Model> handler = new FintanStreamHandler<Model>();
+			out = handler;
+			in = handler;
+		} else {
+			FintanRingBuffer<Model> ring = new FintanRingBuffer<Model>(FintanStreamHandler.DEFAULT_CAPACITY, waitStrategy, false);
+			out = ring;
+			in = ring;
+		}
+
+		Thread producer = new Thread(() -> {
+			try {
+				for (List<Model> ms:batches) {
+					if (batch) {
+						out.writeAll(ms);
+					} else {
+						for (Model m:ms) 
+							out.write(m);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			out.terminate();
+		});
+		producer.start();
+
+		int count = 0;
+		List<Model> buffer = new ArrayList<Model>(FintanStreamHandler.DEFAULT_BATCH_SIZE);
+		while (in.canRead()) {
+			if (batch) {
+				buffer.clear();
+				count += in.drainTo(buffer, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+				blackhole.consume(buffer);
+			} else {
+				Model m = in.read();
+				if (m != null) {
+					count++;
+					blackhole.consume(m);
+				}
+			}
+		}
+		producer.join();
+		return count;
+	}
+}
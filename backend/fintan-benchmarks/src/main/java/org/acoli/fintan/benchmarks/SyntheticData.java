@@ -0,0 +1,250 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.acoli.conll.rdf.CoNLL2RDF;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+
+/**
+ * Deterministic synthetic inputs for the benchmarks.
+ *
+ * All data is generated from a fixed seed, so each run of a benchmark processes
+ * exactly the same input. The RDF data follows the CoNLL-RDF vocabulary, since
+ * this is what most Fintan pipelines process.
+ */
+public final class SyntheticData {
+
+	public static final long SEED = 20210601L;
+	public static final String BASE_URI = "https://github.com/acoli-repo/fintan/benchmarks#";
+	public static final String[] CONLL_FIELDS =
+		{"ID", "WORD", "LEMMA", "UPOS", "POS", "FEAT", "HEAD", "EDGE", "DEPS", "MISC"};
+
+	public static final String PREFIXES =
+			"PREFIX nif: <http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#>\n"
+			+ "PREFIX conll: <http://ufal.mff.cuni.cz/conll2009-st/task-description.html#>\n";
+
+	private static final String[] WORDS = {"the", "a", "fox", "dog", "jumps", "runs", "over", "under",
+			"quick", "lazy", "brown", "house", "river", "and", "sees", "with", "old", "tree", "bird", "sings"};
+	private static final String[] UPOS = {"DET", "DET", "NOUN", "NOUN", "VERB", "VERB", "ADP", "ADP",
+			"ADJ", "ADJ", "ADJ", "NOUN", "NOUN", "CCONJ", "VERB", "ADP", "ADJ", "NOUN", "NOUN", "VERB"};
+	private static final String[] EDGES = {"det", "nsubj", "obj", "obl", "amod", "case", "cc", "conj"};
+
+	private SyntheticData() {
+	}
+
+	/**
+	 * @return CoNLL-U data, sentences separated by empty lines.
+	 */
+	public static String conll(int sentences, int tokensPerSentence) {
+		StringBuilder sb = new StringBuilder();
+		for (String sentence:conllSentences(sentences, tokensPerSentence)) {
+			sb.append(sentence).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return CoNLL-U sentences, each terminated by a newline.
+	 */
+	public static List<String> conllSentences(int sentences, int tokensPerSentence) {
+		Random random = new Random(SEED);
+		List<String> result = new ArrayList<String>(sentences);
+		for (int s = 0; s < sentences; s++) {
+			StringBuilder sb = new StringBuilder();
+			int root = 1 + random.nextInt(tokensPerSentence);
+			for (int t = 1; t <= tokensPerSentence; t++) {
+				int w = random.nextInt(WORDS.length);
+				int head = (t == root) ? 0 : 1 + random.nextInt(tokensPerSentence);
+				if (head == t) head = root;
+				String edge = (head == 0) ? "root" : EDGES[random.nextInt(EDGES.length)];
+				sb.append(t).append('\t')
+				.append(WORDS[w]).append('\t')
+				.append(WORDS[w]).append('\t')
+				.append(UPOS[w]).append('\t')
+				.append(UPOS[w]).append('\t')
+				.append("Number=Sing").append('\t')
+				.append(head).append('\t')
+				.append(edge).append('\t')
+				.append('_').append('\t')
+				.append('_').append('\n');
+			}
+			result.add(sb.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * @return one CoNLL-RDF model per sentence, as produced by CoNLL2RDF.
+	 */
+	public static List<Model> conllRdfSegments(int segments, int tokensPerSegment) throws IOException {
+		CoNLL2RDF conll2rdf = new CoNLL2RDF(BASE_URI, CONLL_FIELDS);
+		List<Model> result = new ArrayList<Model>(segments);
+		for (String sentence:conllSentences(segments, tokensPerSegment)) {
+			result.add(conll2rdf.conll2model(new StringReader(sentence)));
+		}
+		return result;
+	}
+
+	/**
+	 * @return Turtle serialization of conllRdfSegments(), each segment followed
+	 * 		by a line holding the delimiter, as written by the RDFStreamWriter.
+	 */
+	public static String turtle(int segments, int tokensPerSegment, String delimiter) throws IOException {
+		StringWriter out = new StringWriter();
+		for (Model m:conllRdfSegments(segments, tokensPerSegment)) {
+			m.write(out, "TTL");
+			out.write(delimiter+"\n");
+		}
+		return out.toString();
+	}
+
+	/**
+	 * @return deep copy of all models, for components which modify their input.
+	 */
+	public static List<Model> copy(List<Model> models) {
+		List<Model> result = new ArrayList<Model>(models.size());
+		for (Model m:models) {
+			Model c = ModelFactory.createDefaultModel();
+			c.setNsPrefixes(m.getNsPrefixMap());
+			c.add(m);
+			result.add(c);
+		}
+		return result;
+	}
+
+	/**
+	 * SPARQL updates in the style of the CoNLL-RDF examples. Each update
+	 * writes a distinct property, so the segments grow linearly with the
+	 * number of updates.
+	 * @return numberOfUpdates updates, cycling through a set of templates.
+	 */
+	public static List<String> updates(int numberOfUpdates) {
+		List<String> result = new ArrayList<String>(numberOfUpdates);
+		for (int i = 0; i < numberOfUpdates; i++) {
+			String update;
+			switch (i % 4) {
+			case 0: //derive a property from a literal
+				update = "INSERT { ?w conll:NORM_"+i+" ?norm } "
+						+ "WHERE { ?w a nif:Word ; conll:WORD ?word . BIND(CONCAT(UCASE(?word), \"_"+i+"\") AS ?norm) }";
+				break;
+			case 1: //join along the dependency tree
+				update = "INSERT { ?w conll:HEAD_UPOS_"+i+" ?pos } "
+						+ "WHERE { ?w conll:HEAD ?h . ?h conll:UPOS ?pos }";
+				break;
+			case 2: //filter and rewrite
+				update = "DELETE { ?w conll:FEAT ?feat } INSERT { ?w conll:FEAT ?feat ; conll:FEAT_"+i+" \"Def\" } "
+						+ "WHERE { ?w conll:UPOS \"NOUN\" ; conll:FEAT ?feat . FILTER(STRSTARTS(?feat, \"Number\")) }";
+				break;
+			default: //follow the word order
+				update = "INSERT { ?w conll:NEXT_UPOS_"+i+" ?pos } "
+						+ "WHERE { ?w nif:nextWord ?n . ?n conll:UPOS ?pos }";
+				break;
+			}
+			result.add(PREFIXES+update);
+		}
+		return result;
+	}
+
+	/**
+	 * @return SELECT query which produces a CoNLL-like table from CoNLL-RDF.
+	 */
+	public static String selectQuery() {
+		return PREFIXES
+				+ "SELECT ?ID ?WORD ?UPOS ?HEAD ?EDGE "
+				+ "WHERE { ?w a nif:Word ; conll:ID ?ID ; conll:WORD ?WORD ; conll:UPOS ?UPOS . "
+				+ "OPTIONAL { ?w conll:HEAD ?h . ?h conll:ID ?HEAD } "
+				+ "OPTIONAL { ?w conll:EDGE ?EDGE } }";
+	}
+
+	/**
+	 * @return TSV data with a header row, segments separated by empty lines.
+	 */
+	public static String tsv(int segments, int rowsPerSegment) {
+		StringBuilder sb = new StringBuilder("id\tword\tlemma\tupos\n");
+		String[] sentences = conllSentences(segments, rowsPerSegment).toArray(new String[] {});
+		for (int s = 0; s < sentences.length; s++) {
+			for (String line:sentences[s].split("\n")) {
+				String[] cols = line.split("\t");
+				sb.append(s).append('_').append(cols[0]).append('\t')
+				.append(cols[1]).append('\t')
+				.append(cols[2]).append('\t')
+				.append(cols[3]).append('\n');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return Tarql query for tsv().
+	 */
+	public static String tarqlQuery() {
+		return PREFIXES
+				+ "CONSTRUCT { ?w a nif:Word ; conll:WORD ?word ; conll:LEMMA ?lemma ; conll:UPOS ?upos } "
+				+ "WHERE { BIND(URI(CONCAT('"+BASE_URI+"s', ?id)) AS ?w) }";
+	}
+
+	/**
+	 * @return TBX document with the given number of term entries,
+	 * 		each holding an English and a German term.
+	 */
+	public static String tbx(int entries) {
+		Random random = new Random(SEED);
+		StringBuilder sb = new StringBuilder();
+		sb.append("<martif type=\"TBX-Default\" xml:lang=\"en\">\n")
+		.append("  <martifHeader>\n")
+		.append("    <fileDesc>\n")
+		.append("      <sourceDesc>\n")
+		.append("        <p>Synthetic data for Fintan benchmarks.</p>\n")
+		.append("      </sourceDesc>\n")
+		.append("    </fileDesc>\n")
+		.append("    <encodingDesc>\n")
+		.append("      <p type=\"XCSURI\">TBXXCS.xcs</p>\n")
+		.append("    </encodingDesc>\n")
+		.append("  </martifHeader>\n")
+		.append("<text>\n")
+		.append("  <body>\n");
+		for (int e = 0; e < entries; e++) {
+			String term = WORDS[random.nextInt(WORDS.length)]+" "+WORDS[random.nextInt(WORDS.length)];
+			sb.append("    <termEntry id=\"SYN-").append(e).append("\">\n")
+			.append("      <descripGrp>\n")
+			.append("        <descrip type=\"subjectField\">").append(1000 + random.nextInt(100)).append("</descrip>\n")
+			.append("      </descripGrp>\n");
+			for (String lang:new String[] {"en", "de"}) {
+				sb.append("      <langSet xml:lang=\"").append(lang).append("\">\n")
+				.append("        <tig>\n")
+				.append("          <term>").append(term).append(' ').append(lang).append(e).append("</term>\n")
+				.append("          <termNote type=\"termType\">fullForm</termNote>\n")
+				.append("          <descrip type=\"reliabilityCode\">").append(1 + random.nextInt(4)).append("</descrip>\n")
+				.append("        </tig>\n")
+				.append("      </langSet>\n");
+			}
+			sb.append("    </termEntry>\n");
+		}
+		sb.append("  </body>\n")
+		.append("</text>\n")
+		.append("</martif>\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.load.TBX2RDFStreamLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tbx2rdf.Mappings;
+
+/**
+ * Conversion of the TBX2RDFStreamLoader, in term entries per second, 
+ * for the in-memory conversion and the cached conversion of big files.
+ * Uses the default mappings of tbx2rdf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TBX2RDFStreamLoaderBenchmark {
+
+	static final int ENTRIES = 1000;
+
+	@Param({"false", "true"})
+	public boolean bigFile;
+
+	private byte[] input;
+	private TBX2RDFStreamLoader loader;
+
+	@Setup
+	public void setup() throws IOException {
+		input = SyntheticData.tbx(ENTRIES).getBytes(StandardCharsets.UTF_8);
+		loader = new TBX2RDFStreamLoader();
+		loader.setMappings(Mappings.readInMappings(new InputStreamReader(
+				TBX2RDFStreamLoaderBenchmark.class.getResourceAsStream("/mappings.default"), StandardCharsets.UTF_8)));
+		loader.setBigFile(bigFile);
+		//creates a temporary directory, which is deleted on exit
+		loader.initCache(null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTRIES)
+	public long convert(Blackhole blackhole) throws IOException {
+		ModelSink sink = new ModelSink(blackhole);
+		loader.setInputStream(new ByteArrayInputStream(input));
+		loader.setOutputStream(sink);
+		loader.setOutputStream(new ModelSink(blackhole), TBX2RDFStreamLoader.URI_MARTIF_HEADER);
+		loader.setOutputStream(new ModelSink(blackhole), TBX2RDFStreamLoader.URI_SUBJECT_FIELDS);
+		loader.setOutputStream(new ModelSink(blackhole), TBX2RDFStreamLoader.URI_LEXICONS);
+		loader.run();
+		return sink.getSegments();
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanStreamComponent;
+import org.acoli.fintan.genericIO.TarqlStreamTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Segmented processing of the TarqlStreamTransformer, in rows per second.
+ *
+ * The total number of rows is constant. Tarql is invoked once per segment,
+ * so the fixed costs per segment dominate for small segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TarqlStreamTransformerBenchmark {
+
+	static final int ROWS = 10000;
+
+	@Param({"10", "100", "1000"})
+	public int rowsPerSegment;
+
+	private byte[] input;
+	private File query;
+
+	@Setup
+	public void setup() throws IOException {
+		input = SyntheticData.tsv(ROWS / rowsPerSegment, rowsPerSegment).getBytes(StandardCharsets.UTF_8);
+		query = File.createTempFile("fintan-benchmark", ".tarql");
+		Files.write(query.toPath(), SyntheticData.tarqlQuery().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown
+	public void tearDown() {
+		query.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public long transform(Blackhole blackhole) throws IOException {
+		TarqlStreamTransformer tsv2ttl = new TarqlStreamTransformer();
+		tsv2ttl.setSegmentDelimiterIn("");
+		tsv2ttl.setSegmentDelimiterOut(FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL);
+		tsv2ttl.setQueryPath(query.getAbsolutePath());
+		tsv2ttl.setTabs(true);
+		tsv2ttl.setEncoding("UTF-8");
+		tsv2ttl.setHasHeaderRow(true);
+		BlackholeOutputStream out = new BlackholeOutputStream(blackhole);
+		tsv2ttl.setInputStream(new ByteArrayInputStream(input));
+		tsv2ttl.setOutputStream(out);
+		tsv2ttl.run();
+		return out.getBytes();
+	}
+}
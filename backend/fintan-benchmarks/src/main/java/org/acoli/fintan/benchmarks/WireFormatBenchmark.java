@@ -0,0 +1,109 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.acoli.fintan.core.FintanStreamComponent;
+import org.acoli.fintan.core.FintanStreamHandler;
+import org.acoli.fintan.load.RDFStreamLoader;
+import org.acoli.fintan.write.RDFStreamWriter;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encoding and decoding of segments on a link between an RDFStreamWriter 
+ * and an RDFStreamLoader, in segments per second. Compares delimited Turtle 
+ * with RDF Thrift frames.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+	static final int SEGMENTS = 1000;
+	static final int TOKENS_PER_SEGMENT = 20;
+
+	@Param({"TTL", "RDFTHRIFT"})
+	public String lang;
+
+	private List<Model> segments;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		segments = SyntheticData.conllRdfSegments(SEGMENTS, TOKENS_PER_SEGMENT);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encode(out);
+		encoded = out.toByteArray();
+	}
+
+	private void encode(OutputStream out) throws IOException, InterruptedException {
+		//the writer does not modify the segments
+		FintanStreamHandler<Model> input = new FintanStreamHandler<Model>(SEGMENTS);
+		input.writeAll(segments);
+		input.terminate();
+
+		RDFStreamWriter writer = new RDFStreamWriter();
+		writer.setLang(lang);
+		writer.setSegmentDelimiter(FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL);
+		writer.setInputStream(input);
+		writer.setOutputStream(out);
+		writer.run();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEGMENTS)
+	public long encode(Blackhole blackhole) throws IOException, InterruptedException {
+		BlackholeOutputStream out = new BlackholeOutputStream(blackhole);
+		encode(out);
+		return out.getBytes();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEGMENTS)
+	public long decode(Blackhole blackhole) throws IOException {
+		RDFStreamLoader loader = new RDFStreamLoader();
+		loader.setLang(lang);
+		loader.setSegmentDelimiter(FintanStreamComponent.FINTAN_DEFAULT_SEGMENT_DELIMITER_TTL);
+		loader.setSplit(true);
+		ModelSink sink = new ModelSink(blackhole);
+		loader.setInputStream(new ByteArrayInputStream(encoded));
+		loader.setOutputStream(sink);
+		loader.run();
+		return sink.getSegments();
+	}
+}
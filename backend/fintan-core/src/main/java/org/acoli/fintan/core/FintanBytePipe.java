@@ -0,0 +1,240 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process pipe for streaming serialized data between the threads of two
+ * components. Replaces PipedInputStream/PipedOutputStream.
+ *
+ * Data is stored in a ring buffer of configurable size and transferred in bulk
+ * by array copies. Waiting threads are signalled as soon as data or space is
+ * available. Like java's piped streams, the pipe is intended for one writer
+ * and one reader at a time. Unlike them, it does not watch the threads of
+ * either end, since components write and read from pooled threads which may
+ * change or retire in between. Waiting threads are only released by closing
+ * one of the streams, e.g. when the FintanManager aborts a failed pipeline,
+ * or by an interrupt.
+ */
+public class FintanBytePipe {
+
+	/**
+	 * Default buffer size in bytes: 1 MiB.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+	private final byte[] buffer;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	// all fields guarded by lock
+	private int readPos = 0;
+	private int count = 0;
+	private boolean closedByWriter = false;
+	private boolean closedByReader = false;
+
+	private final InputStream inputStream = new PipeInputStream();
+	private final OutputStream outputStream = new PipeOutputStream();
+
+	/**
+	 * Create a pipe with default buffer size.
+	 */
+	public FintanBytePipe() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param bufferSize
+	 * 			number of bytes which can be buffered.
+	 */
+	public FintanBytePipe(int bufferSize) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("Pipe buffer size must be positive: "+bufferSize);
+		buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * @return the reading end of the pipe.
+	 */
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * @return the writing end of the pipe.
+	 */
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * @return number of bytes which can be buffered.
+	 */
+	public int getBufferSize() {
+		return buffer.length;
+	}
+
+	/**
+	 * @return number of buffered bytes.
+	 */
+	public int available() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		lock.lock();
+		try {
+			while (len > 0) {
+				while (count == buffer.length) {
+					checkWritable();
+					await(notFull);
+				}
+				checkWritable();
+				//copy as much as possible into the free space, in at most two chunks
+				int writePos = (readPos + count) % buffer.length;
+				int n = Math.min(len, buffer.length - count);
+				int first = Math.min(n, buffer.length - writePos);
+				System.arraycopy(b, off, buffer, writePos, first);
+				System.arraycopy(b, off + first, buffer, 0, n - first);
+				count += n;
+				off += n;
+				len -= n;
+				notEmpty.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if (len == 0) return 0;
+		lock.lock();
+		try {
+			while (count == 0) {
+				if (closedByReader)
+					throw new IOException("Pipe closed");
+				if (closedByWriter)
+					return -1;
+				await(notEmpty);
+			}
+			//copy all available data, in at most two chunks
+			int n = Math.min(len, count);
+			int first = Math.min(n, buffer.length - readPos);
+			System.arraycopy(buffer, readPos, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, n - first);
+			readPos = (readPos + n) % buffer.length;
+			count -= n;
+			notFull.signal();
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void checkWritable() throws IOException {
+		if (closedByWriter || closedByReader)
+			throw new IOException("Pipe closed");
+	}
+
+	/**
+	 * Wait for a signal, i.e. data, space or closing of the other end.
+	 */
+	private void await(Condition condition) throws IOException {
+		try {
+			condition.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private class PipeOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			FintanBytePipe.this.write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			FintanBytePipe.this.write(b, off, len);
+		}
+
+		/**
+		 * Marks the end of data. Buffered data can still be read.
+		 */
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				closedByWriter = true;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private class PipeInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return FintanBytePipe.this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return FintanBytePipe.this.read(b, off, len);
+		}
+
+		@Override
+		public int available() {
+			return FintanBytePipe.this.available();
+		}
+
+		/**
+		 * Discards buffered data. Further write operations will fail.
+		 */
+		@Override
+		public void close() {
+			lock.lock();
+			try {
+				closedByReader = true;
+				count = 0;
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.acoli.fintan.core.util.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Progress of a pipeline, persisted in a properties file, so an interrupted
+ * run can be resumed instead of restarted.
+ *
+ * Segments are numbered in the order they are read from the pipeline input.
+ * Loaders reading from a source record how many segments they have read.
+ * Writers writing to a destination periodically flush their output and
+ * commit the number of segments written together with the length of the
+ * destination file.
+ *
+ * On resume, all destination files are truncated to their committed length
+ * and appended. Loaders skip all segments which have been committed by every
+ * writer, and each writer skips the segments it has committed beyond that.
+ * This requires every segment of the input to result in exactly one segment
+ * of each output, in input order, as in pipelines of loaders, updaters and writers.
+ */
+public class FintanCheckpoint {
+
+	protected static final Logger LOG = LogManager.getLogger(FintanCheckpoint.class.getName());
+
+	public static final int DEFAULT_INTERVAL = 100;
+
+	private static final String SEGMENTS = ".segments";
+	private static final String POSITION = ".position";
+	private static final String INPUT = ".input";
+
+	private final File file;
+	private final int interval;
+	private final boolean resumed;
+
+	// entries of the previous run, if resumed
+	private final Properties committed = new Properties();
+	// entries of this run, saved on each commit. Guarded by this.
+	private final Properties current = new Properties();
+
+	// writer instance --> destination file, null for System.out
+	private final Map<String, File> writers = new HashMap<String, File>();
+	private long resumeSegments = -1;
+	// set by abort(), no further commits. Guarded by this.
+	private boolean aborted = false;
+
+	/**
+	 * @param file
+	 * 			the checkpoint file.
+	 * @param interval
+	 * 			number of segments between two commits of a writer.
+	 * @param resume
+	 * 			true, to continue from the entries in file. If false or
+	 * 			the file does not exist, the pipeline starts from the beginning.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public FintanCheckpoint(File file, int interval, boolean resume) throws IOException {
+		if (interval <= 0)
+			throw new IOException("'checkpointInterval' must be a positive number.");
+		this.file = file;
+		this.interval = interval;
+		if (resume && !file.exists())
+			LOG.warn("Checkpoint "+file.getAbsolutePath()+" not found. Starting from the beginning.");
+		this.resumed = resume && file.exists();
+		if (resumed) {
+			try (InputStream in = new FileInputStream(file)) {
+				committed.load(in);
+			}
+			current.putAll(committed);
+		}
+	}
+
+	/**
+	 * @return true if the pipeline continues from a previous run.
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * Register a writer and open its destination for writing. When resumed,
+	 * the destination is truncated to its committed length and appended,
+	 * otherwise it is overwritten.
+	 * @param instance
+	 * 			the writer
+	 * @param path
+	 * 			path of the destination file, as in IOUtils.parseAsOutputStream()
+	 * @return the stream to the destination
+	 * @throws IOException if the destination is compressed or cannot be written.
+	 */
+	public synchronized OutputStream openDestination(String instance, String path) throws IOException {
+		if (path.endsWith(".gz"))
+			throw new IOException("Checkpoints do not support compressed output: "+path);
+		File f = new File(path);
+		writers.put(instance, f);
+		if (!resumed)
+			return IOUtils.parseAsOutputStream(path);
+		if (!f.exists()) {
+			if (getCommittedSegments(instance) > 0)
+				throw new IOException("Destination "+path+" not found. Cannot resume.");
+			return IOUtils.parseAsOutputStream(path);
+		}
+		long position = getLong(committed, instance+POSITION);
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			if (raf.length() < position)
+				throw new IOException("Destination "+path+" is shorter than its checkpoint. Cannot resume.");
+			raf.setLength(position);
+		}
+		LOG.info("Resuming "+instance+" at byte "+position+" of "+path);
+		return new PrintStream(new FileOutputStream(f, true));
+	}
+
+	/**
+	 * Register a writer to a destination which cannot be truncated, e.g. System.out.
+	 */
+	public synchronized void registerWriter(String instance) {
+		writers.put(instance, null);
+	}
+
+	/**
+	 * @return number of segments a loader skips: the minimum of the segments
+	 * 		committed by all registered writers. 0, if not resumed.
+	 */
+	public synchronized long getResumeSegments() {
+		if (resumeSegments < 0) {
+			resumeSegments = 0;
+			if (resumed && !writers.isEmpty()) {
+				resumeSegments = Long.MAX_VALUE;
+				for (String writer:writers.keySet())
+					resumeSegments = Math.min(resumeSegments, getCommittedSegments(writer));
+			}
+		}
+		return resumeSegments;
+	}
+
+	/**
+	 * @return number of segments committed by a writer in the previous run.
+	 * 		0, if not resumed.
+	 */
+	public synchronized long getCommittedSegments(String instance) {
+		return getLong(committed, instance+SEGMENTS);
+	}
+
+	/**
+	 * @return true, if a writer should commit after this segment.
+	 */
+	public boolean isDue(long segment) {
+		return segment % interval == 0;
+	}
+
+	/**
+	 * Record the number of segments read by a loader.
+	 * Saved with the next commit of a writer.
+	 */
+	public synchronized void recordInput(String instance, long segments) {
+		current.setProperty(instance+INPUT, Long.toString(segments));
+	}
+
+	/**
+	 * Commit the output of a writer. The writer must have flushed
+	 * all segments up to this one to its destination.
+	 * @param instance
+	 * 			the writer
+	 * @param segments
+	 * 			number of the last segment written, counted from the
+	 * 			beginning of the input.
+	 * @throws IOException if the checkpoint file cannot be written.
+	 */
+	public synchronized void commit(String instance, long segments) throws IOException {
+		if (aborted) {
+			LOG.debug("Pipeline has been aborted, "+instance+" is not committed.");
+			return;
+		}
+		current.setProperty(instance+SEGMENTS, Long.toString(segments));
+		File destination = writers.get(instance);
+		if (destination != null)
+			current.setProperty(instance+POSITION, Long.toString(destination.length()));
+		save();
+	}
+
+	/**
+	 * Ignore all further commits, since the pipeline has failed. Components may 
+	 * still flush their buffers while they are stopped, but neither these segments 
+	 * nor the segments they have skipped must be committed.
+	 */
+	public synchronized void abort() {
+		aborted = true;
+	}
+
+	/**
+	 * Atomically replace the checkpoint file by the current entries.
+	 */
+	private void save() throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		File tmp = new File(file.getPath()+".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			current.store(out, "Fintan checkpoint");
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static long getLong(Properties properties, String key) {
+		String value = properties.getProperty(key);
+		if (value == null)
+			return 0;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			LOG.warn("Invalid checkpoint entry "+key+"="+value+". Using 0.");
+			return 0;
+		}
+	}
+
+}
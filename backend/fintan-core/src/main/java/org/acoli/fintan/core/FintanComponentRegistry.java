@@ -0,0 +1,142 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of all FintanStreamComponentFactory implementations on the classpath.
+ *
+ * Factories are declared in the format of java.util.ServiceLoader, i.e. by their
+ * fully qualified names in META-INF/services/org.acoli.fintan.core.FintanStreamComponentFactory.
+ * Only these declarations are read on startup. Unlike ServiceLoader, a factory
+ * class is not loaded before a pipeline makes use of it.
+ *
+ * Each factory is registered under:
+ * 	- its short name, i.e. the simple class name without a trailing "Factory",
+ * 		e.g. `RDFUpdater` for org.acoli.fintan.rdf.RDFUpdaterFactory
+ * 	- its fully qualified name
+ * 	- the fully qualified name of the component, e.g. org.acoli.fintan.rdf.RDFUpdater
+ */
+public class FintanComponentRegistry {
+
+	protected static final Logger LOG = LogManager.getLogger(FintanComponentRegistry.class.getName());
+
+	public static final String SERVICE_FILE = "META-INF/services/"+FintanStreamComponentFactory.class.getName();
+	public static final String FACTORY_SUFFIX = "Factory";
+
+	private static FintanComponentRegistry defaultRegistry;
+
+	/**
+	 * @return registry of all factories declared on the classpath of Fintan.
+	 */
+	public static synchronized FintanComponentRegistry getDefault() {
+		if (defaultRegistry == null)
+			defaultRegistry = new FintanComponentRegistry(FintanComponentRegistry.class.getClassLoader());
+		return defaultRegistry;
+	}
+
+	private final ClassLoader classLoader;
+	// name --> fully qualified name of the factory
+	private final Map<String, String> factories = new TreeMap<String, String>();
+	// factory classes, once loaded
+	private final Map<String, Class<? extends FintanStreamComponentFactory>> classes =
+			new ConcurrentHashMap<String, Class<? extends FintanStreamComponentFactory>>();
+
+	/**
+	 * Read all factory declarations visible to a ClassLoader.
+	 */
+	public FintanComponentRegistry(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		try {
+			Enumeration<URL> resources = classLoader.getResources(SERVICE_FILE);
+			while (resources.hasMoreElements()) {
+				readDeclarations(resources.nextElement());
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not read component declarations: "+e);
+		}
+	}
+
+	private void readDeclarations(URL url) throws IOException {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				String factory = line.replaceFirst("#.*", "").trim();
+				if (factory.isEmpty())
+					continue;
+				String component = factory.endsWith(FACTORY_SUFFIX) ?
+						factory.substring(0, factory.length() - FACTORY_SUFFIX.length()) : factory;
+				register(component.substring(component.lastIndexOf('.') + 1), factory);
+				register(component, factory);
+				register(factory, factory);
+			}
+		}
+	}
+
+	private void register(String name, String factory) {
+		String previous = factories.get(name);
+		if (previous == null)
+			factories.put(name, factory);
+		else if (!previous.equals(factory))
+			LOG.warn("Component name '"+name+"' is ambiguous. Using "+previous+" instead of "+factory);
+	}
+
+	/**
+	 * @return all names of registered factories.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(factories.keySet());
+	}
+
+	/**
+	 * @return true, if a factory is registered under this name.
+	 */
+	public boolean contains(String name) {
+		return factories.containsKey(name);
+	}
+
+	/**
+	 * Create a new instance of a registered factory. Its class is loaded on first use.
+	 * @param name short or fully qualified name
+	 * @return the factory, or null if no factory is registered under this name.
+	 * @throws ReflectiveOperationException if the declared class cannot be instantiated.
+	 */
+	public FintanStreamComponentFactory getFactory(String name) throws ReflectiveOperationException {
+		String factory = factories.get(name);
+		if (factory == null)
+			return null;
+		Class<? extends FintanStreamComponentFactory> factoryClass = classes.get(factory);
+		if (factoryClass == null) {
+			factoryClass = Class.forName(factory, true, classLoader).asSubclass(FintanStreamComponentFactory.class);
+			classes.put(factory, factoryClass);
+		}
+		return factoryClass.getDeclaredConstructor().newInstance();
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.acoli.fintan.core;
 
+import java.util.Collection;
+
 /**
  * Interface with basic read operations for non-serialized object streams.
  * Primarily used for segmented RDF streams (T = Model).
@@ -32,6 +34,23 @@ public interface FintanInputStream<T> {
 	 */
 	public T read() throws InterruptedException;
 	
+	/**
+	 * Reads at least one and at most maxElements objects from the stream 
+	 * and adds them to the collection. Implementations may transfer all 
+	 * objects available at once. Blocks like read().
+	 * @param c collection to add the objects to.
+	 * @param maxElements maximum number of objects to be read.
+	 * @return number of objects read. 0 if no object could be read.
+	 * @throws InterruptedException if waiting thread is interrupted.
+	 */
+	public default int drainTo(Collection<? super T> c, int maxElements) throws InterruptedException {
+		if (maxElements <= 0) return 0;
+		T m = read();
+		if (m == null) return 0;
+		c.add(m);
+		return 1;
+	}
+	
 	/**
 	 * Checks whether data can be read from the stream.
 	 * @return true if data is available.
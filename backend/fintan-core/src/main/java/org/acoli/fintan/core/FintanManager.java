@@ -19,26 +19,46 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.acoli.fintan.core.metrics.FintanMetrics;
+import org.acoli.fintan.core.metrics.FirstWriteOutputStream;
+import org.acoli.fintan.core.metrics.LinkMetrics;
+import org.acoli.fintan.core.metrics.MeteredInputStream;
+import org.acoli.fintan.core.metrics.MeteredModelStream;
+import org.acoli.fintan.core.metrics.MeteredOutputStream;
+import org.acoli.fintan.core.util.FintanCache;
 import org.acoli.fintan.core.util.IOUtils;
+import org.acoli.fintan.core.util.ThriftSegmentWriter;
+import org.acoli.fintan.load.RDFStreamLoader;
+import org.acoli.fintan.write.RDFStreamWriter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 
 /**
  * The FintanManager class is designed to build and execute Fintan pipelines.
@@ -68,28 +88,78 @@ public class FintanManager {
 	
 	private ObjectNode config;
 	
+	// string values of config in which parameters have been substituted
+	private final Set<String> parameterizedTexts = new HashSet<String>();
+	
 	private HashMap<String, FintanStreamComponent> componentStack;
 	
+	private FintanMetrics metrics;
+	// id of the job in server mode, null otherwise
+	private String jobId = null;
+	
+	private FintanCheckpoint checkpoint;
+	private boolean resume = false;
+	
+	// reference for the startup report: start of the JVM, or of the job in server mode
+	private long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+	private final AtomicBoolean firstOutput = new AtomicBoolean();
+	
+	private FintanScheduler scheduler;
+	// in server mode: shares its CPU budget with all jobs
+	private FintanScheduler parentScheduler;
+	
+	// in server mode: replace System.in and System.out for a single job
+	private InputStream standardInput;
+	private OutputStream standardOutput;
+	private boolean standardInputOccupied = false;
+	private boolean standardOutputOccupied = false;
+	
+	// components linked by segmented RDF streams instead of their default streams, see fuseLinks()
+	private Set<FintanStreamComponent<?, ?>> modelInputs = new HashSet<FintanStreamComponent<?, ?>>();
+	private Set<FintanStreamComponent<?, ?>> modelOutputs = new HashSet<FintanStreamComponent<?, ?>>();
+	
+	// streams between components, terminated if the pipeline fails, see abort()
+	private final List<FintanOutputStream<Model>> modelStreams = new ArrayList<FintanOutputStream<Model>>();
+	private final List<FintanBytePipe> bytePipes = new ArrayList<FintanBytePipe>();
+	
+	// for start(): number of components still running, first exception of any task
+	private int runningComponents = 0;
+	private Throwable failure = null;
+	
 	
 	/**
 	 * Starts a Fintan pipeline with command line arguments. Wildcards in config
 	 * are replaced by params -p ...:   <$param0> --> arg0
 	 * @param args
-	 * 		-c 	path/to/config.json [-p someValue [someOtherValue]*]
+	 * 		-c 	path/to/config.json [-p someValue [someOtherValue]*] [--resume]
+	 * 		or for server mode, see FintanServer:
+	 * 		-s port -c path/to/config.json|path/to/configs/ [-c ...]* [--maxJobs n] [--cpuBudget n] [--cacheWeight n]
 	 * @throws Exception
 	 * 		if anything bad happens.
 	 */
 	public static void main(String[] args) throws Exception {
 		Options options = new Options();
-		options.addRequiredOption("c", "config", true, "Specify JSON config file");
+		options.addOption("c", "config", true, "Specify JSON config file. In server mode: config files or directories of the pipelines to be served.");
+		options.getOption("c").setArgs(Option.UNLIMITED_VALUES);
 		options.addOption("p", "params", true, "Specify optional parameters for JSON config file.");
 		options.getOption("p").setOptionalArg(true);
 		options.getOption("p").setArgs(100);
+		options.addOption("s", "server", true, "Run as server on the given local port instead of running a single pipeline.");
+		options.addOption(null, "maxJobs", true, "Server mode: maximum number of concurrent jobs. Default: number of available processors.");
+		options.addOption(null, "cpuBudget", true, "Server mode: CPU budget shared by all jobs. Default: number of available processors.");
+		options.addOption(null, "cacheWeight", true, "Server mode: maximum weight of the cache, roughly the number of cached triples. Default: "+FintanCache.DEFAULT_MAX_WEIGHT+".");
+		options.addOption(null, "resume", false, "Resume the pipeline from the checkpoint defined in the config.");
 		
 		CommandLineParser parser = new DefaultParser();
 		CommandLine cmd = parser.parse(options, args);
 		
+		if (cmd.hasOption("s")) {
+			runServer(cmd);
+			return;
+		}
+		
 		FintanManager man = new FintanManager();
+		man.setResume(cmd.hasOption("resume"));
 		
 		String[] params = new String[] {};
 		if(cmd.hasOption("p")) {
@@ -108,12 +178,47 @@ public class FintanManager {
 		}
 		
 		man.buildComponentStack();
-		man.start();
+		try {
+			man.start();
+		} catch (ExecutionException e) {
+			// remaining threads may still be blocked on their streams
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Starts a FintanServer for all configs given by -c. Runs until the JVM is terminated.
+	 */
+	private static void runServer(CommandLine cmd) throws Exception {
+		int port;
+		int maxJobs = 0;
+		int cpuBudget = 0;
+		try {
+			port = Integer.parseInt(cmd.getOptionValue("s"));
+			if (cmd.hasOption("maxJobs")) 
+				maxJobs = Integer.parseInt(cmd.getOptionValue("maxJobs"));
+			if (cmd.hasOption("cpuBudget")) 
+				cpuBudget = Integer.parseInt(cmd.getOptionValue("cpuBudget"));
+			if (cmd.hasOption("cacheWeight")) 
+				FintanCache.setMaxWeight(Long.parseLong(cmd.getOptionValue("cacheWeight")));
+		} catch (NumberFormatException e) {
+			throw new ParseException("Server options must be numbers: "+e.getMessage());
+		}
+		FintanServer server = new FintanServer(port, maxJobs, cpuBudget);
+		if (cmd.hasOption("c")) {
+			for (String path:cmd.getOptionValues("c")) 
+				server.register(path);
+		}
+		if (server.getPipelines().isEmpty()) 
+			LOG.warn("No pipelines registered.");
+		server.start();
 	}
 
 	/**
 	 * Reads the config file and replaces wildcards with command line parameters.
 	 * <$param0> --> arg0
+	 * Wildcards are only replaced within string values, after parsing. 
+	 * So parameters, e.g. of a server request, cannot change the structure of the config.
 	 * @throws IOException
 	 */
 	public void readConfig(String path, String[] params) throws IOException {
@@ -122,15 +227,40 @@ public class FintanManager {
 
 		String jsonConf = IOUtils.readSourceAsString(path);
 		
-		for (int i = 0; i < params.length; i++) {
-			jsonConf = jsonConf.replace("<$param" + i + ">", params[i]);
-		}
-		
 		JsonNode node = objectMapper.readTree(jsonConf);
 		if (!node.getNodeType().equals(JsonNodeType.OBJECT)) {
 			throw new IOException("File is no valid JSON config.");
 		}
-		config = (ObjectNode) node;
+		parameterizedTexts.clear();
+		config = (ObjectNode) replaceParams(node, params);
+	}
+
+	/**
+	 * @return the node with all wildcards replaced within its string values.
+	 */
+	private JsonNode replaceParams(JsonNode node, String[] params) {
+		if (node.isTextual()) {
+			String text = node.asText();
+			for (int i = 0; i < params.length; i++) {
+				text = text.replace("<$param" + i + ">", params[i]);
+			}
+			if (text.equals(node.asText())) 
+				return node;
+			// parameters usually differ with each run, so their resources are not cached
+			if (!text.isEmpty()) 
+				parameterizedTexts.add(text);
+			return TextNode.valueOf(text);
+		}
+		if (node.isArray()) {
+			for (int i = 0; i < node.size(); i++) 
+				((ArrayNode) node).set(i, replaceParams(node.get(i), params));
+		} else if (node.isObject()) {
+			List<String> names = new ArrayList<String>();
+			node.fieldNames().forEachRemaining(names::add);
+			for (String name:names) 
+				((ObjectNode) node).set(name, replaceParams(node.get(name), params));
+		}
+		return node;
 	}
 
 	
@@ -151,20 +281,194 @@ public class FintanManager {
 		else
 			componentStack.clear();
 		
+		//METRICS must be available before the streams are built
+		metrics = null;
+		if (config.hasNonNull("metrics"))
+			metrics = buildMetrics(config.get("metrics"));
+		
+		//CHECKPOINT must be available before the streams are built
+		checkpoint = null;
+		if (config.hasNonNull("checkpoint")) {
+			int interval = FintanCheckpoint.DEFAULT_INTERVAL;
+			if (config.hasNonNull("checkpointInterval")) 
+				interval = config.get("checkpointInterval").asInt();
+			requireOrderedOutput();
+			checkpoint = new FintanCheckpoint(new File(config.get("checkpoint").asText()), interval, resume);
+		}
+		
+		//SCHEDULER with the CPU budget of the pipeline
+		int cpuBudget = 0;
+		if (config.hasNonNull("cpuBudget")) {
+			cpuBudget = config.get("cpuBudget").asInt();
+			if (cpuBudget <= 0) 
+				throw new IOException("'cpuBudget' must be a positive number.");
+		}
+		if (parentScheduler != null) {
+			if (cpuBudget > 0) 
+				LOG.info("'cpuBudget' of the pipeline is ignored in favor of the budget shared by all jobs.");
+			scheduler = new FintanScheduler(parentScheduler);
+		} else {
+			scheduler = new FintanScheduler(cpuBudget);
+		}
+		scheduler.setFailureHandler(this::abort);
+		synchronized (this) {
+			failure = null;
+		}
+		
+		modelInputs.clear();
+		modelOutputs.clear();
+		modelStreams.clear();
+		bytePipes.clear();
 
-		//BUILD DEFAULT "PIPELINE" including default I/O
+		//BUILD DEFAULT "PIPELINE"
+		List<FintanStreamComponent<?, ?>> pipeline = new ArrayList<FintanStreamComponent<?, ?>>();
 		if (config.hasNonNull("pipeline"))
-			buildDefaultPipeline();
+			pipeline = buildDefaultPipeline();
 		
 		//BUILD ALL OTHER COMPONENTS
 		if (config.hasNonNull("components"))
 			buildOtherComponents();
 		
-		//INTERLINK COMPONENTS as defined in "streams"
+		JsonNode streams = null;
 		if (config.hasNonNull("streams"))
-			buildStreams();
+			streams = config.get("streams");
+		
+		//FUSE serialize-parse pairs, unless disabled
+		if (!config.hasNonNull("fuseLinks") || config.get("fuseLinks").asBoolean())
+			streams = fuseLinks(pipeline, streams);
+		
+		//INTERLINK DEFAULT "PIPELINE" including default I/O
+		if (!pipeline.isEmpty())
+			connectDefaultPipeline(pipeline);
+		
+		//INTERLINK COMPONENTS as defined in "streams"
+		if (streams != null)
+			buildStreams(streams);
 		
 		validateLinkState();
+		
+		for (FintanStreamComponent<?, ?> component:componentStack.values()) 
+			component.setScheduler(scheduler);
+		
+		if (metrics != null) {
+			for (FintanStreamComponent<?, ?> component:componentStack.values()) {
+				component.setMetrics(metrics);
+				metrics.registerComponent(component.getInstanceName(), component.getClass().getSimpleName());
+			}
+		}
+		
+		firstOutput.set(false);
+		reportStartup("pipelineBuilt");
+	}
+	
+	/**
+	 * Logs the time since startTime, and records it as startup metric if enabled.
+	 */
+	private void reportStartup(String phase) {
+		long millis = System.currentTimeMillis() - startTime;
+		LOG.info("Startup phase '"+phase+"' reached after "+millis+" ms.");
+		if (metrics != null) 
+			metrics.recordStartup(phase, millis / 1000.0);
+	}
+	
+	/**
+	 * Reference time for the startup report (time to first output). 
+	 * Default: start of the JVM.
+	 * @param startTime in milliseconds, as System.currentTimeMillis()
+	 */
+	public void setStartTime(long startTime) {
+		this.startTime = startTime;
+	}
+	
+	/**
+	 * Marks the pipeline as a job of a FintanServer. The id is added to the 
+	 * metrics, and `httpPort` is ignored, since the server exposes the metrics 
+	 * of all jobs itself. Must be set before buildComponentStack().
+	 */
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+	
+	/**
+	 * @return the metrics of the pipeline, null if disabled or not built yet.
+	 */
+	public FintanMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Reads the optional `metrics` configuration:
+	 * 
+	 * `jmx` register MBeans in the platform MBeanServer. Default: true
+	 * 
+	 * `httpPort` port of a local HTTP server exposing the metrics in Prometheus text format 
+	 * 		under /metrics and as JSON under /metrics.json. 0 for any free port. Default: no server.
+	 * 		Ignored for jobs of a FintanServer.
+	 * 
+	 * `dumpFile` path of a JSON file which is periodically rewritten. Default: none
+	 * 
+	 * `dumpInterval` interval between JSON dumps in seconds. Default: 10
+	 * 
+	 * Instead of an object, `true` enables metrics with default settings.
+	 * 
+	 * @param conf
+	 * @return FintanMetrics, null if disabled.
+	 * @throws IOException if a parameter is invalid
+	 */
+	private FintanMetrics buildMetrics(JsonNode conf) throws IOException {
+		if (conf.isBoolean() && !conf.asBoolean()) 
+			return null;
+		if (!conf.isBoolean() && !conf.isObject()) 
+			throw new IOException("'metrics' must be an object node or boolean.");
+		FintanMetrics metrics = new FintanMetrics();
+		metrics.setJob(jobId);
+		if (conf.isBoolean()) 
+			return metrics;
+		if (conf.hasNonNull("jmx")) 
+			metrics.setJmx(conf.get("jmx").asBoolean());
+		if (conf.hasNonNull("httpPort")) {
+			if (jobId == null) 
+				metrics.setHttpPort(conf.get("httpPort").asInt());
+			else
+				LOG.debug("'httpPort' of metrics is ignored in server mode.");
+		}
+		if (conf.hasNonNull("dumpFile")) 
+			metrics.setDumpFile(conf.get("dumpFile").asText());
+		if (conf.hasNonNull("dumpInterval")) {
+			if (conf.get("dumpInterval").asInt() <= 0)
+				throw new IOException("'dumpInterval' of metrics must be a positive number.");
+			metrics.setDumpInterval(conf.get("dumpInterval").asInt());
+		}
+		return metrics;
+	}
+	
+	/**
+	 * Wraps a pipeline input stream for metrics, if enabled.
+	 * The target of the link can be set later by setLinkTarget().
+	 */
+	private InputStream meterInput(InputStream in, String source, String target, String targetGraph) {
+		if (metrics == null || in == null) return in;
+		LinkMetrics link = metrics.registerLink(source, "", target, targetGraph == null ? "" : targetGraph, LinkMetrics.TYPE_BYTES);
+		return new MeteredInputStream(in, link, true);
+	}
+	
+	/**
+	 * Wraps a pipeline output stream for metrics, if enabled.
+	 */
+	private OutputStream meterOutput(OutputStream out, String source, String sourceGraph, String target) {
+		if (metrics == null || out == null) return out;
+		LinkMetrics link = metrics.registerLink(source, sourceGraph == null ? "" : sourceGraph, target, "", LinkMetrics.TYPE_BYTES);
+		return new MeteredOutputStream(out, link);
+	}
+	
+	/**
+	 * Sets the target of a metered stream, in case it has been unknown on creation.
+	 */
+	private void setLinkTarget(Object stream, String target) {
+		if (stream instanceof MeteredModelStream) 
+			((MeteredModelStream) stream).getMetrics().setTarget(target, "");
+		if (stream instanceof MeteredInputStream) 
+			((MeteredInputStream) stream).getMetrics().setTarget(target, "");
 	}
 	
 
@@ -215,23 +519,13 @@ public class FintanManager {
 	}
 
 	/**
-	 * Builds componentStack which is interlinked by default streams.
-	 * Also uses the default "input" and "output" streams as defined in the config.
-	 * @throws IOException if streams cannot be parsed
+	 * Builds the components of the default pipeline and adds them to the componentStack.
+	 * They are interlinked by connectDefaultPipeline().
+	 * @return the components in pipeline order
+	 * @throws IOException if the pipeline cannot be parsed
 	 */
-	private void buildDefaultPipeline() throws IOException {
-		//read default input parameter, can be null in case it is defined in "streams"
-		InputStream defaultInput = null;
-		if (config.hasNonNull("input"))
-			defaultInput = IOUtils.parseConfEntryAsInputStream(config.get("input").asText());
-
-		//read default output parameter, can be null in case it is defined in "streams"
-		OutputStream defaultOutput = null;
-		if (config.hasNonNull("output"))
-			defaultOutput = IOUtils.parseConfEntryAsOutputStream(config.get("output").asText());
-
-		// First inputStream is always main input
-		Object nextInput = defaultInput;
+	private List<FintanStreamComponent<?, ?>> buildDefaultPipeline() throws IOException {
+		List<FintanStreamComponent<?, ?>> pipeline = new ArrayList<FintanStreamComponent<?, ?>>();
 		// Traverse pipeline array	
 		for (JsonNode pipelineElement:config.withArray("pipeline")) {
 			if (!pipelineElement.getNodeType().equals(JsonNodeType.OBJECT)) {
@@ -251,20 +545,51 @@ public class FintanManager {
 			component.setInstanceName(identifier);
 			
 			componentStack.put(identifier, component);
+			pipeline.add(component);
+		}
+		return pipeline;
+	}
+
+	/**
+	 * Interlinks the components of the default pipeline by default streams.
+	 * Also uses the default "input" and "output" streams as defined in the config.
+	 * @param pipeline the components in pipeline order
+	 * @throws IOException if streams cannot be parsed
+	 */
+	private void connectDefaultPipeline(List<FintanStreamComponent<?, ?>> pipeline) throws IOException {
+		//read default input parameter, can be null in case it is defined in "streams"
+		InputStream defaultInput = null;
+		if (config.hasNonNull("input"))
+			defaultInput = meterInput(parseInput(config.get("input").asText()), 
+					config.get("input").asText(), null, null);
+
+		//read default output parameter, can be null in case it is defined in "streams"
+		OutputStream defaultOutput = null;
+		if (config.hasNonNull("output"))
+			defaultOutput = parseDestination(pipeline.get(pipeline.size() - 1), null, config.get("output").asText());
+
+		// First inputStream is always main input
+		Object nextInput = defaultInput;
+		for (int i = 0; i < pipeline.size(); i++) {
+			FintanStreamComponent component = pipeline.get(i);
+			String identifier = component.getInstanceName();
 
-			
 			// Define Pipeline I/O
 			// always use previously defined input... first main input, later piped input
 			// currently late binding. Will terminate if streams are incompatible.
-			if (nextInput != null)
-				component.setInputStream(nextInput);
+			if (nextInput != null) {
+				setInputStream(component, nextInput, null);
+				setLinkTarget(nextInput, identifier);
+			}
+			if (i == 0 && defaultInput != null) 
+				checkpointLoader(component, null);
 			
-			if (componentStack.size() == config.withArray("pipeline").size()) {
+			if (i == pipeline.size() - 1) {
 				// last component, final output
 				if (defaultOutput != null)
-					component.setOutputStream(defaultOutput);
+					component.setOutputStream(meterOutput(defaultOutput, identifier, null, config.get("output").asText()));
 			} else {
-				nextInput = connectComponents(component, null, null, null);
+				nextInput = connectComponents(component, null, null, null, null);
 			}
 		}
 	}
@@ -300,10 +625,14 @@ public class FintanManager {
 	 * 1. sourceOutputStream to destinationInputStream
 	 * 2. sourceOutputStream to destinationFile
 	 * 3. sourceFile to destinationInputStream
+	 * @param streams the "streams" array of the config
 	 * @throws IOException
 	 */
-	private void buildStreams() throws IOException {
-		for (JsonNode node:config.withArray("streams")) {
+	private void buildStreams(JsonNode streams) throws IOException {
+		if (!streams.isArray()) {
+			throw new IOException("'streams' must be an array.");
+		}
+		for (JsonNode node:streams) {
 			
 			//basic validation
 			if (!node.getNodeType().equals(JsonNodeType.OBJECT)) {
@@ -328,7 +657,7 @@ public class FintanManager {
 			OutputStream outputStream = null;
 			
 			if (node.hasNonNull("readsFromSource")) {
-				inputStream = IOUtils.parseConfEntryAsInputStream(node.get("readsFromSource").asText());
+				inputStream = parseInput(node.get("readsFromSource").asText());
 			}
 			
 			if (node.hasNonNull("readsFromInstance")) {
@@ -343,7 +672,7 @@ public class FintanManager {
 			}
 			
 			if (node.hasNonNull("writesToDestination")) {
-				outputStream = IOUtils.parseConfEntryAsOutputStream(node.get("writesToDestination").asText());
+				outputStream = parseDestination(sourceComp, sourceGraph, node.get("writesToDestination").asText());
 			}
 			if (node.hasNonNull("writesToInstance")) {
 				destComp = componentStack.get(node.get("writesToInstance").asText());
@@ -357,17 +686,372 @@ public class FintanManager {
 			}
 			
 			if (inputStream != null) {
-				destComp.setInputStream(inputStream, destGraph);
+				checkpointLoader(destComp, destGraph);
+				destComp.setInputStream(meterInput(inputStream, node.get("readsFromSource").asText(), 
+						destComp.getInstanceName(), destGraph), destGraph);
 			} else if (outputStream != null) {
-				sourceComp.setOutputStream(outputStream, sourceGraph);
+				sourceComp.setOutputStream(meterOutput(outputStream, sourceComp.getInstanceName(), 
+						sourceGraph, node.get("writesToDestination").asText()), sourceGraph);
 			} else {
-				connectComponents(sourceComp, sourceGraph, destComp, destGraph);
+				connectComponents(sourceComp, sourceGraph, destComp, destGraph, node);
 			}
 		}
 		
 	}
 	
 
+	/**
+	 * A link between two components, or a component and a file, as defined 
+	 * in the default pipeline or the "streams". Only used by fuseLinks().
+	 */
+	private static class Link {
+		// null for files
+		private final FintanStreamComponent<?, ?> source;
+		private final String sourceGraph;
+		private final FintanStreamComponent<?, ?> dest;
+		private final String destGraph;
+		// element of "streams", null for the default pipeline
+		private final JsonNode conf;
+
+		private Link(FintanStreamComponent<?, ?> source, String sourceGraph, FintanStreamComponent<?, ?> dest, String destGraph, JsonNode conf) {
+			this.source = source;
+			this.sourceGraph = (sourceGraph == null) ? FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME : sourceGraph;
+			this.dest = dest;
+			this.destGraph = (destGraph == null) ? FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME : destGraph;
+			this.conf = conf;
+		}
+	}
+
+	/**
+	 * Removes pairs of components which serialize segmented RDF and immediately 
+	 * parse it again, and links their neighbours by a FintanStreamHandler instead:
+	 * 
+	 * 1. RDFStreamWriter followed by RDFStreamLoader: both are removed.
+	 * 	The delimiter must be the same and the loader must split the stream. 
+	 * 	Since the Turtle writer separates subjects by empty lines, the delimiter must not be blank. 
+	 * 	Both must use the same RDF syntax. The writer must not have customPrefixes.
+	 * 
+	 * 2. RDFStreamWriter followed by a FintanModelIO supporting model input: 
+	 * 	the writer is removed. The writer must write plain Turtle, 
+	 * 	without delimiter (or with an empty line), customPrefixes or prefixDeduplication.
+	 * 
+	 * 3. FintanModelIO supporting model output followed by RDFStreamLoader: 
+	 * 	the loader is removed. The loader must split Turtle by the same 
+	 * 	delimiter as configured for the FintanModelIO.
+	 * 
+	 * Only pairs linked by their default streams are fused, and only if neither 
+	 * of the removed components has any other stream.
+	 * The new link uses the configuration of the replaced segmented RDF stream. 
+	 * 
+	 * @param pipeline the components of the default pipeline. Fused components are removed.
+	 * @param streams the "streams" array of the config, may be null.
+	 * @return the "streams" array including the new links.
+	 */
+	private JsonNode fuseLinks(List<FintanStreamComponent<?, ?>> pipeline, JsonNode streams) {
+		List<Link> links = new ArrayList<Link>();
+		if (!pipeline.isEmpty()) {
+			if (config.hasNonNull("input")) 
+				links.add(new Link(null, null, pipeline.get(0), null, null));
+			for (int i = 0; i < pipeline.size() - 1; i++) 
+				links.add(new Link(pipeline.get(i), null, pipeline.get(i+1), null, null));
+			if (config.hasNonNull("output")) 
+				links.add(new Link(pipeline.get(pipeline.size() - 1), null, null, null, null));
+		}
+		if (streams != null) {
+			if (!streams.isArray()) return streams;
+			for (JsonNode node:streams) {
+				// invalid streams are reported by buildStreams()
+				if (!node.isObject()) return streams;
+				links.add(new Link(
+						node.hasNonNull("readsFromInstance") ? componentStack.get(node.get("readsFromInstance").asText()) : null,
+						node.hasNonNull("readsFromInstanceGraph") ? node.get("readsFromInstanceGraph").asText() : null,
+						node.hasNonNull("writesToInstance") ? componentStack.get(node.get("writesToInstance").asText()) : null,
+						node.hasNonNull("writesToInstanceGraph") ? node.get("writesToInstanceGraph").asText() : null,
+						node));
+			}
+		}
+
+		boolean fused = false;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (FintanStreamComponent<?, ?> comp:componentStack.values().toArray(new FintanStreamComponent<?, ?>[0])) {
+				if (!(comp instanceof RDFStreamWriter || comp instanceof RDFStreamLoader)) 
+					continue;
+				Link in = singleLink(links, comp, true);
+				Link out = singleLink(links, comp, false);
+				if (in == null || out == null) 
+					continue;
+
+				if (comp instanceof RDFStreamWriter && out.dest instanceof RDFStreamLoader) {
+					Link loaderOut = singleLink(links, out.dest, false);
+					if (singleLink(links, out.dest, true) != out || loaderOut == null 
+							|| !canFuse((RDFStreamWriter) comp, (RDFStreamLoader) out.dest)) 
+						continue;
+					links.remove(loaderOut);
+					links.add(fuseLink(in, loaderOut, in));
+					removeComponent(out.dest, pipeline);
+					LOG.info("Fused link: "+comp.getInstanceName()+" -> "+out.dest.getInstanceName());
+				} else if (comp instanceof RDFStreamWriter && out.dest instanceof FintanModelIO) {
+					if (singleLink(links, out.dest, true) != out || !((FintanModelIO) out.dest).supportsModelInput() 
+							|| !canFuse((RDFStreamWriter) comp)) 
+						continue;
+					links.add(fuseLink(in, out, in));
+					modelInputs.add(out.dest);
+					LOG.info("Fused link: "+comp.getInstanceName()+" -> "+out.dest.getInstanceName()+" reads segmented RDF.");
+				} else if (comp instanceof RDFStreamLoader && in.source instanceof FintanModelIO) {
+					if (singleLink(links, in.source, false) != in || !((FintanModelIO) in.source).supportsModelOutput() 
+							|| !canFuse(in.source, (RDFStreamLoader) comp)) 
+						continue;
+					links.add(fuseLink(in, out, out));
+					modelOutputs.add(in.source);
+					LOG.info("Fused link: "+in.source.getInstanceName()+" writes segmented RDF -> "+comp.getInstanceName());
+				} else {
+					continue;
+				}
+				links.remove(in);
+				links.remove(out);
+				removeComponent(comp, pipeline);
+				changed = true;
+				fused = true;
+			}
+		}
+		if (!fused) 
+			return streams;
+
+		ArrayNode result = new ObjectMapper().createArrayNode();
+		for (Link link:links) {
+			if (link.conf != null) 
+				result.add(link.conf);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the only link from or to the default stream of the component, 
+	 * 		if it connects another component. Otherwise null.
+	 */
+	private static Link singleLink(List<Link> links, FintanStreamComponent<?, ?> component, boolean incoming) {
+		Link result = null;
+		for (Link link:links) {
+			if ((incoming ? link.dest : link.source) != component) 
+				continue;
+			if (result != null) 
+				return null;
+			result = link;
+		}
+		if (result == null) 
+			return null;
+		if (incoming && (result.source == null || !FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME.equals(result.destGraph))) 
+			return null;
+		if (!incoming && (result.dest == null || !FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME.equals(result.sourceGraph))) 
+			return null;
+		return result;
+	}
+
+	/**
+	 * Creates the link replacing in and out, and all components in between.
+	 * @param streamLink the link whose stream config is used
+	 */
+	private static Link fuseLink(Link in, Link out, Link streamLink) {
+		// only links within the default pipeline remain implicit
+		if (in.conf == null && out.conf == null) 
+			return new Link(in.source, in.sourceGraph, out.dest, out.destGraph, null);
+		JsonNode conf = (streamLink.conf != null) ? streamLink.conf : (in.conf != null) ? in.conf : out.conf;
+		ObjectNode node = ((ObjectNode) conf).deepCopy();
+		node.remove("readsFromInstanceGraph");
+		node.remove("writesToInstanceGraph");
+		node.put("readsFromInstance", in.source.getInstanceName());
+		if (!FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME.equals(in.sourceGraph)) 
+			node.put("readsFromInstanceGraph", in.sourceGraph);
+		node.put("writesToInstance", out.dest.getInstanceName());
+		if (!FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME.equals(out.destGraph)) 
+			node.put("writesToInstanceGraph", out.destGraph);
+		return new Link(in.source, in.sourceGraph, out.dest, out.destGraph, node);
+	}
+
+	private void removeComponent(FintanStreamComponent<?, ?> component, List<FintanStreamComponent<?, ?>> pipeline) {
+		componentStack.remove(component.getInstanceName());
+		pipeline.remove(component);
+	}
+
+	/**
+	 * @return true, if the loader parses the segments exactly as written by the writer.
+	 */
+	private static boolean canFuse(RDFStreamWriter writer, RDFStreamLoader loader) {
+		// RDF Thrift frames delimit the segments themselves.
+		if (ThriftSegmentWriter.isThriftLang(writer.getLang()) && ThriftSegmentWriter.isThriftLang(loader.getLang()))
+			return writer.getCustomPrefixes().isEmpty();
+		return writer.getCustomPrefixes().isEmpty()
+				&& writer.getSegmentDelimiter() != null
+				&& !writer.getSegmentDelimiter().trim().isEmpty()
+				&& loader.isSplit()
+				&& writer.getSegmentDelimiter().equals(loader.getSegmentDelimiter())
+				&& sameLang(writer.getLang(), loader.getLang());
+	}
+
+	/**
+	 * @return true, if the writer produces plain Turtle with one segment per Model.
+	 */
+	private static boolean canFuse(RDFStreamWriter writer) {
+		return writer.getCustomPrefixes().isEmpty()
+				&& !writer.isPrefixDeduplication()
+				&& (writer.getSegmentDelimiter() == null || writer.getSegmentDelimiter().isEmpty())
+				&& sameLang(writer.getLang(), "TTL");
+	}
+
+	/**
+	 * @return true, if the loader splits Turtle at the delimiter configured for the component.
+	 */
+	private static boolean canFuse(FintanStreamComponent<?, ?> component, RDFStreamLoader loader) {
+		return component.getConfig() != null
+				&& component.getConfig().hasNonNull("delimiter")
+				&& loader.isSplit()
+				&& component.getConfig().get("delimiter").asText().equals(loader.getSegmentDelimiter())
+				&& sameLang(loader.getLang(), "TTL");
+	}
+
+	private static boolean sameLang(String lang1, String lang2) {
+		Lang l1 = RDFLanguages.nameToLang(lang1);
+		Lang l2 = RDFLanguages.nameToLang(lang2);
+		return l1 != null && l2 != null && RDFLanguages.sameLang(l1, l2);
+	}
+	
+
+	/**
+	 * Same as IOUtils.parseConfEntryAsInputStream, but "System.in" denotes the 
+	 * input of the job, if set by setStandardStreams().
+	 */
+	private InputStream parseInput(String confEntry) throws IOException {
+		if (standardInput == null || !confEntry.equals("System.in")) 
+			return IOUtils.parseConfEntryAsInputStream(confEntry);
+		if (standardInputOccupied) 
+			throw new IOException("System.in can only be defined as input for one Instance");
+		standardInputOccupied = true;
+		return standardInput;
+	}
+
+	/**
+	 * Same as IOUtils.parseConfEntryAsOutputStream, but "System.out" denotes the 
+	 * output of the job, if set by setStandardStreams().
+	 */
+	private OutputStream parseOutput(String confEntry) throws IOException {
+		if (standardOutput == null || !confEntry.equals("System.out")) 
+			return IOUtils.parseConfEntryAsOutputStream(confEntry);
+		if (standardOutputOccupied) 
+			throw new IOException("System.out can only be defined as output for one Instance");
+		standardOutputOccupied = true;
+		return standardOutput;
+	}
+
+	/**
+	 * Same as parseOutput, but registers the writing component with the 
+	 * checkpoint, if any, so the destination is appended on resume. 
+	 * The first write to any destination is reported as end of the startup.
+	 */
+	private OutputStream parseDestination(FintanStreamComponent<?, ?> component, String graph, String confEntry) throws IOException {
+		OutputStream out;
+		if (checkpoint == null || component == null) {
+			out = parseOutput(confEntry);
+		} else {
+			requireCheckpointSupport(component, graph);
+			component.setCheckpoint(checkpoint);
+			if (confEntry.equals("System.out")) {
+				checkpoint.registerWriter(component.getInstanceName());
+				out = parseOutput(confEntry);
+			} else {
+				out = checkpoint.openDestination(component.getInstanceName(), confEntry);
+			}
+		}
+		// the first segment of any destination completes the startup
+		return new FirstWriteOutputStream(out, () -> {
+			if (firstOutput.compareAndSet(false, true)) 
+				reportStartup("firstOutput");
+		});
+	}
+
+	/**
+	 * Provides the checkpoint, if any, to a component reading from a source.
+	 */
+	private void checkpointLoader(FintanStreamComponent<?, ?> component, String graph) throws IOException {
+		if (checkpoint == null) 
+			return;
+		requireCheckpointSupport(component, graph);
+		component.setCheckpoint(checkpoint);
+	}
+
+	private static void requireCheckpointSupport(FintanStreamComponent<?, ?> component, String graph) throws IOException {
+		if (!component.supportsCheckpoint()) 
+			throw new IOException("'checkpoint' is not supported by "+component.getClass().getSimpleName()
+					+" '"+component.getInstanceName()+"' reading from a source or writing to a destination.");
+		if (graph != null && !graph.equals(FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME)) 
+			throw new IOException("'checkpoint' only supports default streams for sources and destinations: '"
+					+component.getInstanceName()+"' uses '"+graph+"'.");
+	}
+
+	/**
+	 * Checkpoints count the segments in input order. Components with 
+	 * `"ordered" : false` would let a writer commit segments while preceding 
+	 * ones are still in process, so these are rejected instead of resuming 
+	 * with a gap in the output.
+	 */
+	private void requireOrderedOutput() throws IOException {
+		for (String key:new String[] {"pipeline", "components"}) {
+			if (!config.hasNonNull(key)) 
+				continue;
+			for (JsonNode conf:config.get(key)) {
+				if (conf.hasNonNull("ordered") && !conf.get("ordered").asBoolean(true)) 
+					throw new IOException("'checkpoint' requires ordered output: '"
+							+conf.path("componentInstance").asText(conf.path("class").asText())
+							+"' sets 'ordered' to false.");
+			}
+		}
+	}
+
+	/**
+	 * Continue from the checkpoint of a previous run, if the config defines 
+	 * a `checkpoint`. Must be set before buildComponentStack().
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * Replace System.in and System.out of the pipeline, e.g. by the streams 
+	 * of a single job in server mode. Must be set before buildComponentStack().
+	 */
+	public void setStandardStreams(InputStream in, OutputStream out) {
+		standardInput = in;
+		standardOutput = out;
+		standardInputOccupied = false;
+		standardOutputOccupied = false;
+	}
+
+	/**
+	 * Share the CPU budget of a scheduler, e.g. with all jobs in server mode.
+	 * Overrides `cpuBudget` of the config. Must be set before buildComponentStack().
+	 */
+	public void setParentScheduler(FintanScheduler parentScheduler) {
+		this.parentScheduler = parentScheduler;
+	}
+
+	/**
+	 * Instantiates all components of the config without connecting any streams 
+	 * and discards them afterwards, e.g. to fill the FintanCache in advance.
+	 * @throws IOException
+	 */
+	public void buildComponents() throws IOException {
+		if (!validateConfig()) {
+			throw new IOException("File is no valid JSON config.");
+		}
+		componentStack = new HashMap<String, FintanStreamComponent>();
+		if (config.hasNonNull("pipeline"))
+			buildDefaultPipeline();
+		if (config.hasNonNull("components"))
+			buildOtherComponents();
+		componentStack.clear();
+	}
+
 	/**
 	 * Checks whether all components are linked to at least one Input and one Output stream.
 	 * @throws IOException
@@ -376,10 +1060,10 @@ public class FintanManager {
 		// TODO possibly check for deadlocks using Fintan Ontology.
 		for (String key:componentStack.keySet()) {
 			FintanStreamComponent component = componentStack.get(key);
-			if (component.listInputStreamNames().length <=0)
+			if (component.listInputStreamNames().length <=0 && !modelInputs.contains(component))
 				throw new IOException("Component has no valid InputStream: "+key);
 
-			if (component.listOutputStreamNames().length <=0)
+			if (component.listOutputStreamNames().length <=0 && !modelOutputs.contains(component))
 				throw new IOException("Component has no valid OutputStream: "+key);
 		}
 	}
@@ -390,66 +1074,65 @@ public class FintanManager {
 	 * The conf Object node needs to denote a class which implements 
 	 * the FintanStreamComponentFactory interface. 
 	 * (In some cases, this may be the same class as the resulting StreamComponent.)
+	 * Factories are looked up in the FintanComponentRegistry first, 
+	 * other classes are loaded by name.
 	 * @param conf
 	 * @return
+	 * @throws IOException if the class cannot be found or the component cannot be built.
+	 */
+	private FintanStreamComponent buildComponent(ObjectNode conf) throws IOException {
+		String className = conf.get("class").asText();
+		try {
+			FintanStreamComponentFactory factory = FintanComponentRegistry.getDefault().getFactory(className);
+			if (factory == null) {
+				LOG.trace("Component "+className+" is not registered. Trying to load it by class name.");
+				factory = findFactory(className);
+			}
+			if (factory == null) {
+				throw new IOException("Class not found in any default package: "+className+". Please provide the fully qualified name.");
+			}
+			FintanStreamComponent component;
+			FintanCache.setParameterized(parameterizedTexts);
+			try {
+				component = factory.buildFromJsonConf(conf);
+			} finally {
+				FintanCache.setParameterized(null);
+			}
+			component.setConfig(conf);
+			component.setCheckpointed(checkpoint != null);
+			return component;
+		} catch (IllegalArgumentException | ReflectiveOperationException | SecurityException | ParseException e) {
+			throw new IOException("Component "+className+" could not be built: "+e, e);
+		}
+	}
+
+	/**
+	 * Fallback for components which are not declared in the FintanComponentRegistry.
+	 * Loads the class by its fully qualified name or from one of the DEFAULT_PACKAGES.
+	 * If it is no FintanStreamComponentFactory itself, <Class>Factory is used.
+	 * @return new factory instance, null if the class cannot be found.
 	 */
-	private FintanStreamComponent buildComponent(ObjectNode conf) {
-		Class targetClass = null;
+	private static FintanStreamComponentFactory findFactory(String className) throws ReflectiveOperationException {
+		Class<?> targetClass = null;
 		try {
-			targetClass = Class.forName(conf.get("class").asText());
+			targetClass = Class.forName(className);
 		} catch (ClassNotFoundException e) {
-			LOG.trace("Class not found: "+conf.get("class")+". Trying default packages.");
+			LOG.trace("Class not found: "+className+". Trying default packages.");
 			for (String pkg:DEFAULT_PACKAGES) {
-//			for (Package pkg:Package.getPackages()) {
 				try {
-					targetClass = Class.forName(pkg+"."+conf.get("class").asText());
+					targetClass = Class.forName(pkg+"."+className);
 					LOG.trace("Class loaded successfully: " + targetClass.getName());
 					break;
 				} catch (ClassNotFoundException e1) {
-					LOG.trace("Class "+conf.get("class")+" not in package "+pkg);
+					LOG.trace("Class "+className+" not in package "+pkg);
 				}
 			}
 		}
-		if (targetClass==null) {
-			LOG.error("Class not found in any default package: "+conf.get("class")+". Please provide the fully qualified name.");
-			System.exit(1);
-		}
-		FintanStreamComponent component = null;
-		try {
-			try {
-				component = ((FintanStreamComponentFactory) targetClass.getDeclaredConstructor().newInstance()).buildFromJsonConf(conf);
-			} catch (ClassCastException e) {
-				targetClass = Class.forName(targetClass.getCanonicalName()+"Factory");
-				component = ((FintanStreamComponentFactory) targetClass.getDeclaredConstructor().newInstance()).buildFromJsonConf(conf);
-			}
-			component.setConfig(conf);
-			return component;
-		} catch (IllegalArgumentException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (IOException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (InvocationTargetException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (NoSuchMethodException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (SecurityException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (InstantiationException | IllegalAccessException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (ParseException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		} catch (ClassNotFoundException e) {
-			LOG.error(e, e);
-			System.exit(1);
-		}
-		return null;
+		if (targetClass == null) 
+			return null;
+		if (!FintanStreamComponentFactory.class.isAssignableFrom(targetClass)) 
+			targetClass = Class.forName(targetClass.getName()+"Factory");
+		return (FintanStreamComponentFactory) targetClass.getDeclaredConstructor().newInstance();
 	}
 	
 	/**
@@ -465,11 +1148,13 @@ public class FintanManager {
 	 * @param destGraph
 	 *  the stream/graph slot of the destination Component for which the InputStream is to be defined. 
 	 *  If null, then DefaultGraph
+	 * @param streamConf
+	 *  the configuration of the stream in the 'streams' array. If null, default settings are used.
 	 * @return the InputStream which can be connected to the next component. If it has already been connected successfully: null
 	 * @throws IOException
 	 * 	for various reasons. Esp. if slots of the Components are already occupied.
 	 */
-	private Object connectComponents(FintanStreamComponent sourceComp, String sourceGraph, FintanStreamComponent destComp, String destGraph) throws IOException {
+	private Object connectComponents(FintanStreamComponent sourceComp, String sourceGraph, FintanStreamComponent destComp, String destGraph, JsonNode streamConf) throws IOException {
 		if (sourceGraph == null) sourceGraph = FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME;
 		if (destGraph == null) destGraph = FintanStreamComponent.FINTAN_DEFAULT_STREAM_NAME;
 		if (sourceComp.getOutputStream(sourceGraph) != null) {
@@ -484,30 +1169,35 @@ public class FintanManager {
 		
 		Object nextInput = null;
 		try {
-		if (sourceComp instanceof StreamLoader) {
-			// Loader uses FintanStream as Output
-			FintanStreamHandler compOutput = new FintanStreamHandler();
-			sourceComp.setOutputStream(compOutput, sourceGraph);
-			nextInput = compOutput;
-		} else if (sourceComp instanceof StreamRdfUpdater) {
-			// Updater uses FintanStream as Output
-			FintanStreamHandler compOutput = new FintanStreamHandler();
-			sourceComp.setOutputStream(compOutput, sourceGraph);
+		if (sourceComp instanceof StreamLoader || sourceComp instanceof StreamRdfUpdater || modelOutputs.contains(sourceComp)) {
+			// Loader and Updater use FintanStream as Output
+			FintanOutputStream<Model> compOutput = createStreamHandler(streamConf);
+			modelStreams.add(compOutput);
+			if (metrics != null) 
+				compOutput = meterModelStream(compOutput, sourceComp, sourceGraph, destComp, destGraph);
+			if (modelOutputs.contains(sourceComp))
+				((FintanModelIO) sourceComp).setModelOutputStream(compOutput);
+			else
+				sourceComp.setOutputStream(compOutput, sourceGraph);
 			nextInput = compOutput;
-		} else if (sourceComp instanceof StreamTransformerGenericIO) {
-			// GenericIO uses java OutputStreams
-			PipedOutputStream compOutput = new PipedOutputStream();
-			sourceComp.setOutputStream(compOutput, sourceGraph);
-			nextInput = new PipedInputStream(compOutput);
-		} else if (sourceComp instanceof StreamWriter) {
-			// GenericIO uses java OutputStreams
-			PipedOutputStream compOutput = new PipedOutputStream();
+		} else if (sourceComp instanceof StreamTransformerGenericIO || sourceComp instanceof StreamWriter) {
+			// GenericIO and Writer use java OutputStreams
+			FintanBytePipe pipe = createBytePipe(streamConf);
+			bytePipes.add(pipe);
+			OutputStream compOutput = pipe.getOutputStream();
+			nextInput = pipe.getInputStream();
+			if (metrics != null) {
+				LinkMetrics link = metrics.registerLink(sourceComp.getInstanceName(), sourceGraph, 
+						destComp == null ? null : destComp.getInstanceName(), destGraph, LinkMetrics.TYPE_BYTES);
+				link.setQueueDepth(() -> pipe.available());
+				compOutput = new MeteredOutputStream(compOutput, link);
+				nextInput = new MeteredInputStream((InputStream) nextInput, link, false);
+			}
 			sourceComp.setOutputStream(compOutput, sourceGraph);
-			nextInput = new PipedInputStream(compOutput);
 		}
 		
 		if (destComp != null && nextInput != null) {
-			destComp.setInputStream(nextInput, destGraph);
+			setInputStream(destComp, nextInput, destGraph);
 			return null;
 		}
 		} catch (ClassCastException e) {
@@ -518,20 +1208,210 @@ public class FintanManager {
 	}
 
 	/**
-	 * Start pipeline execution. Each component is run in a separate thread.
+	 * Sets the InputStream of a component. Components in modelInputs 
+	 * receive segmented RDF streams in place of their default InputStream.
+	 */
+	@SuppressWarnings("unchecked")
+	private void setInputStream(FintanStreamComponent component, Object inputStream, String graph) throws IOException {
+		if (modelInputs.contains(component) && inputStream instanceof FintanInputStream) 
+			((FintanModelIO) component).setModelInputStream((FintanInputStream<Model>) inputStream);
+		else if (graph == null) 
+			component.setInputStream(inputStream);
+		else
+			component.setInputStream(inputStream, graph);
+	}
+
+	/**
+	 * Creates a FintanStreamHandler or FintanRingBuffer for segmented RDF streams. 
+	 * Optional parameters in the stream config:
+	 * 
+	 * `transport` "queue" for FintanStreamHandler, "ringbuffer" for FintanRingBuffer.
+	 * 		Default: "queue"
+	 * 
+	 * `capacity` maximum number of segments (or batches) queued in the stream. Default: 100
+	 * 
+	 * `maxTriples` maximum total number of triples queued in the stream. 
+	 * 		Writing components block as long as the bound would be exceeded.
+	 * 		Only supported by "queue". Default: unbounded
+	 * 
+	 * `waitStrategy` "spin", "yield" or "park". Only supported by "ringbuffer". Default: "park"
+	 * 
+	 * `multiConsumer` true, if the reading component reads concurrently. 
+	 * 		Only supported by "ringbuffer". Default: false
+	 * 
+	 * @param streamConf
+	 * 	the configuration of the stream. If null, default settings are used.
+	 * @return FintanStreamHandler or FintanRingBuffer
+	 * @throws IOException if a parameter is invalid
+	 */
+	private FintanOutputStream<Model> createStreamHandler(JsonNode streamConf) throws IOException {
+		String transport = "queue";
+		int capacity = FintanStreamHandler.DEFAULT_CAPACITY;
+		long maxTriples = 0;
+		String waitStrategy = "park";
+		boolean multiConsumer = false;
+		if (streamConf != null) {
+			if (streamConf.hasNonNull("transport")) 
+				transport = streamConf.get("transport").asText();
+			if (streamConf.hasNonNull("capacity")) 
+				capacity = streamConf.get("capacity").asInt();
+			if (streamConf.hasNonNull("maxTriples")) 
+				maxTriples = streamConf.get("maxTriples").asLong();
+			if (streamConf.hasNonNull("waitStrategy")) 
+				waitStrategy = streamConf.get("waitStrategy").asText();
+			if (streamConf.hasNonNull("multiConsumer")) 
+				multiConsumer = streamConf.get("multiConsumer").asBoolean();
+		}
+		if (capacity <= 0) 
+			throw new IOException("'capacity' of a stream must be a positive number.");
+		if ("queue".equals(transport)) {
+			return FintanStreamHandler.withTripleBound(capacity, maxTriples);
+		} else if ("ringbuffer".equals(transport)) {
+			if (maxTriples > 0) 
+				LOG.warn("'maxTriples' is not supported by transport 'ringbuffer' and will be ignored.");
+			FintanRingBuffer.WaitStrategy strategy;
+			try {
+				strategy = FintanRingBuffer.WaitStrategy.valueOf(waitStrategy.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unsupported waitStrategy: '"+waitStrategy+"'. Use 'spin', 'yield' or 'park'.");
+			}
+			return new FintanRingBuffer<Model>(capacity, strategy, multiConsumer);
+		} else {
+			throw new IOException("Unsupported transport: '"+transport+"'. Use 'queue' or 'ringbuffer'.");
+		}
+	}
+
+	/**
+	 * Wraps a segmented RDF stream for metrics.
+	 */
+	@SuppressWarnings("unchecked")
+	private FintanOutputStream<Model> meterModelStream(FintanOutputStream<Model> stream, 
+			FintanStreamComponent<?, ?> sourceComp, String sourceGraph, FintanStreamComponent<?, ?> destComp, String destGraph) {
+		LinkMetrics link = metrics.registerLink(sourceComp.getInstanceName(), sourceGraph, 
+				destComp == null ? null : destComp.getInstanceName(), destGraph, LinkMetrics.TYPE_RDF);
+		if (stream instanceof FintanStreamHandler) 
+			link.setQueueDepth(((FintanStreamHandler<Model>) stream)::size);
+		if (stream instanceof FintanRingBuffer) 
+			link.setQueueDepth(((FintanRingBuffer<Model>) stream)::size);
+		return new MeteredModelStream((FintanInputStream<Model>) stream, stream, link);
+	}
+
+	/**
+	 * Creates a FintanBytePipe for serialized streams. Optional parameter in the stream config:
+	 * 
+	 * `bufferSize` size of the pipe's buffer in bytes. Default: 1048576 (1 MiB)
+	 * 
+	 * @param streamConf
+	 * 	the configuration of the stream. If null, default settings are used.
+	 * @return FintanBytePipe
+	 * @throws IOException if bufferSize is not a positive number
+	 */
+	private FintanBytePipe createBytePipe(JsonNode streamConf) throws IOException {
+		int bufferSize = FintanBytePipe.DEFAULT_BUFFER_SIZE;
+		if (streamConf != null && streamConf.hasNonNull("bufferSize")) 
+			bufferSize = streamConf.get("bufferSize").asInt();
+		if (bufferSize <= 0) 
+			throw new IOException("'bufferSize' of a stream must be a positive number.");
+		return new FintanBytePipe(bufferSize);
+	}
+
+	/**
+	 * Start pipeline execution. Each component is run as a task of the 
+	 * pipeline's FintanScheduler. Returns as soon as all components and 
+	 * the handlers of their named streams have finished.
 	 * ComponentStack must be built beforehand.
+	 * 
+	 * If any task fails with an exception, the pipeline is aborted, see abort(), 
+	 * and this method returns without waiting for the remaining tasks.
 	 * @throws InterruptedException 
+	 * @throws ExecutionException if the pipeline has been aborted. The cause is 
+	 * 		the exception of the first failed task.
 	 */
-	public void start() throws InterruptedException {
-		ArrayList<Thread> threads = new ArrayList<Thread>();
-		for (FintanStreamComponent component:componentStack.values()) {
-			Thread t = new Thread(component);
-	        t.start();
-	        threads.add(t);
+	public void start() throws InterruptedException, ExecutionException {
+		if (metrics != null) {
+			try {
+				metrics.start();
+			} catch (IOException e) {
+				LOG.error("Metrics server could not be started.");
+				LOG.error(e, e);
+			}
+		}
+		synchronized (this) {
+			runningComponents = componentStack.size();
+		}
+		for (final FintanStreamComponent component:componentStack.values()) {
+			scheduler.execute(() -> {
+				try {
+					component.run();
+				} finally {
+					componentFinished();
+				}
+			}, component.getInstanceName());
+		}
+		synchronized (this) {
+			while (runningComponents > 0 && failure == null) 
+				wait();
 		}
-		for (Thread t:threads) {
-			t.join();
+		//named stream handlers may still be running
+		scheduler.shutdown();
+		while (getFailure() == null && !scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+			LOG.trace("Waiting for named streams to be processed.");
 		}
+		if (metrics != null) 
+			metrics.close();
+		if (getFailure() != null) 
+			throw new ExecutionException("Pipeline aborted.", getFailure());
+	}
+
+	private synchronized void componentFinished() {
+		runningComponents--;
+		notifyAll();
+	}
+
+	/**
+	 * @return the exception which aborted the pipeline, null if none.
+	 */
+	public synchronized Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Abort the pipeline after a task has failed: all streams between 
+	 * components are terminated or closed, so their readers and writers 
+	 * do not wait for the failed component, and all tasks are interrupted. 
+	 * Only the first failure is reported. In server mode, this only affects
+	 * the current job.
+	 */
+	private void abort(Throwable e) {
+		synchronized (this) {
+			if (failure != null) {
+				LOG.debug("Subsequent failure after abort: "+e);
+				return;
+			}
+			failure = e;
+			notifyAll();
+		}
+		LOG.error(e, e);
+		if (checkpoint != null) 
+			checkpoint.abort();
+		for (FintanOutputStream<Model> stream:modelStreams) 
+			stream.terminate();
+		for (FintanBytePipe pipe:bytePipes) {
+			try {
+				pipe.getOutputStream().close();
+				pipe.getInputStream().close();
+			} catch (IOException ex) {
+				LOG.debug(ex);
+			}
+		}
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * @return the instance names of all components, after fusing links.
+	 */
+	Set<String> getComponentNames() {
+		return componentStack.keySet();
 	}
 
 
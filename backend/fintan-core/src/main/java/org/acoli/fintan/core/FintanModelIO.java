@@ -0,0 +1,67 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.io.IOException;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Optional interface for components with serialized I/O which can 
+ * alternatively read or write segmented RDF streams directly. 
+ * 
+ * The FintanManager uses it to replace an RDFStreamWriter in front of, or an 
+ * RDFStreamLoader behind such a component by a FintanStreamHandler, so the 
+ * segments are not serialized and parsed again. In this case, the model 
+ * streams are used instead of the default input or output stream. 
+ */
+public interface FintanModelIO {
+
+	/**
+	 * @return true, if the component in its current configuration can read 
+	 * 		its default input as segmented RDF stream.
+	 */
+	public boolean supportsModelInput();
+
+	/**
+	 * @return true, if the component in its current configuration can write 
+	 * 		its default output as segmented RDF stream.
+	 */
+	public boolean supportsModelOutput();
+
+	/**
+	 * @return the segmented RDF input stream. null, if the default input is used.
+	 */
+	public FintanInputStream<Model> getModelInputStream();
+
+	/**
+	 * Replaces the default input by a segmented RDF stream.
+	 * @throws IOException if model input is not supported.
+	 */
+	public void setModelInputStream(FintanInputStream<Model> inputStream) throws IOException;
+
+	/**
+	 * @return the segmented RDF output stream. null, if the default output is used.
+	 */
+	public FintanOutputStream<Model> getModelOutputStream();
+
+	/**
+	 * Replaces the default output by a segmented RDF stream.
+	 * @throws IOException if model output is not supported.
+	 */
+	public void setModelOutputStream(FintanOutputStream<Model> outputStream) throws IOException;
+
+}
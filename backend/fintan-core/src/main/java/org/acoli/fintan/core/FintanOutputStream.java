@@ -15,6 +15,8 @@
  */
 package org.acoli.fintan.core;
 
+import java.util.Collection;
+
 /**
  * Interface with basic write operations for non-serialized object streams.
  * Primarily used for segmented RDF streams (T = Model).
@@ -33,6 +35,19 @@ public interface FintanOutputStream<T> {
 	 */
 	public void write(T m) throws InterruptedException;
 	
+	/**
+	 * Writes all objects of the collection to the stream, in iteration order.
+	 * Implementations may transfer them as a single batch.
+	 * 
+	 * @param ms collection of objects of type <T>
+	 * @throws InterruptedException
+	 */
+	public default void writeAll(Collection<? extends T> ms) throws InterruptedException {
+		for (T m:ms) {
+			write(m);
+		}
+	}
+	
 	/**
 	 * Checks whether data can be written to the stream.
 	 * @return true if data can be written.
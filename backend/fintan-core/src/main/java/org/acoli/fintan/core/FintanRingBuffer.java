@@ -0,0 +1,271 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free alternative to FintanStreamHandler for streaming non-serialized
+ * objects between threads.
+ *
+ * The objects are stored in a bounded ring buffer. Each slot carries a sequence
+ * number which tells producer and consumers whether it is free or occupied, so
+ * neither read nor write operations require locks. Threads waiting for
+ * a free slot or for data are idle according to a WaitStrategy instead of being
+ * suspended and notified by the queue.
+ *
+ * The ring buffer supports a single producer: write operations must not be
+ * executed concurrently, but may be executed by different threads one after
+ * another (e.g. guarded by a lock). By default, it supports a single consumer.
+ * The multi-consumer variant allows for concurrent read operations at the cost
+ * of an atomic compare-and-set per object.
+ *
+ * Objects must not be modified after they have been written.
+ *
+ * @param <T> The type of object to be streamed.
+ */
+public class FintanRingBuffer<T> implements FintanInputStream<T>, FintanOutputStream<T> {
+
+	/**
+	 * Determines how threads wait for a free slot or for data.
+	 */
+	public enum WaitStrategy {
+		/**
+		 * Busy spinning. Lowest latency, but occupies a CPU core per waiting thread.
+		 * Only recommended if there are more cores than active threads.
+		 */
+		SPIN,
+		/**
+		 * Spins for a short time, then yields the CPU to other threads.
+		 */
+		YIELD,
+		/**
+		 * Spins and yields for a short time, then parks the thread with
+		 * increasing timeouts of up to 1 ms. Leaves the CPU idle in case
+		 * the stream stalls.
+		 */
+		PARK;
+
+		private static final int SPIN_TRIES = 100;
+		private static final int YIELD_TRIES = 200;
+		private static final long MAX_PARK_NANOS = 1000000L;
+
+		/**
+		 * Called repeatedly while waiting.
+		 * @param counter number of previous calls within the current wait operation.
+		 * @throws InterruptedException if waiting thread is interrupted.
+		 */
+		void idle(int counter) throws InterruptedException {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			switch (this) {
+			case SPIN:
+				break;
+			case YIELD:
+				if (counter >= SPIN_TRIES)
+					Thread.yield();
+				break;
+			case PARK:
+				if (counter >= YIELD_TRIES)
+					LockSupport.parkNanos(Math.min(1000L << Math.min(counter - YIELD_TRIES, 10), MAX_PARK_NANOS));
+				else if (counter >= SPIN_TRIES)
+					Thread.yield();
+				break;
+			}
+		}
+	}
+
+	private final AtomicReferenceArray<T> buffer;
+	// sequence of slot i: i+k*capacity if free for write no. i+k*capacity,
+	// i+k*capacity+1 if it holds the object of write no. i+k*capacity.
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final boolean multiConsumer;
+	private final WaitStrategy waitStrategy;
+
+	// number of objects written, only modified by the producer
+	private final AtomicLong tail = new AtomicLong();
+	// number of objects read
+	private final AtomicLong head = new AtomicLong();
+	private volatile boolean active = true;
+
+	/**
+	 * Create a single-consumer ring buffer with default capacity, using
+	 * WaitStrategy.PARK.
+	 */
+	public FintanRingBuffer() {
+		this(FintanStreamHandler.DEFAULT_CAPACITY, WaitStrategy.PARK, false);
+	}
+
+	/**
+	 * @param capacity
+	 * 			minimum number of objects which can be buffered.
+	 * 			Will be rounded up to the next power of 2.
+	 * @param waitStrategy
+	 * 			how to wait for free slots or data.
+	 * @param multiConsumer
+	 * 			true, if multiple threads may read concurrently.
+	 */
+	public FintanRingBuffer(int capacity, WaitStrategy waitStrategy, boolean multiConsumer) {
+		if (capacity <= 0 || capacity > (1 << 30))
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30: "+capacity);
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) size <<= 1;
+		this.buffer = new AtomicReferenceArray<T>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.waitStrategy = waitStrategy;
+		this.multiConsumer = multiConsumer;
+	}
+
+	/**
+	 * @return number of slots of the ring buffer.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return number of buffered objects.
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	@Override
+	public void terminate() {
+		active = false;
+	}
+
+	@Override
+	public boolean canRead() {
+		//check active before emptiness, since objects are written before termination.
+		return active || head.get() < tail.get();
+	}
+
+	@Override
+	public boolean canWrite() {
+		return active;
+	}
+
+	@Override
+	public boolean active() {
+		return active;
+	}
+
+	/**
+	 * Write will wait if buffer is full. Calling thread will resume operation
+	 * as soon as a slot is free.
+	 */
+	@Override
+	public void write(T m) throws InterruptedException {
+		if (!canWrite())
+			throw new InterruptedException("Stream has already been marked for termination.");
+		long pos = tail.get();
+		int index = (int) pos & mask;
+		for (int counter = 0; sequences.get(index) != pos; counter++) {
+			waitStrategy.idle(counter);
+		}
+		buffer.lazySet(index, m);
+		//publish object to the consumers
+		sequences.set(index, pos + 1);
+		tail.lazySet(pos + 1);
+	}
+
+	/**
+	 * Writes all objects in iteration order. Waits like write().
+	 */
+	@Override
+	public void writeAll(Collection<? extends T> ms) throws InterruptedException {
+		for (T m:ms) {
+			write(m);
+		}
+	}
+
+	/**
+	 * Test for canRead() before taking the next Element.
+	 * If buffer is empty, the calling thread waits. It will
+	 * resume operation, as soon as data is available or stream is terminated.
+	 *
+	 * @return parameterized Entry
+	 * 		may return null in case the buffer has been emptied and terminated.
+	 */
+	@Override
+	public T read() throws InterruptedException {
+		for (int counter = 0; ; counter++) {
+			//read termination state before polling, since objects are written before termination.
+			boolean terminated = !active;
+			T m = poll();
+			if (m != null) return m;
+			if (terminated) return null;
+			waitStrategy.idle(counter);
+		}
+	}
+
+	/**
+	 * Reads all objects available without waiting, but at least one.
+	 * If no object is available, waits like read().
+	 *
+	 * @return number of objects added to c.
+	 * 		0 in case the buffer has been emptied and terminated.
+	 */
+	@Override
+	public int drainTo(Collection<? super T> c, int maxElements) throws InterruptedException {
+		if (maxElements <= 0) return 0;
+		T m = read();
+		if (m == null) return 0;
+		c.add(m);
+		int n = 1;
+		while (n < maxElements && (m = poll()) != null) {
+			c.add(m);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Takes the next object without waiting.
+	 * @return null, if the buffer is empty.
+	 */
+	private T poll() {
+		while (true) {
+			long pos = head.get();
+			int index = (int) pos & mask;
+			if (sequences.get(index) != pos + 1)
+				return null;
+			if (multiConsumer) {
+				//another consumer may have taken the object in the meantime
+				if (!head.compareAndSet(pos, pos + 1))
+					continue;
+			} else {
+				head.lazySet(pos + 1);
+			}
+			T m = buffer.get(index);
+			buffer.lazySet(index, null);
+			//release slot for the write operation one round later
+			sequences.set(index, pos + mask + 1);
+			return m;
+		}
+	}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline-wide scheduler for all threads of a Fintan pipeline.
+ * 
+ * Components and the handlers of their named streams are long-running tasks 
+ * which mostly block on their streams. They are run on a shared pool of cached 
+ * threads, which are reused once a task has finished.
+ * 
+ * Parallel processing within a component, e.g. the update workers of the 
+ * RDFUpdater, draws from a global CPU budget: each worker holds one CPU permit 
+ * while processing a segment and releases it before writing to a stream. 
+ * Thus, no more than cpuBudget segments are processed at any time, regardless 
+ * of the number of components and their `threads` setting.
+ */
+public class FintanScheduler {
+
+	// idle threads are discarded after this time, so standalone components do not keep the JVM alive.
+	private static final long KEEP_ALIVE_SECONDS = 1;
+
+	private static FintanScheduler defaultScheduler;
+
+	/**
+	 * @return a shared scheduler with a CPU budget of all available processors, 
+	 * 		for components which are run without a FintanManager.
+	 */
+	public static synchronized FintanScheduler getDefault() {
+		if (defaultScheduler == null) 
+			defaultScheduler = new FintanScheduler(0);
+		return defaultScheduler;
+	}
+
+	private final int cpuBudget;
+	private final Semaphore cpuPermits;
+	private final ThreadPoolExecutor executor;
+	// notified of exceptions which terminate a task, see setFailureHandler()
+	private volatile Consumer<Throwable> failureHandler;
+
+	/**
+	 * @param cpuBudget
+	 * 			maximum number of segments processed in parallel by all 
+	 * 			components. 0 or less: number of available processors.
+	 */
+	public FintanScheduler(int cpuBudget) {
+		if (cpuBudget <= 0) 
+			cpuBudget = Math.max(1, Runtime.getRuntime().availableProcessors());
+		this.cpuBudget = cpuBudget;
+		this.cpuPermits = new Semaphore(cpuBudget, true);
+		this.executor = createExecutor();
+	}
+
+	/**
+	 * Create a scheduler with its own threads, which shares the CPU budget 
+	 * of another scheduler, e.g. for concurrent pipelines in server mode.
+	 * @param shared
+	 * 			scheduler holding the CPU budget.
+	 */
+	public FintanScheduler(FintanScheduler shared) {
+		this.cpuBudget = shared.cpuBudget;
+		this.cpuPermits = shared.cpuPermits;
+		this.executor = createExecutor();
+	}
+
+	private static ThreadPoolExecutor createExecutor() {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "fintan-"+threadCount.getAndIncrement());
+					}
+				});
+	}
+
+	/**
+	 * @return maximum number of segments processed in parallel.
+	 */
+	public int getCpuBudget() {
+		return cpuBudget;
+	}
+
+	/**
+	 * Limit the number of parallel workers requested by a component to the CPU budget.
+	 * @param threads
+	 * 			requested number of workers. 0 or less: the full budget.
+	 * @return number of workers to be created.
+	 */
+	public int workers(int threads) {
+		if (threads <= 0 || threads > cpuBudget) 
+			return cpuBudget;
+		return threads;
+	}
+
+	/**
+	 * Run a task on a pooled thread. The thread carries the given name 
+	 * while the task is running.
+	 * 
+	 * @param task 
+	 * 			the task, e.g. a component or the handler of a named stream.
+	 * @param name
+	 * 			name of the task for logging and thread dumps.
+	 * @return Future to wait for the task to finish.
+	 * @throws RejectedExecutionException if the scheduler has been shut down.
+	 */
+	public Future<?> execute(final Runnable task, final String name) {
+		return executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				Thread thread = Thread.currentThread();
+				String poolName = thread.getName();
+				thread.setName(poolName+"-"+name);
+				try {
+					task.run();
+				} catch (RuntimeException | Error e) {
+					Consumer<Throwable> handler = failureHandler;
+					if (handler != null) 
+						handler.accept(e);
+					throw e;
+				} finally {
+					thread.setName(poolName);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Receive all exceptions which terminate a task run by execute(). 
+	 * Unlike the Future of the task, this includes tasks started by the 
+	 * components themselves, e.g. the handlers of named streams.
+	 * @param failureHandler
+	 * 			called on the thread of the failed task. null: no handler.
+	 */
+	public void setFailureHandler(Consumer<Throwable> failureHandler) {
+		this.failureHandler = failureHandler;
+	}
+
+	/**
+	 * Create a pool for the workers of a single component. Tasks are run on 
+	 * the threads of this scheduler. At most 2 x parallelism tasks are queued 
+	 * or running, further calls to execute() block until a task has finished.
+	 * 
+	 * The tasks themselves must hold a CPU permit while processing.
+	 * 
+	 * @param name
+	 * 			name of the component, for thread names.
+	 * @param parallelism
+	 * 			number of workers of the component.
+	 */
+	public WorkerPool createWorkerPool(String name, int parallelism) {
+		return new WorkerPool(name, parallelism);
+	}
+
+	/**
+	 * Acquire a CPU permit before processing a segment. Blocks while the CPU 
+	 * budget is exhausted. Must be released before blocking on a stream.
+	 * @throws InterruptedException 
+	 */
+	public void acquireCpu() throws InterruptedException {
+		cpuPermits.acquire();
+	}
+
+	public void releaseCpu() {
+		cpuPermits.release();
+	}
+
+	/**
+	 * @return number of CPU permits currently held.
+	 */
+	public int getCpuInUse() {
+		return cpuBudget - cpuPermits.availablePermits();
+	}
+
+	/**
+	 * No further tasks are accepted, running tasks are completed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * No further tasks are accepted, running tasks are interrupted.
+	 */
+	public void shutdownNow() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Wait for all tasks to finish after shutdown().
+	 * @return true, if all tasks have finished, false if the timeout elapsed.
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Bounded executor for the workers of a single component.
+	 * Replaces a fixed thread pool per component.
+	 */
+	public class WorkerPool {
+
+		private final String name;
+		private final int maxTasks;
+		private final Semaphore slots;
+		private volatile boolean shutdown = false;
+
+		private WorkerPool(String name, int parallelism) {
+			this.name = name;
+			this.maxTasks = 2 * Math.max(1, parallelism);
+			this.slots = new Semaphore(maxTasks);
+		}
+
+		/**
+		 * Run a task on a pooled thread. Blocks while the maximum number 
+		 * of tasks is queued or running.
+		 * @throws RejectedExecutionException if the pool has been shut down or the calling thread is interrupted.
+		 */
+		public void execute(final Runnable task) {
+			if (shutdown) 
+				throw new RejectedExecutionException(name+" has already been shut down.");
+			try {
+				slots.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(e);
+			}
+			try {
+				FintanScheduler.this.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							task.run();
+						} finally {
+							slots.release();
+						}
+					}
+				}, name);
+			} catch (RejectedExecutionException e) {
+				slots.release();
+				throw e;
+			}
+		}
+
+		/**
+		 * No further tasks are accepted, submitted tasks are completed.
+		 */
+		public void shutdown() {
+			shutdown = true;
+		}
+
+		/**
+		 * Wait for all submitted tasks to finish after shutdown().
+		 * @return true, if all tasks have finished, false if the timeout elapsed.
+		 * @throws InterruptedException
+		 */
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			if (!slots.tryAcquire(maxTasks, timeout, unit)) 
+				return false;
+			slots.release(maxTasks);
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.acoli.fintan.core.metrics.FintanMetrics;
+import org.acoli.fintan.core.util.FintanCache;
+import org.acoli.fintan.core.util.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long-running Fintan process which executes registered pipelines on request,
+ * so the startup of the JVM, class loading and JIT compilation are paid once
+ * instead of once per document.
+ *
+ * The server binds to the loopback interface only. Requests from web pages, 
+ * i.e. with a foreign Origin or Host header, are rejected with 403:
+ *
+ * `GET /pipelines` lists the registered pipelines as JSON.
+ *
+ * `POST /run/{pipeline}?p=value0&p=value1` runs a pipeline with the given
+ * parameters. The request body is the pipeline's System.in, its System.out
+ * is returned as chunked response body. A job which fails before its first
+ * output is answered with 500, a job which fails later is cut off by closing
+ * the connection without completing the response.
+ *
+ * `GET /status` returns running, queued and finished jobs as JSON.
+ *
+ * `GET /metrics` returns the metrics of all running jobs with `metrics` enabled 
+ * in Prometheus text format, `GET /metrics.json` as JSON. Each job is identified 
+ * by the name of its pipeline and a number, which are added to its metrics.
+ *
+ * Each job is built from its config by a new FintanManager, but all jobs
+ * share one CPU budget and the FintanCache, which keeps parsed SPARQL updates,
+ * loaded graphs and compiled stylesheets resident between jobs.
+ */
+public class FintanServer {
+
+	protected static final Logger LOG = LogManager.getLogger(FintanServer.class.getName());
+
+	public static final int DEFAULT_MAX_QUEUED = 64;
+
+	private final int port;
+	private final int maxJobs;
+	private int maxQueued = DEFAULT_MAX_QUEUED;
+
+	// pipeline name --> config file
+	private final Map<String, File> pipelines = new ConcurrentSkipListMap<String, File>();
+
+	private final FintanScheduler scheduler;
+	private final Semaphore jobs;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicLong finished = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong jobCount = new AtomicLong();
+
+	// job id --> metrics of all running jobs which have metrics enabled
+	private final Map<String, FintanMetrics> jobMetrics = new ConcurrentSkipListMap<String, FintanMetrics>();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param port
+	 * 			local port of the HTTP server. 0 for any free port.
+	 * @param maxJobs
+	 * 			maximum number of concurrent jobs. 0 or less: number of available processors.
+	 * @param cpuBudget
+	 * 			CPU budget shared by all jobs. 0 or less: number of available processors.
+	 */
+	public FintanServer(int port, int maxJobs, int cpuBudget) {
+		if (maxJobs <= 0)
+			maxJobs = Math.max(1, Runtime.getRuntime().availableProcessors());
+		this.port = port;
+		this.maxJobs = maxJobs;
+		this.jobs = new Semaphore(maxJobs, true);
+		this.scheduler = new FintanScheduler(cpuBudget);
+	}
+
+	/**
+	 * @param maxQueued
+	 * 			maximum number of jobs waiting for a free slot.
+	 * 			Further requests are rejected with 503.
+	 */
+	public void setMaxQueued(int maxQueued) {
+		this.maxQueued = maxQueued;
+	}
+
+	/**
+	 * Register a pipeline config under its base name, e.g. `foo` for `path/to/foo.json`.
+	 * If path denotes a directory, all *.json files within are registered.
+	 *
+	 * Configs without parameters are built once on registration, so their
+	 * updates, graphs and stylesheets are cached before the first job arrives.
+	 * @throws IOException if the path does not exist or a name is already taken.
+	 */
+	public void register(String path) throws IOException {
+		File file = new File(path);
+		if (file.isDirectory()) {
+			File[] files = file.listFiles((dir, name) -> name.endsWith(".json"));
+			for (File f:files)
+				register(f.getPath());
+			return;
+		}
+		if (!file.isFile())
+			throw new IOException("Pipeline config not found: "+file.getAbsolutePath());
+		String name = file.getName().replaceFirst("\\.json$", "");
+		if (pipelines.containsKey(name))
+			throw new IOException("Pipeline name '"+name+"' is not unique: "+file.getAbsolutePath());
+		pipelines.put(name, file);
+		LOG.info("Registered pipeline '"+name+"': "+file.getAbsolutePath());
+		warmUp(name, file);
+	}
+
+	private void warmUp(String name, File file) {
+		FintanCache.setEnabled(true);
+		try {
+			if (IOUtils.readSourceAsString(file.getPath()).contains("<$param")) {
+				LOG.debug("Pipeline '"+name+"' has parameters and is prepared on the first job.");
+				return;
+			}
+			FintanManager man = new FintanManager();
+			man.readConfig(file.getPath(), new String[] {});
+			man.buildComponents();
+		} catch (IOException e) {
+			LOG.warn("Pipeline '"+name+"' could not be prepared: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * @return names of all registered pipelines.
+	 */
+	public List<String> getPipelines() {
+		return new ArrayList<String>(pipelines.keySet());
+	}
+
+	/**
+	 * Start the HTTP server. Jobs are run on their own threads until stop() is called.
+	 * @throws IOException if the HTTP server cannot be started.
+	 */
+	public void start() throws IOException {
+		FintanCache.setEnabled(true);
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newCachedThreadPool(r -> new Thread(r, "fintan-server-"+threadCount.getAndIncrement()));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		List<HttpContext> contexts = new ArrayList<HttpContext>();
+		contexts.add(server.createContext("/pipelines", exchange -> {
+			ObjectNode body = new ObjectMapper().createObjectNode();
+			for (Map.Entry<String, File> entry:pipelines.entrySet())
+				body.put(entry.getKey(), entry.getValue().getAbsolutePath());
+			respond(exchange, 200, body);
+		}));
+		contexts.add(server.createContext("/status", exchange -> {
+			ObjectNode body = new ObjectMapper().createObjectNode();
+			body.put("maxJobs", maxJobs);
+			body.put("cpuBudget", scheduler.getCpuBudget());
+			body.put("running", running.get());
+			body.put("queued", queued.get());
+			body.put("finished", finished.get());
+			body.put("failed", failed.get());
+			body.put("cachedEntries", FintanCache.size());
+			body.put("cachedWeight", FintanCache.weight());
+			respond(exchange, 200, body);
+		}));
+		contexts.add(server.createContext("/metrics", exchange -> {
+			if (exchange.getRequestURI().getPath().endsWith(".json")) {
+				ObjectNode body = new ObjectMapper().createObjectNode();
+				for (Map.Entry<String, FintanMetrics> entry:jobMetrics.entrySet())
+					body.set(entry.getKey(), entry.getValue().toJsonNode());
+				respond(exchange, 200, body);
+			} else {
+				StringWriter body = new StringWriter();
+				FintanMetrics.writePrometheus(body, jobMetrics.values());
+				respond(exchange, 200, body.toString(), "text/plain; version=0.0.4; charset=utf-8");
+			}
+		}));
+		contexts.add(server.createContext("/run/", this::run));
+		for (HttpContext context:contexts)
+			context.getFilters().add(new LocalRequestFilter());
+		server.start();
+		LOG.info("Fintan server available at http://"+server.getAddress().getHostString()+":"+server.getAddress().getPort()+"/");
+	}
+
+	/**
+	 * @return the address of the HTTP server, null if not running.
+	 */
+	public InetSocketAddress getAddress() {
+		return server == null ? null : server.getAddress();
+	}
+
+	/**
+	 * Stop accepting requests. Running jobs are given the delay to finish.
+	 */
+	public void stop(int delaySeconds) throws InterruptedException {
+		if (server != null)
+			server.stop(delaySeconds);
+		if (executor != null) {
+			executor.shutdown();
+			executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+		}
+		scheduler.shutdown();
+	}
+
+	private void run(HttpExchange exchange) throws IOException {
+		// on an exception, the HttpServer closes the connection instead
+		boolean complete = false;
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				error(exchange, 405, "Jobs must be started by POST.");
+				return;
+			}
+			String name = exchange.getRequestURI().getPath().substring("/run/".length());
+			File config = pipelines.get(name);
+			if (config == null) {
+				error(exchange, 404, "Unknown pipeline: "+name);
+				return;
+			}
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				error(exchange, 503, "Too many queued jobs.");
+				return;
+			}
+			try {
+				jobs.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error(exchange, 503, "Server is shutting down.");
+				return;
+			} finally {
+				queued.decrementAndGet();
+			}
+			running.incrementAndGet();
+			try {
+				runJob(exchange, name, config, parseParams(exchange.getRequestURI().getRawQuery()));
+			} finally {
+				running.decrementAndGet();
+				jobs.release();
+			}
+			complete = true;
+		} finally {
+			if (complete) 
+				exchange.close();
+		}
+	}
+
+	private void runJob(HttpExchange exchange, String name, File config, String[] params) throws IOException {
+		long start = System.currentTimeMillis();
+		String jobId = name+"-"+jobCount.incrementAndGet();
+		FintanManager man = new FintanManager();
+		JobOutputStream out = new JobOutputStream(exchange, man);
+		try {
+			man.readConfig(config.getPath(), params);
+			man.setStartTime(start);
+			man.setJobId(jobId);
+			man.setStandardStreams(exchange.getRequestBody(), out);
+			man.setParentScheduler(scheduler);
+			man.buildComponentStack();
+		} catch (IOException e) {
+			failed.incrementAndGet();
+			LOG.warn("Job for pipeline '"+name+"' could not be built: "+e.getMessage());
+			error(exchange, 400, e.getMessage());
+			return;
+		} catch (RuntimeException e) {
+			failed.incrementAndGet();
+			LOG.error(e, e);
+			error(exchange, 500, e.toString());
+			return;
+		}
+		if (man.getMetrics() != null)
+			jobMetrics.put(jobId, man.getMetrics());
+		try {
+			man.start();
+			out.commit();
+			finished.incrementAndGet();
+			LOG.info("Job for pipeline '"+name+"' finished in "+(System.currentTimeMillis() - start)+" ms.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failed.incrementAndGet();
+			LOG.warn("Job for pipeline '"+name+"' was interrupted.");
+			if (!out.discard())
+				throw new IOException("Job for pipeline '"+name+"' was interrupted after sending output.");
+			error(exchange, 503, "Server is shutting down.");
+		} catch (ExecutionException e) {
+			failed.incrementAndGet();
+			LOG.warn("Job for pipeline '"+name+"' failed: "+e.getCause());
+			if (!out.discard())
+				throw new IOException("Job for pipeline '"+name+"' failed after sending output.", e.getCause());
+			error(exchange, 500, e.getCause().toString());
+		} finally {
+			jobMetrics.remove(jobId);
+		}
+	}
+
+	/**
+	 * Rejects requests which may have been sent by a web page. Although the server 
+	 * only listens on the loopback interface, any page opened in a local browser 
+	 * can post to it. Browsers declare the page as Origin of such requests, and send 
+	 * the page's domain as Host if it has been rebound to the loopback address.
+	 */
+	private class LocalRequestFilter extends Filter {
+
+		@Override
+		public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+			String origin = exchange.getRequestHeaders().getFirst("Origin");
+			String host = exchange.getRequestHeaders().getFirst("Host");
+			if ((origin != null && !isLoopback(origin)) || (host != null && !isLoopback("http://"+host))) {
+				LOG.warn("Rejected request from Origin "+origin+" for Host "+host);
+				error(exchange, 403, "Requests must be sent from localhost.");
+				exchange.close();
+				return;
+			}
+			chain.doFilter(exchange);
+		}
+
+		@Override
+		public String description() {
+			return "Rejects requests with a foreign Origin or Host header.";
+		}
+	}
+
+	/**
+	 * @return true, if the host of the URI is localhost or a loopback address.
+	 */
+	static boolean isLoopback(String uri) {
+		String host;
+		try {
+			host = new URI(uri).getHost();
+		} catch (URISyntaxException e) {
+			return false;
+		}
+		if (host == null)
+			return false;
+		return host.equalsIgnoreCase("localhost") || host.equals("[::1]") 
+				|| host.matches("127\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}");
+	}
+
+	/**
+	 * @return values of all `p` parameters of the query string, in order.
+	 */
+	static String[] parseParams(String rawQuery) throws IOException {
+		List<String> params = new ArrayList<String>();
+		if (rawQuery == null)
+			return new String[] {};
+		for (String pair:rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0 || !pair.substring(0, eq).equals("p"))
+				continue;
+			params.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8.name()));
+		}
+		return params.toArray(new String[] {});
+	}
+
+	private void error(HttpExchange exchange, int code, String message) throws IOException {
+		ObjectNode body = new ObjectMapper().createObjectNode();
+		body.put("error", message);
+		respond(exchange, code, body);
+	}
+
+	private void respond(HttpExchange exchange, int code, ObjectNode body) throws IOException {
+		respond(exchange, code, body.toString(), "application/json");
+	}
+
+	private void respond(HttpExchange exchange, int code, String body, String contentType) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * System.out of a job. The response headers are sent with the first output, 
+	 * so a job failing beforehand can still be answered with an error. 
+	 * Output written after the pipeline has been aborted, e.g. by components 
+	 * flushing their remaining segments, is discarded.
+	 * Closing it by a component does not close the exchange.
+	 */
+	private static class JobOutputStream extends OutputStream {
+
+		private final HttpExchange exchange;
+		private final FintanManager man;
+		// response body, null until committed
+		private OutputStream out = null;
+		private boolean discarded = false;
+
+		private JobOutputStream(HttpExchange exchange, FintanManager man) {
+			this.exchange = exchange;
+			this.man = man;
+		}
+
+		/**
+		 * Send the response headers for a successful job, if not done yet.
+		 */
+		private synchronized OutputStream commit() throws IOException {
+			if (discarded || man.getFailure() != null) 
+				throw new IOException("Job has failed, output is discarded.");
+			if (out == null) {
+				exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+				exchange.sendResponseHeaders(200, 0);
+				out = exchange.getResponseBody();
+			}
+			return out;
+		}
+
+		/**
+		 * Discard all further output of a failed job.
+		 * @return true, if no output has been sent, so the response can still report the error.
+		 */
+		private synchronized boolean discard() {
+			discarded = true;
+			return out == null;
+		}
+
+		@Override
+		public synchronized void write(int b) throws IOException {
+			commit().write(b);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			if (len > 0) 
+				commit().write(b, off, len);
+		}
+
+		@Override
+		public synchronized void flush() throws IOException {
+			if (out != null && !discarded && man.getFailure() == null) 
+				out.flush();
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			commit().flush();
+		}
+	}
+
+}
@@ -18,6 +18,8 @@ package org.acoli.fintan.core;
 import java.io.IOException;
 import java.util.HashMap;
 
+import org.acoli.fintan.core.metrics.FintanMetrics;
+
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -47,6 +49,10 @@ public abstract class FintanStreamComponent<In, Out> implements Runnable {
 	private String instanceName = "";
 	private HashMap<String,In> inputStreams = new HashMap<String,In>();
 	private HashMap<String,Out> outputStreams = new HashMap<String,Out>();
+	private FintanMetrics metrics;
+	private FintanScheduler scheduler;
+	private FintanCheckpoint checkpoint;
+	private boolean checkpointed = false;
 
 	public String getInstanceName() {
 		return instanceName;
@@ -56,6 +62,92 @@ public abstract class FintanStreamComponent<In, Out> implements Runnable {
 		this.instanceName = instanceName;
 	}
 	
+	/**
+	 * 
+	 * @return the metrics registry of the pipeline. null, if metrics are disabled.
+	 */
+	public FintanMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Provide a metrics registry, e.g. for recording latencies.
+	 * 
+	 * @param metrics The metrics registry of the pipeline.
+	 */
+	public void setMetrics(FintanMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * 
+	 * @return the scheduler of the pipeline for named stream handlers and 
+	 * 		parallel workers. If none has been set, the default scheduler.
+	 */
+	public FintanScheduler getScheduler() {
+		if (scheduler == null) 
+			return FintanScheduler.getDefault();
+		return scheduler;
+	}
+
+	/**
+	 * Provide the scheduler of the pipeline.
+	 * 
+	 * @param scheduler The scheduler of the pipeline.
+	 */
+	public void setScheduler(FintanScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * 
+	 * @return the checkpoint of the pipeline, if this component reads the 
+	 * 		pipeline input or writes its output. Otherwise null.
+	 */
+	public FintanCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Provide the checkpoint of the pipeline. Only supported if 
+	 * supportsCheckpoint() returns true.
+	 * 
+	 * @param checkpoint The checkpoint of the pipeline.
+	 */
+	public void setCheckpoint(FintanCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * 
+	 * @return true, if the pipeline has a checkpoint. It counts the segments 
+	 * 		of the input and the output, so each input segment must result in 
+	 * 		exactly one output segment: a segment which cannot be processed must 
+	 * 		fail the component instead of being skipped.
+	 */
+	public boolean isCheckpointed() {
+		return checkpointed;
+	}
+
+	/**
+	 * Declare that the pipeline has a checkpoint, see isCheckpointed().
+	 * Unlike setCheckpoint(), this applies to all components.
+	 * 
+	 * @param checkpointed true, if the pipeline has a checkpoint.
+	 */
+	public void setCheckpointed(boolean checkpointed) {
+		this.checkpointed = checkpointed;
+	}
+
+	/**
+	 * 
+	 * @return true, if this component records its progress in a checkpoint 
+	 * 		and skips committed segments on resume.
+	 */
+	public boolean supportsCheckpoint() {
+		return false;
+	}
+
 	/**
 	 * 
 	 * @return the JSON configuration of this component.
@@ -15,14 +15,30 @@
  */
 package org.acoli.fintan.core;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongFunction;
+
+import org.apache.jena.rdf.model.Model;
 
 
 /**
  * Implements a BlockingQueue for streaming non-serialized objects between threads.
  * 
+ * The capacity of the queue can be defined on creation. Objects written by 
+ * writeAll() occupy a single slot and are transferred as a batch.
  * 
+ * Optionally, the total weight of the queued objects can be bounded, e.g.
+ * the number of triples of Models. In this case writers block as long as
+ * the bound would be exceeded. A single object exceeding the bound can
+ * always pass an empty stream. Each object is weighed once when it is 
+ * written, and exactly this weight is released when it is read. Objects 
+ * must not be modified after they have been written.
  * 
  * @author Christian Faeth {@literal faeth@em.uni-frankfurt.de}
  *
@@ -30,10 +46,98 @@ import java.util.concurrent.BlockingQueue;
  */
 public class FintanStreamHandler<T> implements FintanInputStream<T>, FintanOutputStream<T> {
 
+	/**
+	 * Default number of queue slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 100;
+	
+	/**
+	 * Default maximum number of objects for batch operations of components.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
 	private boolean active = true;
-	private BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(100);
+	private final BlockingQueue<Object> queue;
 	private static final Object POISON_PILL = new Object();
 	
+	//objects of a batch which have been taken from the queue, but not yet read.
+	//only modified by synchronized read operations.
+	private final Queue<T> readBuffer = new ConcurrentLinkedQueue<T>();
+	
+	//optional weight bound
+	private final ToLongFunction<? super T> weigher;
+	private final long maxWeight;
+	private long weight = 0; //guarded by weightLock
+	private final Object weightLock = new Object();
+
+	private static class Batch {
+		private final List<Object> objects;
+		private final long weight;
+		
+		private Batch(List<Object> objects, long weight) {
+			this.objects = objects;
+			this.weight = weight;
+		}
+	}
+
+	//a single object, queued with its weight if the weight is bounded.
+	//the object may change after writing, so it is not weighed again on reading.
+	private static class Weighed {
+		private final Object object;
+		private final long weight;
+		
+		private Weighed(Object object, long weight) {
+			this.object = object;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * Create a FintanStreamHandler with default capacity.
+	 */
+	public FintanStreamHandler() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @param capacity
+	 * 			number of objects (or batches) which can be queued.
+	 */
+	public FintanStreamHandler(int capacity) {
+		this(capacity, 0, null);
+	}
+	
+	/**
+	 * @param capacity
+	 * 			number of objects (or batches) which can be queued.
+	 * @param maxWeight
+	 * 			maximum total weight of queued objects. Not bounded if &lt;= 0.
+	 * @param weigher
+	 * 			function determining the weight of an object. Not bounded if null.
+	 */
+	public FintanStreamHandler(int capacity, long maxWeight, ToLongFunction<? super T> weigher) {
+		queue = new ArrayBlockingQueue<Object>(capacity);
+		if (maxWeight > 0 && weigher != null) {
+			this.maxWeight = maxWeight;
+			this.weigher = weigher;
+		} else {
+			this.maxWeight = 0;
+			this.weigher = null;
+		}
+	}
+	
+	/**
+	 * Create a FintanStreamHandler for Models bounded by the total number of queued triples.
+	 * 
+	 * @param capacity
+	 * 			number of Models (or batches) which can be queued.
+	 * @param maxTriples
+	 * 			maximum total number of triples. Not bounded if &lt;= 0.
+	 * @return FintanStreamHandler
+	 */
+	public static FintanStreamHandler<Model> withTripleBound(int capacity, long maxTriples) {
+		return new FintanStreamHandler<Model>(capacity, maxTriples, Model::size);
+	}
 	
 	@Override
 	public void terminate() {
@@ -53,7 +157,15 @@ public class FintanStreamHandler<T> implements FintanInputStream<T>, FintanOutpu
 	
 	@Override
 	public boolean canRead() {
-		return active || queue.size()>0;
+		return active || queue.size()>0 || !readBuffer.isEmpty();
+	}
+	
+	/**
+	 * @return number of queued objects. A batch written by writeAll() 
+	 * 		counts as one object until it is read.
+	 */
+	public int size() {
+		return queue.size() + readBuffer.size();
 	}
 	
 	@Override
@@ -74,7 +186,40 @@ public class FintanStreamHandler<T> implements FintanInputStream<T>, FintanOutpu
 	public void write(T m) throws InterruptedException {
 		if (!canWrite()) 
 			throw new InterruptedException("Stream has already been marked for termination.");
-		queue.put(m);
+		long w = weigh(m);
+		acquire(w);
+		try {
+			queue.put(weigher == null ? m : new Weighed(m, w));
+		} catch (InterruptedException e) {
+			release(w);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes all objects as a single batch, occupying only one slot of the queue.
+	 * Blocks like write().
+	 */
+	@Override
+	public void writeAll(Collection<? extends T> ms) throws InterruptedException {
+		if (ms.isEmpty()) 
+			return;
+		if (ms.size() == 1) {
+			write(ms.iterator().next());
+			return;
+		}
+		if (!canWrite()) 
+			throw new InterruptedException("Stream has already been marked for termination.");
+		long w = 0;
+		for (T m:ms) 
+			w += weigh(m);
+		acquire(w);
+		try {
+			queue.put(new Batch(new ArrayList<Object>(ms), w));
+		} catch (InterruptedException e) {
+			release(w);
+			throw e;
+		}
 	}
 
 
@@ -91,9 +236,48 @@ public class FintanStreamHandler<T> implements FintanInputStream<T>, FintanOutpu
 	 */
 	@Override
 	public synchronized T read() throws InterruptedException {
+		T buffered = readBuffer.poll();
+		if (buffered != null) return buffered;
 		if (!canRead()) return null;
-		Object obj = queue.take();
-		
+		return unpack(queue.take());
+	}
+	
+	/**
+	 * Reads all objects available without blocking, but at least one.
+	 * If no object is available, blocks like read().
+	 * 
+	 * Method is synchronized like read().
+	 * 
+	 * @return number of objects added to c.
+	 * 		0 in case the queue has been emptied and terminated.
+	 */
+	@Override
+	public synchronized int drainTo(Collection<? super T> c, int maxElements) throws InterruptedException {
+		if (maxElements <= 0) return 0;
+		T first = read();
+		if (first == null) return 0;
+		c.add(first);
+		int n = 1;
+		while (n < maxElements) {
+			T next = readBuffer.poll();
+			if (next == null) {
+				Object obj = queue.poll();
+				if (obj == null) break;
+				next = unpack(obj);
+				if (next == null) break;
+			}
+			c.add(next);
+			n++;
+		}
+		return n;
+	}
+	
+	/**
+	 * Releases the weight of a queue entry and returns its first object.
+	 * Further objects of a batch are moved to the readBuffer.
+	 */
+	@SuppressWarnings("unchecked")
+	private T unpack(Object obj) {
 		//this is recommended for BlockingQueues:  "Java Concurrency in Practice", pp. 155-156
 		//only one poison pill is required for multiple threads, since read() is synchronized.
 		//ONLY T1 waits for take(), 
@@ -102,14 +286,44 @@ public class FintanStreamHandler<T> implements FintanInputStream<T>, FintanOutpu
 		//  T2..Tn then checks for canRead(); terminates the regular way
 		if (obj == POISON_PILL) {
 			return null;
+		} else if (obj instanceof Batch) {
+			Batch batch = (Batch) obj;
+			release(batch.weight);
+			for (int i = 1; i < batch.objects.size(); i++) {
+				readBuffer.add((T) batch.objects.get(i));
+			}
+			return (T) batch.objects.get(0);
+		} else if (obj instanceof Weighed) {
+			Weighed weighed = (Weighed) obj;
+			release(weighed.weight);
+			return (T) weighed.object;
 		} else {
 			return (T) obj;
 		}
 	}
 	
+	private long weigh(T m) {
+		if (weigher == null) return 0;
+		return weigher.applyAsLong(m);
+	}
 	
-
-
-
+	private void acquire(long w) throws InterruptedException {
+		if (weigher == null) return;
+		synchronized (weightLock) {
+			//a single object exceeding maxWeight can pass an empty stream
+			while (weight > 0 && weight + w > maxWeight) {
+				weightLock.wait();
+			}
+			weight += w;
+		}
+	}
+	
+	private void release(long w) {
+		if (weigher == null) return;
+		synchronized (weightLock) {
+			weight -= w;
+			weightLock.notifyAll();
+		}
+	}
 	
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Metrics of a component instance. The values are aggregated on demand over
+ * the links reading from (out) or writing to (in) the component.
+ */
+public class ComponentMetrics implements ComponentMetricsMBean {
+
+	private final FintanMetrics registry;
+	private final String name;
+	private final String componentClass;
+
+	ComponentMetrics(FintanMetrics registry, String name, String componentClass) {
+		this.registry = registry;
+		this.name = name;
+		this.componentClass = componentClass;
+	}
+
+	private double sumIn(ToDoubleFunction<LinkMetrics> f) {
+		double sum = 0;
+		for (LinkMetrics link:registry.getLinks()) {
+			if (name.equals(link.getTarget())) sum += f.applyAsDouble(link);
+		}
+		return sum;
+	}
+
+	private double sumOut(ToDoubleFunction<LinkMetrics> f) {
+		double sum = 0;
+		for (LinkMetrics link:registry.getLinks()) {
+			if (name.equals(link.getSource())) sum += f.applyAsDouble(link);
+		}
+		return sum;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getComponentClass() {
+		return componentClass;
+	}
+
+	@Override
+	public long getSegmentsIn() {
+		return (long) sumIn(LinkMetrics::getSegments);
+	}
+
+	@Override
+	public long getSegmentsOut() {
+		return (long) sumOut(LinkMetrics::getSegments);
+	}
+
+	@Override
+	public long getTriplesIn() {
+		return (long) sumIn(LinkMetrics::getTriples);
+	}
+
+	@Override
+	public long getTriplesOut() {
+		return (long) sumOut(LinkMetrics::getTriples);
+	}
+
+	@Override
+	public long getBytesIn() {
+		return (long) sumIn(LinkMetrics::getBytes);
+	}
+
+	@Override
+	public long getBytesOut() {
+		return (long) sumOut(LinkMetrics::getBytes);
+	}
+
+	@Override
+	public double getReadBlockedSeconds() {
+		return sumIn(LinkMetrics::getReadBlockedSeconds);
+	}
+
+	@Override
+	public double getWriteBlockedSeconds() {
+		return sumOut(LinkMetrics::getWriteBlockedSeconds);
+	}
+
+	@Override
+	public double getSegmentsPerSecondOut() {
+		return sumOut(LinkMetrics::getSegmentsPerSecond);
+	}
+
+	@Override
+	public double getTriplesPerSecondOut() {
+		return sumOut(LinkMetrics::getTriplesPerSecond);
+	}
+
+	@Override
+	public double getBytesPerSecondOut() {
+		return sumOut(LinkMetrics::getBytesPerSecond);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+/**
+ * JMX view on the metrics of a component, aggregated over all its
+ * input and output streams.
+ */
+public interface ComponentMetricsMBean {
+
+	public String getName();
+
+	public String getComponentClass();
+
+	public long getSegmentsIn();
+
+	public long getSegmentsOut();
+
+	public long getTriplesIn();
+
+	public long getTriplesOut();
+
+	public long getBytesIn();
+
+	public long getBytesOut();
+
+	public double getReadBlockedSeconds();
+
+	public double getWriteBlockedSeconds();
+
+	public double getSegmentsPerSecondOut();
+
+	public double getTriplesPerSecondOut();
+
+	public double getBytesPerSecondOut();
+
+}
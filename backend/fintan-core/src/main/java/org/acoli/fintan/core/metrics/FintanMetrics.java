@@ -0,0 +1,506 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Registry for the runtime metrics of a Fintan pipeline: throughput, queue depth
+ * and blocked time of all streams (LinkMetrics), the same values aggregated per
+ * component (ComponentMetrics), and latency histograms, e.g. per update script.
+ *
+ * The metrics can be exposed
+ * 		as MBeans in the platform MBeanServer (domain "org.acoli.fintan"),
+ * 		in Prometheus text format by a local HTTP server (path /metrics),
+ * 			and as JSON (path /metrics.json)
+ * 		as JSON file which is periodically rewritten.
+ *
+ * Rates are averaged over a sampling interval of 5 seconds.
+ *
+ * In server mode, the metrics of each job are identified by a job id and 
+ * the FintanServer exposes the metrics of all running jobs itself.
+ */
+public class FintanMetrics implements AutoCloseable {
+
+	protected static final Logger LOG = LogManager.getLogger(FintanMetrics.class.getName());
+
+	public static final String JMX_DOMAIN = "org.acoli.fintan";
+	public static final int SAMPLE_INTERVAL_SECONDS = 5;
+	public static final int DEFAULT_DUMP_INTERVAL_SECONDS = 10;
+
+	private final List<LinkMetrics> links = new CopyOnWriteArrayList<LinkMetrics>();
+	private final List<ComponentMetrics> components = new CopyOnWriteArrayList<ComponentMetrics>();
+	private final List<LatencyHistogram> latencies = new CopyOnWriteArrayList<LatencyHistogram>();
+	private final long startNanos = System.nanoTime();
+	// seconds from the start of the JVM, or of the job in server mode, to each startup phase
+	private final Map<String, Double> startupSeconds = Collections.synchronizedMap(new LinkedHashMap<String, Double>());
+
+	private String job = null;
+	private boolean jmx = true;
+	private int httpPort = -1;
+	private String dumpFile = null;
+	private int dumpInterval = DEFAULT_DUMP_INTERVAL_SECONDS;
+
+	private final List<ObjectName> mbeans = new CopyOnWriteArrayList<ObjectName>();
+	private ScheduledExecutorService scheduler;
+	private HttpServer server;
+
+	public String getJob() {
+		return job;
+	}
+
+	/**
+	 * @param job id of the job in server mode, added to all MBean names and 
+	 * 			metric labels. null for none. Must be set before registering any metrics.
+	 */
+	public void setJob(String job) {
+		this.job = job;
+	}
+
+	public boolean isJmx() {
+		return jmx;
+	}
+
+	/**
+	 * @param jmx true, if MBeans are to be registered. Must be set before registering any metrics.
+	 */
+	public void setJmx(boolean jmx) {
+		this.jmx = jmx;
+	}
+
+	public int getHttpPort() {
+		return httpPort;
+	}
+
+	/**
+	 * @param httpPort port of the local HTTP server. 0 for any free port, -1 for no server.
+	 */
+	public void setHttpPort(int httpPort) {
+		this.httpPort = httpPort;
+	}
+
+	public String getDumpFile() {
+		return dumpFile;
+	}
+
+	/**
+	 * @param dumpFile path of the JSON file to be written periodically. null for none.
+	 */
+	public void setDumpFile(String dumpFile) {
+		this.dumpFile = dumpFile;
+	}
+
+	public int getDumpInterval() {
+		return dumpInterval;
+	}
+
+	/**
+	 * @param dumpInterval interval between JSON dumps in seconds.
+	 */
+	public void setDumpInterval(int dumpInterval) {
+		this.dumpInterval = dumpInterval;
+	}
+
+	public List<LinkMetrics> getLinks() {
+		return links;
+	}
+
+	public List<ComponentMetrics> getComponents() {
+		return components;
+	}
+
+	public List<LatencyHistogram> getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * Record the time to a startup phase of the pipeline, e.g. to the first output.
+	 * @param phase name of the phase
+	 * @param seconds time since the start of the JVM or job
+	 */
+	public void recordStartup(String phase, double seconds) {
+		startupSeconds.put(phase, seconds);
+	}
+
+	public Map<String, Double> getStartupSeconds() {
+		synchronized (startupSeconds) {
+			return new LinkedHashMap<String, Double>(startupSeconds);
+		}
+	}
+
+	/**
+	 * Register a component instance.
+	 * @param name instance name
+	 * @param componentClass class name of the component
+	 * @return ComponentMetrics
+	 */
+	public ComponentMetrics registerComponent(String name, String componentClass) {
+		ComponentMetrics component = new ComponentMetrics(this, name, componentClass);
+		components.add(component);
+		registerMBean(component, "type=Component,name="+ObjectName.quote(name));
+		return component;
+	}
+
+	/**
+	 * Register a stream. See LinkMetrics for the parameters.
+	 * @return LinkMetrics
+	 */
+	public LinkMetrics registerLink(String source, String sourceGraph, String target, String targetGraph, String type) {
+		LinkMetrics link = new LinkMetrics(source, sourceGraph, target, targetGraph, type);
+		links.add(link);
+		registerMBean(link, "type=Link,id="+links.indexOf(link));
+		return link;
+	}
+
+	/**
+	 * Register a latency histogram. If the name is already in use for the
+	 * component, it is extended by a counter.
+	 * @param component instance name of the component
+	 * @param name name of the measured operation
+	 * @return LatencyHistogram
+	 */
+	public synchronized LatencyHistogram registerLatency(String component, String name) {
+		String uniqueName = name;
+		for (int i = 2; containsLatency(component, uniqueName); i++) {
+			uniqueName = name+"#"+i;
+		}
+		LatencyHistogram histogram = new LatencyHistogram(component, uniqueName);
+		latencies.add(histogram);
+		registerMBean(histogram, "type=Latency,component="+ObjectName.quote(component)+",name="+ObjectName.quote(uniqueName));
+		return histogram;
+	}
+
+	private boolean containsLatency(String component, String name) {
+		for (LatencyHistogram histogram:latencies) {
+			if (histogram.getComponent().equals(component) && histogram.getName().equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private void registerMBean(Object mbean, String properties) {
+		if (!jmx) return;
+		if (job != null)
+			properties = "job="+ObjectName.quote(job)+","+properties;
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN+":"+properties);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(mbean, name);
+			mbeans.add(name);
+		} catch (JMException e) {
+			LOG.warn("Could not register MBean "+properties+": "+e);
+		}
+	}
+
+	/**
+	 * Start sampling the rates, the HTTP server and the periodic JSON dump, as configured.
+	 * @throws IOException if the HTTP server cannot be started.
+	 */
+	public void start() throws IOException {
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "FintanMetrics");
+			t.setDaemon(true);
+			return t;
+		});
+		scheduler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_SECONDS, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		if (dumpFile != null) {
+			scheduler.scheduleAtFixedRate(this::dumpQuietly, dumpInterval, dumpInterval, TimeUnit.SECONDS);
+		}
+		if (httpPort >= 0) {
+			server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort), 0);
+			server.createContext("/metrics", exchange -> respond(exchange,
+					exchange.getRequestURI().getPath().endsWith(".json") ? toJson() : toPrometheus(),
+					exchange.getRequestURI().getPath().endsWith(".json") ? "application/json" : "text/plain; version=0.0.4; charset=utf-8"));
+			server.start();
+			LOG.info("Metrics available at http://"+server.getAddress().getHostString()+":"+server.getAddress().getPort()+"/metrics");
+		}
+	}
+
+	/**
+	 * @return the address of the HTTP server, null if not running.
+	 */
+	public InetSocketAddress getHttpAddress() {
+		return server == null ? null : server.getAddress();
+	}
+
+	private void respond(HttpExchange exchange, String body, String contentType) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private void sample() {
+		for (LinkMetrics link:links) {
+			link.sample();
+		}
+	}
+
+	private void dumpQuietly() {
+		try {
+			dump();
+		} catch (IOException e) {
+			LOG.warn("Could not write metrics to "+dumpFile+": "+e);
+		}
+	}
+
+	/**
+	 * Write the JSON representation to the dumpFile, replacing the previous version.
+	 * @throws IOException if file cannot be written.
+	 */
+	public synchronized void dump() throws IOException {
+		if (dumpFile == null) return;
+		File file = new File(dumpFile).getAbsoluteFile();
+		File tmp = new File(file.getPath()+".tmp");
+		Files.write(tmp.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Stop all threads, write a final JSON dump and unregister the MBeans.
+	 */
+	@Override
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			sample();
+			dumpQuietly();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name:mbeans) {
+			try {
+				mbeanServer.unregisterMBean(name);
+			} catch (JMException e) {
+				LOG.trace(e, e);
+			}
+		}
+		mbeans.clear();
+	}
+
+	/**
+	 * @return all metrics as JSON.
+	 */
+	public String toJson() {
+		try {
+			return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(toJsonNode());
+		} catch (IOException e) {
+			// cannot happen for in-memory trees
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return all metrics as JSON tree.
+	 */
+	public ObjectNode toJsonNode() {
+		ObjectNode root = new ObjectMapper().createObjectNode();
+		if (job != null)
+			root.put("job", job);
+		root.put("uptimeSeconds", (System.nanoTime() - startNanos) / 1e9);
+		ObjectNode startupNode = root.putObject("startupSeconds");
+		for (Map.Entry<String, Double> phase:getStartupSeconds().entrySet()) {
+			startupNode.put(phase.getKey(), phase.getValue());
+		}
+		ObjectNode componentsNode = root.putObject("components");
+		for (ComponentMetrics c:components) {
+			ObjectNode node = componentsNode.putObject(c.getName());
+			node.put("class", c.getComponentClass());
+			node.put("segmentsIn", c.getSegmentsIn());
+			node.put("segmentsOut", c.getSegmentsOut());
+			node.put("triplesIn", c.getTriplesIn());
+			node.put("triplesOut", c.getTriplesOut());
+			node.put("bytesIn", c.getBytesIn());
+			node.put("bytesOut", c.getBytesOut());
+			node.put("segmentsPerSecondOut", c.getSegmentsPerSecondOut());
+			node.put("triplesPerSecondOut", c.getTriplesPerSecondOut());
+			node.put("bytesPerSecondOut", c.getBytesPerSecondOut());
+			node.put("readBlockedSeconds", c.getReadBlockedSeconds());
+			node.put("writeBlockedSeconds", c.getWriteBlockedSeconds());
+			ObjectNode latencyNode = node.putObject("latencies");
+			for (LatencyHistogram h:latencies) {
+				if (!h.getComponent().equals(c.getName())) continue;
+				ObjectNode hNode = latencyNode.putObject(h.getName());
+				hNode.put("count", h.getCount());
+				hNode.put("sumSeconds", h.getSumSeconds());
+				hNode.put("meanSeconds", h.getMeanSeconds());
+				hNode.put("p50Seconds", h.getP50Seconds());
+				hNode.put("p90Seconds", h.getP90Seconds());
+				hNode.put("p99Seconds", h.getP99Seconds());
+				hNode.put("maxSeconds", h.getMaxSeconds());
+			}
+		}
+		ArrayNode linksNode = root.putArray("links");
+		for (LinkMetrics l:links) {
+			ObjectNode node = linksNode.addObject();
+			node.put("source", l.getSource());
+			node.put("sourceGraph", l.getSourceGraph());
+			node.put("target", l.getTarget());
+			node.put("targetGraph", l.getTargetGraph());
+			node.put("type", l.getType());
+			node.put("segments", l.getSegments());
+			node.put("triples", l.getTriples());
+			node.put("bytes", l.getBytes());
+			node.put("queueDepth", l.getQueueDepth());
+			node.put("segmentsPerSecond", l.getSegmentsPerSecond());
+			node.put("triplesPerSecond", l.getTriplesPerSecond());
+			node.put("bytesPerSecond", l.getBytesPerSecond());
+			node.put("readBlockedSeconds", l.getReadBlockedSeconds());
+			node.put("writeBlockedSeconds", l.getWriteBlockedSeconds());
+		}
+		return root;
+	}
+
+	/**
+	 * @return all metrics in Prometheus text exposition format.
+	 */
+	public String toPrometheus() {
+		StringWriter w = new StringWriter();
+		try {
+			writePrometheus(w);
+		} catch (IOException e) {
+			// cannot happen for StringWriter
+			throw new IllegalStateException(e);
+		}
+		return w.toString();
+	}
+
+	/**
+	 * Write all metrics in Prometheus text exposition format.
+	 * Rates are left to Prometheus, so only counters and gauges are exposed.
+	 */
+	public void writePrometheus(Writer w) throws IOException {
+		writePrometheus(w, Collections.singletonList(this));
+	}
+
+	/**
+	 * Write the metrics of several pipelines, e.g. of all jobs of a FintanServer, 
+	 * in Prometheus text exposition format. Each metric family is declared once, 
+	 * the samples of each pipeline are distinguished by the label fintan_job.
+	 */
+	public static void writePrometheus(Writer w, Collection<FintanMetrics> pipelines) throws IOException {
+		writeLinkFamily(w, pipelines, "fintan_link_segments_total", "counter", "Segments written to the stream.", LinkMetrics::getSegments);
+		writeLinkFamily(w, pipelines, "fintan_link_triples_total", "counter", "Triples written to the stream.", LinkMetrics::getTriples);
+		writeLinkFamily(w, pipelines, "fintan_link_bytes_total", "counter", "Bytes written to the stream.", LinkMetrics::getBytes);
+		writeLinkFamily(w, pipelines, "fintan_link_queue_depth", "gauge", "Segments or bytes buffered in the stream.", LinkMetrics::getQueueDepth);
+		writeLinkFamily(w, pipelines, "fintan_link_read_blocked_seconds_total", "counter", "Time spent reading from the stream.", LinkMetrics::getReadBlockedSeconds);
+		writeLinkFamily(w, pipelines, "fintan_link_write_blocked_seconds_total", "counter", "Time spent writing to the stream.", LinkMetrics::getWriteBlockedSeconds);
+
+		w.write("# HELP fintan_startup_seconds Time from the start of the JVM or job to each startup phase.\n");
+		w.write("# TYPE fintan_startup_seconds gauge\n");
+		for (FintanMetrics m:pipelines) {
+			for (Map.Entry<String, Double> phase:m.getStartupSeconds().entrySet()) {
+				w.write("fintan_startup_seconds{"+m.jobLabel()+"phase=\""+escape(phase.getKey())+"\"} "+phase.getValue()+"\n");
+			}
+		}
+
+		w.write("# HELP fintan_component_info Component instances of the pipeline.\n");
+		w.write("# TYPE fintan_component_info gauge\n");
+		for (FintanMetrics m:pipelines) {
+			for (ComponentMetrics c:m.components) {
+				w.write("fintan_component_info{"+m.jobLabel()+"component=\""+escape(c.getName())+"\",class=\""+escape(c.getComponentClass())+"\"} 1\n");
+			}
+		}
+
+		w.write("# HELP fintan_update_latency_seconds Execution time of update scripts per segment.\n");
+		w.write("# TYPE fintan_update_latency_seconds histogram\n");
+		for (FintanMetrics m:pipelines) {
+			m.writeLatencies(w);
+		}
+	}
+
+	private void writeLatencies(Writer w) throws IOException {
+		for (LatencyHistogram h:latencies) {
+			String labels = jobLabel()+"component=\""+escape(h.getComponent())+"\",update=\""+escape(h.getName())+"\"";
+			long[] counts = h.getBucketCounts();
+			long cumulative = 0;
+			for (int i = 0; i < LatencyHistogram.BUCKET_BOUNDS.length; i++) {
+				cumulative += counts[i];
+				w.write("fintan_update_latency_seconds_bucket{"+labels+",le=\""+LatencyHistogram.BUCKET_BOUNDS[i]+"\"} "+cumulative+"\n");
+			}
+			cumulative += counts[counts.length - 1];
+			w.write("fintan_update_latency_seconds_bucket{"+labels+",le=\"+Inf\"} "+cumulative+"\n");
+			w.write("fintan_update_latency_seconds_sum{"+labels+"} "+h.getSumSeconds()+"\n");
+			w.write("fintan_update_latency_seconds_count{"+labels+"} "+cumulative+"\n");
+		}
+	}
+
+	private interface LinkValue {
+		Object get(LinkMetrics link);
+	}
+
+	private static void writeLinkFamily(Writer w, Collection<FintanMetrics> pipelines, String name, String type, String help, LinkValue value) throws IOException {
+		w.write("# HELP "+name+" "+help+"\n");
+		w.write("# TYPE "+name+" "+type+"\n");
+		for (FintanMetrics m:pipelines) {
+			for (LinkMetrics l:m.links) {
+				w.write(name+"{"+m.jobLabel()+"source=\""+escape(l.getSource())+"\",source_graph=\""+escape(l.getSourceGraph())
+						+"\",target=\""+escape(l.getTarget())+"\",target_graph=\""+escape(l.getTargetGraph())
+						+"\",type=\""+l.getType()+"\"} "+value.get(l)+"\n");
+			}
+		}
+	}
+
+	/**
+	 * @return the label of the job followed by a comma, empty if there is none.
+	 */
+	private String jobLabel() {
+		return job == null ? "" : "fintan_job=\""+escape(job)+"\",";
+	}
+
+	private static String escape(String value) {
+		if (value == null) return "";
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
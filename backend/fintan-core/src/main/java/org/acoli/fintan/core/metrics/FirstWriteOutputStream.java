@@ -0,0 +1,62 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decorator for pipeline output which notifies a listener as soon as the
+ * first byte is written, e.g. to measure the time to the first segment.
+ */
+public class FirstWriteOutputStream extends FilterOutputStream {
+
+	private Runnable listener;
+
+	/**
+	 * @param out
+	 * 			the stream to be written
+	 * @param listener
+	 * 			called once, before the first byte is written.
+	 */
+	public FirstWriteOutputStream(OutputStream out, Runnable listener) {
+		super(out);
+		this.listener = listener;
+	}
+
+	private void notifyListener() {
+		if (listener != null) {
+			Runnable l = listener;
+			listener = null;
+			l.run();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		notifyListener();
+		out.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len > 0)
+			notifyListener();
+		out.write(b, off, len);
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with fixed buckets from 100 microseconds to 100 seconds,
+ * e.g. for the execution time of an update script on a single segment.
+ *
+ * Recording a value is lock-free and costs a binary search over the buckets.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	/**
+	 * Upper bounds of the buckets in seconds. Values exceeding the last
+	 * bound are counted in an additional overflow bucket.
+	 */
+	public static final double[] BUCKET_BOUNDS = {
+			0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+			0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100
+	};
+	private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+	static {
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+			BUCKET_BOUNDS_NANOS[i] = Math.round(BUCKET_BOUNDS[i] * 1e9);
+	}
+
+	private final String component;
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+	private final LongAdder sumNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param component
+	 * 			name of the component instance
+	 * @param name
+	 * 			name of the measured operation, e.g. an update script
+	 */
+	public LatencyHistogram(String component, String name) {
+		this.component = component;
+		this.name = name;
+	}
+
+	/**
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		int i = Arrays.binarySearch(BUCKET_BOUNDS_NANOS, nanos);
+		if (i < 0) i = -i - 1;
+		buckets.incrementAndGet(i);
+		sumNanos.add(nanos);
+		maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * @return a copy of the non-cumulative bucket counts, the last one being the overflow bucket.
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[buckets.length()];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = buckets.get(i);
+		return counts;
+	}
+
+	/**
+	 * @param q quantile between 0 and 1
+	 * @return upper bound of the bucket containing the quantile in seconds,
+	 * 			capped by the maximum latency. 0 if empty.
+	 */
+	public double getQuantileSeconds(double q) {
+		long[] counts = getBucketCounts();
+		long total = 0;
+		for (long c:counts) total += c;
+		if (total == 0) return 0;
+		long rank = (long) Math.ceil(q * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(BUCKET_BOUNDS[i], getMaxSeconds());
+		}
+		return getMaxSeconds();
+	}
+
+	@Override
+	public String getComponent() {
+		return component;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < buckets.length(); i++)
+			total += buckets.get(i);
+		return total;
+	}
+
+	@Override
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+
+	@Override
+	public double getMeanSeconds() {
+		long count = getCount();
+		return count == 0 ? 0 : getSumSeconds() / count;
+	}
+
+	@Override
+	public double getMaxSeconds() {
+		return maxNanos.get() / 1e9;
+	}
+
+	@Override
+	public double getP50Seconds() {
+		return getQuantileSeconds(0.5);
+	}
+
+	@Override
+	public double getP90Seconds() {
+		return getQuantileSeconds(0.9);
+	}
+
+	@Override
+	public double getP99Seconds() {
+		return getQuantileSeconds(0.99);
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+/**
+ * JMX view on a latency histogram. Quantiles are estimated by the upper
+ * bound of the respective bucket.
+ */
+public interface LatencyHistogramMBean {
+
+	public String getComponent();
+
+	public String getName();
+
+	public long getCount();
+
+	public double getSumSeconds();
+
+	public double getMeanSeconds();
+
+	public double getMaxSeconds();
+
+	public double getP50Seconds();
+
+	public double getP90Seconds();
+
+	public double getP99Seconds();
+
+}
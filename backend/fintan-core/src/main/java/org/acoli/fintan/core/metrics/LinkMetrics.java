@@ -0,0 +1,208 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of a single stream between two components, or between a component
+ * and a pipeline input or output.
+ *
+ * Segments and triples are counted for segmented RDF streams, bytes for
+ * serialized streams. The time threads spend in read and write operations
+ * is counted as blocked time, since it is dominated by waiting for data or
+ * free buffer space, respectively.
+ *
+ * All counters are thread-safe and cheap to update.
+ */
+public class LinkMetrics implements LinkMetricsMBean {
+
+	/**
+	 * Type of segmented RDF streams.
+	 */
+	public static final String TYPE_RDF = "rdf";
+
+	/**
+	 * Type of serialized streams.
+	 */
+	public static final String TYPE_BYTES = "bytes";
+
+	private final String source;
+	private final String sourceGraph;
+	private volatile String target;
+	private volatile String targetGraph;
+	private final String type;
+
+	private final LongAdder segments = new LongAdder();
+	private final LongAdder triples = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LongAdder readBlockedNanos = new LongAdder();
+	private final LongAdder writeBlockedNanos = new LongAdder();
+	private volatile LongSupplier queueDepth;
+
+	// rates of the last sampling interval, written by sample() only
+	private long lastSampleNanos = System.nanoTime();
+	private long lastSegments, lastTriples, lastBytes;
+	private volatile double segmentsPerSecond, triplesPerSecond, bytesPerSecond;
+
+	/**
+	 * @param source
+	 * 			name of the writing component or pipeline input
+	 * @param sourceGraph
+	 * 			output stream slot of the source, "" for default
+	 * @param target
+	 * 			name of the reading component or pipeline output. May be set later.
+	 * @param targetGraph
+	 * 			input stream slot of the target, "" for default
+	 * @param type
+	 * 			TYPE_RDF or TYPE_BYTES
+	 */
+	public LinkMetrics(String source, String sourceGraph, String target, String targetGraph, String type) {
+		this.source = source;
+		this.sourceGraph = sourceGraph;
+		this.target = target;
+		this.targetGraph = targetGraph;
+		this.type = type;
+	}
+
+	/**
+	 * Set the reading end of the stream, in case it has been unknown on creation.
+	 */
+	public void setTarget(String target, String targetGraph) {
+		this.target = target;
+		this.targetGraph = targetGraph;
+	}
+
+	/**
+	 * @param queueDepth
+	 * 			supplies the current number of buffered segments or bytes.
+	 */
+	public void setQueueDepth(LongSupplier queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	public void recordSegment(long tripleCount) {
+		segments.increment();
+		triples.add(tripleCount);
+	}
+
+	public void recordBytes(long count) {
+		bytes.add(count);
+	}
+
+	public void recordReadBlocked(long nanos) {
+		readBlockedNanos.add(nanos);
+	}
+
+	public void recordWriteBlocked(long nanos) {
+		writeBlockedNanos.add(nanos);
+	}
+
+	/**
+	 * Update the rates. Called periodically by FintanMetrics.
+	 */
+	synchronized void sample() {
+		long now = System.nanoTime();
+		double seconds = (now - lastSampleNanos) / 1e9;
+		if (seconds <= 0) return;
+		long s = segments.sum(), t = triples.sum(), b = bytes.sum();
+		segmentsPerSecond = (s - lastSegments) / seconds;
+		triplesPerSecond = (t - lastTriples) / seconds;
+		bytesPerSecond = (b - lastBytes) / seconds;
+		lastSegments = s;
+		lastTriples = t;
+		lastBytes = b;
+		lastSampleNanos = now;
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String getSourceGraph() {
+		return sourceGraph;
+	}
+
+	@Override
+	public String getTarget() {
+		return target;
+	}
+
+	@Override
+	public String getTargetGraph() {
+		return targetGraph;
+	}
+
+	@Override
+	public String getType() {
+		return type;
+	}
+
+	@Override
+	public long getSegments() {
+		return segments.sum();
+	}
+
+	@Override
+	public long getTriples() {
+		return triples.sum();
+	}
+
+	@Override
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	@Override
+	public long getQueueDepth() {
+		LongSupplier depth = queueDepth;
+		return depth == null ? 0 : depth.getAsLong();
+	}
+
+	@Override
+	public double getReadBlockedSeconds() {
+		return readBlockedNanos.sum() / 1e9;
+	}
+
+	@Override
+	public double getWriteBlockedSeconds() {
+		return writeBlockedNanos.sum() / 1e9;
+	}
+
+	@Override
+	public double getSegmentsPerSecond() {
+		return segmentsPerSecond;
+	}
+
+	@Override
+	public double getTriplesPerSecond() {
+		return triplesPerSecond;
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	@Override
+	public String toString() {
+		return source+(sourceGraph.isEmpty() ? "" : "<"+sourceGraph+">")
+				+" -> "+target+(targetGraph.isEmpty() ? "" : "<"+targetGraph+">");
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+/**
+ * JMX view on the metrics of a single stream between two components.
+ * Rates are averaged over the last sampling interval of FintanMetrics.
+ */
+public interface LinkMetricsMBean {
+
+	public String getSource();
+
+	public String getSourceGraph();
+
+	public String getTarget();
+
+	public String getTargetGraph();
+
+	public String getType();
+
+	public long getSegments();
+
+	public long getTriples();
+
+	public long getBytes();
+
+	public long getQueueDepth();
+
+	public double getReadBlockedSeconds();
+
+	public double getWriteBlockedSeconds();
+
+	public double getSegmentsPerSecond();
+
+	public double getTriplesPerSecond();
+
+	public double getBytesPerSecond();
+
+}
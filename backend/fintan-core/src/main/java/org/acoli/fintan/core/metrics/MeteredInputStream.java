@@ -0,0 +1,70 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decorator for serialized streams which records blocked time in LinkMetrics.
+ * Read bytes are only recorded if the writing end is not metered, e.g. for
+ * pipeline input.
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+	private final LinkMetrics metrics;
+	private final boolean countBytes;
+
+	/**
+	 * @param in
+	 * 			the stream to be read
+	 * @param metrics
+	 * 			the metrics to be updated
+	 * @param countBytes
+	 * 			true, if read bytes are to be counted.
+	 */
+	public MeteredInputStream(InputStream in, LinkMetrics metrics, boolean countBytes) {
+		super(in);
+		this.metrics = metrics;
+		this.countBytes = countBytes;
+	}
+
+	public LinkMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		int b = in.read();
+		metrics.recordReadBlocked(System.nanoTime() - start);
+		if (countBytes && b >= 0)
+			metrics.recordBytes(1);
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		int n = in.read(b, off, len);
+		metrics.recordReadBlocked(System.nanoTime() - start);
+		if (countBytes && n > 0)
+			metrics.recordBytes(n);
+		return n;
+	}
+
+}
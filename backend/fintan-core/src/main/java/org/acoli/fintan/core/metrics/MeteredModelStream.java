@@ -0,0 +1,114 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.metrics;
+
+import java.util.Collection;
+
+import org.acoli.fintan.core.FintanInputStream;
+import org.acoli.fintan.core.FintanOutputStream;
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Decorator for segmented RDF streams which records segments, triples and
+ * blocked time in LinkMetrics. Both ends of the stream must use the decorator.
+ */
+public class MeteredModelStream implements FintanInputStream<Model>, FintanOutputStream<Model> {
+
+	private final FintanInputStream<Model> in;
+	private final FintanOutputStream<Model> out;
+	private final LinkMetrics metrics;
+
+	/**
+	 * @param in
+	 * 			the reading end of the stream
+	 * @param out
+	 * 			the writing end of the stream, usually the same object as in
+	 * @param metrics
+	 * 			the metrics to be updated
+	 */
+	public MeteredModelStream(FintanInputStream<Model> in, FintanOutputStream<Model> out, LinkMetrics metrics) {
+		this.in = in;
+		this.out = out;
+		this.metrics = metrics;
+	}
+
+	public LinkMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public Model read() throws InterruptedException {
+		long start = System.nanoTime();
+		try {
+			return in.read();
+		} finally {
+			metrics.recordReadBlocked(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Model> c, int maxElements) throws InterruptedException {
+		long start = System.nanoTime();
+		try {
+			return in.drainTo(c, maxElements);
+		} finally {
+			metrics.recordReadBlocked(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public boolean canRead() {
+		return in.canRead();
+	}
+
+	@Override
+	public void write(Model m) throws InterruptedException {
+		long triples = m.size();
+		long start = System.nanoTime();
+		out.write(m);
+		metrics.recordWriteBlocked(System.nanoTime() - start);
+		metrics.recordSegment(triples);
+	}
+
+	@Override
+	public void writeAll(Collection<? extends Model> ms) throws InterruptedException {
+		long[] triples = new long[ms.size()];
+		int i = 0;
+		for (Model m:ms)
+			triples[i++] = m.size();
+		long start = System.nanoTime();
+		out.writeAll(ms);
+		metrics.recordWriteBlocked(System.nanoTime() - start);
+		for (long t:triples)
+			metrics.recordSegment(t);
+	}
+
+	@Override
+	public boolean canWrite() {
+		return out.canWrite();
+	}
+
+	@Override
+	public void terminate() {
+		out.terminate();
+	}
+
+	@Override
+	public boolean active() {
+		return out.active();
+	}
+
+}
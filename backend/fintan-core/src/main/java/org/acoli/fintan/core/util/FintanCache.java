@@ -0,0 +1,253 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Process-wide cache for resources which are expensive to prepare and can be 
+ * shared read-only by all components, e.g. parsed SPARQL updates and external 
+ * graphs. It is disabled by default, since each pipeline in command line mode 
+ * prepares its resources only once. In server mode, it keeps the resources of 
+ * all jobs, so repeated jobs skip parsing and loading.
+ * 
+ * Cached objects must never be modified. Entries for local files are reloaded 
+ * as soon as the file has been modified, remote resources are not cached.
+ * 
+ * The cache is bounded by a total weight: each entry weighs 1, a Model 
+ * additionally weighs its number of triples. The least recently used entries 
+ * are evicted first. Texts which contain substituted parameters are not cached, 
+ * since they usually differ with each job.
+ */
+public class FintanCache {
+
+	protected static final Logger LOG = LogManager.getLogger(FintanCache.class.getName());
+
+	public static final long DEFAULT_MAX_WEIGHT = 10000000;
+
+	private static volatile boolean enabled = false;
+	private static long maxWeight = DEFAULT_MAX_WEIGHT;
+
+	// in access order, so the eldest entry is the least recently used. Guarded by FintanCache.class.
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private static long weight = 0;
+
+	// texts of the current thread which contain substituted parameters
+	private static final ThreadLocal<Collection<String>> parameterized = new ThreadLocal<Collection<String>>();
+
+	private static class Entry {
+		private final long version;
+		private final Object value;
+		private final long weight;
+
+		private Entry(long version, Object value) {
+			this.version = version;
+			this.value = value;
+			this.weight = value instanceof Model ? 1 + ((Model) value).size() : 1;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		FintanCache.enabled = enabled;
+		if (!enabled) 
+			clear();
+	}
+
+	/**
+	 * @param maxWeight
+	 * 			maximum total weight of all entries, roughly the number of cached 
+	 * 			triples. Default: DEFAULT_MAX_WEIGHT.
+	 */
+	public static synchronized void setMaxWeight(long maxWeight) {
+		FintanCache.maxWeight = maxWeight;
+		evict();
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public static synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return number of cached entries.
+	 */
+	public static synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return total weight of all cached entries.
+	 */
+	public static synchronized long weight() {
+		return weight;
+	}
+
+	/**
+	 * Resources of the current thread whose keys contain one of the given texts 
+	 * are prepared, but not cached. Used by the FintanManager while building 
+	 * components from a config with substituted parameters.
+	 * @param texts
+	 * 			texts with substituted parameters, null to reset.
+	 */
+	public static void setParameterized(Collection<String> texts) {
+		if (texts == null || texts.isEmpty()) 
+			parameterized.remove();
+		else 
+			parameterized.set(texts);
+	}
+
+	private static boolean isParameterized(String key) {
+		Collection<String> texts = parameterized.get();
+		if (texts == null) 
+			return false;
+		for (String text:texts) {
+			if (key.contains(text)) 
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get a cached resource, or prepare and cache it.
+	 * 
+	 * @param key
+	 * 			unique key of the resource, including its type.
+	 * @param version
+	 * 			version of the source, e.g. the modification time of a file. 
+	 * 			A cached entry with a different version is replaced.
+	 * @param loader
+	 * 			prepares the resource, if it is not cached, the cache is disabled 
+	 * 			or the key contains substituted parameters.
+	 * @return the resource.
+	 * @throws IOException if the loader fails.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(String key, long version, Callable<T> loader) throws IOException {
+		if (!enabled || isParameterized(key)) 
+			return call(loader);
+		synchronized (FintanCache.class) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.version == version) 
+				return (T) entry.value;
+		}
+		// concurrent jobs may load the same resource twice, the last one is kept.
+		T value = call(loader);
+		put(key, new Entry(version, value));
+		return value;
+	}
+
+	private static synchronized void put(String key, Entry entry) {
+		Entry old = entries.remove(key);
+		if (old != null) 
+			weight -= old.weight;
+		if (entry.weight > maxWeight) {
+			LOG.debug("Not cached, too large: "+key);
+			return;
+		}
+		entries.put(key, entry);
+		weight += entry.weight;
+		LOG.debug("Cached "+key);
+		evict();
+	}
+
+	private static synchronized void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (weight > maxWeight && it.hasNext()) {
+			weight -= it.next().weight;
+			it.remove();
+		}
+	}
+
+	private static <T> T call(Callable<T> loader) throws IOException {
+		try {
+			return loader.call();
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @return the modification time, if uri denotes a local file, 0 otherwise.
+	 */
+	public static long version(URI uri) {
+		if (!"file".equals(uri.getScheme())) 
+			return 0;
+		return new File(uri).lastModified();
+	}
+
+	/**
+	 * @return the modification time, if path denotes a local file, 0 otherwise.
+	 */
+	public static long version(String path) {
+		return new File(path).lastModified();
+	}
+
+	/**
+	 * Parse a SPARQL update. The result is shared, so it must not be modified.
+	 * @throws org.apache.jena.query.QueryParseException if the update is invalid.
+	 */
+	public static UpdateRequest parseUpdate(final String update) {
+		try {
+			return get("update:"+update, 0, new Callable<UpdateRequest>() {
+				@Override
+				public UpdateRequest call() {
+					return UpdateFactory.create(update);
+				}
+			});
+		} catch (IOException e) {
+			// not thrown by UpdateFactory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Load an RDF file into a Model. The result is shared, so it must not be modified.
+	 * Only local files are cached, since remote files may change unnoticed.
+	 * @param url
+	 * 			absolute location of the file.
+	 * @param loader
+	 * 			reads the file.
+	 */
+	public static Model loadModel(URI url, Callable<Model> loader) throws IOException {
+		if (!"file".equals(url.getScheme())) 
+			return call(loader);
+		return get("model:"+url, version(url), loader);
+	}
+
+}
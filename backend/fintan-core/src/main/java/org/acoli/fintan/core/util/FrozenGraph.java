@@ -0,0 +1,468 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.graph.Capabilities;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NiceIterator;
+import org.apache.jena.util.iterator.NullIterator;
+
+/**
+ * Immutable, read-optimized copy of a graph for external graphs, e.g. ontologies
+ * or lexicons which are joined in every segment.
+ *
+ * All nodes are stored once in a dictionary, triples as three arrays of node ids,
+ * sorted by subject, predicate and object. Two permutations of these arrays
+ * serve as POS and OSP indexes, each with offsets of the first triple per node.
+ * A pattern with concrete nodes is answered by jumping to the range of its first
+ * node in one of the indexes and a binary search within. All indexes are arrays
+ * of ints, so no objects are kept per triple.
+ *
+ * The graph is frozen on construction. It cannot be modified and has no mutable
+ * state, so any number of threads can read it concurrently without locks or
+ * transactions. Modifications throw an AddDeniedException or DeleteDeniedException.
+ * To modify a frozen graph within a single thread, wrap it in an OverlayUnionGraph.
+ *
+ * Like GraphMem, literals are matched by value, e.g. "1"^^xsd:int matches "01"^^xsd:int.
+ */
+public class FrozenGraph extends GraphBase {
+
+	// orders of the indexes, by the position of the triple they are sorted by first
+	private static final int SPO = 0;
+	private static final int POS = 1;
+	private static final int OSP = 2;
+	// maximum number of triples scanned instead of a binary search
+	private static final int SCAN_LIMIT = 32;
+
+	// node id --> node. Value-equal literals have consecutive ids.
+	private final Node[] nodes;
+	// open addressing hash table of indexing values --> first node id with this value, -1 if empty
+	private final int[] table;
+	private final int[] tableHashes;
+	// first node id --> last node id with the same value, only for more than one node
+	private final Map<Integer, Integer> lastIds;
+
+	// node ids of the triples, sorted by S, P, O
+	private final int[] s;
+	private final int[] p;
+	private final int[] o;
+	// permutations of the SPO order, sorted by P, O, S and by O, S, P
+	private final int[] pos;
+	private final int[] osp;
+	// node id --> first position in the SPO, POS and OSP index, one more entry for the end
+	private final int[][] offsets = new int[3][];
+
+	/**
+	 * Copy all triples and prefixes of a graph.
+	 * The source graph is not referenced afterwards.
+	 */
+	public FrozenGraph(Graph source) {
+		// preliminary ids in order of appearance
+		Map<Node, Integer> nodeIds = new HashMap<Node, Integer>();
+		List<Node> nodeList = new ArrayList<Node>();
+		int size = source.size();
+		int[] us = new int[size];
+		int[] up = new int[size];
+		int[] uo = new int[size];
+		int n = 0;
+		ExtendedIterator<Triple> it = source.find();
+		try {
+			while (it.hasNext()) {
+				Triple t = it.next();
+				if (n == us.length) {
+					// size() of the source may be an estimate
+					us = grow(us);
+					up = grow(up);
+					uo = grow(uo);
+				}
+				us[n] = id(t.getSubject(), nodeIds, nodeList);
+				up[n] = id(t.getPredicate(), nodeIds, nodeList);
+				uo[n] = id(t.getObject(), nodeIds, nodeList);
+				n++;
+			}
+		} finally {
+			it.close();
+		}
+		nodeIds = null;
+
+		// final ids, grouped by indexing value
+		Map<Object, List<Integer>> groups = new HashMap<Object, List<Integer>>();
+		List<Object> values = new ArrayList<Object>();
+		for (int i = 0; i < nodeList.size(); i++) {
+			Object value = nodeList.get(i).getIndexingValue();
+			List<Integer> group = groups.get(value);
+			if (group == null) {
+				group = new ArrayList<Integer>(1);
+				groups.put(value, group);
+				values.add(value);
+			}
+			group.add(i);
+		}
+		nodes = new Node[nodeList.size()];
+		table = new int[Integer.highestOneBit(Math.max(4, values.size() * 2 - 1)) << 1];
+		tableHashes = new int[table.length];
+		Arrays.fill(table, -1);
+		lastIds = new HashMap<Integer, Integer>();
+		int[] ids = new int[nodeList.size()];
+		int next = 0;
+		for (Object value:values) {
+			List<Integer> group = groups.get(value);
+			int hash = hash(value);
+			int slot = hash & (table.length - 1);
+			while (table[slot] >= 0)
+				slot = (slot + 1) & (table.length - 1);
+			table[slot] = next;
+			tableHashes[slot] = hash;
+			if (group.size() > 1)
+				lastIds.put(next, next + group.size() - 1);
+			for (int i:group) {
+				ids[i] = next;
+				nodes[next++] = nodeList.get(i);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			us[i] = ids[us[i]];
+			up[i] = ids[up[i]];
+			uo[i] = ids[uo[i]];
+		}
+
+		final int[] fs = us, fp = up, fo = uo;
+		int[] order = identity(n);
+		sort(order, (a, b) -> compare3(fs[a], fp[a], fo[a], fs[b], fp[b], fo[b]));
+		s = new int[n];
+		p = new int[n];
+		o = new int[n];
+		for (int i = 0; i < n; i++) {
+			s[i] = us[order[i]];
+			p[i] = up[order[i]];
+			o[i] = uo[order[i]];
+		}
+		pos = identity(n);
+		sort(pos, (a, b) -> compare3(p[a], o[a], s[a], p[b], o[b], s[b]));
+		osp = identity(n);
+		sort(osp, (a, b) -> compare3(o[a], s[a], p[a], o[b], s[b], p[b]));
+		for (int order3 = SPO; order3 <= OSP; order3++) {
+			int[] start = new int[nodes.length + 1];
+			int[] column = column(order3, 0);
+			for (int i = 0; i < n; i++)
+				start[column[i] + 1]++;
+			for (int id = 0; id < nodes.length; id++)
+				start[id + 1] += start[id];
+			offsets[order3] = start;
+		}
+
+		// initialize the lazy state of GraphBase, so reads do not modify the graph.
+		PrefixMapping prefixes = new PrefixMappingImpl().setNsPrefixes(source.getPrefixMapping());
+		pm = prefixes.lock();
+		getEventManager();
+		getCapabilities();
+	}
+
+	/**
+	 * @return the graph itself, if it is frozen already, otherwise a frozen copy.
+	 */
+	public static FrozenGraph freeze(Graph graph) {
+		if (graph instanceof FrozenGraph)
+			return (FrozenGraph) graph;
+		return new FrozenGraph(graph);
+	}
+
+	private static int id(Node node, Map<Node, Integer> nodeIds, List<Node> nodeList) {
+		Integer id = nodeIds.get(node);
+		if (id == null) {
+			id = nodeList.size();
+			nodeIds.put(node, id);
+			nodeList.add(node);
+		}
+		return id;
+	}
+
+	private static int hash(Object value) {
+		int h = value.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the first id of the nodes with the indexing value of a concrete node, -1 if there are none.
+	 */
+	private int firstId(Node node) {
+		Object value = node.getIndexingValue();
+		int hash = hash(value);
+		int slot = hash & (table.length - 1);
+		while (table[slot] >= 0) {
+			if (tableHashes[slot] == hash) {
+				Node candidate = nodes[table[slot]];
+				if (node.equals(candidate) || value.equals(candidate.getIndexingValue()))
+					return table[slot];
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return -1;
+	}
+
+	@Override
+	protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+		Node sn = pattern.getSubject();
+		Node pn = pattern.getPredicate();
+		Node on = pattern.getObject();
+		int si = sn.isConcrete() ? firstId(sn) : -1;
+		int pi = pn.isConcrete() ? firstId(pn) : -1;
+		int oi = on.isConcrete() ? firstId(on) : -1;
+		if ((si < 0 && sn.isConcrete()) || (pi < 0 && pn.isConcrete()) || (oi < 0 && on.isConcrete()))
+			return NullIterator.instance();
+		if (lastIds.isEmpty() || !(lastIds.containsKey(si) || lastIds.containsKey(pi) || lastIds.containsKey(oi)))
+			return find(si, pi, oi);
+		// value-equal literals have different ids, each is looked up on its own
+		ExtendedIterator<Triple> it = NullIterator.instance();
+		for (int s1 = si; s1 <= lastIds.getOrDefault(si, si); s1++)
+			for (int p1 = pi; p1 <= lastIds.getOrDefault(pi, pi); p1++)
+				for (int o1 = oi; o1 <= lastIds.getOrDefault(oi, oi); o1++)
+					it = it.andThen(find(s1, p1, o1));
+		return it;
+	}
+
+	/**
+	 * @return all triples with the given node ids, -1 for wildcards.
+	 */
+	private ExtendedIterator<Triple> find(int si, int pi, int oi) {
+		if (si >= 0 && pi >= 0)
+			return range(SPO, si, pi, oi);
+		if (si >= 0)
+			return oi >= 0 ? range(OSP, oi, si, -1) : range(SPO, si, -1, -1);
+		if (pi >= 0 && oi >= 0) {
+			// objects are mostly more selective than predicates
+			int from = offsets[OSP][oi];
+			int to = offsets[OSP][oi + 1];
+			if (to - from <= SCAN_LIMIT)
+				return to > from ? new RangeIterator(OSP, from, to, pi) : NullIterator.instance();
+		}
+		if (pi >= 0)
+			return range(POS, pi, oi, -1);
+		if (oi >= 0)
+			return range(OSP, oi, -1, -1);
+		return new RangeIterator(SPO, 0, s.length, -1);
+	}
+
+	@Override
+	protected boolean graphBaseContains(Triple t) {
+		if (!t.isConcrete())
+			return containsByFind(t);
+		int si = firstId(t.getSubject());
+		int pi = firstId(t.getPredicate());
+		int oi = firstId(t.getObject());
+		if (si < 0 || pi < 0 || oi < 0)
+			return false;
+		if (lastIds.containsKey(si) || lastIds.containsKey(pi) || lastIds.containsKey(oi))
+			return containsByFind(t);
+		long span = span(SPO, si, pi, oi);
+		return (int) (span >>> 32) < (int) span;
+	}
+
+	@Override
+	protected int graphBaseSize() {
+		return s.length;
+	}
+
+	// some of these capabilities are deprecated, but still queried by Jena 3
+	@SuppressWarnings("deprecation")
+	@Override
+	public Capabilities getCapabilities() {
+		if (capabilities == null)
+			capabilities = new Capabilities() {
+				@Override public boolean sizeAccurate() { return true; }
+				@Override public boolean addAllowed() { return false; }
+				@Override public boolean addAllowed(boolean everyTriple) { return false; }
+				@Override public boolean deleteAllowed() { return false; }
+				@Override public boolean deleteAllowed(boolean everyTriple) { return false; }
+				@Override public boolean iteratorRemoveAllowed() { return false; }
+				@Override public boolean canBeEmpty() { return true; }
+				@Override public boolean findContractSafe() { return true; }
+				@Override public boolean handlesLiteralTyping() { return true; }
+			};
+		return capabilities;
+	}
+
+	/**
+	 * @return the row of the SPO arrays at position i of an index.
+	 */
+	private int row(int order, int i) {
+		switch (order) {
+		case POS: return pos[i];
+		case OSP: return osp[i];
+		default: return i;
+		}
+	}
+
+	/**
+	 * @return the column of the SPO arrays at the level-th position of an index order.
+	 */
+	private int[] column(int order, int level) {
+		switch ((order + level) % 3) {
+		case 0: return s;
+		case 1: return p;
+		default: return o;
+		}
+	}
+
+	/**
+	 * @return all triples of an index starting with the given node ids. 
+	 * 		-1 for the second and third id matches any node.
+	 */
+	private ExtendedIterator<Triple> range(int order, int first, int second, int third) {
+		long span = span(order, first, second, third);
+		int from = (int) (span >>> 32);
+		int to = (int) span;
+		if (from >= to)
+			return NullIterator.instance();
+		return new RangeIterator(order, from, to, -1);
+	}
+
+	/**
+	 * @return the positions [from, to) of range(), packed into a long.
+	 */
+	private long span(int order, int first, int second, int third) {
+		int from = offsets[order][first];
+		int to = offsets[order][first + 1];
+		if (second >= 0 && from < to) {
+			int[] column = column(order, 1);
+			from = bound(order, column, from, to, second, false);
+			to = bound(order, column, from, to, second, true);
+			if (third >= 0 && from < to) {
+				column = column(order, 2);
+				from = bound(order, column, from, to, third, false);
+				to = bound(order, column, from, to, third, true);
+			}
+		}
+		return ((long) from << 32) | (to & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Binary search within [lo, hi) of an index for the first position with a node id 
+	 * not smaller than (upper = false) or greater than (upper = true) the given one.
+	 */
+	private int bound(int order, int[] column, int lo, int hi, int id, boolean upper) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = column[row(order, mid)];
+			if (c < id || (upper && c == id))
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Iterates over the positions [from, to) of an index, optionally only
+	 * over triples with the given predicate.
+	 */
+	private class RangeIterator extends NiceIterator<Triple> {
+		private final int order;
+		private final int to;
+		private final int predicate;
+		private int next;
+
+		private RangeIterator(int order, int from, int to, int predicate) {
+			this.order = order;
+			this.to = to;
+			this.predicate = predicate;
+			this.next = from;
+			skip();
+		}
+
+		private void skip() {
+			if (predicate >= 0)
+				while (next < to && p[row(order, next)] != predicate)
+					next++;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < to;
+		}
+
+		@Override
+		public Triple next() {
+			if (next >= to)
+				throw new NoSuchElementException();
+			int row = row(order, next++);
+			skip();
+			return Triple.create(nodes[s[row]], nodes[p[row]], nodes[o[row]]);
+		}
+	}
+
+	private static int compare3(int a0, int a1, int a2, int b0, int b1, int b2) {
+		int c = Integer.compare(a0, b0);
+		if (c != 0) return c;
+		c = Integer.compare(a1, b1);
+		if (c != 0) return c;
+		return Integer.compare(a2, b2);
+	}
+
+	private static int[] identity(int n) {
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++)
+			a[i] = i;
+		return a;
+	}
+
+	private static int[] grow(int[] a) {
+		int[] b = new int[Math.max(16, a.length * 2)];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private interface IntComparator {
+		int compare(int a, int b);
+	}
+
+	/**
+	 * Merge sort on primitive ints, to avoid boxing millions of triples.
+	 */
+	private static void sort(int[] a, IntComparator c) {
+		int[] buf = new int[a.length];
+		for (int width = 1; width < a.length; width *= 2) {
+			for (int lo = 0; lo < a.length - width; lo += 2 * width) {
+				int mid = lo + width;
+				int hi = Math.min(lo + 2 * width, a.length);
+				if (c.compare(a[mid - 1], a[mid]) <= 0)
+					continue;
+				System.arraycopy(a, lo, buf, lo, hi - lo);
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi)
+					a[k++] = c.compare(buf[i], buf[j]) <= 0 ? buf[i++] : buf[j++];
+				while (i < mid)
+					a[k++] = buf[i++];
+				while (j < hi)
+					a[k++] = buf[j++];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Triple;
+
+/**
+ * Tracks whether the triple set of a Graph has changed since the last call
+ * of mark(). Used to detect the fixpoint of iterated updates.
+ *
+ * Unlike Jena's ChangedListener, additions of already existing triples
+ * and deletions of missing triples are ignored, and additions which are
+ * reverted by deletions within the same interval (and vice versa) cancel
+ * each other out. This is done by maintaining the net size difference
+ * and an order-independent 64-bit hash sum of all effectively added
+ * and deleted triples. A single triple event costs O(1), so no
+ * serialization or copy of the graph is required.
+ *
+ * Bulk events which only partially changed the graph cannot be
+ * attributed to single triples and are conservatively treated as change.
+ *
+ * A tracker registers itself at the graph's event manager on creation
+ * and must be closed after use.
+ */
+public class GraphChangeTracker implements GraphListener, AutoCloseable {
+
+	private final Graph graph;
+
+	// graph size after the last processed event
+	private long lastSize;
+	private long sizeAtMark;
+	private long hashDelta;
+	private boolean unknownChange;
+
+	/**
+	 * Create a tracker and register it with the given graph.
+	 * @param graph
+	 * 			the graph to be observed.
+	 */
+	public GraphChangeTracker(Graph graph) {
+		this.graph = graph;
+		mark();
+		graph.getEventManager().register(this);
+	}
+
+	/**
+	 * Start a new interval: the current state of the graph becomes
+	 * the reference for hasChanged().
+	 */
+	public void mark() {
+		lastSize = graph.size();
+		sizeAtMark = lastSize;
+		hashDelta = 0;
+		unknownChange = false;
+	}
+
+	/**
+	 * @return true, if the triple set of the graph differs from the state
+	 * 			at the last call of mark().
+	 */
+	public boolean hasChanged() {
+		return unknownChange || lastSize != sizeAtMark || hashDelta != 0;
+	}
+
+	/**
+	 * Unregister from the graph.
+	 */
+	@Override
+	public void close() {
+		graph.getEventManager().unregister(this);
+	}
+
+	/**
+	 * Well distributed 64-bit hash of a triple. Hashes are only summed up,
+	 * so the result does not depend on the order of events.
+	 */
+	private static long hash(Triple t) {
+		long h = t.getSubject().hashCode();
+		h = h * 0x9E3779B97F4A7C15L + t.getPredicate().hashCode();
+		h = h * 0x9E3779B97F4A7C15L + t.getObject().hashCode();
+		// finalizer of MurmurHash3
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return h;
+	}
+
+	/**
+	 * Single triple event. The graph has already been modified,
+	 * so the effect is visible in its size.
+	 */
+	private void single(Graph g, Triple t, int sign) {
+		long size = g.size();
+		if (size != lastSize) {
+			hashDelta += sign * hash(t);
+			lastSize = size;
+		}
+	}
+
+	/**
+	 * Bulk event: only attributable if none or all of the triples
+	 * have been effectively added/deleted.
+	 */
+	private void bulk(Graph g, Iterator<Triple> it, int sign) {
+		long size = g.size();
+		long effective = Math.abs(size - lastSize);
+		if (effective == 0) return;
+		long count = 0;
+		long h = 0;
+		while (it.hasNext()) {
+			h += hash(it.next());
+			count++;
+		}
+		if (count == effective) {
+			hashDelta += sign * h;
+		} else {
+			unknownChange = true;
+		}
+		lastSize = size;
+	}
+
+	@Override
+	public void notifyAddTriple(Graph g, Triple t) {
+		single(g, t, 1);
+	}
+
+	@Override
+	public void notifyAddArray(Graph g, Triple[] triples) {
+		bulk(g, Arrays.asList(triples).iterator(), 1);
+	}
+
+	@Override
+	public void notifyAddList(Graph g, List<Triple> triples) {
+		bulk(g, triples.iterator(), 1);
+	}
+
+	@Override
+	public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+		bulk(g, it, 1);
+	}
+
+	@Override
+	public void notifyAddGraph(Graph g, Graph added) {
+		bulk(g, added.find(), 1);
+	}
+
+	@Override
+	public void notifyDeleteTriple(Graph g, Triple t) {
+		single(g, t, -1);
+	}
+
+	@Override
+	public void notifyDeleteList(Graph g, List<Triple> triples) {
+		bulk(g, triples.iterator(), -1);
+	}
+
+	@Override
+	public void notifyDeleteArray(Graph g, Triple[] triples) {
+		bulk(g, Arrays.asList(triples).iterator(), -1);
+	}
+
+	@Override
+	public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+		bulk(g, it, -1);
+	}
+
+	@Override
+	public void notifyDeleteGraph(Graph g, Graph removed) {
+		bulk(g, removed.find(), -1);
+	}
+
+	/**
+	 * Other events (e.g. removeAll or remove by pattern) carry
+	 * no information on single triples.
+	 */
+	@Override
+	public void notifyEvent(Graph g, Object value) {
+		long size = g.size();
+		if (size != lastSize) {
+			unknownChange = true;
+			lastSize = size;
+		}
+	}
+
+}
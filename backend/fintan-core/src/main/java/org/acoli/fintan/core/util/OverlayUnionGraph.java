@@ -0,0 +1,102 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Union view on a list of base graphs with a private copy-on-write overlay.
+ *
+ * The base graphs are only read and never modified, so they can be shared
+ * by reference between several views (e.g. the lookback and lookahead
+ * windows of concurrently processed segments) without copying any triples.
+ * Creating a view costs O(1) regardless of the number and size of the
+ * base graphs.
+ *
+ * Triples added to the view are stored in a private overlay graph, triples
+ * deleted from the view are masked. Triples contained in more than one
+ * base graph are reported only once.
+ *
+ * Base graphs must not be modified while the view is in use.
+ */
+public class OverlayUnionGraph extends GraphBase {
+
+	private final List<Graph> bases;
+	private final Graph additions = Factory.createGraphMem();
+	private final Set<Triple> deletions = new HashSet<Triple>();
+
+	/**
+	 * @param bases
+	 * 			the graphs to be united. The list itself is copied.
+	 */
+	public OverlayUnionGraph(List<Graph> bases) {
+		this.bases = new ArrayList<Graph>(bases);
+	}
+
+	@Override
+	protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+		ExtendedIterator<Triple> it = additions.find(pattern);
+		for (Graph base:bases) {
+			it = it.andThen(base.find(pattern));
+		}
+		if (bases.size() > 1 || (!bases.isEmpty() && !additions.isEmpty())) {
+			final Set<Triple> seen = new HashSet<Triple>();
+			it = it.filterKeep(seen::add);
+		}
+		if (!deletions.isEmpty()) {
+			it = it.filterDrop(deletions::contains);
+		}
+		return it;
+	}
+
+	private boolean basesContain(Triple t) {
+		for (Graph base:bases) {
+			if (base.contains(t)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void performAdd(Triple t) {
+		deletions.remove(t);
+		if (!basesContain(t)) {
+			additions.add(t);
+		}
+	}
+
+	@Override
+	public void performDelete(Triple t) {
+		additions.delete(t);
+		if (basesContain(t)) {
+			deletions.add(t);
+		}
+	}
+
+	@Override
+	public void close() {
+		additions.close();
+		super.close();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output buffer for segments which are processed concurrently.
+ *
+ * Each segment reserves a sequence number in input order before it is processed,
+ * and is completed with its result afterwards. drain() returns all results ready
+ * to be written:
+ *
+ * ordered: the results in input order, up to the first segment still in process.
+ * Later results wait in the buffer, so a single slow segment holds back the output.
+ *
+ * unordered: all results as soon as they are completed.
+ *
+ * The capacity bounds the number of segments which are in process or wait
+ * for a preceding one. reserve() blocks while the buffer is full, which
+ * slows down the reading of further segments.
+ */
+public class ReorderBuffer<T> {
+
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private static final Object FAILED = new Object();
+
+	private final boolean ordered;
+	private final int capacity;
+
+	// next sequence number to be reserved
+	private long next = 0;
+	// ordered: first sequence number not yet completed. unordered: number of completed segments
+	private long head = 0;
+	// ordered: completed results after the head, FAILED for null
+	private final Map<Long, Object> pending = new HashMap<Long, Object>();
+	// results ready to be drained
+	private final ArrayDeque<T> ready = new ArrayDeque<T>();
+
+	/**
+	 * @param ordered
+	 * 			true, if results are drained in input order.
+	 * @param capacity
+	 * 			maximum number of segments in process or waiting. 0 or less: unbounded.
+	 */
+	public ReorderBuffer(boolean ordered, int capacity) {
+		this.ordered = ordered;
+		this.capacity = capacity;
+	}
+
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Reserve the next sequence number. Blocks while the buffer is full.
+	 * @return the sequence number to be completed.
+	 * @throws InterruptedException
+	 */
+	public long reserve() throws InterruptedException {
+		return reserve(1);
+	}
+
+	/**
+	 * Reserve consecutive sequence numbers for a batch of segments.
+	 * Blocks until all of them fit into the buffer.
+	 * @param count
+	 * 			number of segments, must not exceed the capacity.
+	 * @return the first sequence number to be completed.
+	 * @throws InterruptedException
+	 */
+	public synchronized long reserve(int count) throws InterruptedException {
+		while (capacity > 0 && next - head + count > capacity)
+			wait();
+		long first = next;
+		next += count;
+		return first;
+	}
+
+	/**
+	 * Complete a segment.
+	 * @param sequence
+	 * 			the sequence number reserved for the segment.
+	 * @param result
+	 * 			the result to be written. null, if the segment failed and is skipped.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void complete(long sequence, T result) {
+		if (!ordered) {
+			if (result != null)
+				ready.add(result);
+			head++;
+		} else {
+			pending.put(sequence, result != null ? result : FAILED);
+			Object o;
+			while ((o = pending.remove(head)) != null) {
+				if (o != FAILED)
+					ready.add((T) o);
+				head++;
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * @return all results ready to be written, in the order to be written.
+	 */
+	public synchronized List<T> drain() {
+		List<T> result = new ArrayList<T>(ready);
+		ready.clear();
+		return result;
+	}
+
+	/**
+	 * @return number of segments reserved, but not completed yet.
+	 */
+	public synchronized int inProcess() {
+		return (int) (next - head) - (ordered ? pending.size() : 0);
+	}
+
+	/**
+	 * Blocks until all reserved segments have been completed.
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitCompletion() throws InterruptedException {
+		while (inProcess() > 0)
+			wait();
+	}
+
+	/**
+	 * @return number of completed segments waiting for a preceding one, or to be drained.
+	 */
+	public synchronized int size() {
+		return pending.size() + ready.size();
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.OpVisitorBase;
+import org.apache.jena.sparql.algebra.op.OpDatasetNames;
+import org.apache.jena.sparql.algebra.op.OpGraph;
+import org.apache.jena.sparql.algebra.walker.Walker;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.modify.request.QuadAcc;
+import org.apache.jena.sparql.modify.request.UpdateData;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.sparql.modify.request.UpdateDeleteWhere;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Rewrites SPARQL updates on the default graph, so they are executed on a batch
+ * of segments at once.
+ *
+ * Each segment of a batch is loaded into its own named graph segmentGraph(i).
+ * Graph patterns and templates of the default graph are wrapped in GRAPH ?segment,
+ * with ?segment bound to the segment graphs by VALUES. Each update is thus compiled
+ * and executed once per batch, while its solutions are still scoped to a single
+ * segment, like in a separate execution per segment.
+ *
+ * Updates which cannot be scoped this way are rejected, see rewrite().
+ */
+public class SegmentBatchRewriter {
+
+	public static final String SEGMENT_GRAPH = "https://github.com/acoli-repo/fintan/segment/";
+
+	private static final Var SEGMENT = Var.alloc("fintan_segment_graph");
+
+	/**
+	 * @return the name of the named graph holding the i-th segment of a batch.
+	 */
+	public static String segmentGraph(int i) {
+		return SEGMENT_GRAPH + i;
+	}
+
+	/**
+	 * Rewrite updates for batches of up to the given number of segments.
+	 *
+	 * The updates are rejected, if they contain
+	 * - GRAPH with a variable, since it would range over the other segments of the batch,
+	 * - WITH, USING or USING NAMED,
+	 * - graph management operations like LOAD, CLEAR or DROP,
+	 * - blank nodes in INSERT DATA or DELETE DATA,
+	 * - the variable ?fintan_segment_graph.
+	 *
+	 * @param updateRequests
+	 * 			the compiled updates.
+	 * @param size
+	 * 			maximum number of segments per batch.
+	 * @return the rewritten updates in the same order, or null if any update is rejected.
+	 */
+	public static List<UpdateRequest> rewrite(List<UpdateRequest> updateRequests, int size) {
+		ElementData values = new ElementData();
+		values.add(SEGMENT);
+		for (int i = 0; i < size; i++) {
+			values.add(BindingFactory.binding(SEGMENT, NodeFactory.createURI(segmentGraph(i))));
+		}
+		List<UpdateRequest> result = new ArrayList<UpdateRequest>();
+		for (UpdateRequest request:updateRequests) {
+			UpdateRequest batchRequest = new UpdateRequest();
+			batchRequest.setPrefixMapping(request.getPrefixMapping());
+			if (request.toString().contains("?"+SEGMENT.getVarName()))
+				return null;
+			for (Update update:request.getOperations()) {
+				Update batchUpdate = rewrite(update, values);
+				if (batchUpdate == null)
+					return null;
+				batchRequest.add(batchUpdate);
+			}
+			result.add(batchRequest);
+		}
+		return result;
+	}
+
+	private static Update rewrite(Update update, ElementData values) {
+		UpdateModify result = new UpdateModify();
+		ElementGroup where = new ElementGroup();
+		where.addElement(values);
+		if (update instanceof UpdateModify) {
+			UpdateModify modify = (UpdateModify) update;
+			if (modify.getWithIRI() != null
+					|| !modify.getUsing().isEmpty()
+					|| !modify.getUsingNamed().isEmpty()
+					|| !isScopable(modify.getWherePattern())
+					|| !addQuads(modify.getDeleteQuads(), result.getDeleteAcc(), false, null)
+					|| !addQuads(modify.getInsertQuads(), result.getInsertAcc(), false, null))
+				return null;
+			result.setHasDeleteClause(modify.hasDeleteClause());
+			result.setHasInsertClause(modify.hasInsertClause());
+			where.addElement(new ElementNamedGraph(SEGMENT, modify.getWherePattern()));
+		} else if (update instanceof UpdateDataInsert) {
+			result.setHasInsertClause(true);
+			if (!addQuads(((UpdateData) update).getQuads(), result.getInsertAcc(), true, null))
+				return null;
+		} else if (update instanceof UpdateDataDelete) {
+			result.setHasDeleteClause(true);
+			if (!addQuads(((UpdateData) update).getQuads(), result.getDeleteAcc(), true, null))
+				return null;
+		} else if (update instanceof UpdateDeleteWhere) {
+			result.setHasDeleteClause(true);
+			if (!addQuads(((UpdateDeleteWhere) update).getQuads(), result.getDeleteAcc(), false, where))
+				return null;
+		} else {
+			return null;
+		}
+		result.setElement(where);
+		return result;
+	}
+
+	/**
+	 * Copy quads from an update to its rewritten version, with the default graph
+	 * replaced by ?segment.
+	 * @param data
+	 * 			true for INSERT DATA and DELETE DATA. Their blank nodes are the same in
+	 * 			all segments, but would be new ones per segment in a template.
+	 * @param where
+	 * 			if not null, the quads are also added as graph pattern.
+	 * @return false, if a quad has a variable graph, or data contains blank nodes.
+	 */
+	private static boolean addQuads(List<Quad> quads, QuadAcc target, boolean data, ElementGroup where) {
+		Node lastGraph = null;
+		ElementPathBlock block = null;
+		for (Quad quad:quads) {
+			if (quad.getGraph().isVariable())
+				return false;
+			if (data && (quad.getSubject().isBlank() || quad.getObject().isBlank()))
+				return false;
+			Node graph = quad.isDefaultGraph() ? SEGMENT : quad.getGraph();
+			target.addQuad(new Quad(graph, quad.asTriple()));
+			if (where == null)
+				continue;
+			if (!graph.equals(lastGraph)) {
+				block = new ElementPathBlock();
+				where.addElement(new ElementNamedGraph(graph, block));
+				lastGraph = graph;
+			}
+			block.addTriple(quad.asTriple());
+		}
+		return true;
+	}
+
+	/**
+	 * @return false, if the pattern contains GRAPH with a variable,
+	 * 			including subqueries and EXISTS.
+	 */
+	private static boolean isScopable(Element pattern) {
+		final boolean[] scopable = {true};
+		Walker.walk(Algebra.compile(pattern), new OpVisitorBase() {
+			@Override
+			public void visit(OpGraph opGraph) {
+				if (opGraph.getNode().isVariable())
+					scopable[0] = false;
+			}
+			@Override
+			public void visit(OpDatasetNames dsNames) {
+				if (dsNames.getGraphNode().isVariable())
+					scopable[0] = false;
+			}
+		});
+		return scopable[0];
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a line-based text stream into segments separated by delimiter lines.
+ *
+ * The lines of a segment are accumulated in a reusable char buffer, each one
+ * followed by a line break. Accumulation is linear in the segment size.
+ * The delimiter is always expected to be the full content of a delimiting
+ * line of text. "" corresponds to an empty line. If the delimiter is null,
+ * the full stream is read as a single segment.
+ *
+ * A stream with n delimiter lines yields n+1 segments, the last one ending
+ * with the end of stream. Segments may be empty.
+ *
+ * Usage:
+ * <pre>
+ * SegmentReader segments = new SegmentReader(in, delimiter);
+ * while (segments.next()) {
+ *     process(segments.segment());
+ * }
+ * </pre>
+ *
+ * The views returned by segment() and segmentReader() share the internal buffer
+ * and are only valid until the next call of next(). Use toString() to keep
+ * a copy.
+ */
+public class SegmentReader {
+
+	private final BufferedReader in;
+	private final String delimiter;
+
+	private char[] buffer = new char[8192];
+	private int length = 0;
+	private boolean delimited = false;
+	private boolean eof = false;
+
+	/**
+	 * @param in
+	 * 			the stream to be segmented
+	 * @param delimiter
+	 * 			content of the delimiting lines, null for no segmentation.
+	 */
+	public SegmentReader(Reader in, String delimiter) {
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Read the next segment into the buffer.
+	 * @return false, if the end of stream has been reached before.
+	 * @throws IOException if the stream cannot be read.
+	 */
+	public boolean next() throws IOException {
+		if (eof) return false;
+		length = 0;
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			if (line.equals(delimiter)) {
+				delimited = true;
+				return true;
+			}
+			append(line);
+		}
+		delimited = false;
+		eof = true;
+		return true;
+	}
+
+	private void append(String line) {
+		int required = length + line.length() + 1;
+		if (required > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+		}
+		line.getChars(0, line.length(), buffer, length);
+		length += line.length();
+		buffer[length++] = '\n';
+	}
+
+	/**
+	 * @return the current segment as CharSequence view on the buffer.
+	 */
+	public CharSequence segment() {
+		return CharBuffer.wrap(buffer, 0, length);
+	}
+
+	/**
+	 * @return a new Reader on the current segment.
+	 */
+	public Reader segmentReader() {
+		return new CharArrayReader(buffer, 0, length);
+	}
+
+	/**
+	 * @return the current segment as a String.
+	 */
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length);
+	}
+
+	/**
+	 * @return the number of chars in the current segment.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return true, if the current segment contains whitespace only,
+	 * 			i.e. it would be empty after String.trim().
+	 */
+	public boolean isBlank() {
+		for (int i = 0; i < length; i++) {
+			if (buffer[i] > ' ') return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true, if the current segment has been terminated by a delimiter
+	 * 			line, false if it has been terminated by the end of stream.
+	 */
+	public boolean isDelimited() {
+		return delimited;
+	}
+
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.algebra.walker.Walker;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.expr.E_BNode;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunction0;
+import org.apache.jena.sparql.expr.ExprFunctionN;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.expr.ExprVisitorBase;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementUnion;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateAction;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Semi-naive evaluation of iterated updates which only insert into the default graph.
+ *
+ * Such an update is monotonic: it never finds fewer solutions on a larger graph.
+ * So after the first iteration, new solutions must match at least one triple which
+ * has been added since the previous execution (the delta). For each triple pattern
+ * on the default graph, the WHERE clause is rewritten to match this pattern in
+ * the delta graph, and all others in the default graph as before. The union of
+ * these variants is executed instead of the original update, so each iteration only
+ * evaluates bindings which touch the delta. The resulting graph after each iteration
+ * is the same as with the original update.
+ *
+ * Supported operations are INSERT DATA and INSERT ... WHERE into the default graph,
+ * without blank nodes in the template. The WHERE clause may only contain triple
+ * patterns without property paths, groups, UNION, FILTER and BIND without EXISTS or
+ * non-deterministic functions (BNODE, RAND, NOW, UUID ...), VALUES, and GRAPH with
+ * an IRI, whose contents are not restricted since they are not changed by the update.
+ */
+public class SemiNaiveUpdate {
+
+	public static final String DELTA_GRAPH = "https://github.com/acoli-repo/fintan/delta";
+
+	private static final Node DELTA = NodeFactory.createURI(DELTA_GRAPH);
+
+	// single operations of the original update
+	private final UpdateRequest[] operations;
+	// rewritten operations on the delta, null if there are no new solutions after the first execution
+	private final UpdateRequest[] deltaOperations;
+
+	private SemiNaiveUpdate(UpdateRequest[] operations, UpdateRequest[] deltaOperations) {
+		this.operations = operations;
+		this.deltaOperations = deltaOperations;
+	}
+
+	/**
+	 * @param request
+	 * 			the compiled update.
+	 * @return the semi-naive version of the update, or null if it is not supported.
+	 */
+	public static SemiNaiveUpdate compile(UpdateRequest request) {
+		List<Update> updates = request.getOperations();
+		UpdateRequest[] operations = new UpdateRequest[updates.size()];
+		UpdateRequest[] deltaOperations = new UpdateRequest[updates.size()];
+		for (int i = 0; i < updates.size(); i++) {
+			Update update = updates.get(i);
+			operations[i] = new UpdateRequest(update);
+			operations[i].setPrefixMapping(request.getPrefixMapping());
+			if (update instanceof UpdateDataInsert) {
+				if (!isInsertable(((UpdateDataInsert) update).getQuads()))
+					return null;
+				continue;
+			}
+			if (!(update instanceof UpdateModify))
+				return null;
+			UpdateModify modify = (UpdateModify) update;
+			if (!modify.getDeleteQuads().isEmpty()
+					|| modify.getWithIRI() != null
+					|| !modify.getUsing().isEmpty()
+					|| !modify.getUsingNamed().isEmpty()
+					|| !isInsertable(modify.getInsertQuads()))
+				return null;
+			List<Element> variants = deltaVariants(modify.getWherePattern());
+			if (variants == null)
+				return null;
+			if (variants.isEmpty())
+				continue;
+			UpdateModify delta = new UpdateModify();
+			delta.setHasInsertClause(true);
+			for (Quad quad:modify.getInsertQuads())
+				delta.getInsertAcc().addQuad(quad);
+			if (variants.size() == 1) {
+				delta.setElement(variants.get(0));
+			} else {
+				ElementUnion union = new ElementUnion();
+				for (Element variant:variants)
+					union.addElement(variant);
+				delta.setElement(union);
+			}
+			deltaOperations[i] = new UpdateRequest(delta);
+			deltaOperations[i].setPrefixMapping(request.getPrefixMapping());
+		}
+		return new SemiNaiveUpdate(operations, deltaOperations);
+	}
+
+	/**
+	 * @return true, if all quads are in the default graph and have no blank nodes,
+	 * 			which would be new ones per execution.
+	 */
+	private static boolean isInsertable(List<Quad> quads) {
+		for (Quad quad:quads) {
+			if (!quad.isDefaultGraph()
+					|| quad.getSubject().isBlank()
+					|| quad.getPredicate().isBlank()
+					|| quad.getObject().isBlank())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return all variants of the pattern with exactly one triple pattern on the
+	 * 			default graph matched in the delta graph instead. null, if the pattern
+	 * 			is not supported.
+	 */
+	private static List<Element> deltaVariants(Element pattern) {
+		List<Element> result = new ArrayList<Element>();
+		if (pattern instanceof ElementPathBlock) {
+			List<TriplePath> triples = ((ElementPathBlock) pattern).getPattern().getList();
+			for (TriplePath triple:triples) {
+				if (!triple.isTriple())
+					return null;
+			}
+			for (int i = 0; i < triples.size(); i++) {
+				ElementPathBlock delta = new ElementPathBlock();
+				delta.addTriple(triples.get(i));
+				ElementPathBlock rest = new ElementPathBlock();
+				for (int j = 0; j < triples.size(); j++) {
+					if (j != i)
+						rest.addTriple(triples.get(j));
+				}
+				// the delta first, so the rest is only matched for its bindings
+				ElementGroup variant = new ElementGroup();
+				variant.addElement(new ElementNamedGraph(DELTA, delta));
+				if (!rest.isEmpty())
+					variant.addElement(rest);
+				result.add(variant);
+			}
+		} else if (pattern instanceof ElementGroup) {
+			List<Element> elements = ((ElementGroup) pattern).getElements();
+			// BIND depends on the order of the elements
+			boolean reorder = true;
+			for (Element element:elements) {
+				if (element instanceof ElementBind)
+					reorder = false;
+			}
+			for (int i = 0; i < elements.size(); i++) {
+				List<Element> variants = deltaVariants(elements.get(i));
+				if (variants == null)
+					return null;
+				for (Element variant:variants) {
+					ElementGroup group = new ElementGroup();
+					if (reorder)
+						group.addElement(variant);
+					for (int j = 0; j < elements.size(); j++) {
+						if (j != i)
+							group.addElement(elements.get(j));
+						else if (!reorder)
+							group.addElement(variant);
+					}
+					result.add(group);
+				}
+			}
+		} else if (pattern instanceof ElementUnion) {
+			// new solutions of a union are new solutions of one of its branches
+			for (Element element:((ElementUnion) pattern).getElements()) {
+				List<Element> variants = deltaVariants(element);
+				if (variants == null)
+					return null;
+				result.addAll(variants);
+			}
+		} else if (pattern instanceof ElementFilter) {
+			if (!isDeterministic(((ElementFilter) pattern).getExpr()))
+				return null;
+		} else if (pattern instanceof ElementBind) {
+			if (!isDeterministic(((ElementBind) pattern).getExpr()))
+				return null;
+		} else if (pattern instanceof ElementNamedGraph) {
+			if (((ElementNamedGraph) pattern).getGraphNameNode().isVariable())
+				return null;
+		} else if (!(pattern instanceof ElementData)) {
+			// OPTIONAL, MINUS, subqueries etc. are not monotonic
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return false, if the expression contains EXISTS, NOT EXISTS, BNODE or
+	 * 			functions without arguments (RAND, NOW, UUID ...).
+	 */
+	private static boolean isDeterministic(Expr expr) {
+		final boolean[] deterministic = {true};
+		Walker.walk(expr, new ExprVisitorBase() {
+			@Override
+			public void visit(ExprFunction0 func) {
+				deterministic[0] = false;
+			}
+			@Override
+			public void visit(ExprFunctionN func) {
+				if (func instanceof E_BNode)
+					deterministic[0] = false;
+			}
+			@Override
+			public void visit(ExprFunctionOp funcOp) {
+				deterministic[0] = false;
+			}
+		});
+		return deterministic[0];
+	}
+
+	/**
+	 * Start the iterations of the update on a dataset.
+	 * The Evaluation must be closed after the last iteration.
+	 * @param dataset
+	 * 			the dataset to be updated. Its default graph must not be replaced
+	 * 			during the evaluation.
+	 */
+	public Evaluation start(Dataset dataset) {
+		return new Evaluation(dataset);
+	}
+
+	/**
+	 * The iterations of an update on a single dataset. Collects the triples added
+	 * to the default graph since the previous execution of each operation.
+	 */
+	public class Evaluation implements GraphListener, AutoCloseable {
+
+		private final Dataset dataset;
+		private final Graph graph;
+		private final Graph[] deltas;
+		private boolean first = true;
+		// graph size after the last processed event
+		private long lastSize;
+
+		private Evaluation(Dataset dataset) {
+			this.dataset = dataset;
+			this.graph = dataset.getDefaultModel().getGraph();
+			this.deltas = new Graph[operations.length];
+			for (int i = 0; i < deltas.length; i++)
+				deltas[i] = GraphFactory.createGraphMem();
+			lastSize = graph.size();
+			graph.getEventManager().register(this);
+		}
+
+		/**
+		 * Execute one iteration of the update: the original operations for the first
+		 * iteration, afterwards only on the delta of each operation.
+		 */
+		public void iterate() {
+			for (int i = 0; i < operations.length; i++) {
+				Graph delta = deltas[i];
+				// collects the triples added from now on, including by this operation
+				deltas[i] = GraphFactory.createGraphMem();
+				if (first) {
+					UpdateAction.execute(operations[i], dataset);
+				} else if (deltaOperations[i] != null && !delta.isEmpty()) {
+					dataset.replaceNamedModel(DELTA_GRAPH, ModelFactory.createModelForGraph(delta));
+					UpdateAction.execute(deltaOperations[i], dataset);
+				}
+			}
+			first = false;
+		}
+
+		/**
+		 * Unregister from the default graph and remove the delta graph.
+		 */
+		@Override
+		public void close() {
+			graph.getEventManager().unregister(this);
+			if (dataset.containsNamedModel(DELTA_GRAPH))
+				dataset.removeNamedModel(DELTA_GRAPH);
+		}
+
+		private void added(Triple t) {
+			for (Graph delta:deltas)
+				delta.add(t);
+		}
+
+		/**
+		 * Single triple event. Triples which existed before do not change the size.
+		 */
+		private void single(Graph g, Triple t) {
+			long size = g.size();
+			if (size != lastSize) {
+				added(t);
+				lastSize = size;
+			}
+		}
+
+		/**
+		 * Bulk event: all triples are added to the delta. Triples which existed
+		 * before only cause redundant, but no wrong solutions.
+		 */
+		private void bulk(Graph g, Iterator<Triple> it) {
+			long size = g.size();
+			if (size == lastSize) return;
+			while (it.hasNext())
+				added(it.next());
+			lastSize = size;
+		}
+
+		@Override
+		public void notifyAddTriple(Graph g, Triple t) {
+			single(g, t);
+		}
+
+		@Override
+		public void notifyAddArray(Graph g, Triple[] triples) {
+			bulk(g, Arrays.asList(triples).iterator());
+		}
+
+		@Override
+		public void notifyAddList(Graph g, List<Triple> triples) {
+			bulk(g, triples.iterator());
+		}
+
+		@Override
+		public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+			bulk(g, it);
+		}
+
+		@Override
+		public void notifyAddGraph(Graph g, Graph added) {
+			bulk(g, added.find());
+		}
+
+		// deletions are not caused by the supported operations
+		@Override
+		public void notifyDeleteTriple(Graph g, Triple t) {
+			lastSize = g.size();
+		}
+
+		@Override
+		public void notifyDeleteList(Graph g, List<Triple> triples) {
+			lastSize = g.size();
+		}
+
+		@Override
+		public void notifyDeleteArray(Graph g, Triple[] triples) {
+			lastSize = g.size();
+		}
+
+		@Override
+		public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+			lastSize = g.size();
+		}
+
+		@Override
+		public void notifyDeleteGraph(Graph g, Graph removed) {
+			lastSize = g.size();
+		}
+
+		@Override
+		public void notifyEvent(Graph g, Object value) {
+			lastSize = g.size();
+		}
+	}
+}
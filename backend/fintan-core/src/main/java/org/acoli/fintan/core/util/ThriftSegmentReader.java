@@ -0,0 +1,126 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.PrefixMap;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_PrefixDecl;
+import org.apache.jena.riot.thrift.wire.RDF_StreamRow;
+import org.apache.jena.riot.thrift.wire.RDF_Term;
+import org.apache.jena.riot.thrift.wire.RDF_Triple;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+/**
+ * Reads segmented RDF from a binary stream of frames written by a 
+ * ThriftSegmentWriter. Each frame is read into a separate Model. 
+ * Prefixes declared in one frame remain valid for all following frames, 
+ * so each Model carries all prefixes declared so far.
+ */
+public class ThriftSegmentReader {
+
+	private final InputStream in;
+	private final DataInputStream data;
+	private final PrefixMap prefixMap = PrefixMapFactory.create();
+	private byte[] buffer = new byte[8192];
+
+	/**
+	 * @param in
+	 * 			the stream to be read
+	 */
+	public ThriftSegmentReader(InputStream in) {
+		this.in = in;
+		this.data = new DataInputStream(in);
+	}
+
+	/**
+	 * Read the next frame.
+	 * @return the segment, null at the end of stream.
+	 * @throws IOException if the stream cannot be read or a frame is corrupt.
+	 */
+	public Model read() throws IOException {
+		int length;
+		try {
+			length = data.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		if (length < 0) 
+			throw new IOException("Invalid frame length: "+length);
+		if (buffer.length < length) 
+			buffer = new byte[Math.max(length, 2 * buffer.length)];
+		data.readFully(buffer, 0, length);
+
+		Model m = ModelFactory.createDefaultModel();
+		Graph g = m.getGraph();
+		ByteArrayInputStream frame = new ByteArrayInputStream(buffer, 0, length);
+		TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(frame));
+		Node lastSubject = null;
+		Node lastPredicate = null;
+		try {
+			while (frame.available() > 0) {
+				RDF_StreamRow row = new RDF_StreamRow();
+				row.read(protocol);
+				if (row.isSetPrefixDecl()) {
+					RDF_PrefixDecl decl = row.getPrefixDecl();
+					prefixMap.add(decl.getPrefix(), decl.getUri());
+				} else if (row.isSetTriple()) {
+					RDF_Triple t = row.getTriple();
+					Node s = isRepeat(t.getS()) ? lastSubject : ThriftConvert.convert(t.getS(), prefixMap);
+					Node p = isRepeat(t.getP()) ? lastPredicate : ThriftConvert.convert(t.getP(), prefixMap);
+					Node o = ThriftConvert.convert(t.getO(), prefixMap);
+					if (s == null || p == null) 
+						throw new IOException("REPEAT without preceding triple in frame.");
+					g.add(Triple.create(s, p, o));
+					lastSubject = s;
+					lastPredicate = p;
+				} else {
+					throw new IOException("Unsupported row in RDF Thrift frame: "+row);
+				}
+			}
+		} catch (TException e) {
+			throw new IOException("Corrupt RDF Thrift frame.", e);
+		}
+		m.setNsPrefixes(prefixMap.getMappingCopyStr());
+		return m;
+	}
+
+	/**
+	 * @return true, if data can be read without blocking.
+	 */
+	public boolean ready() throws IOException {
+		return in.available() > 0;
+	}
+
+	private static boolean isRepeat(RDF_Term term) {
+		return term.isSetRepeat();
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.PrefixMap;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.thrift.ThriftConvert;
+import org.apache.jena.riot.thrift.wire.RDF_PrefixDecl;
+import org.apache.jena.riot.thrift.wire.RDF_REPEAT;
+import org.apache.jena.riot.thrift.wire.RDF_StreamRow;
+import org.apache.jena.riot.thrift.wire.RDF_Term;
+import org.apache.jena.riot.thrift.wire.RDF_Triple;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+/**
+ * Writes segmented RDF as a binary stream of frames in RDF Thrift encoding.
+ *
+ * Each segment is written as one frame: the length of the frame in bytes 
+ * (4 bytes, big-endian), followed by the RDF Thrift rows of the segment 
+ * (TCompactProtocol). Segment boundaries are thus unambiguous and no 
+ * delimiter is required.
+ *
+ * The prefixes act as a dictionary for the whole stream: a prefix is only 
+ * declared in the first frame using it (or when its namespace changes), 
+ * and all IRIs within a declared namespace are encoded as prefixed names. 
+ * Within a frame, a subject or predicate equal to the one of the previous 
+ * triple is encoded as REPEAT. Hence, frames can only be decoded in order 
+ * by a ThriftSegmentReader reading the full stream.
+ */
+public class ThriftSegmentWriter {
+
+	private static final RDF_Term REPEAT = RDF_Term.repeat(new RDF_REPEAT());
+
+	/**
+	 * @return true, if lang denotes RDF Thrift, which is written and read in frames.
+	 */
+	public static boolean isThriftLang(String lang) {
+		if (lang == null) return false;
+		Lang l = RDFLanguages.nameToLang(lang);
+		return l != null && RDFLanguages.sameLang(l, Lang.RDFTHRIFT);
+	}
+
+	private final DataOutputStream out;
+	private final ByteArrayOutputStream frame = new ByteArrayOutputStream(8192);
+	private final TProtocol protocol = new TCompactProtocol(new TIOStreamTransport(frame));
+	// prefixes declared so far
+	private final Map<String, String> declared = new HashMap<String, String>();
+	// prefixes used to abbreviate IRIs, always the same as declared
+	private PrefixMap prefixMap = PrefixMapFactory.create();
+
+	/**
+	 * @param out
+	 * 			the stream to write to. Frames are buffered until flush() is called.
+	 */
+	public ThriftSegmentWriter(OutputStream out) {
+		this.out = new DataOutputStream(out);
+	}
+
+	/**
+	 * Write a segment as a single frame.
+	 * @param m the segment
+	 * @throws IOException if the stream cannot be written.
+	 */
+	public void write(Model m) throws IOException {
+		frame.reset();
+		try {
+			boolean rebound = false;
+			for (Map.Entry<String, String> prefix:m.getNsPrefixMap().entrySet()) {
+				if (prefix.getValue().equals(declared.get(prefix.getKey()))) 
+					continue;
+				if (declared.put(prefix.getKey(), prefix.getValue()) != null)
+					rebound = true;
+				else
+					prefixMap.add(prefix.getKey(), prefix.getValue());
+				RDF_StreamRow.prefixDecl(new RDF_PrefixDecl(prefix.getKey(), prefix.getValue())).write(protocol);
+			}
+			// PrefixMap keeps abbreviating the old namespace of a rebound prefix,
+			// which the reader would expand to the new one.
+			if (rebound)
+				prefixMap = PrefixMapFactory.create(declared);
+			// triples are grouped by subject, so the subject is repeated as often as possible
+			Graph g = m.getGraph();
+			Iterator<Node> subjects = GraphUtil.listSubjects(g, Node.ANY, Node.ANY);
+			while (subjects.hasNext()) {
+				Node subject = subjects.next();
+				RDF_Term s = ThriftConvert.convert(subject, prefixMap, false);
+				Node lastPredicate = null;
+				Iterator<Triple> triples = g.find(subject, Node.ANY, Node.ANY);
+				while (triples.hasNext()) {
+					Triple t = triples.next();
+					RDF_Triple row = new RDF_Triple();
+					row.setS(s);
+					s = REPEAT;
+					row.setP(t.getPredicate().equals(lastPredicate) ? REPEAT : ThriftConvert.convert(t.getPredicate(), prefixMap, false));
+					row.setO(ThriftConvert.convert(t.getObject(), prefixMap, false));
+					RDF_StreamRow.triple(row).write(protocol);
+					lastPredicate = t.getPredicate();
+				}
+			}
+		} catch (TException e) {
+			throw new IOException("Segment cannot be encoded in RDF Thrift.", e);
+		}
+		out.writeInt(frame.size());
+		frame.writeTo(out);
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright [2021] [ACoLi Lab, Prof. Dr. Chiarcos, Christian Faeth, Goethe University Frankfurt]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.acoli.fintan.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.acoli.fintan.core.FintanManager;
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.sparql.core.DatasetGraphMapLink;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.modify.request.UpdateData;
+import org.apache.jena.sparql.modify.request.UpdateDeleteWhere;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Storage of the external graphs of RDFUpdater and CoNLLRDFUpdater, and how
+ * their workers access them.
+ *
+ * In all modes, each worker updates the current segment in a private in-memory
+ * default graph and sees lookback and lookahead as private named graphs. The modes
+ * only differ in the external graphs, i.e. loaded models and named input streams.
+ */
+public enum UpdateDatasetMode {
+	/**
+	 * External graphs are frozen into immutable FrozenGraphs, which all workers
+	 * read concurrently without transactions. Fastest mode, RAM usage of a single
+	 * compact copy. If the updates may change external graphs, each worker writes
+	 * to a private overlay, so changes are only visible to the same worker.
+	 */
+	MEM,
+	/**
+	 * A single transactional in-memory dataset shared by all workers.
+	 * Each worker processes a segment in its own transaction. If the
+	 * updates may change a named graph, these are write transactions and
+	 * the workers execute their updates one at a time. Otherwise, workers
+	 * read in parallel. Changes are committed and visible to later segments.
+	 */
+	TXN,
+	/**
+	 * External graphs are stored in a TDB2 database on disk. Each worker
+	 * processes a segment in its own transaction, like in TXN mode.
+	 * Low RAM usage, but slower access to external graphs.
+	 */
+	TDB2;
+
+	protected static final Logger LOG = LogManager.getLogger(UpdateDatasetMode.class.getName());
+
+	// TDB2 datasets --> shutdown hooks which delete their directories
+	private static final Map<Dataset, Thread> cleanups = Collections.synchronizedMap(new IdentityHashMap<Dataset, Thread>());
+
+	/**
+	 * @param type MEM, TXN or TDB2, case-insensitive. null or empty for MEM.
+	 * @throws IllegalArgumentException if the type is unknown.
+	 */
+	public static UpdateDatasetMode parse(String type) {
+		if (type == null || type.isEmpty())
+			return MEM;
+		try {
+			return valueOf(type.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown dataset type '"+type+"'. Supported: MEM, TXN, TDB2", e);
+		}
+	}
+
+	/**
+	 * Create the dataset for the external graphs.
+	 * @param tdbPath
+	 * 			only for TDB2: directory to create the temporary database in.
+	 * 			Default: FintanManager.DEFAULT_TDB_PATH
+	 * @param owner
+	 * 			the updater, to name the temporary database.
+	 */
+	public Dataset createDataset(String tdbPath, Object owner) {
+		if (this == MEM)
+			// links the frozen graphs instead of copying them
+			return DatasetFactory.wrap(new DatasetGraphMapLink(GraphFactory.createDefaultGraph()));
+		if (this == TXN)
+			return DatasetFactory.createTxnMem();
+		if (tdbPath == null || tdbPath.isEmpty())
+			tdbPath = FintanManager.DEFAULT_TDB_PATH;
+		File f = new File(tdbPath, owner.getClass().getName()+System.identityHashCode(owner));
+		if (f.exists() && f.isDirectory()) {
+			try {
+				FileUtils.deleteDirectory(f);
+			} catch (IOException e) {
+				LOG.error("Could not delete directory <"+f.getAbsolutePath()+">. "
+						+ "Preexisting data may corrupt the current stream! "
+						+ "Error message:"+e);
+			}
+		}
+		f.mkdirs();
+		Thread cleanup = new Thread(() -> FileUtils.deleteQuietly(f));
+		Runtime.getRuntime().addShutdownHook(cleanup);
+		Dataset dataset = TDB2Factory.connectDataset(f.getAbsolutePath());
+		cleanups.put(dataset, cleanup);
+		return dataset;
+	}
+
+	/**
+	 * Releases a dataset created by createDataset(). A TDB2 database is closed
+	 * and its directory deleted right away instead of on shutdown, since jobs in
+	 * server mode share the JVM. The dataset must not be used afterwards.
+	 */
+	public void closeDataset(Dataset dataset) {
+		Thread cleanup = cleanups.remove(dataset);
+		if (cleanup == null)
+			return;
+		TDBInternal.expel(dataset.asDatasetGraph());
+		try {
+			Runtime.getRuntime().removeShutdownHook(cleanup);
+		} catch (IllegalStateException e) {
+			// the JVM is already shutting down and runs the hook itself
+			return;
+		}
+		cleanup.run();
+	}
+
+	/**
+	 * @return true, if models should be parsed directly into the dataset
+	 * 		by readGraph() instead of being loaded into memory first.
+	 */
+	public boolean isDiskBased() {
+		return this == TDB2;
+	}
+
+	/**
+	 * Parse an RDF file directly into a named graph of the dataset.
+	 * @throws IOException if the file cannot be read or parsed.
+	 */
+	public void readGraph(Dataset dataset, URI source, String graph) throws IOException {
+		try {
+			Txn.executeWrite(dataset, () -> RDFDataMgr.read(dataset.getNamedModel(graph), source.toString()));
+		} catch (RiotException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Add a model loaded into memory as named graph of the dataset.
+	 * In MEM mode, the graph is frozen and linked, otherwise it is copied.
+	 */
+	public void addGraph(Dataset dataset, String graph, Model model) {
+		final Model m = (this == MEM) ? freeze(model) : model;
+		Txn.executeWrite(dataset, () -> dataset.addNamedModel(graph, m));
+	}
+
+	/**
+	 * @return the model itself, if its graph is frozen already, otherwise a frozen copy.
+	 */
+	public static Model freeze(Model model) {
+		if (model.getGraph() instanceof FrozenGraph)
+			return model;
+		return ModelFactory.createModelForGraph(new FrozenGraph(model.getGraph()));
+	}
+
+	/**
+	 * Make a named graph of the dataset writable, e.g. to merge a named input stream.
+	 * In MEM mode, a frozen graph is replaced by a mutable copy.
+	 */
+	public void thawGraph(Dataset dataset, String graph) {
+		if (this != MEM)
+			return;
+		Txn.executeWrite(dataset, () -> {
+			if (!dataset.containsNamedModel(graph))
+				dataset.addNamedModel(graph, ModelFactory.createDefaultModel());
+			else if (dataset.getNamedModel(graph).getGraph() instanceof FrozenGraph)
+				dataset.replaceNamedModel(graph, ModelFactory.createDefaultModel().add(dataset.getNamedModel(graph)));
+		});
+	}
+
+	/**
+	 * Freeze a named graph of the dataset after it has been written, in MEM mode only.
+	 */
+	public void freezeGraph(Dataset dataset, String graph) {
+		if (this != MEM)
+			return;
+		Txn.executeWrite(dataset, () -> {
+			if (dataset.containsNamedModel(graph))
+				dataset.replaceNamedModel(graph, freeze(dataset.getNamedModel(graph)));
+		});
+	}
+
+	/**
+	 * Create the working dataset of a single worker. Its default graph is private.
+	 * In MEM mode, frozen external graphs are shared by reference, or wrapped in a
+	 * private overlay if the worker may write them. Other graphs are private copies.
+	 * In TXN and TDB2 mode, named graphs are views on the external graphs, which
+	 * may only be accessed between begin() and end().
+	 * @param write
+	 * 			true, if the updates may change external graphs,
+	 * 			see writesNamedGraphs().
+	 */
+	public Dataset createWorkerDataset(Dataset dataset, boolean write) {
+		Dataset worker = DatasetFactory.wrap(new DatasetGraphMapLink(GraphFactory.createDefaultGraph()));
+		Txn.executeRead(dataset, () -> {
+			Iterator<String> iter = dataset.listNames();
+			while(iter.hasNext()) {
+				String graph = iter.next();
+				Model m = dataset.getNamedModel(graph);
+				if (this != MEM)
+					worker.addNamedModel(graph, m);
+				else if (!(m.getGraph() instanceof FrozenGraph))
+					worker.addNamedModel(graph, ModelFactory.createDefaultModel().add(m));
+				else if (write)
+					worker.addNamedModel(graph, ModelFactory.createModelForGraph(
+							new OverlayUnionGraph(Collections.<Graph>singletonList(m.getGraph()))));
+				else
+					worker.addNamedModel(graph, m);
+			}
+		});
+		return worker;
+	}
+
+	/**
+	 * Start the transaction of a worker on the calling thread. No-op for MEM.
+	 * @param write
+	 * 			true, if the updates may change external graphs,
+	 * 			see writesNamedGraphs().
+	 */
+	public void begin(Dataset dataset, boolean write) {
+		if (this != MEM)
+			dataset.begin(write ? TxnType.WRITE : TxnType.READ);
+	}
+
+	/**
+	 * Determine whether updates may change any graph but the default graph, i.e.
+	 * by GRAPH or WITH clauses in INSERT or DELETE, or any graph management
+	 * operation like LOAD, CLEAR or DROP.
+	 *
+	 * Transactions are not promoted on demand, since concurrent promotions
+	 * stalled with Jena's transactional in-memory datasets.
+	 */
+	public static boolean writesNamedGraphs(List<UpdateRequest> updateRequests) {
+		for (UpdateRequest request:updateRequests) {
+			for (Update update:request.getOperations()) {
+				if (update instanceof UpdateModify) {
+					UpdateModify modify = (UpdateModify) update;
+					if (modify.getWithIRI() != null 
+							|| !inDefaultGraph(modify.getInsertQuads()) 
+							|| !inDefaultGraph(modify.getDeleteQuads()))
+						return true;
+				} else if (update instanceof UpdateData) {
+					if (!inDefaultGraph(((UpdateData) update).getQuads()))
+						return true;
+				} else if (update instanceof UpdateDeleteWhere) {
+					if (!inDefaultGraph(((UpdateDeleteWhere) update).getQuads()))
+						return true;
+				} else {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean inDefaultGraph(List<Quad> quads) {
+		for (Quad quad:quads) {
+			if (!quad.isDefaultGraph())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Commit and end the transaction of a worker on the calling thread, if any.
+	 */
+	public void end(Dataset dataset) {
+		if (this == MEM || !dataset.isInTransaction())
+			return;
+		try {
+			dataset.commit();
+		} finally {
+			dataset.end();
+		}
+	}
+
+}
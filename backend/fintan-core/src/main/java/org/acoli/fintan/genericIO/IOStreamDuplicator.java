@@ -120,9 +120,10 @@ public final class IOStreamDuplicator extends StreamTransformerGenericIO impleme
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -233,9 +233,10 @@ public class SparqlStreamTransformerTDB extends StreamTransformerGenericIO imple
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 	
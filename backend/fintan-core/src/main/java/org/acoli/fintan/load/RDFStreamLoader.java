@@ -15,17 +15,38 @@
  */
 package org.acoli.fintan.load;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
+import org.acoli.fintan.core.FintanStreamHandler;
 import org.acoli.fintan.core.StreamLoader;
+import org.acoli.fintan.core.util.SegmentReader;
+import org.acoli.fintan.core.util.ThriftSegmentReader;
+import org.acoli.fintan.core.util.ThriftSegmentWriter;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RIOT;
+import org.apache.jena.riot.lang.RiotParsers;
+import org.apache.jena.riot.system.ErrorHandlerFactory;
+import org.apache.jena.riot.system.IRIResolver;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.ParserProfileStd;
+import org.apache.jena.riot.system.PrefixMap;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -45,10 +66,14 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 
 	//Factory methods
 	/**
-	 * Three parameters can be set in the JSON config:
+	 * Four parameters can be set in the JSON config:
 	 * 
 	 * `lang` to specify the RDF syntax. Supported languages follow the naming 
 	 * 		convention of Apache Jena (ttl, TURTLE, RDF/XML, N3, …)
+	 * 		RDF Thrift (RDFTHRIFT, TRDF) expects the binary stream of 
+	 * 		length-prefixed frames written by an RDFStreamWriter with the same 
+	 * 		lang. Each frame is loaded as one segment, all other parameters 
+	 * 		are ignored in this case.
 	 * 
 	 * `delimiter` to specify the textual delimiter indicating the end of a segment. 
 	 * 		The specified delimiter is always expected to be the full content of 
@@ -62,6 +87,14 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 	 * 		still retry with the last successful set of prefixes, but this will 
 	 * 		increase processing overhead. In this case the `globalPrefixes` flag
 	 * 		should be set to `true`.
+	 * 
+	 * `streamParser` (`true`/`false`) parses each segment directly with a RIOT 
+	 * 		parser, without copying it into a String. The prefixes are kept in 
+	 * 		a live prefix map carried across segments, like in a continuous 
+	 * 		Turtle file: prefixes declared in one segment remain valid for all 
+	 * 		following segments, so there is no retry and `globalPrefixes` 
+	 * 		is not required. Each Model carries all prefixes declared so far.
+	 * 		Only applies to Turtle, N3 and N-Triples.
 	 */
 	@Override
 	public RDFStreamLoader buildFromJsonConf(ObjectNode conf) throws IOException, IllegalArgumentException {
@@ -80,6 +113,9 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 		if (conf.hasNonNull("globalPrefixes")) {
 			loader.setGlobalPrefixes(conf.get("globalPrefixes").asBoolean());
 		}
+		if (conf.hasNonNull("streamParser")) {
+			loader.setStreamParser(conf.get("streamParser").asBoolean());
+		}
 		return loader;
 	}
 
@@ -97,6 +133,14 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 	private String segmentDelimiter = null;
 	private boolean globalPrefixes = false;
 	private String prefixCache = "";
+	private boolean streamParser = false;
+	// for streamParser: prefixes declared in previous segments
+	private final PrefixMap prefixMap = PrefixMapFactory.create();
+	private List<Model> outputBatch = new ArrayList<Model>();
+	// for checkpoints: segments read from the default stream and segments to be skipped on resume
+	private long segments = 0;
+	private long skipSegments = 0;
+	private static final Pattern PREFIX_DECLARATION = Pattern.compile("(?im)^\\s*@?prefix\\s");
 
 	public String getLang() {
 		return lang;
@@ -130,7 +174,15 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 		this.globalPrefixes = globalPrefixes;
 	}
 
-	private void processStream() {
+	public boolean isStreamParser() {
+		return streamParser;
+	}
+
+	public void setStreamParser(boolean streamParser) {
+		this.streamParser = streamParser;
+	}
+
+	private void processStream() throws IOException {
 		
 		// Spawn loaders for parallel processing, in case there are multiple streams.
 		for (String name:listInputStreamNames()) {
@@ -146,45 +198,133 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 			loader.setLang(lang);
 			loader.setSplit(split);
 			loader.setGlobalPrefixes(globalPrefixes);
-			try {
-				loader.setInputStream(getInputStream(name));
-				loader.setOutputStream(getOutputStream(name));
-			} catch (IOException e) {
-				LOG.error(e, e);
-				System.exit(1);
-			}
-			new Thread(loader).start();
+			loader.setStreamParser(streamParser);
+			loader.setInputStream(getInputStream(name));
+			loader.setOutputStream(getOutputStream(name));
+			getScheduler().execute(loader, getInstanceName()+"<"+name+">");
 		}
 		
 		//terminate in case there is no default stream. 
 		//named streams are handled in subthreads.
 		if (getOutputStream()==null) return;
 		
+		if (getCheckpoint() != null) {
+			skipSegments = getCheckpoint().getResumeSegments();
+			if (skipSegments > 0) 
+				LOG.info("Skipping "+skipSegments+" segments committed by a previous run.");
+		}
+		
 		// process default stream
+		if (ThriftSegmentWriter.isThriftLang(lang)) {
+			processThriftStream();
+			return;
+		}
+		Lang parserLang = null;
+		if (streamParser) {
+			parserLang = streamParserLang();
+			if (parserLang == null) 
+				LOG.warn("streamParser does not support lang "+lang+". Falling back to default parser.");
+		}
 		BufferedReader in = new BufferedReader(new InputStreamReader(getInputStream()));
-		String rdfsegment = "";
 		try {
-			for(String line = in.readLine(); line !=null; line=in.readLine()) {
-				if (split && segmentDelimiter == null) {
-					outputSegment(line+"\n", "");
-				} else if (split && line.equals(segmentDelimiter)) {
-					outputSegment(rdfsegment, "");
-
-					rdfsegment = "";
-				} else {
-					rdfsegment+=line+"\n";
+			if (split && segmentDelimiter == null) {
+				for(String line = in.readLine(); line !=null; line=in.readLine()) {
+					if (skipSegment()) {
+						if (declaresPrefixes(line)) 
+							parseSegment(line+"\n");
+						continue;
+					}
+					if (parserLang != null)
+						outputSegment(parseSegment(new StringReader(line+"\n"), parserLang), in.ready());
+					else
+						outputSegment(parseSegment(line+"\n"), in.ready());
+				}
+			} else {
+				SegmentReader segments = new SegmentReader(in, split ? segmentDelimiter : null);
+				while (segments.next()) {
+					//final segment in case there is no segmentDelimiter in last row
+					if (segments.isDelimited() || !segments.isBlank()) {
+						if (skipSegment()) {
+							if (!declaresPrefixes(segments.segment())) 
+								continue;
+							if (parserLang != null)
+								parseSegment(segments.segmentReader(), parserLang);
+							else
+								parseSegment(segments.toString());
+							continue;
+						}
+						if (parserLang != null)
+							outputSegment(parseSegment(segments.segmentReader(), parserLang), in.ready());
+						else
+							outputSegment(parseSegment(segments.toString()), in.ready());
+					}
 				}
 			}
-			//final segment in case there is no segmentDelimiter in last row
 		} catch (IOException e) {
 			LOG.trace("Error when reading from Stream: " +e);
 		}
-		if (!rdfsegment.trim().isEmpty())
-			outputSegment(rdfsegment, "");
+		flushOutputBatch();
+		getOutputStream().terminate();
+	}
+	
+	/**
+	 * Load the default stream from RDF Thrift frames, one segment per frame.
+	 */
+	private void processThriftStream() {
+		ThriftSegmentReader in = new ThriftSegmentReader(new BufferedInputStream(getInputStream()));
+		try {
+			for (Model m = in.read(); m != null; m = in.read()) {
+				if (!skipSegment()) 
+					outputSegment(m, in.ready());
+			}
+		} catch (IOException e) {
+			LOG.error("Error when reading from Stream: " +e);
+		}
+		flushOutputBatch();
 		getOutputStream().terminate();
 	}
 	
-	private void outputSegment(String rdfsegment, String outputStreamName) {
+	/**
+	 * Counts a segment read from the default stream.
+	 * @return true, if the segment has been committed by all writers of a 
+	 * 		checkpointed pipeline and is skipped.
+	 */
+	private boolean skipSegment() {
+		segments++;
+		if (getCheckpoint() != null) 
+			getCheckpoint().recordInput(getInstanceName(), segments);
+		return segments <= skipSegments;
+	}
+	
+	/**
+	 * Skipped segments are only parsed if they declare prefixes, 
+	 * which may be required by the following segments.
+	 */
+	private static boolean declaresPrefixes(CharSequence segment) {
+		return PREFIX_DECLARATION.matcher(segment).find();
+	}
+	
+	/**
+	 * Segments are written in batches. A batch is flushed as soon as it is full
+	 * or no further input is immediately available, so downstream components
+	 * never wait for segments which have already been parsed.
+	 */
+	private void outputSegment(Model m, boolean inputReady) {
+		outputBatch.add(m);
+		if (outputBatch.size() >= FintanStreamHandler.DEFAULT_BATCH_SIZE || !inputReady) 
+			flushOutputBatch();
+	}
+	
+	private void flushOutputBatch() {
+		try {
+			getOutputStream().writeAll(outputBatch);
+		} catch (InterruptedException e) {
+			LOG.error("Error when writing to Stream: "+e);
+		}
+		outputBatch = new ArrayList<Model>();
+	}
+	
+	private Model parseSegment(String rdfsegment) {
 		Model m = ModelFactory.createDefaultModel();
 		
 		if (globalPrefixes) 
@@ -201,13 +341,38 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 		
 		if (!globalPrefixes || prefixCache.length()==0) 
 			cachePrefixes(m.getNsPrefixMap());
-		try {
-			getOutputStream(outputStreamName).write(m);
-		} catch (InterruptedException e) {
-			LOG.error("Error when writing to Stream "+outputStreamName+": "+e);
-		}
+		return m;
 	}
 	
+	/**
+	 * @return the RIOT language for the streamParser, null if lang is not supported.
+	 */
+	private Lang streamParserLang() {
+		Lang l = RDFLanguages.nameToLang(lang);
+		if (l == null) return null;
+		if (RDFLanguages.sameLang(l, Lang.TURTLE) || RDFLanguages.sameLang(l, Lang.N3))
+			return Lang.TURTLE;
+		if (RDFLanguages.sameLang(l, Lang.NTRIPLES))
+			return Lang.NTRIPLES;
+		return null;
+	}
+
+	/**
+	 * Parse a segment directly into a Model, resolving prefixes against 
+	 * the prefix map shared by all segments. Prefixes declared in the segment 
+	 * are added to it.
+	 */
+	private Model parseSegment(Reader rdfsegment, Lang parserLang) {
+		Model m = ModelFactory.createDefaultModel();
+		// a fresh profile per segment: blank node labels are scoped to their segment.
+		ParserProfile profile = new ParserProfileStd(RiotLib.factoryRDF(), 
+				ErrorHandlerFactory.getDefaultErrorHandler(), IRIResolver.create(), 
+				prefixMap, RIOT.getContext().copy(), true, false);
+		RiotParsers.createParser(rdfsegment, parserLang, StreamRDFLib.graph(m.getGraph()), profile).parse();
+		m.setNsPrefixes(prefixMap.getMappingCopyStr());
+		return m;
+	}
+
 	private void cachePrefixes(Map<String,String> prefixMap) {
 		if (prefixMap == null) return;
 		//assemble prefixes:
@@ -222,6 +387,14 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 		prefixCache = prefixWright.toString();
 	}
 
+	/**
+	 * Checkpoints are supported for the default stream.
+	 */
+	@Override
+	public boolean supportsCheckpoint() {
+		return true;
+	}
+
 	@Override
 	public void start() {
 		run();
@@ -231,9 +404,10 @@ public class RDFStreamLoader extends StreamLoader implements FintanStreamCompone
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
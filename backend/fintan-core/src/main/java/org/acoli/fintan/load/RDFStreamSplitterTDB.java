@@ -588,10 +588,12 @@ public class RDFStreamSplitterTDB extends StreamLoader implements FintanStreamCo
 		public void run() {
 			try {
 				processStream();
+			} catch (RuntimeException e) {
+				tdbDataset.close();
+				throw e;
 			} catch (Exception e) {
-				LOG.error(e, e);
 				tdbDataset.close();
-				System.exit(1);
+				throw new IllegalStateException(e);
 			}
 		}
 
@@ -119,9 +119,10 @@ public final class RDFStreamDuplicator extends StreamRdfUpdater implements Finta
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -31,32 +31,50 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 
 import org.acoli.fintan.core.FintanInputStream;
+import org.acoli.fintan.core.FintanScheduler;
+import org.acoli.fintan.core.FintanStreamHandler;
 import org.acoli.fintan.core.StreamRdfUpdater;
+import org.acoli.fintan.core.metrics.LatencyHistogram;
+import org.acoli.fintan.core.util.FintanCache;
+import org.acoli.fintan.core.util.GraphChangeTracker;
 import org.acoli.fintan.core.util.IOUtils;
+import org.acoli.fintan.core.util.OverlayUnionGraph;
+import org.acoli.fintan.core.util.ReorderBuffer;
+import org.acoli.fintan.core.util.SegmentBatchRewriter;
+import org.acoli.fintan.core.util.SemiNaiveUpdate;
+import org.acoli.fintan.core.util.UpdateDatasetMode;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.MutableTriple;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.query.Dataset;
-import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.QueryParseException;
-import org.apache.jena.rdf.listeners.ChangedListener;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.update.Update;
 import org.apache.jena.update.UpdateAction;
-import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.system.Txn;
 import org.apache.jena.update.UpdateRequest;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -70,42 +88,56 @@ public class RDFUpdater extends StreamRdfUpdater {
 	public static final Logger LOG = LogManager.getLogger(RDFUpdater.class);
 	public static final String DEFAULTUPDATENAME = "DIRECTUPDATE";
 	public static final int MAXITERATE = 999;
-	public static final List<Integer> CHECKINTERVAL = Arrays.asList(3, 10, 25, 50, 100, 200, 500);
 	public static final String LOOKBACK_GRAPH = "https://github.com/acoli-repo/conll-rdf/lookback";
 	public static final String LOOKAHEAD_GRAPH = "https://github.com/acoli-repo/conll-rdf/lookahead";
 
+	private final UpdateDatasetMode mode;
 	private final Dataset dataset;
+	// true, if workers need write transactions on the dataset
+	private boolean writesExternalGraphs = false;
 
 	// Configuration Variables with defaults set
 	private boolean prefixDeduplication = false;
 	private int threads = 0;
 	private int lookahead_sgts = 0;
 	private int lookback_sgts = 0;
+	private boolean ordered = true;
+	private int reorderBuffer = ReorderBuffer.DEFAULT_CAPACITY;
+	private boolean semiNaive = true;
+	private int batchSize = 1;
 	private File graphOutputDir = null;
 	private File triplesOutputDir = null;
 
 	//for updates
 	private final List<Triple<String, String, String>> updates = Collections.synchronizedList(new ArrayList<Triple<String, String, String>>());
+	// updates compiled once by parseUpdates, shared read-only by all workers (same order as updates)
+	private final List<UpdateRequest> updateRequests = Collections.synchronizedList(new ArrayList<UpdateRequest>());
+	// updates rewritten for batches of segments by initThreads, null if batch mode is inactive
+	private List<UpdateRequest> batchUpdateRequests = null;
+	// semi-naive versions of the updates, null if not supported (same order as updates)
+	private final List<SemiNaiveUpdate> semiNaiveUpdates = Collections.synchronizedList(new ArrayList<SemiNaiveUpdate>());
+	// time in ns it took to parse each update, for statistics
+	private final List<Long> updateParseTimes = Collections.synchronizedList(new ArrayList<Long>());
+	// latency of each update per segment or batch, only if metrics are enabled (same order as updates)
+	private LatencyHistogram[] updateLatencies = null;
 	//For graphsout and triplesout
 	private final List<String> graphOutputSegments = Collections.synchronizedList(new ArrayList<String>());
 	private final List<String> triplesOutputSegments = Collections.synchronizedList(new ArrayList<String>());
 	private String triplesOutSegmentClass = "http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#Sentence"; //defaults to CoNLL-RDF's nif:Sentence
 
 	// for thread handling
-	private boolean running = false;
-	private final List<UpdateThread> updateThreads = Collections.synchronizedList(new ArrayList<UpdateThread>());
-	// Buffer providing each thread with its respective segment(s) to process
-	// <List:lookbackBuffer>, <String:currentSegment>, <List:lookaheadBuffer>
-	private final List<Triple<List<Model>, Model, List<Model>>> segtBufferThreads = Collections.synchronizedList(new ArrayList<Triple<List<Model>, Model, List<Model>>>());
+	// worker pool on the pipeline's scheduler. Submitting blocks while the pool is full.
+	private FintanScheduler.WorkerPool executor;
+	// idle workers, each one holding its own working Dataset
+	private final BlockingQueue<UpdateWorker> idleWorkers = new LinkedBlockingQueue<UpdateWorker>();
+	private final List<UpdateWorker> updateWorkers = Collections.synchronizedList(new ArrayList<UpdateWorker>());
 
 	private final List<Model> segtBufferLookahead = Collections.synchronizedList(new ArrayList<Model>());
 	private final List<Model> segtBufferLookback = Collections.synchronizedList(new ArrayList<Model>());
-	// Buffer for outputting segments in original order
-	private final List<Pair<Integer, Model>> segtBufferOut = Collections.synchronizedList(new ArrayList<Pair<Integer, Model>>()); 
-
-	//for statistics
-	private final List<List<Pair<Integer,Long>>> dRTs = Collections.synchronizedList(new ArrayList<List<Pair<Integer,Long>>>());
-	// iterations and execution time of each update in seconds
+	// Buffer for outputting segments in original order, or as soon as they are processed.
+	private ReorderBuffer<Model> segtBufferOut; 
+	// first segment which failed in a pipeline with a checkpoint, rethrown by the reading thread. Guarded by this.
+	private Throwable failure;
 
 	
 	@Override
@@ -120,191 +152,228 @@ public class RDFUpdater extends StreamRdfUpdater {
 	
 	
 
-	private class UpdateThread extends Thread {
+	/**
+	 * A single segment or a batch of segments processed by one of the pooled workers.
+	 * Completion triggers a flush of the output buffer.
+	 * (CF 2022-03-03: allows immediate responses in "live" pipelines)
+	 */
+	private class UpdateTask extends FutureTask<List<Model>> {
+
+		private final long sequence;
+		private final int size;
+
+		/**
+		 * @param segtBufferThread
+		 * 			<List:lookbackBuffer>, <Model:currentSegment>, <List:lookaheadBuffer>
+		 * @param sequence
+		 * 			sequence number of the segment in the output buffer.
+		 */
+		public UpdateTask(final Triple<List<Model>, Model, List<Model>> segtBufferThread, long sequence) {
+			this(worker -> Collections.singletonList(worker.process(segtBufferThread)), sequence, 1);
+		}
+
+		/**
+		 * @param segments
+		 * 			the batch of segments, see setBatchSize().
+		 * @param sequence
+		 * 			sequence number of the first segment in the output buffer, 
+		 * 			the following segments have consecutive numbers.
+		 */
+		public UpdateTask(final List<Model> segments, long sequence) {
+			this(worker -> worker.processBatch(segments), sequence, segments.size());
+		}
+
+		private UpdateTask(final Function<UpdateWorker, List<Model>> work, long sequence, int size) {
+			super(new Callable<List<Model>>() {
+				@Override
+				public List<Model> call() throws Exception {
+					UpdateWorker worker = idleWorkers.take();
+					getScheduler().acquireCpu();
+					try {
+						return work.apply(worker);
+					} finally {
+						getScheduler().releaseCpu();
+						idleWorkers.put(worker);
+					}
+				}
+			});
+			this.sequence = sequence;
+			this.size = size;
+		}
+
+		@Override
+		protected void done() {
+			List<Model> out = null;
+			try {
+				out = get();
+			} catch (ExecutionException e) {
+				LOG.error(e, e);
+				if (isCheckpointed()) 
+					fail(e.getCause());
+			} catch (CancellationException e) {
+				LOG.error(e, e);
+				if (isCheckpointed()) 
+					fail(e);
+			} catch (InterruptedException e) {
+				LOG.error("Resuming from interrupted thread when reading processed segment: " +e);
+			}
+			// segments which failed to process are skipped, 
+			// unless the pipeline has a checkpoint, see flushOutputBuffer()
+			for (int i = 0; i < size; i++)
+				segtBufferOut.complete(sequence + i, (out != null) ? out.get(i) : null);
+			flushOutputBuffer();
+		}
+	}
+
+	private class UpdateWorker {
 		
-		private RDFUpdater updater;
-		private int threadID;
+		private int workerID;
 		private Dataset memDataset;
+		//for statistics: iterations and execution time of each update in ms
+		private final List<Pair<Integer,Long>> dRT = new ArrayList<Pair<Integer,Long>>();
 		
 		/**
-		 * Each UpdateThread receives its own ID and a back-reference to the calling Updater.
+		 * Each UpdateWorker receives its own ID.
 		 * 
-		 * In the current implementation, each thread manages its own in-memory Dataset.
-		 * This is the fastest approach since no concurring access on a single Datasets occurs.
-		 * However: lots of RAM may be needed.
+		 * Each worker manages its own working Dataset with a private default graph.
+		 * In MEM mode, external graphs are immutable FrozenGraphs shared by all workers, 
+		 * or private overlays on them if the updates may change them. In TXN and TDB2 
+		 * mode, they are views on the shared dataset.
+		 * 
+		 * The Dataset links its graphs by reference. Lookback and lookahead graphs 
+		 * are union views on the buffered segments, so no triples are copied.
 		 * 
-		 * @param updater
-		 * 				The calling Updater (= ThreadHandler)
 		 * @param id
-		 * 				The id of this Thread.
+		 * 				The id of this worker.
 		 */
-		public UpdateThread(RDFUpdater updater, int id) {
-			this.updater = updater;
-			threadID = id;
-			memDataset = DatasetFactory.create();
-			Iterator<String> iter = updater.dataset.listNames();
-			while(iter.hasNext()) {
-				String graph = iter.next();
-				memDataset.addNamedModel(graph, updater.dataset.getNamedModel(graph));
-			}
+		public UpdateWorker(int id) {
+			workerID = id;
+			memDataset = mode.createWorkerDataset(dataset, writesExternalGraphs);
 			memDataset.addNamedModel(LOOKBACK_GRAPH, ModelFactory.createDefaultModel());
 			memDataset.addNamedModel(LOOKAHEAD_GRAPH, ModelFactory.createDefaultModel());
 		}
 		
 		/**
-		 * Run the update thread.
+		 * Process a single segment.
 		 * Load the buffer, execute the updates with all iterations and graphsout, unload the buffer.
+		 * 
+		 * @return the updated segment or null, if processing failed.
 		 */
-		public void run() {
-			while (updater.running) {
-				//Execute Thread
-
-				Model out = null;
-				LOG.trace("NOW Processing on thread "+threadID+": outputbuffersize "+segtBufferOut.size());
-				Triple<List<Model>, Model, List<Model>> segtBufferThread = segtBufferThreads.get(threadID);
-				try {
-					loadBuffer(segtBufferThread);
-					
-					List<Pair<Integer,Long> > ret = executeUpdates(updates);
-					if (dRTs.get(threadID).isEmpty())
-						dRTs.get(threadID).addAll(ret);
-					else
-						for (int x = 0; x < ret.size(); ++x)
-							dRTs.get(threadID).set(x, new ImmutablePair<Integer, Long>(
-									dRTs.get(threadID).get(x).getKey() + ret.get(x).getKey(),
-									dRTs.get(threadID).get(x).getValue() + ret.get(x).getValue()));
-					
-					out = unloadBuffer(segtBufferThread);
-				} catch (Exception e) {
-//					memDataset.begin(ReadWrite.WRITE);
-					memDataset.getDefaultModel().removeAll();
-					memDataset.getNamedModel(LOOKBACK_GRAPH).removeAll();
-					memDataset.getNamedModel(LOOKAHEAD_GRAPH).removeAll();
-//					memDataset.commit();
-//					memDataset.end();
-
-					LOG.error(e, e);
-//					continue;
-				}
-
-				
-				
-				// synchronized write access to segtBuffer in order to avoid corruption
-				synchronized(updater) {
-				LOG.trace("NOW PRINTING on thread "+threadID+": outputbuffersize "+segtBufferOut.size());
-				for (int i = 0; i < segtBufferOut.size(); i++) {
-					if (segtBufferOut.get(i).getLeft() == threadID) {
-						segtBufferOut.set(i, new ImmutablePair<Integer, Model>(-1, out));
-						break;
-					}
-				}	
+		public Model process(Triple<List<Model>, Model, List<Model>> segtBufferThread) {
+			Model out = null;
+			LOG.trace("NOW Processing on worker "+workerID);
+			mode.begin(dataset, writesExternalGraphs);
+			try {
+				loadBuffer(segtBufferThread);
 				
-				//CF 2022-03-03: thread calls flush directly. Allows immediate responses in "live" pipelines
-				flushOutputBuffer();
+				addStatistics(executeUpdates(updates, updateRequests));
 				
-				//go to sleep and let Updater take control
-					LOG.trace("Updater notified by "+threadID);
-					updater.notify();
-
-				}
-				try {
-					synchronized (this) {
-						LOG.trace("Waiting: "+threadID);
-						wait();
+				out = unloadBuffer(segtBufferThread);
+			} catch (Exception e) {
+				if (isCheckpointed())
+					throw new IllegalStateException("Segment could not be processed.", e);
+				LOG.error(e, e);
+			} finally {
+				mode.end(dataset);
+			}
+			return out;
+		}
+		
+		/**
+		 * Process a batch of segments with a single execution of each update 
+		 * per iteration, see SegmentBatchRewriter.
+		 * 
+		 * @return the updated segments in the same order, or null if processing failed.
+		 */
+		public List<Model> processBatch(List<Model> segments) {
+			List<Model> out = new ArrayList<Model>(segments.size());
+			LOG.trace("NOW Processing batch of "+segments.size()+" segments on worker "+workerID);
+			mode.begin(dataset, writesExternalGraphs);
+			try {
+				// private copies, since the segments are handed out directly afterwards.
+				// Unused graphs of the batch are left empty.
+				memDataset.setDefaultModel(ModelFactory.createDefaultModel());
+				for (int i = 0; i < batchSize; i++) {
+					Model segt = ModelFactory.createDefaultModel();
+					if (i < segments.size()) {
+						segt.add(segments.get(i));
+						out.add(segt);
 					}
-				} catch (InterruptedException e) {
-					LOG.error(e, e);
+					memDataset.replaceNamedModel(SegmentBatchRewriter.segmentGraph(i), segt);
 				}
+				
+				addStatistics(executeBatchUpdates(out));
+			} catch (Exception e) {
+				if (isCheckpointed())
+					throw new IllegalStateException("Batch of segments could not be processed.", e);
+				LOG.error(e, e);
+				out = null;
+			} finally {
+				mode.end(dataset);
 			}
+			return out;
+		}
+		
+		private void addStatistics(List<Pair<Integer,Long>> ret) {
+			if (dRT.isEmpty())
+				dRT.addAll(ret);
+			else
+				for (int x = 0; x < ret.size(); ++x)
+					dRT.set(x, new ImmutablePair<Integer, Long>(
+							dRT.get(x).getKey() + ret.get(x).getKey(),
+							dRT.get(x).getValue() + ret.get(x).getValue()));
 		}
 		
 		/**
-		 * Loads Data to this thread's working model.
+		 * Loads Data to this worker's working model.
 		 * @param buffer 
 		 * 			the model to be read.
 		 * @throws Exception
 		 */
-		private void loadBuffer(Triple<List<Model>, Model, List<Model>> segtBufferThread) throws Exception { //TODO: adjust for TXN-Models
-			//load ALL
+		private void loadBuffer(Triple<List<Model>, Model, List<Model>> segtBufferThread) throws Exception {
 			try {
-//				memDataset.begin(ReadWrite.WRITE);
-				
 				// for lookback
-				for (Model m:segtBufferThread.getLeft()) {
-					memDataset.getNamedModel(LOOKBACK_GRAPH).add(m);
-				}
+				memDataset.replaceNamedModel(LOOKBACK_GRAPH, createWindowModel(segtBufferThread.getLeft()));
 				
-				// for current segment
-				memDataset.getDefaultModel().add(segtBufferThread.getMiddle());
+				// for current segment: private copy, since the segment may be part of other windows
+				memDataset.setDefaultModel(ModelFactory.createDefaultModel().add(segtBufferThread.getMiddle()));
 
 				// for lookahead
-				for (Model segt:segtBufferThread.getRight()) {
-					memDataset.getNamedModel(LOOKAHEAD_GRAPH).add(segt);
-				}
-				
-//				memDataset.commit();
-//				Model m = ModelFactory.createDefaultModel().read(new StringReader(buffer),null, "TTL");
-//				memAccessor.add(m);
-//				memDataset.getDefaultModel().setNsPrefixes(m.getNsPrefixMap());
+				memDataset.replaceNamedModel(LOOKAHEAD_GRAPH, createWindowModel(segtBufferThread.getRight()));
 			} catch (Exception ex) {
 				LOG.error("Exception while reading: " + segtBufferThread.getMiddle());
 				throw ex;
-			} finally {
-//				memDataset.end();
 			}
 			
 		}
 
 		/**
-		 * Unloads Data from this thread's working model.
-		 * Includes comments from original data.
-		 * @param buffer
-		 * 			Original data for extracting comments.
-		 * @param out
-		 * 			Output Writer.
-		 * @throws Exception
+		 * Unloads Data from this worker's working model.
+		 * The default graph is created per segment, so it is handed out directly.
+		 * @param segtBufferThread
+		 * 			Original data.
+		 * @return the updated segment.
 		 */
-		private Model unloadBuffer(Triple<List<Model>, Model, List<Model>> segtBufferThread) throws Exception { //TODO: adjust for TXN-Models
-			Model out = ModelFactory.createDefaultModel();
-//START		ARTIFACT for writing comments
-//			String buffer = segtBufferThread.getMiddle();
-			try {
-//				BufferedReader in = new BufferedReader(new StringReader(buffer));
-//				String line;
-//				while((line=in.readLine())!=null) {
-//					line=line.trim();
-//					if(line.startsWith("#")) out.write(line+"\n");
-//				}
-//END		ARTIFACT
-				out.add(memDataset.getDefaultModel());
-			} catch (Exception ex) {
-//				memDataset.abort();
-//				LOG.error("Exception while unloading: " + buffer);
-			} finally {
-//				memDataset.begin(ReadWrite.WRITE);
-				memDataset.getDefaultModel().removeAll();
-				memDataset.getNamedModel(LOOKBACK_GRAPH).removeAll();
-				memDataset.getNamedModel(LOOKAHEAD_GRAPH).removeAll();
-//				memDataset.commit();
-//				memDataset.end();
-			}
-			return out;
+		private Model unloadBuffer(Triple<List<Model>, Model, List<Model>> segtBufferThread) {
+			return memDataset.getDefaultModel();
 		}
 		
 		/**
-		 * Executes updates on this thread. Data must be preloaded first.
+		 * Executes updates on this worker. Data must be preloaded first.
 		 * 
 		 * @param updates
 		 * 			The updates as a List of Triples containing
 		 * 			- update filename
 		 * 			- update script
 		 * 			- number of iterations
+		 * @param updateRequests
+		 * 			The precompiled UpdateRequests in the same order as updates
 		 * @return
 		 * 			List of pairs containing Execution info on each update:
 		 * 			- total no. of iterations
 		 * 			- total time
 		 */
-		private List<Pair<Integer, Long>> executeUpdates(List<Triple<String, String, String>> updates) { 
+		private List<Pair<Integer, Long>> executeUpdates(List<Triple<String, String, String>> updates, List<UpdateRequest> updateRequests) { 
 
 			String segt = new String();
 			boolean graphsout = false;
@@ -337,12 +406,12 @@ public class RDFUpdater extends StreamRdfUpdater {
 			int upd_id = 1;
 			int iter_id = 1;
 			for(Triple<String, String, String> update : updates) {
+				final UpdateRequest updateRequest = updateRequests.get(upd_id - 1);
 				iter_id = 1;
 				Long startTime = System.currentTimeMillis();
+				long startNanos = System.nanoTime();
 				Model defaultModel = memDataset.getDefaultModel();
-				ChangedListener cL = new ChangedListener();
-				defaultModel.register(cL);
-				String oldModel = "";
+				GraphChangeTracker changeTracker = new GraphChangeTracker(defaultModel.getGraph());
 				int frq = MAXITERATE, v = 0;
 				boolean change = true;
 				try {
@@ -351,22 +420,23 @@ public class RDFUpdater extends StreamRdfUpdater {
 					if (!"*".equals(update.getRight()))
 						throw e;
 				}
+				// iterated updates: after the first iteration, only evaluate bindings of the added triples
+				SemiNaiveUpdate.Evaluation semiNaiveEvaluation = null;
+				if (semiNaive && frq > 1 && !graphsout && !triplesout && semiNaiveUpdates.get(upd_id - 1) != null)
+					semiNaiveEvaluation = semiNaiveUpdates.get(upd_id - 1).start(memDataset);
 				while(v < frq && change) {
+					changeTracker.mark();
 					try {
-						UpdateRequest updateRequest;
-						updateRequest = UpdateFactory.create(update.getMiddle());
 						if (graphsout || triplesout) { //execute Update-block step by step and output intermediate results
 							int step = 1;
-							Model dM = memDataset.getDefaultModel();
-							String dMS = dM.toString();
-							ChangedListener cLdM = new ChangedListener();
-							dM.register(cLdM);
+							GraphChangeTracker stepTracker = new GraphChangeTracker(defaultModel.getGraph());
 							for(Update operation : updateRequest.getOperations()) {
+								stepTracker.mark();
 								//							memDataset.begin(ReadWrite.WRITE);
 								UpdateAction.execute(operation, memDataset);
 								//							memDataset.commit();
 								//							memDataset.end();
-								if (cLdM.hasChanged() && (!dMS.equals(memDataset.getDefaultModel().toString()))) {
+								if (stepTracker.hasChanged()) {
 									if (graphsout) try {
 										produceDot(defaultModel, update.getLeft(), operation.toString(), segt, upd_id, iter_id, step);
 									} catch (IOException e) {
@@ -382,6 +452,9 @@ public class RDFUpdater extends StreamRdfUpdater {
 								}
 								step++;
 							}
+							stepTracker.close();
+						} else if (semiNaiveEvaluation != null) {
+							semiNaiveEvaluation.iterate();
 						} else { //execute updates en bloc
 							//						memDataset.begin(ReadWrite.WRITE);
 							UpdateAction.execute(updateRequest, memDataset); //REMOVE THE PARAMETERS segt_id, upd_id, iter_id to use deshoe's original file names
@@ -394,27 +467,95 @@ public class RDFUpdater extends StreamRdfUpdater {
 					}
 					
 					
-					if (oldModel.isEmpty()) {
-						change = cL.hasChanged();
-						LOG.trace("cl.hasChanged(): "+change);
-					} else {
-						change = !defaultModel.toString().equals(oldModel);
-						oldModel = "";
-					}
-					if (CHECKINTERVAL.contains(v))
-						oldModel = defaultModel.toString();
+					change = changeTracker.hasChanged();
+					LOG.trace("changeTracker.hasChanged(): "+change);
 					v++;
 					iter_id++;
 				}
 				if (v == MAXITERATE)
 					LOG.warn("Warning: MAXITERATE reached for " + update.getLeft() + ".");
 				result.add(new ImmutablePair<Integer, Long>(v, System.currentTimeMillis() - startTime));
-				defaultModel.unregister(cL);
+				if (updateLatencies != null) 
+					updateLatencies[upd_id - 1].record(System.nanoTime() - startNanos);
+				changeTracker.close();
+				if (semiNaiveEvaluation != null)
+					semiNaiveEvaluation.close();
 				upd_id++;
 			}			
 			return result;
 		}
 		
+		/**
+		 * Executes the batch updates on this worker. The segments must be preloaded 
+		 * into the segment graphs first.
+		 * 
+		 * Iterations of an update stop for each segment separately, as soon as it
+		 * has not been changed. The segment is then replaced by an empty graph until 
+		 * the remaining segments are finished, so the iterations of each segment are 
+		 * the same as in executeUpdates().
+		 * 
+		 * @param segments
+		 * 			the loaded segments, in the order of their graphs.
+		 * @return
+		 * 			List of pairs containing Execution info on each update:
+		 * 			- total no. of iterations of all segments
+		 * 			- total time
+		 */
+		private List<Pair<Integer, Long>> executeBatchUpdates(List<Model> segments) {
+			List<Pair<Integer,Long> > result = new ArrayList<Pair<Integer,Long> >();
+			for (int upd_id = 0; upd_id < updates.size(); upd_id++) {
+				final Triple<String, String, String> update = updates.get(upd_id);
+				final UpdateRequest updateRequest = batchUpdateRequests.get(upd_id);
+				Long startTime = System.currentTimeMillis();
+				long startNanos = System.nanoTime();
+				int frq = MAXITERATE, v = 0, iterations = 0;
+				try {
+					frq = Integer.parseInt(update.getRight());
+				} catch (NumberFormatException e) {
+					if (!"*".equals(update.getRight()))
+						throw e;
+				}
+				// segments which may still change
+				List<Integer> active = new ArrayList<Integer>();
+				GraphChangeTracker[] changeTrackers = new GraphChangeTracker[segments.size()];
+				for (int i = 0; i < segments.size(); i++) {
+					active.add(i);
+					changeTrackers[i] = new GraphChangeTracker(segments.get(i).getGraph());
+				}
+				while(v < frq && !active.isEmpty()) {
+					for (int i:active)
+						changeTrackers[i].mark();
+					try {
+						UpdateAction.execute(updateRequest, memDataset);
+					} catch (Exception e) {
+						LOG.error("Error while processing update No. "+(upd_id + 1)+": "+update.getLeft());
+						LOG.error(e, e);
+					}
+					iterations += active.size();
+					for (Iterator<Integer> it = active.iterator(); it.hasNext(); ) {
+						int i = it.next();
+						if (!changeTrackers[i].hasChanged()) {
+							it.remove();
+							memDataset.replaceNamedModel(SegmentBatchRewriter.segmentGraph(i), ModelFactory.createDefaultModel());
+						}
+					}
+					v++;
+				}
+				if (v == MAXITERATE)
+					LOG.warn("Warning: MAXITERATE reached for " + update.getLeft() + ".");
+				// put back the finished segments for the next update
+				for (int i = 0; i < segments.size(); i++) {
+					changeTrackers[i].close();
+					if (!active.contains(i))
+						memDataset.replaceNamedModel(SegmentBatchRewriter.segmentGraph(i), segments.get(i));
+				}
+				result.add(new ImmutablePair<Integer, Long>(iterations, System.currentTimeMillis() - startTime));
+				if (updateLatencies != null) 
+					updateLatencies[upd_id].record(System.nanoTime() - startNanos);
+			}
+			return result;
+		}
+		
 		/**
 		 * Produce dotFile for a specific update iteration.
 		 * 
@@ -495,6 +636,17 @@ public class RDFUpdater extends StreamRdfUpdater {
 		}
 	}
 
+	/**
+	 * @return a copy-on-write union view on the buffered segments.
+	 */
+	private static Model createWindowModel(List<Model> segments) {
+		List<Graph> graphs = new ArrayList<Graph>(segments.size());
+		for (Model segt:segments) {
+			graphs.add(segt.getGraph());
+		}
+		return ModelFactory.createModelForGraph(new OverlayUnionGraph(graphs));
+	}
+
 	/**
 	 * Default Constructor providing empty data to the standard constructor.
 	 */
@@ -505,34 +657,31 @@ public class RDFUpdater extends StreamRdfUpdater {
 	/**
 	 * Standard Constructor for Updater. Creates Threads and Buffers for Thread handling.
 	 * Also creates the database modules for the respective execution modes.
-	 * @param type: The type of database to be used:
+	 * @param type: The type of database to be used for external graphs, see UpdateDatasetMode:
 	 * 				MEM: fully independent in-memory datasets per thread 
 	 * 						(fastest, no transactions, high RAM usage, no HDD)
 	 * 				TXN: single transactional in-memory dataset for all threads
-	 * 						(in development, medium speed and RAM, no HDD)
+	 * 						(medium speed and RAM, no HDD)
 	 * 				TDB2: single transactional TDB2-database for all threads
-	 * 						(in development, slow-medium speed, low RAM usage, high HDD usage)
+	 * 						(slow-medium speed, low RAM usage, high HDD usage)
 	 * 				default: MEM
 	 * @param path: 
-	 * 				path to database (only for TDB2 or other DB-backed modes)
+	 * 				directory for the temporary database (only for TDB2)
+	 * 				default: FintanManager.DEFAULT_TDB_PATH
 	 * @param threads
 	 * 				Maximum amount of threads for execution.
 	 * 				default: threads = number of logical cores available to runtime
+	 * @throws IllegalArgumentException if the type is unknown.
 	 */
 	public RDFUpdater(String type, String path, int threads) {
-		if (type.equals("TDB2")) {
-			//TODO
-			dataset = DatasetFactory.create();//TDB
-		} else if (type.equals("TXN")) {
-			dataset = DatasetFactory.createTxnMem();
-		} else {
-			dataset = DatasetFactory.createTxnMem();
-		}
-//		memAccessor = DatasetAccessorFactory.create(memDataset);
+		mode = UpdateDatasetMode.parse(type);
+		dataset = mode.createDataset(path, this);
 
 		setThreads(threads);
+	}
 
-		running = false;
+	public UpdateDatasetMode getDatasetMode() {
+		return mode;
 	}
 
 	public void setThreads(int threads) {
@@ -578,6 +727,69 @@ public class RDFUpdater extends StreamRdfUpdater {
 		return lookback_sgts;
 	}
 
+	/**
+	 * Defines whether processed segments are written in input order.
+	 * @param ordered
+	 * 			true (default): segments are written in input order.
+	 * 			false: segments are written as soon as they are processed, 
+	 * 			so a slow segment does not hold back the following ones.
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Defines the maximum number of segments in process or waiting for a preceding 
+	 * segment to be written. Reading further segments is blocked while it is reached.
+	 * @param reorderBuffer
+	 * 			maximum number of segments. 0 or less: unbounded.
+	 * 			default: ReorderBuffer.DEFAULT_CAPACITY
+	 */
+	public void setReorderBuffer(int reorderBuffer) {
+		this.reorderBuffer = reorderBuffer;
+	}
+	public int getReorderBuffer() {
+		return reorderBuffer;
+	}
+
+	/**
+	 * Defines whether iterated updates which only insert into the default graph
+	 * are evaluated semi-naively, see SemiNaiveUpdate. The results are the same,
+	 * but each iteration after the first one only evaluates the bindings of the 
+	 * triples added by the previous one.
+	 * @param semiNaive
+	 * 			true (default): semi-naive evaluation for all supported updates
+	 * 			false: each iteration executes the full update on the whole segment.
+	 */
+	public void setSemiNaive(boolean semiNaive) {
+		this.semiNaive = semiNaive;
+	}
+	public boolean isSemiNaive() {
+		return semiNaive;
+	}
+
+	/**
+	 * Activates the batch mode for small segments. Up to batchSize segments which
+	 * are available at once are processed by a single worker, and each update is 
+	 * executed once per batch instead of once per segment. The updates still only
+	 * match within a single segment. See SegmentBatchRewriter for the updates
+	 * supported. 
+	 * 
+	 * The batch mode is not used with lookahead, lookback, graphsout or triplesout, 
+	 * or if any update is not supported. 
+	 * @param batchSize
+	 * 			maximum number of segments per batch. 1 or less: no batches (default)
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	/**
 	 * Activates the graphsout mode for single graphviz .dot files per execution step.
 	 * @param dir
@@ -662,7 +874,8 @@ public class RDFUpdater extends StreamRdfUpdater {
 
 	/**
 	 * Load external RDF file into a named graph of the local dataset. 
-	 * This graph is permanent for the runtime and is accessed read-only by all threads.
+	 * This graph is permanent for the runtime and is accessed by all threads.
+	 * In TDB2 mode, the file is parsed directly into the database.
 	 * The default graph of the local dataset is reserved for updating nif:Sentences and 
 	 * can not be defined here.
 	 * @param url
@@ -681,10 +894,18 @@ public class RDFUpdater extends StreamRdfUpdater {
 		if (graph == null) {
 			graph = url;
 		}
-		Model m = ModelFactory.createDefaultModel();
+		final URI source = url;
 		try {
-			m.read(readInURI(url));
-			dataset.addNamedModel(graph.toString(), m);
+			if (mode.isDiskBased()) {
+				mode.readGraph(dataset, url, graph.toString());
+			} else {
+				Model m = FintanCache.loadModel(url, () -> {
+					Model model = ModelFactory.createDefaultModel();
+					model.read(readInURI(source));
+					return UpdateDatasetMode.freeze(model);
+				});
+				mode.addGraph(dataset, graph.toString(), m);
+			}
 		} catch (IOException ex) {
 			LOG.error("Exception while reading " + url + " into " + graph);
 			throw ex;
@@ -702,7 +923,13 @@ public class RDFUpdater extends StreamRdfUpdater {
 	 */
 	public void parseUpdates(List<Triple<String, String, String>> updatesRaw) throws IOException, ParseException {
 		updates.clear();
+		updateRequests.clear();
+		semiNaiveUpdates.clear();
+		updateParseTimes.clear();
 		final List<Triple<String, String, String>> updatesOut = new ArrayList<Triple<String, String, String>>(updatesRaw.size());
+		final List<UpdateRequest> updateRequestsOut = new ArrayList<UpdateRequest>(updatesRaw.size());
+		final List<SemiNaiveUpdate> semiNaiveUpdatesOut = new ArrayList<SemiNaiveUpdate>(updatesRaw.size());
+		final List<Long> updateParseTimesOut = new ArrayList<Long>(updatesRaw.size());
 
 		int updateNo = 0;
 		for(Triple<String, String, String> update: updatesRaw) {
@@ -735,9 +962,11 @@ public class RDFUpdater extends StreamRdfUpdater {
 				LOG.debug("StringReader ok");
 			}
 
+			UpdateRequest updateRequest;
 			try {
-				@SuppressWarnings("unused")
-				UpdateRequest qexec = UpdateFactory.create(updateScript);
+				long startTime = System.nanoTime();
+				updateRequest = FintanCache.parseUpdate(updateScript);
+				updateParseTimesOut.add(System.nanoTime() - startTime);
 			} catch (QueryParseException e) {
 				LOG.error("Failed to parse argument as sparql");
 				// if update looks like a file, but can't be found (=> DEFAUTUPDATENAME has been set by runtime "==", not "equals()")
@@ -749,9 +978,14 @@ public class RDFUpdater extends StreamRdfUpdater {
 				}
 			}
 			updatesOut.add(new ImmutableTriple<String, String, String> (updateName, updateScript, updateIterations));
+			updateRequestsOut.add(updateRequest);
+			semiNaiveUpdatesOut.add(SemiNaiveUpdate.compile(updateRequest));
 			LOG.debug("Update parsed ok");
 		}
 		updates.addAll(Collections.synchronizedList(updatesOut));
+		updateRequests.addAll(updateRequestsOut);
+		semiNaiveUpdates.addAll(semiNaiveUpdatesOut);
+		updateParseTimes.addAll(updateParseTimesOut);
 	}
 
 	/**
@@ -783,15 +1017,14 @@ public class RDFUpdater extends StreamRdfUpdater {
 		return result;
 	}
 	
-	private static void isValidUTF8(String s, String message) {
+	private static void isValidUTF8(String s, String message) throws IOException {
 		try 
 		{
 			s.getBytes("UTF-8");
 		} 
 		catch (UnsupportedEncodingException e)
 		{
-		    LOG.error(message + " - Encoding error: " + e.getMessage());
-		    System.exit(-1);
+			throw new IOException(message + " - Encoding error: " + e.getMessage(), e);
 		}		
 	}
 
@@ -799,36 +1032,60 @@ public class RDFUpdater extends StreamRdfUpdater {
 	 * Processes CoNLL-RDF on the local dataset using the predfined updates and threads.
 	 * Streams data from a buffered reader to a buffered writer. Distributes the processing 
 	 * across available threads. Each thread handles one segment at a time.
-	 * Caches and outputs the resulting segments in-order.
+	 * Caches and outputs the resulting segments in-order, unless ordered is false.
+	 * The dataset is closed afterwards, see UpdateDatasetMode.closeDataset().
 	 * @throws IOException
 	 */
 	protected void processStream() throws IOException {
+		try {
+			updateStream();
+		} finally {
+			mode.closeDataset(dataset);
+		}
+	}
+
+	private void updateStream() throws IOException {
 		
 		//consume all named input streams into named graphs as external models
 		//merge with preexisting data in that graph.
 		for (String name:listInputStreamNames()) {
 			if (name == FINTAN_DEFAULT_STREAM_NAME) 
 				continue;
+			//a frozen graph must not be modified, merge into a copy
+			mode.thawGraph(dataset, name);
 			
 			while (getInputStream(name).canRead()) {
 				try {
 					Model m = getInputStream(name).read();
 					//read may return null in case the queue has been emptied and terminated since asking for canRead()
 					if (m == null) continue;
-					dataset.getNamedModel(name).add(m);
+					Txn.executeWrite(dataset, () -> dataset.getNamedModel(name).add(m));
 				} catch (InterruptedException e) {
 					LOG.error("Error when reading from Stream: "+name, e);
 				}
 			}
+			mode.freezeGraph(dataset, name);
 		}
 		initThreads();
-		running = true;
 
-		
-//		List<Pair<Integer,Long> > dRTs = new ArrayList<Pair<Integer,Long> >(); // iterations and execution time of each update in seconds
-		while (getInputStream().canRead()) {
+		ArrayDeque<Model> batch = new ArrayDeque<Model>();
+		while (!batch.isEmpty() || getInputStream().canRead()) {
+			rethrowFailure();
 			try {
-				Model buffer = getInputStream().read();
+				//read all available segments at once, process them one by one
+				if (batch.isEmpty()) 
+					getInputStream().drainTo(batch, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+				if (batchUpdateRequests != null) {
+					//batch mode: process the segments available at once together, do not wait for more
+					List<Model> segments = new ArrayList<Model>(batchSize);
+					while (segments.size() < batchSize && !batch.isEmpty()) 
+						segments.add(batch.poll());
+					if (!segments.isEmpty())
+						executeBatch(segments);
+					flushOutputBuffer();
+					continue;
+				}
+				Model buffer = batch.poll();
 				if (buffer == null) continue;
 
 				// GRAPH OUTPUT determine first segment's id, if none were specified
@@ -870,52 +1127,51 @@ public class RDFUpdater extends StreamRdfUpdater {
 
 
 		// LOOKAHEAD work down remaining buffer
-		while (segtBufferLookahead.size()>0) {
-			executeThread(segtBufferLookahead.remove(0));
-			if (lookback_sgts > 0) {
-				while (segtBufferLookback.size() >= lookback_sgts + segtBufferLookahead.size()) segtBufferLookback.remove(0);
+		try {
+			while (segtBufferLookahead.size()>0) {
+				executeThread(segtBufferLookahead.remove(0));
+				if (lookback_sgts > 0) {
+					while (segtBufferLookback.size() >= lookback_sgts + segtBufferLookahead.size()) segtBufferLookback.remove(0);
+				}
 			}
+		} catch (InterruptedException e) {
+			LOG.error("Interrupted while processing the lookahead buffer: " +e);
 		}
 			
 		
-		//wait for threads to finish work
-		boolean threadsRunning = true;
-		while(threadsRunning) {
-			threadsRunning = false;
-			for (UpdateThread t:updateThreads) {
-				if (t != null)
-				if (t.getState() == Thread.State.RUNNABLE || t.getState() == Thread.State.BLOCKED) {
-					threadsRunning = true;
-				}
-			}
-		}
-		//terminate all threads
-		running = false;
-		for (UpdateThread t:updateThreads) {
-			if (t != null)
-			if(t.getState() == Thread.State.NEW) {
-				t.start(); //in case of spontaneous resurrection, new threads should not have any work to do at this point
-			} else if (!(t.getState() == Thread.State.TERMINATED)) {
-				synchronized(t) {
-					t.notify();
-				}
+		//wait for workers to finish work
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOG.debug("Waiting for remaining segments to be processed.");
 			}
+		} catch (InterruptedException e) {
+			LOG.error("Interrupted while waiting for workers to finish: " +e);
 		}
+		rethrowFailure();
 		
 		//sum up statistics
 		List<Pair<Integer,Long>> dRTs_sum = new ArrayList<Pair<Integer,Long> >();
-		for (List<Pair<Integer,Long>> dRT_thread:dRTs) {
+		for (UpdateWorker worker:updateWorkers) {
+			List<Pair<Integer,Long>> dRT_worker = worker.dRT;
 			if (dRTs_sum.isEmpty())
-				dRTs_sum.addAll(dRT_thread);
+				dRTs_sum.addAll(dRT_worker);
 			else
-				for (int x = 0; x < dRT_thread.size(); ++x)
+				for (int x = 0; x < dRT_worker.size(); ++x)
 					dRTs_sum.set(x, new ImmutablePair<Integer, Long>(
-							dRTs_sum.get(x).getKey() + dRT_thread.get(x).getKey(),
-							dRTs_sum.get(x).getValue() + dRT_thread.get(x).getValue()));
+							dRTs_sum.get(x).getKey() + dRT_worker.get(x).getKey(),
+							dRTs_sum.get(x).getValue() + dRT_worker.get(x).getValue()));
 			
 		}
-		if (!dRTs_sum.isEmpty())
+		if (!dRTs_sum.isEmpty()) {
 			LOG.debug("Done - List of iterations and execution times for the updates done (in given order):\n\t\t" + dRTs_sum.toString());
+			// each update has been parsed only once instead of once per segment and iteration
+			List<Long> parseTimeSaved = new ArrayList<Long>();
+			for (int x = 0; x < dRTs_sum.size() && x < updateParseTimes.size(); ++x) {
+				parseTimeSaved.add(Math.max(0, dRTs_sum.get(x).getKey() - 1) * updateParseTimes.get(x) / 1000000);
+			}
+			LOG.debug("Parse time saved in ms by precompiled updates (in given order):\n\t\t" + parseTimeSaved.toString());
+		}
 
 		//final flush
 		flushOutputBuffer();
@@ -935,101 +1191,128 @@ public class RDFUpdater extends StreamRdfUpdater {
 	}
 
 	private void initThreads() {
-		// Use the processor cores available to runtime (but at least 1) as thread count, if an invalid thread count is provided.
-		if (threads <= 0) {
-			threads = (Runtime.getRuntime().availableProcessors()>0)?(Runtime.getRuntime().availableProcessors()):(1);
-			LOG.info("Falling back to default thread maximum.");
+		// Use the CPU budget of the pipeline as thread count, if an invalid thread count is provided. 
+		// More threads than the budget could never run at the same time.
+		if (threads != getScheduler().workers(threads)) {
+			threads = getScheduler().workers(threads);
+			LOG.info("Falling back to thread maximum of the CPU budget.");
 		}
 		LOG.info("Executing on "+threads+" processor cores, max.");
+		writesExternalGraphs = UpdateDatasetMode.writesNamedGraphs(updateRequests);
+		if (writesExternalGraphs && mode != UpdateDatasetMode.MEM)
+			LOG.info("Updates may change external graphs. Executing them in "+mode+" write transactions, one at a time.");
+		if (getMetrics() != null) {
+			updateLatencies = new LatencyHistogram[updates.size()];
+			for (int i = 0; i < updates.size(); i++) 
+				updateLatencies[i] = getMetrics().registerLatency(getInstanceName(), updates.get(i).getLeft());
+		}
 		for (int i = 0; i < threads; i++) {
-			updateThreads.add(null);
-			dataset.addNamedModel("http://thread"+i, ModelFactory.createDefaultModel());
-			segtBufferThreads.add(new ImmutableTriple<List<Model>, Model, List<Model>>(
-					new ArrayList<Model>(), null, new ArrayList<Model>()));
-			dRTs.add(Collections.synchronizedList(new ArrayList<Pair<Integer,Long> >()));
+			UpdateWorker worker = new UpdateWorker(i);
+			updateWorkers.add(worker);
+			idleWorkers.add(worker);
 		}
+		initBatchMode();
+		segtBufferOut = new ReorderBuffer<Model>(ordered, reorderBuffer);
+		if (!ordered)
+			LOG.info("Segments are written as soon as they are processed, not in input order.");
+		final String threadPrefix = (getInstanceName() != null) ? getInstanceName() : RDFUpdater.class.getSimpleName();
+		executor = getScheduler().createWorkerPool(threadPrefix+"-update", threads);
 	}
 
+	/**
+	 * Rewrite the updates for the batch mode, if it is active and applicable.
+	 */
+	private void initBatchMode() {
+		batchUpdateRequests = null;
+		if (batchSize <= 1)
+			return;
+		if (lookahead_sgts > 0 || lookback_sgts > 0 || graphOutputDir != null || triplesOutputDir != null) {
+			LOG.info("Batch mode is not supported with lookahead, lookback, graphsout or triplesout. Processing single segments.");
+			return;
+		}
+		// all segments of a batch are reserved in the output buffer at once
+		if (reorderBuffer > 0 && batchSize > reorderBuffer) {
+			LOG.info("Batch size is limited to the reorder buffer: "+reorderBuffer);
+			batchSize = reorderBuffer;
+		}
+		batchUpdateRequests = SegmentBatchRewriter.rewrite(updateRequests, batchSize);
+		if (batchUpdateRequests == null)
+			LOG.info("Updates contain GRAPH with a variable, WITH, USING or graph management operations, which are not supported in batch mode. Processing single segments.");
+		else
+			LOG.info("Processing batches of up to "+batchSize+" segments.");
+	}
+
+	/**
+	 * Writes all segments ready in the output buffer to the output stream: 
+	 * all leading segments which have been completely processed, or all processed
+	 * segments if ordered is false.
+	 * After a failure, all further segments are discarded, so the output of a 
+	 * pipeline with a checkpoint ends with the segment preceding the failed one.
+	 */
 	private synchronized void flushOutputBuffer() {
 		LOG.trace("OutBufferSize: "+segtBufferOut.size());
 
-		while (!segtBufferOut.isEmpty()) {
-			if (segtBufferOut.get(0).getLeft() >= 0) break;
-			
-			try {
-				getOutputStream().write(segtBufferOut.remove(0).getRight());
-			} catch (InterruptedException e) {
-				LOG.error("Resuming from interrupted thread when reading from default Stream: " +e);
-			}
+		//collect all finished segments and write them as a single batch
+		List<Model> outBatch = segtBufferOut.drain();
+		if (failure != null) 
+			return;
+		try {
+			getOutputStream().writeAll(outBatch);
+		} catch (InterruptedException e) {
+			LOG.error("Resuming from interrupted thread when writing to default Stream: " +e);
+		}
+	}
+
+	private synchronized void fail(Throwable e) {
+		if (failure == null) 
+			failure = e;
+	}
+
+	/**
+	 * Rethrows the failure of a segment, if any, on the reading thread. 
+	 * The component fails, so the pipeline is aborted.
+	 */
+	private void rethrowFailure() throws IOException {
+		Throwable e;
+		synchronized (this) {
+			e = failure;
 		}
+		if (e == null)
+			return;
+		if (executor != null)
+			executor.shutdown();
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		if (e instanceof Error)
+			throw (Error) e;
+		throw new IOException(e);
 	}
 
-	private void executeThread(Model buffer) {
+	private void executeThread(Model buffer) throws InterruptedException {
 		MutableTriple<List<Model>, Model, List<Model>>segtBufferThread =
 				new MutableTriple<List<Model>, Model, List<Model>>(
 				new ArrayList<Model>(), null, new ArrayList<Model>());
 		//segtBufferLookback only needs to be filled up to the current segment.
 		//All other segments are for further lookahead iterations
-//		segtBufferThread.getLeft().addAll(segtBufferLookback);
 		for (int i = 0; i < segtBufferLookback.size() - segtBufferLookahead.size(); i++) {
 			segtBufferThread.getLeft().add(segtBufferLookback.get(i));
 		}
 		segtBufferThread.setMiddle(buffer);
 		segtBufferThread.getRight().addAll(segtBufferLookahead);
-		int i = 0;
-
-		while(i < updateThreads.size()) {
-			LOG.trace("ThreadState " + i + ": "+((updateThreads.get(i)!=null)?updateThreads.get(i).getState():"null"));
-			if (updateThreads.get(i) == null) {
-				segtBufferThreads.set(i, segtBufferThread);
-				segtBufferOut.add(new ImmutablePair<Integer, Model>(i, null)); //add last segments to the end of the output queue.
-				updateThreads.set(i, new UpdateThread(this, i));
-				updateThreads.get(i).start();
-				LOG.trace("restart "+i);
-				LOG.trace("OutBufferSize: "+segtBufferOut.size());
-				break;
-			} else 
-				if (updateThreads.get(i).getState() == Thread.State.WAITING) {
-				synchronized(updateThreads.get(i)) {
-				segtBufferThreads.set(i, segtBufferThread);
-				segtBufferOut.add(new ImmutablePair<Integer, Model>(i, null)); //add last segments to the end of the output queue.
-				updateThreads.get(i).notify();
-				}
-				LOG.trace("wake up "+i);
-				break;
-			} else 
-				if (updateThreads.get(i).getState() == Thread.State.NEW) {
-				segtBufferThreads.set(i, segtBufferThread);
-				segtBufferOut.add(new ImmutablePair<Integer, Model>(i, null)); //add last segments to the end of the output queue.
-				updateThreads.get(i).start();
-				LOG.trace("start "+i);
-				LOG.trace("OutBufferSize: "+segtBufferOut.size());
-				break;
-			} else 
-				if (updateThreads.get(i).getState() == Thread.State.TERMINATED) {
-				segtBufferThreads.set(i, segtBufferThread);
-				segtBufferOut.add(new ImmutablePair<Integer, Model>(i, null)); //add last segments to the end of the output queue.
-				updateThreads.set(i, new UpdateThread(this, i));
-				updateThreads.get(i).start();
-				LOG.trace("restart "+i);
-				LOG.trace("OutBufferSize: "+segtBufferOut.size());
-				break;
-			}
-			
-			i++;
-			if (i >= updateThreads.size()) {
-				try {
-					synchronized (this) {
-//						System.err.println("Updater waiting");
-						wait(20);
-					}
-				} catch (InterruptedException e) {
-					LOG.error(e, e);
-				} finally {
-					i = 0;
-				}
-			}
-		}
+
+		// blocks while the output buffer is full
+		UpdateTask task = new UpdateTask(segtBufferThread, segtBufferOut.reserve());
+		// blocks while all workers are busy and the work queue is full
+		executor.execute(task);
+	}
+
+	private void executeBatch(List<Model> segments) throws InterruptedException {
+		// blocks while the output buffer is full
+		UpdateTask task = new UpdateTask(segments, segtBufferOut.reserve(segments.size()));
+		// blocks while all workers are busy and the work queue is full
+		executor.execute(task);
 	}
 
 	@Override
@@ -1041,9 +1324,10 @@ public class RDFUpdater extends StreamRdfUpdater {
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 }
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
+import org.acoli.fintan.core.util.ReorderBuffer;
 import org.apache.commons.cli.*;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
@@ -45,7 +46,19 @@ public class RDFUpdaterFactory implements FintanStreamComponentFactory {
 		int threads = 0;
 		if (conf.get("threads") != null)
 			threads = conf.get("threads").asInt(0);
-		RDFUpdater updater = new RDFUpdater("","",threads);
+		// READ DATASET PARAMETERS
+		String type = "";
+		if (conf.hasNonNull("dataset"))
+			type = conf.get("dataset").asText();
+		String tdbPath = null;
+		if (conf.hasNonNull("tdbPath"))
+			tdbPath = conf.get("tdbPath").asText();
+		RDFUpdater updater;
+		try {
+			updater = new RDFUpdater(type,tdbPath,threads);
+		} catch (IllegalArgumentException e) {
+			throw new ParseException(e.getMessage());
+		}
 
 //		// READ GRAPHSOUT PARAMETERS (unsupported in default Updater, reserved for CoNLL-RDF at the moment)
 //		if (conf.get("graphsoutDIR") != null) {
@@ -88,6 +101,20 @@ public class RDFUpdaterFactory implements FintanStreamComponentFactory {
 				updater.activateLookback(lookback_snts);
 		}
 
+		// READ OUTPUT ORDER
+		if (conf.hasNonNull("ordered"))
+			updater.setOrdered(conf.get("ordered").asBoolean(true));
+		if (conf.hasNonNull("reorderBuffer"))
+			updater.setReorderBuffer(conf.get("reorderBuffer").asInt(ReorderBuffer.DEFAULT_CAPACITY));
+
+		// READ ITERATION MODE
+		if (conf.hasNonNull("semiNaive"))
+			updater.setSemiNaive(conf.get("semiNaive").asBoolean(true));
+
+		// READ BATCH SIZE
+		if (conf.hasNonNull("batchSize"))
+			updater.setBatchSize(conf.get("batchSize").asInt(1));
+
 		// READ ALL UPDATES
 		// should be <#UPDATEFILENAMEORSTRING, #UPDATESTRING, #UPDATEITER>
 		List<Triple<String, String, String>> updates = new ArrayList<Triple<String, String, String>>();
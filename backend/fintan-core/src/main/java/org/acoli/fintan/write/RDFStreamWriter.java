@@ -15,16 +15,20 @@
  */
 package org.acoli.fintan.write;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
+import org.acoli.fintan.core.FintanStreamHandler;
 import org.acoli.fintan.core.StreamWriter;
+import org.acoli.fintan.core.util.ThriftSegmentWriter;
 import org.apache.jena.rdf.model.Model;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -48,6 +52,11 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 	 * 
 	 * `lang` to specify the target RDF syntax. Supported languages follow the 
 	 * 		naming convention of Apache Jena (ttl, TURTLE, RDF/XML, N3, …)
+	 * 		RDF Thrift (RDFTHRIFT, TRDF) is written as a binary stream of 
+	 * 		length-prefixed frames, one per segment, with prefixes declared 
+	 * 		only once per stream. It can only be read by an RDFStreamLoader 
+	 * 		with the same lang. `delimiter` and `prefixDeduplication` 
+	 * 		are ignored in this case.
 	 * `delimiter` to specify the textual delimiter indicating the end of a 
 	 * 		segment. The specified delimiter is always expected to be the full 
 	 * 		content of a delimiting line of text. "" corresponds to an empty line.
@@ -96,6 +105,10 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 	private String segmentDelimiter = null;
 	private boolean prefixDeduplication = false;
 	private HashMap<String,String> customPrefixes = new HashMap<String,String>();
+	// for checkpoints: number of the current segment, counted from the beginning 
+	// of the input, and the last segment written by a previous run.
+	private long segments = 0;
+	private long skipSegments = 0;
 	
 	public String getLang() {
 		return lang;
@@ -130,7 +143,7 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 		this.customPrefixes = customPrefixes;
 	}
 
-	private void processStream() {
+	private void processStream() throws IOException {
 		// Spawn writers for parallel processing, in case there are multiple streams.
 		for (String name:listInputStreamNames()) {
 			if (name == FINTAN_DEFAULT_STREAM_NAME) 
@@ -145,29 +158,41 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 			writer.setLang(lang);
 			writer.setPrefixDeduplication(prefixDeduplication);
 			writer.setCustomPrefixes(customPrefixes);
-			try {
-				writer.setInputStream(getInputStream(name));
-				writer.setOutputStream(getOutputStream(name));
-			} catch (IOException e) {
-				LOG.error(e, e);
-				System.exit(1);
-			}
-			new Thread(writer).start();
+			writer.setInputStream(getInputStream(name));
+			writer.setOutputStream(getOutputStream(name));
+			getScheduler().execute(writer, getInstanceName()+"<"+name+">");
 		}
 		
 		//terminate in case there is no default stream. 
 		//named streams are handled in subthreads.
 		if (getOutputStream()==null) return;
 		
+		if (getCheckpoint() != null) {
+			segments = getCheckpoint().getResumeSegments();
+			skipSegments = getCheckpoint().getCommittedSegments(getInstanceName());
+		}
+		
+		if (ThriftSegmentWriter.isThriftLang(lang)) {
+			processThriftStream();
+			return;
+		}
+		
 		PrintStream out = new PrintStream(getOutputStream());
 		String prefixCacheOut = new String();
 		
-		while (getInputStream().canRead()) {
+		ArrayDeque<Model> batch = new ArrayDeque<Model>();
+		while (!batch.isEmpty() || getInputStream().canRead()) {
 			try {
-				Model m = getInputStream().read();
-				//read may return null in case the queue has been emptied and terminated since asking for canRead()
+				//read all available segments at once, process them one by one
+				if (batch.isEmpty()) 
+					getInputStream().drainTo(batch, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+				Model m = batch.poll();
+				//read may return nothing in case the queue has been emptied and terminated since asking for canRead()
 				if (m == null) continue;
 				
+				//already written by a previous run
+				if (++segments <= skipSegments) continue;
+				
 				for(String prefix:customPrefixes.keySet()) {
 					m.setNsPrefix(prefix, customPrefixes.get(prefix));
 				}
@@ -210,14 +235,75 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 					out.println(segmentDelimiter);
 				}
 				
+				if (getCheckpoint() != null && getCheckpoint().isDue(segments)) {
+					out.flush();
+					commit(!out.checkError());
+				}
+				
 			} catch (InterruptedException e) {
 				LOG.error("Error when reading from Stream: " +e);
 			}
 		}
+		if (getCheckpoint() != null) {
+			out.flush();
+			commit(!out.checkError());
+		}
 		out.close();
 
 	}
 	
+	/**
+	 * Write the default stream as RDF Thrift frames. Frames are flushed 
+	 * after each batch, so the next component never waits for segments 
+	 * which have already been serialized.
+	 */
+	private void processThriftStream() throws IOException {
+		ThriftSegmentWriter out = new ThriftSegmentWriter(new BufferedOutputStream(getOutputStream()));
+		ArrayDeque<Model> batch = new ArrayDeque<Model>();
+		while (getInputStream().canRead()) {
+			try {
+				getInputStream().drainTo(batch, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+			} catch (InterruptedException e) {
+				LOG.error("Error when reading from Stream: " +e);
+			}
+			for (Model m = batch.poll(); m != null; m = batch.poll()) {
+				//already written by a previous run
+				if (++segments <= skipSegments) continue;
+				for(String prefix:customPrefixes.keySet()) {
+					m.setNsPrefix(prefix, customPrefixes.get(prefix));
+				}
+				out.write(m);
+				if (getCheckpoint() != null && getCheckpoint().isDue(segments)) {
+					out.flush();
+					commit(true);
+				}
+			}
+			out.flush();
+		}
+		if (getCheckpoint() != null) 
+			commit(true);
+		out.close();
+	}
+	
+	/**
+	 * Commit all segments written so far to the checkpoint. 
+	 * Output must have been flushed beforehand.
+	 * @param flushed false, if the output reported an error.
+	 */
+	private void commit(boolean flushed) throws IOException {
+		if (!flushed) 
+			throw new IOException("Error when writing to output. Checkpoint not committed.");
+		getCheckpoint().commit(getInstanceName(), Math.max(segments, skipSegments));
+	}
+	
+	/**
+	 * Checkpoints are supported for the default stream.
+	 */
+	@Override
+	public boolean supportsCheckpoint() {
+		return true;
+	}
+	
 	@Override
 	public void start() {
 		run();
@@ -227,9 +313,10 @@ public class RDFStreamWriter extends StreamWriter implements FintanStreamCompone
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 	
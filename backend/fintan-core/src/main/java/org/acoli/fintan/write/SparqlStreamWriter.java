@@ -17,8 +17,10 @@ package org.acoli.fintan.write;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
+import org.acoli.fintan.core.FintanStreamHandler;
 import org.acoli.fintan.core.StreamWriter;
 import org.acoli.fintan.core.util.CustomCSVFormat;
 import org.acoli.fintan.core.util.IOUtils;
@@ -146,7 +148,7 @@ public class SparqlStreamWriter extends StreamWriter implements FintanStreamComp
 		this.jenaFormat = jenaFormat;
 	}
 	
-	private void processStream() {
+	private void processStream() throws IOException {
 		
 		// Spawn writers for parallel processing, in case there are multiple streams.
 		for (String name:listInputStreamNames()) {
@@ -163,14 +165,9 @@ public class SparqlStreamWriter extends StreamWriter implements FintanStreamComp
 			writer.setSegmentDelimiter(segmentDelimiter);
 			writer.setCustomFormat(customFormat);
 			writer.setJenaFormat(jenaFormat);
-			try {
-				writer.setInputStream(getInputStream(name));
-				writer.setOutputStream(getOutputStream(name));
-			} catch (IOException e) {
-				LOG.error(e, e);
-				System.exit(1);
-			}
-			new Thread(writer).start();
+			writer.setInputStream(getInputStream(name));
+			writer.setOutputStream(getOutputStream(name));
+			getScheduler().execute(writer, getInstanceName()+"<"+name+">");
 		}
 		
 		//terminate in case there is no default stream. 
@@ -179,10 +176,14 @@ public class SparqlStreamWriter extends StreamWriter implements FintanStreamComp
 		
 		PrintStream out = new PrintStream(getOutputStream());
 		
-		while (getInputStream().canRead()) {
+		ArrayDeque<Model> batch = new ArrayDeque<Model>();
+		while (!batch.isEmpty() || getInputStream().canRead()) {
 			try {
-				Model m = getInputStream().read();
-				//read may return null in case the queue has been emptied and terminated since asking for canRead()
+				//read all available segments at once, process them one by one
+				if (batch.isEmpty()) 
+					getInputStream().drainTo(batch, FintanStreamHandler.DEFAULT_BATCH_SIZE);
+				Model m = batch.poll();
+				//read may return nothing in case the queue has been emptied and terminated since asking for canRead()
 				if (m == null) continue;
 				
 				ResultSet rs = QueryExecutionFactory.create(query, m).execSelect();
@@ -214,9 +215,10 @@ public class SparqlStreamWriter extends StreamWriter implements FintanStreamComp
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
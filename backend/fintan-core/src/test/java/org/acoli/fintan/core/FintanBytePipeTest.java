@@ -0,0 +1,85 @@
+package org.acoli.fintan.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class FintanBytePipeTest {
+
+	static byte[] bytes(int length, int offset) {
+		byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) 
+			b[i] = (byte) (i + offset);
+		return b;
+	}
+
+	static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+		for (int n; (n = in.read(buffer)) > 0; ) 
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+	@Test
+	void whenBufferSmall_thenAllDataTransferred() throws Exception {
+		FintanBytePipe pipe = new FintanBytePipe(16);
+		byte[] data = bytes(1000, 0);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<byte[]> read = executor.submit(() -> readAll(pipe.getInputStream()));
+			try (OutputStream out = pipe.getOutputStream()) {
+				for (int off = 0; off < data.length; off += 10) 
+					out.write(data, off, Math.min(10, data.length - off));
+			}
+			assertArrayEquals(data, read.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// components write from pooled threads, which may retire while the reader waits
+	@Test
+	void whenWritingThreadTerminated_thenReaderKeepsWaiting() throws Exception {
+		FintanBytePipe pipe = new FintanBytePipe(16);
+		Thread first = new Thread(() -> {
+			try {
+				pipe.getOutputStream().write(bytes(10, 0));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		first.start();
+		first.join();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<byte[]> read = executor.submit(() -> readAll(pipe.getInputStream()));
+			Thread.sleep(1500);
+			pipe.getOutputStream().write(bytes(10, 10));
+			pipe.getOutputStream().close();
+			assertArrayEquals(bytes(20, 0), read.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void whenReaderClosed_thenWriteFails() throws IOException {
+		FintanBytePipe pipe = new FintanBytePipe(16);
+		pipe.getOutputStream().write(bytes(10, 0));
+		pipe.getInputStream().close();
+		assertEquals(0, pipe.available());
+		assertThrows(IOException.class, () -> pipe.getOutputStream().write(1));
+		assertThrows(IOException.class, () -> pipe.getInputStream().read());
+	}
+}
@@ -0,0 +1,198 @@
+package org.acoli.fintan.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase1;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FintanCheckpointTest {
+
+	static final int SEGMENTS = 50;
+	static final int INTERVAL = 10;
+	static final int MALFORMED = 35;
+
+	@TempDir
+	File dir;
+
+	static String segment(int i) {
+		return ":s"+i+" :p :o"+i+" ; :q \""+i+"\" .\n\n";
+	}
+
+	static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	static String input() {
+		StringBuilder ttl = new StringBuilder("@prefix : <http://ex.org/> .\n");
+		for (int i = 0; i < SEGMENTS; i++)
+			ttl.append(segment(i));
+		return ttl.toString();
+	}
+
+	String config(File destination, File checkpoint) {
+		return "{\"components\":["
+				+ "{\"componentInstance\":\"load\",\"class\":\"RDFStreamLoader\",\"lang\":\"TTL\",\"delimiter\":\"\"},"
+				+ "{\"componentInstance\":\"write\",\"class\":\"RDFStreamWriter\",\"lang\":\"TTL\",\"delimiter\":\"#\"}],"
+				+ "\"streams\":["
+				+ "{\"readsFromSource\":\"System.in\",\"writesToInstance\":\"load\"},"
+				+ "{\"readsFromInstance\":\"load\",\"writesToInstance\":\"write\"},"
+				+ "{\"readsFromInstance\":\"write\",\"writesToDestination\":\""+destination.getAbsolutePath()+"\"}],"
+				+ "\"checkpoint\":\""+checkpoint.getAbsolutePath()+"\",\"checkpointInterval\":"+INTERVAL+"}";
+	}
+
+	// load -> update -> write, the update calls FailingFunction on each segment
+	String updaterConfig(File destination, File checkpoint) {
+		String update = "PREFIX : <http://ex.org/> PREFIX f: <"+FailingFunction.IRI+"> "
+				+ "INSERT { ?s :r ?y } WHERE { ?s :q ?x . BIND(f:(?x) AS ?y) }";
+		return config(destination, checkpoint)
+				.replace("\"delimiter\":\"\"},", "\"delimiter\":\"\"},"
+						+ "{\"componentInstance\":\"update\",\"class\":\"RDFUpdater\",\"threads\":4,"
+						+ "\"updates\":[{\"path\":\""+update+"\",\"iter\":\"1\"}]},")
+				.replace("{\"readsFromInstance\":\"load\",\"writesToInstance\":\"write\"}", 
+						"{\"readsFromInstance\":\"load\",\"writesToInstance\":\"update\"},"
+						+ "{\"readsFromInstance\":\"update\",\"writesToInstance\":\"write\"}");
+	}
+
+	/**
+	 * Fails for the value of `failOn`. Throws an Error, since exceptions of an 
+	 * update are only logged and the segment is passed on, but an Error drops it.
+	 */
+	public static class FailingFunction extends FunctionBase1 {
+		static final String IRI = "http://ex.org/fail";
+		static volatile String failOn = null;
+
+		@Override
+		public NodeValue exec(NodeValue v) {
+			if (v.asString().equals(failOn)) 
+				throw new AssertionError("Segment "+failOn+" fails.");
+			return v;
+		}
+	}
+
+	FintanManager build(String config, InputStream in, boolean resume) throws IOException {
+		File file = File.createTempFile("config", ".json", dir);
+		Files.write(file.toPath(), bytes(config));
+		FintanManager man = new FintanManager();
+		man.setResume(resume);
+		man.readConfig(file.getPath(), new String[] {});
+		man.setStandardStreams(in, null);
+		man.buildComponentStack();
+		return man;
+	}
+
+	static long committed(File checkpoint) throws IOException {
+		if (!checkpoint.exists())
+			return 0;
+		return new FintanCheckpoint(checkpoint, INTERVAL, true).getCommittedSegments("write");
+	}
+
+	static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void whenInterruptedRunResumed_thenOutputEqualsUninterruptedRun() throws Exception {
+		File expected = new File(dir, "expected.ttl");
+		build(config(expected, new File(dir, "expected.properties")), new ByteArrayInputStream(bytes(input())), false).start();
+
+		// the first run aborts on a malformed segment after the first checkpoints
+		File actual = new File(dir, "actual.ttl");
+		File checkpoint = new File(dir, "actual.properties");
+		PipedOutputStream pipe = new PipedOutputStream();
+		FintanManager interrupted = build(config(actual, checkpoint), new PipedInputStream(pipe), false);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> run = executor.submit(() -> { interrupted.start(); return null; });
+			pipe.write(bytes("@prefix : <http://ex.org/> .\n"));
+			for (int i = 0; i < MALFORMED; i++) {
+				pipe.write(bytes(segment(i)));
+				pipe.flush();
+				if (i == 3*INTERVAL - 1) {
+					// segments are only passed on while the input is not ready
+					for (int wait = 0; committed(checkpoint) < 3*INTERVAL && wait < 500; wait++)
+						Thread.sleep(20);
+				}
+			}
+			pipe.write(bytes(":s"+MALFORMED+" :p .\n\n"));
+			pipe.close();
+			ExecutionException e = assertThrows(ExecutionException.class, run::get);
+			assertTrue(e.getCause() instanceof ExecutionException, e.toString());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(3*INTERVAL, committed(checkpoint));
+		// as if the process had been killed in the middle of a segment
+		try (OutputStream out = new FileOutputStream(actual, true)) {
+			out.write(bytes(":s999 :p "));
+		}
+		assertNotEquals(read(expected), read(actual));
+
+		// the second run continues with the corrected input
+		build(config(actual, checkpoint), new ByteArrayInputStream(bytes(input())), true).start();
+		assertEquals(read(expected), read(actual));
+		assertEquals(SEGMENTS, committed(checkpoint));
+	}
+
+	@Test
+	void whenNotResumed_thenOutputOverwritten() throws Exception {
+		File expected = new File(dir, "expected.ttl");
+		File checkpoint = new File(dir, "expected.properties");
+		build(config(expected, checkpoint), new ByteArrayInputStream(bytes(input())), false).start();
+		String first = read(expected);
+		build(config(expected, checkpoint), new ByteArrayInputStream(bytes(input())), false).start();
+		assertEquals(first, read(expected));
+		assertEquals(SEGMENTS, committed(checkpoint));
+	}
+
+	@Test
+	void whenSegmentFails_thenAbortedAndResumedAfterPrecedingSegment() throws Exception {
+		FunctionRegistry.get().put(FailingFunction.IRI, FailingFunction.class);
+		FailingFunction.failOn = null;
+		File expected = new File(dir, "expected.ttl");
+		build(updaterConfig(expected, new File(dir, "expected.properties")), new ByteArrayInputStream(bytes(input())), false).start();
+		assertTrue(read(expected).contains(":r"));
+
+		// the failed segment is not skipped, so the output and the checkpoint end before it
+		File actual = new File(dir, "actual.ttl");
+		File checkpoint = new File(dir, "actual.properties");
+		FailingFunction.failOn = String.valueOf(MALFORMED);
+		FintanManager failing = build(updaterConfig(actual, checkpoint), new ByteArrayInputStream(bytes(input())), false);
+		ExecutionException e = assertThrows(ExecutionException.class, failing::start);
+		assertTrue(e.getCause().toString().contains("Segment "+MALFORMED+" fails."), e.getCause().toString());
+		assertTrue(committed(checkpoint) <= MALFORMED, "committed "+committed(checkpoint));
+
+		FailingFunction.failOn = null;
+		build(updaterConfig(actual, checkpoint), new ByteArrayInputStream(bytes(input())), true).start();
+		assertEquals(read(expected), read(actual));
+		assertEquals(SEGMENTS, committed(checkpoint));
+	}
+
+	@Test
+	void whenComponentUnordered_thenRejected() {
+		String config = config(new File(dir, "out.ttl"), new File(dir, "out.properties"))
+				.replace("\"class\":\"RDFStreamWriter\"", "\"class\":\"RDFStreamWriter\",\"ordered\":false");
+		IOException e = assertThrows(IOException.class, () -> build(config, new ByteArrayInputStream(new byte[0]), false));
+		assertTrue(e.getMessage().contains("'write' sets 'ordered' to false"), e.getMessage());
+	}
+}
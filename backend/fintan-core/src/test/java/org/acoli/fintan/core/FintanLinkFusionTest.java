@@ -0,0 +1,115 @@
+package org.acoli.fintan.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// fuseLinks() only removes writer-loader pairs which parse the segments exactly as written
+public class FintanLinkFusionTest {
+
+	static final String INPUT = "@prefix : <http://ex.org/> .\n"
+			+ ":s0 :p :o0 .\n\n:s1 :p :o1 ; :q \"1\" .\n\n:s2 :p :o2 .\n\n";
+
+	@TempDir
+	File dir;
+
+	static String component(String name, String className, String delimiter, String extra) {
+		return "{\"componentInstance\":\""+name+"\",\"class\":\""+className+"\",\"lang\":\"TTL\",\"delimiter\":\""+delimiter+"\""+extra+"}";
+	}
+
+	static String link(String from, String to) {
+		return "{\"readsFromInstance\":\""+from+"\",\"writesToInstance\":\""+to+"\"}";
+	}
+
+	/**
+	 * System.in -> load0 -> write1 -> load2 -> write3 -> System.out
+	 */
+	static String config(String writerDelimiter, String loaderDelimiter, String writerExtra, String root) {
+		return "{\"components\":["
+				+ component("load0", "RDFStreamLoader", "", "") + ","
+				+ component("write1", "RDFStreamWriter", writerDelimiter, writerExtra) + ","
+				+ component("load2", "RDFStreamLoader", loaderDelimiter, "") + ","
+				+ component("write3", "RDFStreamWriter", "", "") + "],"
+				+ "\"streams\":["
+				+ "{\"readsFromSource\":\"System.in\",\"writesToInstance\":\"load0\"},"
+				+ link("load0", "write1") + "," + link("write1", "load2") + "," + link("load2", "write3") + ","
+				+ "{\"readsFromInstance\":\"write3\",\"writesToDestination\":\"System.out\"}]"
+				+ root + "}";
+	}
+
+	// System.in and System.out can only be used once per JVM, the pipeline reads and writes files instead
+	FintanManager build(String config, File output) throws IOException {
+		File input = new File(dir, "input.ttl");
+		Files.write(input.toPath(), INPUT.getBytes(StandardCharsets.UTF_8));
+		config = config.replace("System.in", input.getPath()).replace("System.out", output.getPath());
+		File file = File.createTempFile("config", ".json", dir);
+		Files.write(file.toPath(), config.getBytes(StandardCharsets.UTF_8));
+		FintanManager man = new FintanManager();
+		man.readConfig(file.getPath(), new String[] {});
+		man.buildComponentStack();
+		return man;
+	}
+
+	static Set<String> names(String... names) {
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	private void assertFused(String config, Set<String> components) throws Exception {
+		File output = new File(dir, "output.ttl");
+		FintanManager man = build(config, output);
+		assertEquals(components, man.getComponentNames());
+		man.start();
+		String out = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+		Model expected = ModelFactory.createDefaultModel().read(new StringReader(INPUT), null, "TTL");
+		Model actual = ModelFactory.createDefaultModel().read(new StringReader(out), null, "TTL");
+		assertTrue(actual.isIsomorphicWith(expected), out);
+	}
+
+	@Test
+	void whenSameDelimiter_thenFused() throws Exception {
+		assertFused(config("###", "###", "", ""), names("load0", "write3"));
+	}
+
+	@Test
+	void whenFusionDisabled_thenNotFused() throws Exception {
+		assertFused(config("###", "###", "", ",\"fuseLinks\":false"), names("load0", "write1", "load2", "write3"));
+	}
+
+	@Test
+	void whenDelimiterDiffers_thenNotFused() throws Exception {
+		assertFused(config("###", "#####", "", ""), names("load0", "write1", "load2", "write3"));
+	}
+
+	@Test
+	void whenDelimiterBlank_thenNotFused() throws Exception {
+		assertFused(config("", "", "", ""), names("load0", "write1", "load2", "write3"));
+	}
+
+	@Test
+	void whenCustomPrefixes_thenNotFused() throws Exception {
+		assertFused(config("###", "###", ",\"customPrefixes\":{\"ex\":\"http://ex.org/\"}", ""),
+				names("load0", "write1", "load2", "write3"));
+	}
+
+	@Test
+	void whenLinkedByNamedStream_thenNotFused() throws Exception {
+		String config = config("###", "###", "", "")
+				.replace(link("write1", "load2"),
+						"{\"readsFromInstance\":\"write1\",\"writesToInstance\":\"load2\",\"writesToInstanceGraph\":\"g\"}");
+		FintanManager man = build(config, new File(dir, "output.ttl"));
+		assertEquals(names("load0", "write1", "load2", "write3"), man.getComponentNames());
+	}
+}
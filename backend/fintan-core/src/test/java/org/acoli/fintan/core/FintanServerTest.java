@@ -0,0 +1,201 @@
+package org.acoli.fintan.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class FintanServerTest {
+
+	static final String TTL_PIPELINE = "{\"input\":\"System.in\",\"output\":\"System.out\",\"pipeline\":["
+			+ "{\"class\":\"RDFStreamLoader\",\"lang\":\"TTL\",\"delimiter\":\"\"},"
+			+ "{\"class\":\"RDFStreamWriter\",\"lang\":\"TTL\",\"delimiter\":\"\"}]}";
+	static final String PARAM_PIPELINE = "{\"input\":\"System.in\",\"output\":\"System.out\",\"pipeline\":["
+			+ "{\"class\":\"RDFStreamLoader\",\"lang\":\"TTL\",\"delimiter\":\"\"},"
+			+ "{\"class\":\"RDFStreamWriter\",\"lang\":\"TTL\",\"delimiter\":\"<$param0>\"}]}";
+	static final String UNKNOWN_CLASS_PIPELINE = "{\"input\":\"System.in\",\"output\":\"System.out\",\"pipeline\":["
+			+ "{\"class\":\"NoSuchComponent\"}]}";
+
+	@TempDir
+	File dir;
+
+	FintanServer server;
+
+	@BeforeEach
+	void init() throws IOException {
+		Files.write(new File(dir, "ttl.json").toPath(), TTL_PIPELINE.getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(dir, "param.json").toPath(), PARAM_PIPELINE.getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(dir, "unknown.json").toPath(), UNKNOWN_CLASS_PIPELINE.getBytes(StandardCharsets.UTF_8));
+		server = new FintanServer(0, 1, 1);
+		server.register(dir.getPath());
+		server.start();
+	}
+
+	@AfterEach
+	void stop() throws InterruptedException {
+		server.stop(0);
+	}
+
+	HttpURLConnection post(String pipeline, String body) throws IOException {
+		URL url = new URL("http", "localhost", server.getAddress().getPort(), "/run/"+pipeline);
+		return post(url, body);
+	}
+
+	HttpURLConnection post(URL url, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	/**
+	 * HttpURLConnection does not allow to set Origin or Host.
+	 * @return the status code of an empty POST request with the given headers.
+	 */
+	int postWithHeaders(String pipeline, String host, String origin) throws IOException {
+		try (Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort())) {
+			String request = "POST /run/"+pipeline+" HTTP/1.1\r\nHost: "+host+"\r\n"
+					+ (origin == null ? "" : "Origin: "+origin+"\r\n")
+					+ "Content-Length: 0\r\nConnection: close\r\n\r\n";
+			socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+			String response = read(socket.getInputStream());
+			return Integer.parseInt(response.split(" ")[1]);
+		}
+	}
+
+	static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = in.read(buffer)) > 0; ) 
+			out.write(buffer, 0, n);
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	JsonNode status() throws IOException {
+		URL url = new URL("http", "localhost", server.getAddress().getPort(), "/status");
+		return new ObjectMapper().readTree(read(url.openStream()));
+	}
+
+	@Test
+	void whenBodyValid_thenOutputReturned() throws IOException {
+		HttpURLConnection connection = post("ttl", "<http://ex.org/s> <http://ex.org/p> <http://ex.org/o> .\n");
+		assertEquals(200, connection.getResponseCode());
+		Model m = ModelFactory.createDefaultModel().read(new StringReader(read(connection.getInputStream())), null, "TTL");
+		assertEquals(1, m.size());
+		assertEquals(1, status().get("finished").asInt());
+	}
+
+	@Test
+	void whenBodyMalformed_thenOnlyThisJobFails() throws IOException {
+		HttpURLConnection connection = post("ttl", "<http://ex.org/s> <http://ex.org/p> .\n");
+		assertEquals(500, connection.getResponseCode());
+		JsonNode error = new ObjectMapper().readTree(read(connection.getErrorStream()));
+		assertTrue(error.get("error").asText().contains("RiotException"), error.toString());
+
+		// the server keeps serving further jobs
+		connection = post("ttl", "<http://ex.org/s> <http://ex.org/p> <http://ex.org/o> .\n");
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(read(connection.getInputStream()).contains("http://ex.org/o"));
+		JsonNode status = status();
+		assertEquals(1, status.get("failed").asInt());
+		assertEquals(1, status.get("finished").asInt());
+		assertEquals(0, status.get("running").asInt());
+	}
+
+	@Test
+	void whenLaterSegmentMalformed_thenResponseIncomplete() throws IOException {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 100; i++) 
+			body.append("<http://ex.org/s"+i+"> <http://ex.org/p> <http://ex.org/o> .\n\n");
+		body.append("<http://ex.org/s> <http://ex.org/p> .\n");
+		HttpURLConnection connection = post("ttl", body.toString());
+		// depending on whether output has been sent before the failure
+		if (connection.getResponseCode() != 500) {
+			assertEquals(200, connection.getResponseCode());
+			assertThrows(IOException.class, () -> read(connection.getInputStream()));
+		}
+		assertEquals(1, status().get("failed").asInt());
+	}
+
+	@Test
+	void whenParamContainsQuotes_thenInsertedAsText() throws IOException {
+		String param = "#\",\"class\":\"NoSuchComponent";
+		URL url = new URL("http", "localhost", server.getAddress().getPort(), 
+				"/run/param?p="+URLEncoder.encode(param, StandardCharsets.UTF_8.name()));
+		HttpURLConnection connection = post(url, "<http://ex.org/s> <http://ex.org/p> <http://ex.org/o> .\n");
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(read(connection.getInputStream()).contains(param));
+	}
+
+	@Test
+	void whenOriginForeign_thenRejected() throws IOException {
+		String host = "localhost:"+server.getAddress().getPort();
+		assertEquals(403, postWithHeaders("unknown", host, "http://example.org"));
+		assertEquals(403, postWithHeaders("unknown", host, "null"));
+		assertEquals(403, postWithHeaders("unknown", "example.org:"+server.getAddress().getPort(), null));
+		assertEquals(0, status().get("failed").asInt());
+		// the job is only run for local requests
+		assertEquals(400, postWithHeaders("unknown", host, "http://localhost:"+server.getAddress().getPort()));
+		assertEquals(400, postWithHeaders("unknown", "127.0.0.1:"+server.getAddress().getPort(), null));
+		assertEquals(400, postWithHeaders("unknown", "[::1]", null));
+		assertEquals(3, status().get("failed").asInt());
+	}
+
+	@Test
+	void whenJobHasMetrics_thenServedByServer() throws IOException {
+		String config = TTL_PIPELINE.replaceFirst("\\}$", ",\"metrics\":{\"jmx\":false,\"httpPort\":0}}");
+		File file = new File(dir, "metrics.json");
+		Files.write(file.toPath(), config.getBytes(StandardCharsets.UTF_8));
+		server.register(file.getPath());
+		HttpURLConnection connection = post("metrics", "<http://ex.org/s> <http://ex.org/p> <http://ex.org/o> .\n");
+		assertEquals(200, connection.getResponseCode());
+		read(connection.getInputStream());
+
+		URL url = new URL("http", "localhost", server.getAddress().getPort(), "/metrics");
+		assertTrue(read(url.openStream()).contains("# TYPE fintan_link_segments_total counter"));
+
+		// jobs do not start their own metrics server
+		FintanManager man = new FintanManager();
+		man.readConfig(file.getPath(), new String[] {});
+		man.setJobId("metrics-1");
+		man.buildComponentStack();
+		assertEquals("metrics-1", man.getMetrics().getJob());
+		assertEquals(-1, man.getMetrics().getHttpPort());
+	}
+
+	@Test
+	void whenClassUnknown_thenJobRejected() throws IOException {
+		HttpURLConnection connection = post("unknown", "");
+		assertEquals(400, connection.getResponseCode());
+		JsonNode error = new ObjectMapper().readTree(read(connection.getErrorStream()));
+		assertTrue(error.get("error").asText().contains("NoSuchComponent"), error.toString());
+		assertEquals(1, status().get("failed").asInt());
+	}
+
+}
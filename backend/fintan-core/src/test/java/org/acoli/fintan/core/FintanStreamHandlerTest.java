@@ -0,0 +1,57 @@
+package org.acoli.fintan.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class FintanStreamHandlerTest {
+
+	static Thread write(FintanStreamHandler<StringBuilder> stream, StringBuilder m, CountDownLatch written) {
+		Thread writer = new Thread(() -> {
+			try {
+				stream.write(m);
+				written.countDown();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		writer.start();
+		return writer;
+	}
+
+	@Test
+	void whenWeightExceeded_thenWriterBlocked() throws Exception {
+		FintanStreamHandler<StringBuilder> stream = new FintanStreamHandler<StringBuilder>(10, 10, StringBuilder::length);
+		stream.writeAll(Arrays.asList(new StringBuilder("abc"), new StringBuilder("def")));
+		CountDownLatch written = new CountDownLatch(1);
+		write(stream, new StringBuilder("ghijk"), written);
+		assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+		assertEquals("abc", stream.read().toString());
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void whenObjectChangedAfterWrite_thenWrittenWeightReleased() throws Exception {
+		FintanStreamHandler<StringBuilder> stream = new FintanStreamHandler<StringBuilder>(10, 10, StringBuilder::length);
+		StringBuilder changed = new StringBuilder("abcde");
+		stream.write(changed);
+		// weighing it again on reading would release more than it has occupied
+		changed.append("fghijklmnopqrstuvwxyz");
+		assertSame(changed, stream.read());
+
+		// the bound still holds
+		stream.write(new StringBuilder("12345678"));
+		CountDownLatch written = new CountDownLatch(1);
+		write(stream, new StringBuilder("12345678"), written);
+		assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+		stream.read();
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,65 @@
+package org.acoli.fintan.core.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+public class FintanMetricsTest {
+
+	static FintanMetrics job(String id) {
+		FintanMetrics metrics = new FintanMetrics();
+		metrics.setJob(id);
+		metrics.registerComponent("load", "RDFStreamLoader");
+		metrics.registerLink("load", "", "write", "", LinkMetrics.TYPE_RDF);
+		return metrics;
+	}
+
+	static ObjectName component(String job) throws Exception {
+		return new ObjectName(FintanMetrics.JMX_DOMAIN+":job="+ObjectName.quote(job)+",type=Component,name="+ObjectName.quote("load"));
+	}
+
+	static int count(String text, String part) {
+		return text.split(part, -1).length - 1;
+	}
+
+	@Test
+	void whenJobsOfSamePipeline_thenMBeansKeptApart() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		FintanMetrics first = job("test-1");
+		FintanMetrics second = job("test-2");
+		assertTrue(server.isRegistered(component("test-1")));
+		assertTrue(server.isRegistered(component("test-2")));
+
+		first.close();
+		assertFalse(server.isRegistered(component("test-1")));
+		assertTrue(server.isRegistered(component("test-2")));
+		second.close();
+		assertFalse(server.isRegistered(component("test-2")));
+	}
+
+	@Test
+	void whenSeveralJobs_thenFamiliesDeclaredOnce() throws Exception {
+		FintanMetrics first = job("test-1");
+		FintanMetrics second = job("test-2");
+		first.getLinks().get(0).recordSegment(3);
+		StringWriter w = new StringWriter();
+		FintanMetrics.writePrometheus(w, Arrays.asList(first, second));
+		String text = w.toString();
+		assertEquals(1, count(text, "# TYPE fintan_link_segments_total "));
+		assertEquals(1, count(text, "# TYPE fintan_component_info "));
+		assertTrue(text.contains("fintan_link_segments_total{fintan_job=\"test-1\",source=\"load\""), text);
+		assertTrue(text.contains("fintan_link_segments_total{fintan_job=\"test-2\",source=\"load\""), text);
+		assertEquals("test-1", first.toJsonNode().get("job").asText());
+		first.close();
+		second.close();
+	}
+}
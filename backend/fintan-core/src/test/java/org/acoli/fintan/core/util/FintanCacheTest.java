@@ -0,0 +1,86 @@
+package org.acoli.fintan.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FintanCacheTest {
+
+	static final String UPDATE = "INSERT DATA { <http://ex.org/s> <http://ex.org/p> \"%s\" }";
+
+	@BeforeEach
+	void enable() {
+		FintanCache.setEnabled(true);
+	}
+
+	@AfterEach
+	void reset() {
+		FintanCache.setMaxWeight(FintanCache.DEFAULT_MAX_WEIGHT);
+		FintanCache.setParameterized(null);
+		FintanCache.setEnabled(false);
+	}
+
+	static Model model(int triples) {
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < triples; i++)
+			model.add(ResourceFactory.createResource("http://ex.org/s"+i),
+					ResourceFactory.createProperty("http://ex.org/p"), "o");
+		return model;
+	}
+
+	@Test
+	void whenWeightExceeded_thenLeastRecentlyUsedEvicted() throws Exception {
+		FintanCache.setMaxWeight(25);
+		Model a = FintanCache.get("a", 0, () -> model(10));
+		Model b = FintanCache.get("b", 0, () -> model(10));
+		// a is used again, so b is the least recently used entry
+		assertSame(a, FintanCache.get("a", 0, () -> model(10)));
+		FintanCache.get("c", 0, () -> model(10));
+		assertEquals(2, FintanCache.size());
+		assertEquals(22, FintanCache.weight());
+		assertSame(a, FintanCache.get("a", 0, () -> model(10)));
+		assertNotSame(b, FintanCache.get("b", 0, () -> model(10)));
+	}
+
+	@Test
+	void whenEntryTooLarge_thenNotCached() throws Exception {
+		FintanCache.setMaxWeight(5);
+		FintanCache.get("a", 0, () -> model(10));
+		assertEquals(0, FintanCache.size());
+		assertEquals(0, FintanCache.weight());
+	}
+
+	@Test
+	void whenParameterized_thenNotCached() {
+		String param = String.format(UPDATE, "param");
+		FintanCache.setParameterized(Arrays.asList(param));
+		assertNotSame(FintanCache.parseUpdate(param), FintanCache.parseUpdate(param));
+		String fixed = String.format(UPDATE, "fixed");
+		assertSame(FintanCache.parseUpdate(fixed), FintanCache.parseUpdate(fixed));
+		assertEquals(1, FintanCache.size());
+
+		FintanCache.setParameterized(null);
+		assertSame(FintanCache.parseUpdate(param), FintanCache.parseUpdate(param));
+	}
+
+	@Test
+	void whenRemoteModel_thenNotCached() throws Exception {
+		AtomicInteger loaded = new AtomicInteger();
+		URI url = new URI("http://ex.org/graph.ttl");
+		FintanCache.loadModel(url, () -> { loaded.incrementAndGet(); return model(1); });
+		FintanCache.loadModel(url, () -> { loaded.incrementAndGet(); return model(1); });
+		assertEquals(2, loaded.get());
+		assertEquals(0, FintanCache.size());
+	}
+}
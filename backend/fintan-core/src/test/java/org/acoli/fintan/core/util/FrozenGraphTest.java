@@ -0,0 +1,105 @@
+package org.acoli.fintan.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.shared.AddDeniedException;
+import org.apache.jena.shared.DeleteDeniedException;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Test;
+
+public class FrozenGraphTest {
+
+	static final String NS = "http://example.org/";
+
+	// IRIs, blank nodes, plain, language tagged and typed literals, some of them equal by value
+	static List<Node> nodes() {
+		List<Node> nodes = new ArrayList<Node>();
+		for (int i = 0; i < 20; i++)
+			nodes.add(NodeFactory.createURI(NS + "r" + i));
+		for (int i = 0; i < 3; i++)
+			nodes.add(NodeFactory.createBlankNode());
+		nodes.add(NodeFactory.createLiteral("a"));
+		nodes.add(NodeFactory.createLiteral("a", "en"));
+		nodes.add(NodeFactory.createLiteral("a", "de"));
+		nodes.add(NodeFactory.createLiteral("1", XSDDatatype.XSDint));
+		nodes.add(NodeFactory.createLiteral("01", XSDDatatype.XSDint));
+		nodes.add(NodeFactory.createLiteral("1", XSDDatatype.XSDinteger));
+		nodes.add(NodeFactory.createLiteral("1.0", XSDDatatype.XSDdecimal));
+		nodes.add(NodeFactory.createLiteral("true", XSDDatatype.XSDboolean));
+		return nodes;
+	}
+
+	// a few subjects and predicates with many triples, to exceed the scan limit
+	static Graph graph(List<Node> nodes, int size) {
+		Random random = new Random(42);
+		Graph g = GraphFactory.createGraphMem();
+		while (g.size() < size) {
+			Node s = nodes.get(random.nextInt(random.nextBoolean() ? 3 : 23));
+			Node p = nodes.get(random.nextInt(random.nextBoolean() ? 2 : 10));
+			Node o = nodes.get(random.nextInt(nodes.size()));
+			g.add(Triple.create(s, p, o));
+		}
+		return g;
+	}
+
+	static Set<Triple> find(Graph g, Node s, Node p, Node o) {
+		return new HashSet<Triple>(g.find(s, p, o).toList());
+	}
+
+	@Test
+	void whenFrozen_thenSameAsGraphMem() {
+		List<Node> nodes = nodes();
+		Graph mem = graph(nodes, 2000);
+		FrozenGraph frozen = new FrozenGraph(mem);
+		assertEquals(mem.size(), frozen.size());
+		assertEquals(find(mem, Node.ANY, Node.ANY, Node.ANY), find(frozen, Node.ANY, Node.ANY, Node.ANY));
+
+		// every pattern of concrete nodes, unknown nodes and wildcards
+		List<Node> pattern = new ArrayList<Node>(nodes);
+		pattern.add(NodeFactory.createURI(NS + "unknown"));
+		pattern.add(NodeFactory.createLiteral("1", XSDDatatype.XSDlong));
+		pattern.add(Node.ANY);
+		List<Node> predicates = new ArrayList<Node>(nodes.subList(0, 10));
+		predicates.addAll(pattern.subList(nodes.size(), pattern.size()));
+		for (Node s : pattern) {
+			for (Node p : predicates) {
+				for (Node o : pattern) {
+					String message = s + " " + p + " " + o;
+					assertEquals(find(mem, s, p, o), find(frozen, s, p, o), message);
+					assertEquals(mem.contains(s, p, o), frozen.contains(s, p, o), message);
+				}
+			}
+		}
+	}
+
+	@Test
+	void whenEmpty_thenNothingFound() {
+		FrozenGraph frozen = new FrozenGraph(GraphFactory.createGraphMem());
+		assertEquals(0, frozen.size());
+		assertFalse(frozen.find().hasNext());
+		assertFalse(frozen.contains(Node.ANY, Node.ANY, Node.ANY));
+	}
+
+	@Test
+	void whenModified_thenDenied() {
+		List<Node> nodes = nodes();
+		FrozenGraph frozen = new FrozenGraph(graph(nodes, 100));
+		Triple t = frozen.find().next();
+		assertThrows(AddDeniedException.class, () -> frozen.add(Triple.create(nodes.get(0), nodes.get(1), nodes.get(2))));
+		assertThrows(DeleteDeniedException.class, () -> frozen.delete(t));
+		assertEquals(100, frozen.size());
+	}
+}
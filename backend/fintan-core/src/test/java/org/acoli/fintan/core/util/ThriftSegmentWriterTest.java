@@ -0,0 +1,86 @@
+package org.acoli.fintan.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Test;
+
+public class ThriftSegmentWriterTest {
+
+	static Model parse(String ttl) {
+		return ModelFactory.createDefaultModel().read(new StringReader(ttl), null, "TTL");
+	}
+
+	static ThriftSegmentReader writeAll(Model... segments) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ThriftSegmentWriter writer = new ThriftSegmentWriter(out);
+		for (Model m:segments)
+			writer.write(m);
+		writer.close();
+		return new ThriftSegmentReader(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	void whenSegmentsWritten_thenReadBackIsomorphic() throws IOException {
+		Model first = parse("@prefix ex: <http://ex.org/> . "
+				+ "ex:s1 ex:p ex:o1, ex:o2 ; ex:q \"a\"@en, \"1\"^^<http://www.w3.org/2001/XMLSchema#int> . "
+				+ "ex:s2 ex:p [ ex:q \"b\" ] .");
+		Model second = parse("@prefix ex: <http://ex.org/> . @prefix x: <http://x.org/> . "
+				+ "x:s ex:p ex:s1 , <http://unprefixed.org/o> .");
+		ThriftSegmentReader reader = writeAll(first, second);
+
+		Model m = reader.read();
+		assertTrue(first.isIsomorphicWith(m));
+		assertEquals("http://ex.org/", m.getNsPrefixURI("ex"));
+		m = reader.read();
+		assertTrue(second.isIsomorphicWith(m));
+		assertEquals("http://x.org/", m.getNsPrefixURI("x"));
+		assertNull(reader.read());
+	}
+
+	@Test
+	void whenEmptySegment_thenEmptyModel() throws IOException {
+		ThriftSegmentReader reader = writeAll(ModelFactory.createDefaultModel(), parse("<http://ex.org/s> <http://ex.org/p> 1 ."));
+		assertEquals(0, reader.read().size());
+		assertEquals(1, reader.read().size());
+		assertNull(reader.read());
+	}
+
+	@Test
+	void whenPrefixRebound_thenOldNamespaceNotAbbreviated() throws IOException {
+		Model first = parse("@prefix ex: <http://ex.org/> . ex:s ex:p ex:o .");
+		Model second = parse("@prefix ex: <http://other.org/> . "
+				+ "<http://ex.org/s> ex:p <http://ex.org/o> . ex:s <http://ex.org/p> ex:o .");
+		Model third = parse("@prefix ex: <http://ex.org/> . "
+				+ "ex:s <http://other.org/p> ex:o .");
+		ThriftSegmentReader reader = writeAll(first, second, third);
+
+		assertTrue(first.isIsomorphicWith(reader.read()));
+		Model m = reader.read();
+		assertTrue(second.isIsomorphicWith(m));
+		assertEquals("http://other.org/", m.getNsPrefixURI("ex"));
+		m = reader.read();
+		assertTrue(third.isIsomorphicWith(m));
+		assertEquals("http://ex.org/", m.getNsPrefixURI("ex"));
+	}
+
+	@Test
+	void whenTwoPrefixesShareNamespace_thenReboundOneStillExpands() throws IOException {
+		Model first = parse("@prefix a: <http://ex.org/> . @prefix b: <http://ex.org/> . a:s a:p a:o .");
+		Model second = parse("@prefix a: <http://other.org/> . @prefix b: <http://ex.org/> . "
+				+ "a:s b:p b:o .");
+		ThriftSegmentReader reader = writeAll(first, second);
+
+		assertTrue(first.isIsomorphicWith(reader.read()));
+		assertTrue(second.isIsomorphicWith(reader.read()));
+	}
+
+}
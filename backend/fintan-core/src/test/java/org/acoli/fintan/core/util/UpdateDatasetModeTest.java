@@ -0,0 +1,39 @@
+package org.acoli.fintan.core.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.system.Txn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UpdateDatasetModeTest {
+
+	@TempDir
+	File dir;
+
+	@Test
+	void whenTdb2DatasetClosed_thenDirectoryDeleted() {
+		Dataset dataset = UpdateDatasetMode.TDB2.createDataset(dir.getPath(), this);
+		Txn.executeWrite(dataset, () -> dataset.getNamedModel("http://ex.org/g").add(
+				ResourceFactory.createResource("http://ex.org/s"),
+				ResourceFactory.createProperty("http://ex.org/p"), "o"));
+		assertEquals(1, dir.listFiles().length);
+
+		UpdateDatasetMode.TDB2.closeDataset(dataset);
+		assertEquals(0, dir.listFiles().length);
+		// closing twice has no effect
+		UpdateDatasetMode.TDB2.closeDataset(dataset);
+	}
+
+	@Test
+	void whenMemDatasetClosed_thenNothingHappens() {
+		Dataset dataset = UpdateDatasetMode.MEM.createDataset(null, this);
+		UpdateDatasetMode.MEM.closeDataset(dataset);
+		assertTrue(dataset.isEmpty());
+	}
+}
@@ -0,0 +1,32 @@
+package org.acoli.fintan.rdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.acoli.fintan.core.util.UpdateDatasetMode;
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class RDFUpdaterFactoryTest {
+
+	static ObjectNode conf(String json) throws Exception {
+		return (ObjectNode) new ObjectMapper().readTree(json);
+	}
+
+	@Test
+	void whenDatasetSet_thenModeUsed() throws Exception {
+		RDFUpdater updater = new RDFUpdaterFactory().buildFromJsonConf(conf("{\"dataset\":\"txn\"}"));
+		assertEquals(UpdateDatasetMode.TXN, updater.getDatasetMode());
+	}
+
+	@Test
+	void whenDatasetInvalid_thenParseException() {
+		ParseException e = assertThrows(ParseException.class,
+				() -> new RDFUpdaterFactory().buildFromJsonConf(conf("{\"dataset\":\"FOO\"}")));
+		assertTrue(e.getMessage().contains("'FOO'"), e.getMessage());
+	}
+}
@@ -13,4 +13,11 @@ if [ ! -e "${package_jar}" ]; then
     exit 1
 fi
 
-java -Dfile.encoding=UTF8 -jar "${package_jar}" "$@"
+# Use the class data sharing archive of the appcds profile, if present
+package_jsa="${target_dir}/fintan-backend-0.0.1-SNAPSHOT.jsa"
+jvm_opts=""
+if [ -e "${package_jsa}" ]; then
+    jvm_opts="-XX:SharedArchiveFile=${package_jsa}"
+fi
+
+java -Dfile.encoding=UTF8 ${jvm_opts} -jar "${package_jar}" "$@"
@@ -15,7 +15,6 @@
  */
 package org.acoli.fintan.genericIO;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -30,6 +29,7 @@ import java.util.Map;
 import org.acoli.fintan.core.FintanManager;
 import org.acoli.fintan.core.FintanStreamComponentFactory;
 import org.acoli.fintan.core.StreamTransformerGenericIO;
+import org.acoli.fintan.core.util.SegmentReader;
 import org.acoli.fintan.swagger.client.ApiClient;
 import org.acoli.fintan.swagger.client.ApiException;
 import org.acoli.fintan.swagger.client.ApiResponse;
@@ -417,25 +417,14 @@ public class OpenAPIServiceStreamTransformer extends StreamTransformerGenericIO
 
 			} else if (supplyMethod.equals("blob")) {
 				
-				BufferedReader in = new BufferedReader(new InputStreamReader(getInputStream()));
-				String segment = "";
-
-				for(String line = in.readLine(); line !=null; line=in.readLine()) {
-					if (!line.equals(segmentDelimiterIn)) {
-						//if segmentDelimiterIn is null, this is never true --> full stream is read as blob.
-						// regular line
-						segment+=line+"\n";
-					} else {
-						// end of segment
-						writeResults(callApiWithExceptionLogging(name+segment.hashCode(), segment, null, null), out);
-						if (segmentDelimiterOut != null) out.println(segmentDelimiterOut);
-
-						// clear segment cache
-						segment = "";
-					}
+				//if segmentDelimiterIn is null, the full stream is read as blob.
+				SegmentReader segments = new SegmentReader(new InputStreamReader(getInputStream()), segmentDelimiterIn);
+				while (segments.next()) {
+					String segment = segments.toString();
+					writeResults(callApiWithExceptionLogging(name+segment.hashCode(), segment, null, null), out);
+					//no delimiter after the final segment in case there is no segmentDelimiter in last row
+					if (segments.isDelimited() && segmentDelimiterOut != null) out.println(segmentDelimiterOut);
 				}
-				//final segment in case there is no segmentDelimiter in last row
-				writeResults(callApiWithExceptionLogging(name+segment.hashCode(), segment, null, null), out);
 			}
 			
 			out.close();
@@ -540,9 +529,10 @@ public class OpenAPIServiceStreamTransformer extends StreamTransformerGenericIO
 	public void run() {
 		try {
 			processStream();	
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
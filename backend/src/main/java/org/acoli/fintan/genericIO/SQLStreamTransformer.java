@@ -282,9 +282,10 @@ public class SQLStreamTransformer extends StreamTransformerGenericIO implements
 	public void run() {
 		try {
 			processStream();	
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
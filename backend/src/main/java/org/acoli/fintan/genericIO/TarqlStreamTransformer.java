@@ -49,6 +49,7 @@ import java.util.jar.Manifest;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
 import org.acoli.fintan.core.StreamTransformerGenericIO;
+import org.acoli.fintan.core.util.SegmentReader;
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.graph.Triple;
@@ -301,7 +302,7 @@ public class TarqlStreamTransformer extends StreamTransformerGenericIO implement
 	}
 
 
-	private void processStream() {
+	private void processStream() throws IOException {
 		for (String name:listInputStreamNames()) {
 			if (name == FINTAN_DEFAULT_STREAM_NAME) 
 				continue;
@@ -323,14 +324,9 @@ public class TarqlStreamTransformer extends StreamTransformerGenericIO implement
 			tsv2ttl.setBaseIRI(baseIRI);
 			tsv2ttl.setWriteBase(writeBase);
 			tsv2ttl.setDedup(dedup);
-			try {
-				tsv2ttl.setInputStream(getInputStream(name));
-				tsv2ttl.setOutputStream(getOutputStream(name));
-			} catch (IOException e) {
-				LOG.error(e, e);
-				System.exit(1);
-			}
-			new Thread(tsv2ttl).start();
+			tsv2ttl.setInputStream(getInputStream(name));
+			tsv2ttl.setOutputStream(getOutputStream(name));
+			getScheduler().execute(tsv2ttl, getInstanceName()+"<"+name+">");
 		}
 
 
@@ -357,26 +353,16 @@ public class TarqlStreamTransformer extends StreamTransformerGenericIO implement
 		// for segmented streams process tarql for individual segments
 			
 			BufferedReader in = new BufferedReader(new InputStreamReader(getInputStream()));
-			String tsvsegment = "";
 			String headerRow = null;
 			try {
-				for(String line = in.readLine(); line !=null; line=in.readLine()) {
-					if (hasHeaderRow && headerRow == null) {
-						// cache first line, if it is supposed to be the header_row
-						headerRow=line;
-					} else if (!line.equals(segmentDelimiterIn)) {
-						// regular line
-						tsvsegment+=line+"\n";
-					} else {
-						// end of segment
-						outputSegment(out, args, tsvsegment, headerRow);
-
-						// clear segment cache
-						tsvsegment = "";
-					}
+				// cache first line, if it is supposed to be the header_row
+				if (hasHeaderRow)
+					headerRow = in.readLine();
+				// the final segment ends with the stream in case there is no segmentDelimiter in last row
+				SegmentReader segments = new SegmentReader(in, segmentDelimiterIn);
+				while (segments.next()) {
+					outputSegment(out, args, segments.segment(), headerRow);
 				}
-				//final segment in case there is no segmentDelimiter in last row
-				outputSegment(out, args, tsvsegment, headerRow);
 
 			} catch (IOException e) {
 				LOG.trace("Error when reading from Stream: " +e);
@@ -385,9 +371,9 @@ public class TarqlStreamTransformer extends StreamTransformerGenericIO implement
 		out.close();
 
 	}
-	private void outputSegment(PrintStream out, String[] args, String tsvsegment, String headerRow) {
+	private void outputSegment(PrintStream out, String[] args, CharSequence segment, String headerRow) {
 		// prepare input in case header row needs to be duplicated.
-		if (hasHeaderRow) tsvsegment = headerRow+"\n"+tsvsegment;
+		String tsvsegment = (hasHeaderRow) ? headerRow+"\n"+segment : segment.toString();
 		
 		// print processed segment directly to outputstream
 		new tarqlFintanOverride(args, InputStreamSource.fromString(tsvsegment), out).mainRun();
@@ -404,9 +390,10 @@ public class TarqlStreamTransformer extends StreamTransformerGenericIO implement
 	public void run() {
 		try {
 			processStream();
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
@@ -26,6 +26,7 @@ import javax.xml.transform.stream.StreamSource;
 
 import org.acoli.fintan.core.FintanStreamComponentFactory;
 import org.acoli.fintan.core.StreamTransformerGenericIO;
+import org.acoli.fintan.core.util.FintanCache;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -128,19 +129,48 @@ public class XSLTStreamTransformer extends StreamTransformerGenericIO implements
 		processor = new Processor(false);
 	}
 	
+	/**
+	 * Compiles the stylesheet. Compiled stylesheets are shared via the FintanCache, 
+	 * if it is enabled, since Saxon's XsltExecutable is immutable and thread-safe.
+	 * Remote stylesheets are not cached, since they may change unnoticed.
+	 */
 	public void loadStylesheet(String[] args) throws SaxonApiException, TransformerException {
-		CommandLineOptions options = new CommandLineOptions();
+		final CommandLineOptions options = new CommandLineOptions();
 		
 		options.addRecognizedOption("xsl", CommandLineOptions.TYPE_FILENAME | CommandLineOptions.VALUE_REQUIRED,
                 "Main stylesheet file");
         options.setActualOptions(args);
         
+		final String path = options.getOptionValue("xsl");
+		if (path != null && CommandLineOptions.isImplicitURI(path)) {
+			CompiledStylesheet compiled = compile(options, path);
+			processor = compiled.processor;
+			stylesheet = compiled.stylesheet;
+			return;
+		}
+		long version = path == null ? 0 : FintanCache.version(path);
+		
+		CompiledStylesheet compiled;
+		try {
+			compiled = FintanCache.get("xslt:"+String.join(" ", args), version, () -> compile(options, path));
+		} catch (IOException e) {
+			if (e.getCause() instanceof SaxonApiException) 
+				throw (SaxonApiException) e.getCause();
+			if (e.getCause() instanceof TransformerException) 
+				throw (TransformerException) e.getCause();
+			throw new SaxonApiException(e);
+		}
+		processor = compiled.processor;
+		stylesheet = compiled.stylesheet;
+	}
+	
+	private CompiledStylesheet compile(CommandLineOptions options, String path) throws SaxonApiException, TransformerException {
 		XsltCompiler compiler = processor.newXsltCompiler();
 		options.applyStaticParams(compiler);
 
 		Source styleSource;
 		
-		String path = options.getOptionValue("xsl");
+		XsltExecutable stylesheet = null;
         if (CommandLineOptions.isImplicitURI(path)) {
             styleSource = processor.getUnderlyingConfiguration().getURIResolver().resolve(path, null);
             if (styleSource == null) {
@@ -150,6 +180,20 @@ public class XSLTStreamTransformer extends StreamTransformerGenericIO implements
         } else if (path != null) {
             stylesheet = compiler.compile(new StreamSource(new File(path)));
         }
+        return new CompiledStylesheet(processor, stylesheet);
+	}
+	
+	/**
+	 * A stylesheet together with the processor it has been compiled by.
+	 */
+	private static class CompiledStylesheet {
+		private final Processor processor;
+		private final XsltExecutable stylesheet;
+		
+		private CompiledStylesheet(Processor processor, XsltExecutable stylesheet) {
+			this.processor = processor;
+			this.stylesheet = stylesheet;
+		}
 	}
 	
 	private void processStream() throws IOException, SaxonApiException {
@@ -165,9 +209,10 @@ public class XSLTStreamTransformer extends StreamTransformerGenericIO implements
 	public void run() {
 		try {
 			processStream();	
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 
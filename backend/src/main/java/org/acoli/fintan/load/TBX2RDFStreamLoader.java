@@ -383,9 +383,10 @@ public class TBX2RDFStreamLoader extends StreamLoader implements FintanStreamCom
 	public void run() {
 		try {
 			processStream();	
+		} catch (RuntimeException e) {
+			throw e;
 		} catch (Exception e) {
-			LOG.error(e, e);
-			System.exit(1);
+			throw new IllegalStateException(e);
 		}
 	}
 